@@ -2,108 +2,177 @@ package live.yurii.yugram;
 
 import live.yurii.yugram.authorization.UpdateAuthorizationStateEvent;
 import live.yurii.yugram.chats.*;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.diagnostics.StartupTimeline;
+import live.yurii.yugram.diagnostics.jfr.UpdateDispatchEvent;
+import live.yurii.yugram.diagnostics.jfr.UpdateReceivedEvent;
+import live.yurii.yugram.ingest.IngestExecutor;
+import live.yurii.yugram.messages.MessageContentChangedEvent;
 import live.yurii.yugram.messages.NewMessageEvent;
 import live.yurii.yugram.users.UserEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.drinkless.tdlib.Client;
 import org.drinkless.tdlib.TdApi;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Turns the updates of every account's TDLib client into application events tagged with the account.
+ * Updates this node does not write for, see {@link LeaseManager}, are counted and dropped.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class MainUpdateHandler implements Client.ResultHandler {
+public class MainUpdateHandler {
 
   private final ApplicationEventPublisher publisher;
-  private final Queue<TdApi.Object> pendingUpdates = new ConcurrentLinkedQueue<>();
+  private final IngestExecutor ingestExecutor;
+  private final MeterRegistry meterRegistry;
+  private final StartupTimeline startupTimeline;
+  private final LeaseManager leaseManager;
+  private final Queue<AccountUpdate> pendingUpdates = new ConcurrentLinkedQueue<>();
+  private final Map<String, Counter> updateCounters = new ConcurrentHashMap<>();
   private boolean isApplicationReady = false;
 
-  @Override
-  public void onResult(TdApi.Object object) {
+  @PostConstruct
+  public void registerGauges() {
+    Gauge.builder("yugram.tdlib.pending", pendingUpdates, Queue::size)
+        .description("Updates received before the application was ready, waiting to be processed")
+        .register(meterRegistry);
+  }
+
+  /**
+   * The handler of the client of an account.
+   */
+  public Client.ResultHandler forAccount(int accountId) {
+    return object -> onResult(accountId, object);
+  }
+
+  public void onResult(int accountId, TdApi.Object object) {
+    UpdateReceivedEvent.record(object, !isApplicationReady);
+    startupTimeline.onUpdateReceived();
     if (!isApplicationReady) {
       // Store updates that arrive before initialization in a queue
       log.info("Initialization not completed, queueing update");
-      queueUpdate(object);
+      queueUpdate(new AccountUpdate(accountId, object));
       return;
     }
 
-    processUpdate(object);
+    processUpdate(accountId, object);
   }
 
-  private synchronized void queueUpdate(TdApi.Object object) {
-    pendingUpdates.add(object);
+  private synchronized void queueUpdate(AccountUpdate update) {
+    pendingUpdates.add(update);
   }
 
-  private void processUpdate(TdApi.Object object) {
+  private void processUpdate(int accountId, TdApi.Object object) {
     switch (object.getConstructor()) {
       // authorization
       case TdApi.UpdateAuthorizationState.CONSTRUCTOR ->
-        publisher.publishEvent(new UpdateAuthorizationStateEvent(this, (TdApi.UpdateAuthorizationState) object));
+        dispatch(accountId, object, accountId,
+            new UpdateAuthorizationStateEvent(this, accountId, (TdApi.UpdateAuthorizationState) object));
 
       // users
-      case TdApi.UpdateUser.CONSTRUCTOR -> publisher.publishEvent(new UserEvent(this, (TdApi.UpdateUser) object));
-      case TdApi.UpdateUserStatus.CONSTRUCTOR -> skip("UpdateUserStatus");
-      case TdApi.UpdateUserFullInfo.CONSTRUCTOR -> skip("UpdateUserFullInfo");
+      case TdApi.UpdateUser.CONSTRUCTOR -> {
+        TdApi.UpdateUser update = (TdApi.UpdateUser) object;
+        if (!leaseManager.ownsAccount(accountId)) {
+          count(accountId, "UpdateUser", "not-owned");
+          return;
+        }
+        dispatch(accountId, update, update.user.id, new UserEvent(this, accountId, update));
+      }
+      case TdApi.UpdateUserStatus.CONSTRUCTOR -> skip(accountId, "UpdateUserStatus");
+      case TdApi.UpdateUserFullInfo.CONSTRUCTOR -> skip(accountId, "UpdateUserFullInfo");
 
       // messages
-      case TdApi.UpdateNewMessage.CONSTRUCTOR -> publisher.publishEvent(new NewMessageEvent(this, (TdApi.UpdateNewMessage) object));
-      case TdApi.UpdateChatLastMessage.CONSTRUCTOR -> skip("UpdateChatLastMessage");
-      case TdApi.UpdateUnreadMessageCount.CONSTRUCTOR -> skip("UpdateUnreadMessageCount");
-      case TdApi.UpdateDeleteMessages.CONSTRUCTOR -> skip("UpdateDeleteMessages");
-      case TdApi.UpdateMessageContent.CONSTRUCTOR -> skip("UpdateMessageContent");
-      case TdApi.UpdateMessageEdited.CONSTRUCTOR -> skip("UpdateMessageEdited");
-      case TdApi.UpdateMessageInteractionInfo.CONSTRUCTOR -> skip("UpdateMessageInteractionInfo");
-      case TdApi.UpdateMessageIsPinned.CONSTRUCTOR -> skip("UpdateMessageIsPinned");
+      case TdApi.UpdateNewMessage.CONSTRUCTOR -> {
+        TdApi.UpdateNewMessage update = (TdApi.UpdateNewMessage) object;
+        if (!leaseManager.ownsChat(update.message.chatId)) {
+          count(accountId, "UpdateNewMessage", "not-owned");
+          return;
+        }
+        dispatch(accountId, update, update.message.chatId, new NewMessageEvent(this, accountId, update));
+      }
+      case TdApi.UpdateChatLastMessage.CONSTRUCTOR -> skip(accountId, "UpdateChatLastMessage");
+      case TdApi.UpdateUnreadMessageCount.CONSTRUCTOR -> skip(accountId, "UpdateUnreadMessageCount");
+      case TdApi.UpdateDeleteMessages.CONSTRUCTOR -> skip(accountId, "UpdateDeleteMessages");
+      case TdApi.UpdateMessageContent.CONSTRUCTOR -> {
+        TdApi.UpdateMessageContent update = (TdApi.UpdateMessageContent) object;
+        if (!leaseManager.ownsChat(update.chatId)) {
+          count(accountId, "UpdateMessageContent", "not-owned");
+          return;
+        }
+        dispatch(accountId, update, update.chatId, new MessageContentChangedEvent(this, accountId, update));
+      }
+      case TdApi.UpdateMessageEdited.CONSTRUCTOR -> skip(accountId, "UpdateMessageEdited");
+      case TdApi.UpdateMessageInteractionInfo.CONSTRUCTOR -> skip(accountId, "UpdateMessageInteractionInfo");
+      case TdApi.UpdateMessageIsPinned.CONSTRUCTOR -> skip(accountId, "UpdateMessageIsPinned");
 
       // chats
-      case TdApi.UpdateNewChat.CONSTRUCTOR -> publisher.publishEvent(new NewChatEvent(this, (TdApi.UpdateNewChat) object));
-      case TdApi.UpdateSupergroup.CONSTRUCTOR -> skip("UpdateSupergroup");
-      case TdApi.UpdateChatPosition.CONSTRUCTOR -> skip("UpdateChatPosition");
-      case TdApi.UpdateChatActiveStories.CONSTRUCTOR -> skip("UpdateChatActiveStories");
-      case TdApi.UpdateChatRemovedFromList.CONSTRUCTOR -> skip("UpdateChatRemovedFromList");
-      case TdApi.UpdateChatPhoto.CONSTRUCTOR -> skip("UpdateChatPhoto");
-      case TdApi.UpdateBasicGroup.CONSTRUCTOR -> skip("UpdateBasicGroup");
-
-      case TdApi.UpdateSupergroupFullInfo.CONSTRUCTOR -> skip("UpdateSupergroupFullInfo");
-      case TdApi.UpdateOption.CONSTRUCTOR -> skip("UpdateOption");
-      case TdApi.UpdateChatReadInbox.CONSTRUCTOR -> skip("UpdateChatReadInbox");
-      case TdApi.UpdateChatReadOutbox.CONSTRUCTOR -> skip("UpdateChatReadOutbox");
-      case TdApi.UpdateChatAddedToList.CONSTRUCTOR -> skip("UpdateChatAddedToList");
-      case TdApi.UpdateConnectionState.CONSTRUCTOR -> skip("UpdateConnectionState");
-      case TdApi.UpdateHavePendingNotifications.CONSTRUCTOR -> skip("UpdateHavePendingNotifications");
-      case TdApi.UpdateChatAction.CONSTRUCTOR -> skip("UpdateChatAction");
-      case TdApi.UpdateAttachmentMenuBots.CONSTRUCTOR -> skip("UpdateAttachmentMenuBots");
-      case TdApi.UpdateDefaultBackground.CONSTRUCTOR -> skip("UpdateDefaultBackground");
-      case TdApi.UpdateFileDownloads.CONSTRUCTOR -> skip("UpdateFileDownloads");
-      case TdApi.UpdateDiceEmojis.CONSTRUCTOR -> skip("UpdateDiceEmojis");
-      case TdApi.UpdateActiveEmojiReactions.CONSTRUCTOR -> skip("UpdateActiveEmojiReactions");
-      case TdApi.UpdateAvailableMessageEffects.CONSTRUCTOR -> skip("UpdateAvailableMessageEffects");
-      case TdApi.UpdateDefaultPaidReactionType.CONSTRUCTOR -> skip("UpdateDefaultPaidReactionType");
-      case TdApi.UpdateChatTheme.CONSTRUCTOR -> skip("UpdateChatTheme");
-      case TdApi.UpdateReactionNotificationSettings.CONSTRUCTOR -> skip("UpdateReactionNotificationSettings");
-      case TdApi.UpdateChatFolders.CONSTRUCTOR -> skip("UpdateChatFolders");
-      case TdApi.UpdateUnreadChatCount.CONSTRUCTOR -> skip("UpdateUnreadChatCount");
-      case TdApi.UpdateStoryStealthMode.CONSTRUCTOR -> skip("UpdateStoryStealthMode");
-      case TdApi.UpdateChatAvailableReactions.CONSTRUCTOR -> skip("UpdateChatAvailableReactions");
-      case TdApi.UpdateChatIsTranslatable.CONSTRUCTOR -> skip("UpdateChatIsTranslatable");
-      case TdApi.UpdateChatMessageSender.CONSTRUCTOR -> skip("UpdateChatMessageSender");
-      case TdApi.UpdateChatNotificationSettings.CONSTRUCTOR -> skip("UpdateChatNotificationSettings");
-      case TdApi.UpdateChatVideoChat.CONSTRUCTOR -> skip("UpdateChatVideoChat");
-      case TdApi.UpdateGroupCall.CONSTRUCTOR -> skip("UpdateGroupCall");
-      case TdApi.UpdateDefaultReactionType.CONSTRUCTOR -> skip("UpdateDefaultReactionType");
-      case TdApi.UpdateAnimationSearchParameters.CONSTRUCTOR -> skip("UpdateAnimationSearchParameters");
-      case TdApi.UpdateAccentColors.CONSTRUCTOR -> skip("UpdateAccentColors");
-      case TdApi.UpdateProfileAccentColors.CONSTRUCTOR -> skip("UpdateProfileAccentColors");
-      case TdApi.UpdateSpeechRecognitionTrial.CONSTRUCTOR -> skip("UpdateSpeechRecognitionTrial");
-
-      default -> log.debug("Not implemented update: {}", object.getClass().getName());
+      case TdApi.UpdateNewChat.CONSTRUCTOR -> {
+        TdApi.UpdateNewChat update = (TdApi.UpdateNewChat) object;
+        if (!leaseManager.ownsChat(update.chat.id)) {
+          count(accountId, "UpdateNewChat", "not-owned");
+          return;
+        }
+        dispatch(accountId, update, update.chat.id, new NewChatEvent(this, accountId, update));
+      }
+      case TdApi.UpdateSupergroup.CONSTRUCTOR -> skip(accountId, "UpdateSupergroup");
+      case TdApi.UpdateChatPosition.CONSTRUCTOR -> skip(accountId, "UpdateChatPosition");
+      case TdApi.UpdateChatActiveStories.CONSTRUCTOR -> skip(accountId, "UpdateChatActiveStories");
+      case TdApi.UpdateChatRemovedFromList.CONSTRUCTOR -> skip(accountId, "UpdateChatRemovedFromList");
+      case TdApi.UpdateChatPhoto.CONSTRUCTOR -> skip(accountId, "UpdateChatPhoto");
+      case TdApi.UpdateBasicGroup.CONSTRUCTOR -> skip(accountId, "UpdateBasicGroup");
+
+      case TdApi.UpdateSupergroupFullInfo.CONSTRUCTOR -> skip(accountId, "UpdateSupergroupFullInfo");
+      case TdApi.UpdateOption.CONSTRUCTOR -> skip(accountId, "UpdateOption");
+      case TdApi.UpdateChatReadInbox.CONSTRUCTOR -> skip(accountId, "UpdateChatReadInbox");
+      case TdApi.UpdateChatReadOutbox.CONSTRUCTOR -> skip(accountId, "UpdateChatReadOutbox");
+      case TdApi.UpdateChatAddedToList.CONSTRUCTOR -> skip(accountId, "UpdateChatAddedToList");
+      case TdApi.UpdateConnectionState.CONSTRUCTOR -> skip(accountId, "UpdateConnectionState");
+      case TdApi.UpdateHavePendingNotifications.CONSTRUCTOR -> skip(accountId, "UpdateHavePendingNotifications");
+      case TdApi.UpdateChatAction.CONSTRUCTOR -> skip(accountId, "UpdateChatAction");
+      case TdApi.UpdateAttachmentMenuBots.CONSTRUCTOR -> skip(accountId, "UpdateAttachmentMenuBots");
+      case TdApi.UpdateDefaultBackground.CONSTRUCTOR -> skip(accountId, "UpdateDefaultBackground");
+      case TdApi.UpdateFileDownloads.CONSTRUCTOR -> skip(accountId, "UpdateFileDownloads");
+      case TdApi.UpdateDiceEmojis.CONSTRUCTOR -> skip(accountId, "UpdateDiceEmojis");
+      case TdApi.UpdateActiveEmojiReactions.CONSTRUCTOR -> skip(accountId, "UpdateActiveEmojiReactions");
+      case TdApi.UpdateAvailableMessageEffects.CONSTRUCTOR -> skip(accountId, "UpdateAvailableMessageEffects");
+      case TdApi.UpdateDefaultPaidReactionType.CONSTRUCTOR -> skip(accountId, "UpdateDefaultPaidReactionType");
+      case TdApi.UpdateChatTheme.CONSTRUCTOR -> skip(accountId, "UpdateChatTheme");
+      case TdApi.UpdateReactionNotificationSettings.CONSTRUCTOR -> skip(accountId, "UpdateReactionNotificationSettings");
+      case TdApi.UpdateChatFolders.CONSTRUCTOR -> skip(accountId, "UpdateChatFolders");
+      case TdApi.UpdateUnreadChatCount.CONSTRUCTOR -> skip(accountId, "UpdateUnreadChatCount");
+      case TdApi.UpdateStoryStealthMode.CONSTRUCTOR -> skip(accountId, "UpdateStoryStealthMode");
+      case TdApi.UpdateChatAvailableReactions.CONSTRUCTOR -> skip(accountId, "UpdateChatAvailableReactions");
+      case TdApi.UpdateChatIsTranslatable.CONSTRUCTOR -> skip(accountId, "UpdateChatIsTranslatable");
+      case TdApi.UpdateChatMessageSender.CONSTRUCTOR -> skip(accountId, "UpdateChatMessageSender");
+      case TdApi.UpdateChatNotificationSettings.CONSTRUCTOR -> skip(accountId, "UpdateChatNotificationSettings");
+      case TdApi.UpdateChatVideoChat.CONSTRUCTOR -> skip(accountId, "UpdateChatVideoChat");
+      case TdApi.UpdateGroupCall.CONSTRUCTOR -> skip(accountId, "UpdateGroupCall");
+      case TdApi.UpdateDefaultReactionType.CONSTRUCTOR -> skip(accountId, "UpdateDefaultReactionType");
+      case TdApi.UpdateAnimationSearchParameters.CONSTRUCTOR -> skip(accountId, "UpdateAnimationSearchParameters");
+      case TdApi.UpdateAccentColors.CONSTRUCTOR -> skip(accountId, "UpdateAccentColors");
+      case TdApi.UpdateProfileAccentColors.CONSTRUCTOR -> skip(accountId, "UpdateProfileAccentColors");
+      case TdApi.UpdateSpeechRecognitionTrial.CONSTRUCTOR -> skip(accountId, "UpdateSpeechRecognitionTrial");
+
+      default -> {
+        count(accountId, object.getClass().getSimpleName(), "unhandled");
+        log.debug("Not implemented update: {}", object.getClass().getName());
+      }
     }
   }
 
@@ -114,14 +183,48 @@ public class MainUpdateHandler implements Client.ResultHandler {
       isApplicationReady = true;
       log.debug("Initialization completed. Processing queued updates...");
       while (!pendingUpdates.isEmpty()) {
-        TdApi.Object update = pendingUpdates.poll();
-        if (update != null) {
-          processUpdate(update);
+        AccountUpdate pending = pendingUpdates.poll();
+        if (pending != null) {
+          processUpdate(pending.accountId(), pending.update());
         }
       }
     }
   }
 
-  private void skip(String updateName) {
+  /**
+   * Handle the event on the ingest lane of {@code key}, keeping updates of one chat or user in order.
+   * The lanes are shared by the accounts, so updates of a chat seen by several accounts are handled one at a time.
+   */
+  private void dispatch(int accountId, TdApi.Object update, long key, ApplicationEvent event) {
+    String updateName = update.getClass().getSimpleName();
+    count(accountId, updateName, "handled");
+    long submitted = System.nanoTime();
+    ingestExecutor.execute(key, event.getClass().getSimpleName(), () -> {
+      UpdateDispatchEvent dispatchEvent = new UpdateDispatchEvent();
+      long queueWait = System.nanoTime() - submitted;
+      dispatchEvent.begin();
+      try {
+        publisher.publishEvent(event);
+      } finally {
+        dispatchEvent.finish(update.getConstructor(), updateName, key, queueWait);
+      }
+    });
+  }
+
+  private void skip(int accountId, String updateName) {
+    count(accountId, updateName, "skipped");
+  }
+
+  private void count(int accountId, String updateName, String outcome) {
+    updateCounters.computeIfAbsent(accountId + ":" + updateName + ":" + outcome, key -> Counter.builder("yugram.tdlib.updates")
+            .description("Updates received from TDLib by account, type and what was done with them")
+            .tag("account", String.valueOf(accountId))
+            .tag("type", updateName)
+            .tag("outcome", outcome)
+            .register(meterRegistry))
+        .increment();
+  }
+
+  private record AccountUpdate(int accountId, TdApi.Object update) {
   }
 }
@@ -3,12 +3,14 @@ package live.yurii.yugram;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @SpringBootApplication
+@EnableScheduling
 public class YugramApplication {
 
-  static void main(String[] args) {
+  public static void main(String[] args) {
     SpringApplication.run(YugramApplication.class, args);
   }
 
@@ -0,0 +1,179 @@
+package live.yurii.yugram.analytics;
+
+import live.yurii.yugram.analytics.dto.DistinctCountDto;
+import live.yurii.yugram.analytics.dto.TopSendersDto;
+import live.yurii.yugram.analytics.dto.TrendingTermsDto;
+import live.yurii.yugram.analytics.dto.VolumeBackfillDto;
+import live.yurii.yugram.analytics.dto.VolumeBucketDto;
+import live.yurii.yugram.analytics.dto.VolumeHistogramDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+
+  private final VolumeRollupRepository volumeRollupRepository;
+  private final VolumeRollupHandler volumeRollupHandler;
+  private final VolumeRollupProperties volumeRollupProperties;
+  private final TopSendersTracker topSendersTracker;
+  private final DistinctCounter distinctCounter;
+  private final DistinctCountProperties distinctCountProperties;
+  private final TrendingTermsTracker trendingTermsTracker;
+  private static final int MAX_TOP_SENDERS = 100;
+  private static final int MAX_TRENDING_TERMS = 100;
+
+  /**
+   * Message counts per hour or day in {@code [from, to)}, given in epoch seconds and widened to whole buckets.
+   * Without {@code chatId} all chats are counted, without {@code senderId} all senders.
+   */
+  @GetMapping("/volume")
+  public ResponseEntity<VolumeHistogramDto> getVolume(
+      @RequestParam(required = false) Long chatId,
+      @RequestParam(required = false) Long senderId,
+      @RequestParam(defaultValue = "HOUR") Granularity granularity,
+      @RequestParam(required = false) Long from,
+      @RequestParam(required = false) Long to) {
+
+    log.debug("Getting {} volume for chatId: {}, senderId: {}, from: {}, to: {}", granularity, chatId, senderId, from, to);
+
+    long end = granularity.ceil(to != null ? to : Instant.now().getEpochSecond() + 1);
+    long start = granularity.floor(from != null ? from : end - granularity.defaultRange().toSeconds());
+    if (start >= end) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+    }
+    long bucketCount = (end - start) / granularity.seconds();
+    if (bucketCount > volumeRollupProperties.getMaxBuckets()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "At most " + volumeRollupProperties.getMaxBuckets() + " buckets per request, got " + bucketCount);
+    }
+
+    Map<Long, Long> counts = volumeRollupRepository.findBuckets(granularity,
+            chatId != null ? chatId : VolumeCounter.ALL, senderId != null ? senderId : VolumeCounter.ALL, start, end)
+        .stream()
+        .collect(Collectors.toMap(VolumeBucketDto::getStart, VolumeBucketDto::getCount));
+    List<VolumeBucketDto> buckets = new ArrayList<>((int) bucketCount);
+    for (long bucket = start; bucket < end; bucket += granularity.seconds()) {
+      buckets.add(new VolumeBucketDto(bucket, counts.getOrDefault(bucket, 0L)));
+    }
+
+    return ResponseEntity.ok(VolumeHistogramDto.builder()
+        .granularity(granularity)
+        .chatId(chatId)
+        .senderId(senderId)
+        .from(start)
+        .to(end)
+        .total(counts.values().stream().mapToLong(Long::longValue).sum())
+        .buckets(buckets)
+        .build());
+  }
+
+  /**
+   * Rebuild the rollups of {@code [from, to)} from the stored messages, e.g. after importing history.
+   */
+  @PostMapping("/volume/backfill")
+  public ResponseEntity<VolumeBackfillDto> backfillVolume(
+      @RequestParam(required = false) Long from,
+      @RequestParam(required = false) Long to) {
+    log.debug("Backfilling volume from: {}, to: {}", from, to);
+
+    return ResponseEntity.ok(volumeRollupHandler.backfill(from, to));
+  }
+
+  /**
+   * Approximate most active senders of a chat over the sliding window, answered from memory.
+   */
+  @GetMapping("/topSenders")
+  public ResponseEntity<TopSendersDto> getTopSenders(
+      @RequestParam Long chatId,
+      @RequestParam(defaultValue = "10") int limit) {
+    log.debug("Getting top {} senders of chatId: {}", limit, chatId);
+
+    return ResponseEntity.ok(topSendersTracker.topSenders(chatId, Math.max(1, Math.min(limit, MAX_TOP_SENDERS))));
+  }
+
+  /**
+   * Terms spiking right now in the given chats taken together, or across all chats, answered from memory.
+   */
+  @GetMapping("/trendingTerms")
+  public ResponseEntity<TrendingTermsDto> getTrendingTerms(
+      @RequestParam(required = false) List<Long> chatIds,
+      @RequestParam(defaultValue = "20") int limit) {
+    log.debug("Getting {} trending terms of chatIds: {}", limit, chatIds);
+
+    return ResponseEntity.ok(trendingTermsTracker.trending(chatIds != null ? chatIds : List.of(),
+        Math.max(1, Math.min(limit, MAX_TRENDING_TERMS))));
+  }
+
+  /**
+   * Approximate number of distinct senders in the given chats, or in all chats, on the UTC days
+   * overlapping {@code [from, to)}. Defaults to the last 30 days.
+   */
+  @GetMapping("/distinctSenders")
+  public ResponseEntity<DistinctCountDto> getDistinctSenders(
+      @RequestParam(required = false) List<Long> chatIds,
+      @RequestParam(required = false) Long from,
+      @RequestParam(required = false) Long to) {
+    log.debug("Getting distinct senders of chatIds: {}, from: {}, to: {}", chatIds, from, to);
+
+    return ResponseEntity.ok(distinctCount(SketchKind.CHAT_SENDERS, chatIds, from, to));
+  }
+
+  /**
+   * Approximate number of distinct chats the given senders, or anyone, wrote in on the UTC days
+   * overlapping {@code [from, to)}. Defaults to the last 30 days.
+   */
+  @GetMapping("/distinctChats")
+  public ResponseEntity<DistinctCountDto> getDistinctChats(
+      @RequestParam(required = false) List<Long> senderIds,
+      @RequestParam(required = false) Long from,
+      @RequestParam(required = false) Long to) {
+    log.debug("Getting distinct chats of senderIds: {}, from: {}, to: {}", senderIds, from, to);
+
+    return ResponseEntity.ok(distinctCount(SketchKind.SENDER_CHATS, senderIds, from, to));
+  }
+
+  /**
+   * Build the distinct count sketches of {@code [from, to)} from the stored messages, e.g. after importing history.
+   * Sketches merge by maximum, so existing days are only ever completed.
+   */
+  @PostMapping("/distinct/backfill")
+  public ResponseEntity<Integer> backfillDistinct(
+      @RequestParam(required = false) Long from,
+      @RequestParam(required = false) Long to) {
+    log.debug("Backfilling distinct counts from: {}, to: {}", from, to);
+
+    return ResponseEntity.ok(distinctCounter.backfill(from != null ? from : 0,
+        to != null ? to : Instant.now().getEpochSecond() + 1));
+  }
+
+  private DistinctCountDto distinctCount(SketchKind kind, List<Long> owners, Long from, Long to) {
+    long end = Granularity.DAY.ceil(to != null ? to : Instant.now().getEpochSecond() + 1);
+    long start = Granularity.DAY.floor(from != null ? from : end - Granularity.DAY.defaultRange().toSeconds());
+    if (start >= end) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+    }
+    long days = (end - start) / Granularity.DAY.seconds();
+    if (days > distinctCountProperties.getMaxDays()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "At most " + distinctCountProperties.getMaxDays() + " days per request, got " + days);
+    }
+    if (owners != null && owners.size() > distinctCountProperties.getMaxIds()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "At most " + distinctCountProperties.getMaxIds() + " ids per request, got " + owners.size());
+    }
+    return distinctCounter.estimate(kind, owners != null ? owners : List.of(), start, end);
+  }
+}
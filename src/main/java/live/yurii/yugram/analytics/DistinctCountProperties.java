@@ -0,0 +1,40 @@
+package live.yurii.yugram.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the daily distinct sender and chat sketches.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.analytics.distinct")
+public class DistinctCountProperties {
+
+  /**
+   * HyperLogLog precision, 2^precision registers with a relative standard error of 1.04 / sqrt(2^precision).
+   * Stored sketches only merge with sketches of the same precision, changing it requires a backfill.
+   */
+  private int precision = 12;
+
+  /**
+   * Delay in milliseconds between two merges of changed sketches into the database.
+   */
+  private long flushIntervalMs = 10000;
+
+  /**
+   * Build the sketches from the stored messages on startup when there are none.
+   */
+  private boolean backfillOnStartup = true;
+
+  /**
+   * Upper bound of days per estimate request.
+   */
+  private int maxDays = 3660;
+
+  /**
+   * Upper bound of chat or sender ids per estimate request.
+   */
+  private int maxIds = 1000;
+}
@@ -0,0 +1,196 @@
+package live.yurii.yugram.analytics;
+
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.analytics.DistinctSketchRepository.SketchKey;
+import live.yurii.yugram.analytics.dto.DistinctCountDto;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Daily HyperLogLog sketches of the senders of every chat and the chats of every sender, built from
+ * committed new messages.
+ * <p>
+ * Sketches of recent days are kept in memory and merged into the stored ones on every flush. Since a
+ * merge takes the maximum of each register, flushing a sketch again, backfilling a range twice or
+ * counting a message both live and in a backfill never inflates the estimate. Estimates merge the
+ * daily sketches of the requested owners and days, a few kilobytes each, regardless of the message count.
+ */
+@Slf4j
+@Component
+public class DistinctCounter {
+
+  private static final long DAY = Granularity.DAY.seconds();
+
+  private final DistinctSketchRepository repository;
+  private final DistinctCountProperties properties;
+  private final TransactionTemplate transactionTemplate;
+  private final Map<SketchKey, HyperLogLog> recent = new HashMap<>();
+  private final Set<SketchKey> changed = new HashSet<>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  public DistinctCounter(DistinctSketchRepository repository, DistinctCountProperties properties,
+                         TransactionTemplate transactionTemplate) {
+    this.repository = repository;
+    this.properties = properties;
+    this.transactionTemplate = transactionTemplate;
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    MessageDto message = event.getMessage();
+    if (event.isCreated() && message.getDate() != null) {
+      synchronized (recent) {
+        add(recent, message.getChatId(), message.getSenderId(), message.getDate());
+        long day = Granularity.DAY.floor(message.getDate());
+        changed.add(new SketchKey(SketchKind.CHAT_SENDERS, message.getChatId(), day));
+        changed.add(new SketchKey(SketchKind.CHAT_SENDERS, VolumeCounter.ALL, day));
+        changed.add(new SketchKey(SketchKind.SENDER_CHATS, message.getSenderId(), day));
+        changed.add(new SketchKey(SketchKind.SENDER_CHATS, VolumeCounter.ALL, day));
+      }
+    }
+  }
+
+  /**
+   * Estimate the distinct members of the given owners' sketches on the days in {@code [from, to)}.
+   *
+   * @param owners chats for {@link SketchKind#CHAT_SENDERS}, senders for {@link SketchKind#SENDER_CHATS},
+   *               empty for all
+   */
+  public DistinctCountDto estimate(SketchKind kind, Collection<Long> owners, long from, long to) {
+    long fromDay = Granularity.DAY.floor(from);
+    long toDay = Granularity.DAY.ceil(to);
+    Set<Long> keys = owners.isEmpty() ? Set.of(VolumeCounter.ALL) : Set.copyOf(owners);
+    HyperLogLog union = new HyperLogLog(properties.getPrecision());
+    repository.findSketches(kind, keys, fromDay, toDay).forEach(union::merge);
+    synchronized (recent) {
+      // sketches not flushed yet, merging ones that were is harmless
+      recent.forEach((key, sketch) -> {
+        if (key.kind() == kind && keys.contains(key.ownerId()) && key.day() >= fromDay && key.day() < toDay) {
+          union.merge(sketch);
+        }
+      });
+    }
+    long estimate = union.estimate();
+    double error = union.relativeStandardError();
+    return DistinctCountDto.builder()
+        .ids(List.copyOf(owners))
+        .from(fromDay)
+        .to(toDay)
+        .estimate(estimate)
+        .relativeStandardError(error)
+        .lowerBound(Math.max(0, Math.round(estimate * (1 - 2 * error))))
+        .upperBound(Math.round(estimate * (1 + 2 * error)))
+        .build();
+  }
+
+  @Scheduled(fixedDelayString = "${app.analytics.distinct.flush-interval-ms:10000}")
+  public void flush() {
+    writeLock.lock();
+    try {
+      Map<SketchKey, HyperLogLog> batch = new HashMap<>();
+      synchronized (recent) {
+        changed.forEach(key -> batch.put(key, recent.get(key).copy()));
+        changed.clear();
+        // yesterday stays for late messages, older days are complete in the database
+        long oldest = Granularity.DAY.floor(Instant.now().getEpochSecond()) - DAY;
+        recent.keySet().removeIf(key -> key.day() < oldest && !batch.containsKey(key));
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      DbFlushEvent flushEvent = DbFlushEvent.start("distinct", batch.size());
+      try {
+        transactionTemplate.executeWithoutResult(status -> repository.mergeAll(batch));
+        flushEvent.finish(true);
+        log.debug("Merged {} distinct count sketches", batch.size());
+      } catch (RuntimeException e) {
+        flushEvent.finish(false);
+        log.error("Failed to merge {} distinct count sketches, will retry on the next flush", batch.size(), e);
+        synchronized (recent) {
+          changed.addAll(batch.keySet());
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillIfEmpty() {
+    if (!properties.isBackfillOnStartup() || !repository.isEmpty()) {
+      return;
+    }
+    Thread.ofVirtual().name("distinct-backfill").start(() -> {
+      try {
+        backfill(0, Instant.now().getEpochSecond() + DAY);
+      } catch (RuntimeException e) {
+        log.error("Failed to backfill the distinct count sketches", e);
+      }
+    });
+  }
+
+  /**
+   * Build the sketches of the days in {@code [from, to)} from the stored messages, one day at a time.
+   *
+   * @return number of days that had messages
+   */
+  public int backfill(long from, long to) {
+    Optional<Long> oldest = repository.findOldestMessageDate(from);
+    if (oldest.isEmpty()) {
+      return 0;
+    }
+    int days = 0;
+    for (long day = Granularity.DAY.floor(oldest.get()); day < to; day += DAY) {
+      Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+      repository.scanMessages(day, Math.min(day + DAY, to),
+          (chatId, senderId, date) -> add(sketches, chatId, senderId, date));
+      if (sketches.isEmpty()) {
+        continue;
+      }
+      writeLock.lock();
+      try {
+        transactionTemplate.executeWithoutResult(status -> repository.mergeAll(sketches));
+      } finally {
+        writeLock.unlock();
+      }
+      days++;
+    }
+    log.info("Backfilled distinct count sketches of {} days", days);
+    return days;
+  }
+
+  private void add(Map<SketchKey, HyperLogLog> sketches, long chatId, long senderId, long date) {
+    long day = Granularity.DAY.floor(date);
+    sketch(sketches, SketchKind.CHAT_SENDERS, chatId, day).add(senderId);
+    sketch(sketches, SketchKind.CHAT_SENDERS, VolumeCounter.ALL, day).add(senderId);
+    sketch(sketches, SketchKind.SENDER_CHATS, senderId, day).add(chatId);
+    sketch(sketches, SketchKind.SENDER_CHATS, VolumeCounter.ALL, day).add(chatId);
+  }
+
+  private HyperLogLog sketch(Map<SketchKey, HyperLogLog> sketches, SketchKind kind, long ownerId, long day) {
+    return sketches.computeIfAbsent(new SketchKey(kind, ownerId, day), key -> new HyperLogLog(properties.getPrecision()));
+  }
+}
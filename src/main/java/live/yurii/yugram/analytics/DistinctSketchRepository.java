@@ -0,0 +1,104 @@
+package live.yurii.yugram.analytics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Daily HyperLogLog sketches. Writes merge into the stored sketch, so writing the same values twice is harmless.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DistinctSketchRepository {
+
+  private static final String SELECT_RANGE = """
+      SELECT owner_id, day, sketch FROM distinct_sketches
+      WHERE kind = ? AND owner_id = ANY(?) AND day >= ? AND day < ?""";
+
+  private static final String UPSERT = """
+      INSERT INTO distinct_sketches (kind, owner_id, day, sketch) VALUES (?, ?, ?, ?)
+      ON CONFLICT (kind, owner_id, day) DO UPDATE SET sketch = EXCLUDED.sketch""";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public List<HyperLogLog> findSketches(SketchKind kind, Collection<Long> owners, long fromDay, long toDay) {
+    return jdbcTemplate.query(SELECT_RANGE,
+        ps -> {
+          ps.setString(1, kind.name());
+          ps.setArray(2, ps.getConnection().createArrayOf("bigint", owners.toArray()));
+          ps.setLong(3, fromDay);
+          ps.setLong(4, toDay);
+        },
+        (rs, rowNum) -> HyperLogLog.fromBytes(rs.getBytes("sketch")));
+  }
+
+  /**
+   * Merge the given sketches into the stored ones. Call within a transaction; the stored rows are locked
+   * while they are merged, so concurrent merges do not lose registers.
+   */
+  public void mergeAll(Map<SketchKey, HyperLogLog> sketches) {
+    if (sketches.isEmpty()) {
+      return;
+    }
+    Map<SketchKey, HyperLogLog> merged = new HashMap<>();
+    sketches.forEach((key, sketch) -> merged.put(key, sketch.copy()));
+    for (SketchKind kind : SketchKind.values()) {
+      Map<Long, List<Long>> ownersByDay = new HashMap<>();
+      merged.keySet().stream()
+          .filter(key -> key.kind() == kind)
+          .forEach(key -> ownersByDay.computeIfAbsent(key.day(), day -> new ArrayList<>()).add(key.ownerId()));
+      ownersByDay.forEach((day, owners) -> jdbcTemplate.query(SELECT_RANGE + " FOR UPDATE",
+          ps -> {
+            ps.setString(1, kind.name());
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", owners.toArray()));
+            ps.setLong(3, day);
+            ps.setLong(4, day + 1);
+          },
+          (RowCallbackHandler) rs -> merged.get(new SketchKey(kind, rs.getLong("owner_id"), day))
+              .merge(HyperLogLog.fromBytes(rs.getBytes("sketch")))));
+    }
+    List<Map.Entry<SketchKey, HyperLogLog>> rows = new ArrayList<>(merged.entrySet());
+    jdbcTemplate.batchUpdate(UPSERT, rows, rows.size(), (ps, row) -> {
+      ps.setString(1, row.getKey().kind().name());
+      ps.setLong(2, row.getKey().ownerId());
+      ps.setLong(3, row.getKey().day());
+      ps.setBytes(4, row.getValue().toBytes());
+    });
+  }
+
+  public Optional<Long> findOldestMessageDate(long from) {
+    return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT MIN(date) FROM messages WHERE date >= ?", Long.class, from));
+  }
+
+  /**
+   * Stream the chat, sender and date of all messages dated in {@code [from, to)}.
+   */
+  public void scanMessages(long from, long to, MessageVisitor visitor) {
+    jdbcTemplate.query("SELECT chat_id, sender_id, date FROM messages WHERE date >= ? AND date < ?",
+        (RowCallbackHandler) rs -> visitor.visit(rs.getLong("chat_id"), rs.getLong("sender_id"), rs.getLong("date")), from, to);
+  }
+
+  public boolean isEmpty() {
+    return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+        "SELECT EXISTS (SELECT 1 FROM distinct_sketches)", Boolean.class));
+  }
+
+  /**
+   * A sketch of one owner and UTC day, the day given by its start in epoch seconds.
+   */
+  public record SketchKey(SketchKind kind, long ownerId, long day) {
+  }
+
+  @FunctionalInterface
+  public interface MessageVisitor {
+    void visit(long chatId, long senderId, long date);
+  }
+}
@@ -0,0 +1,46 @@
+package live.yurii.yugram.analytics;
+
+import java.time.Duration;
+
+/**
+ * Bucket sizes of the volume rollups. Buckets are aligned to UTC and identified by their start in epoch seconds.
+ */
+public enum Granularity {
+
+  HOUR(3600, "message_volume_hourly", Duration.ofHours(48)),
+  DAY(86400, "message_volume_daily", Duration.ofDays(30));
+
+  private final long seconds;
+  private final String table;
+  private final Duration defaultRange;
+
+  Granularity(long seconds, String table, Duration defaultRange) {
+    this.seconds = seconds;
+    this.table = table;
+    this.defaultRange = defaultRange;
+  }
+
+  public long seconds() {
+    return seconds;
+  }
+
+  String table() {
+    return table;
+  }
+
+  /**
+   * Range a histogram covers when the request does not name its start.
+   */
+  public Duration defaultRange() {
+    return defaultRange;
+  }
+
+  public long floor(long epochSecond) {
+    return epochSecond - Math.floorMod(epochSecond, seconds);
+  }
+
+  public long ceil(long epochSecond) {
+    long floor = floor(epochSecond);
+    return floor == epochSecond ? floor : floor + seconds;
+  }
+}
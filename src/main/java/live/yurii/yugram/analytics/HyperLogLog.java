@@ -0,0 +1,243 @@
+package live.yurii.yugram.analytics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct longs added to it, with a relative standard error
+ * of about {@code 1.04 / sqrt(2^precision)}.
+ * <p>
+ * Sketches of the same precision merge losslessly: the merge of two sketches equals the sketch of the union,
+ * and merging the same data twice changes nothing. Small sketches are kept sparse, as a sorted list of the
+ * non-zero registers, and turn dense once that list would outgrow an eighth of the dense registers.
+ * The estimate uses Ertl's improved estimator, which needs neither bias tables nor linear counting.
+ * Not thread-safe.
+ */
+public final class HyperLogLog {
+
+  private static final byte DENSE = 0;
+  private static final byte SPARSE = 1;
+  private static final int RANK_BITS = 6;
+  private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+  private final int precision;
+  private byte[] registers;
+  private int[] sparse = new int[4];
+  private int sparseSize;
+
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("Precision must be between 4 and 16, got " + precision);
+    }
+    this.precision = precision;
+  }
+
+  public int precision() {
+    return precision;
+  }
+
+  public void add(long value) {
+    long hash = mix(value);
+    int index = (int) (hash >>> (Long.SIZE - precision));
+    // the remaining bits with a stop bit, so that the rank never exceeds 64 - precision + 1
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    update(index, rank);
+  }
+
+  /**
+   * Add all values of {@code other} to this sketch.
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+    }
+    other.forEachRegister(this::update);
+  }
+
+  public HyperLogLog copy() {
+    HyperLogLog copy = new HyperLogLog(precision);
+    copy.merge(this);
+    return copy;
+  }
+
+  public long estimate() {
+    int m = 1 << precision;
+    int q = Long.SIZE - precision;
+    int[] histogram = new int[q + 2];
+    if (registers != null) {
+      for (byte register : registers) {
+        histogram[register]++;
+      }
+    } else {
+      histogram[0] = m - sparseSize;
+      for (int i = 0; i < sparseSize; i++) {
+        histogram[sparse[i] & RANK_MASK]++;
+      }
+    }
+    double z = m * tau(1 - (double) histogram[q + 1] / m);
+    for (int k = q; k >= 1; k--) {
+      z = 0.5 * (z + histogram[k]);
+    }
+    z += m * sigma((double) histogram[0] / m);
+    return Math.round(m * (m / (2 * Math.log(2) * z)));
+  }
+
+  boolean isSparse() {
+    return registers == null;
+  }
+
+  /**
+   * Relative standard error of {@link #estimate()}.
+   */
+  public double relativeStandardError() {
+    return 1.04 / Math.sqrt(1 << precision);
+  }
+
+  /**
+   * Serialized form: encoding and precision, then either all registers or the non-zero ones as
+   * (2 byte index, 1 byte rank) pairs, whichever is the smaller.
+   */
+  public byte[] toBytes() {
+    int m = 1 << precision;
+    int nonZero = registers != null ? m - countZeros() : sparseSize;
+    if (6 + nonZero * 3 < 2 + m) {
+      ByteBuffer buffer = ByteBuffer.allocate(6 + nonZero * 3).put(SPARSE).put((byte) precision).putInt(nonZero);
+      forEachRegister((index, rank) -> buffer.putShort((short) index).put((byte) rank));
+      return buffer.array();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(2 + m).put(DENSE).put((byte) precision);
+    forEachRegister((index, rank) -> buffer.put(2 + index, (byte) rank));
+    return buffer.array();
+  }
+
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    byte encoding = buffer.get();
+    HyperLogLog sketch = new HyperLogLog(buffer.get());
+    if (encoding == SPARSE) {
+      int size = buffer.getInt();
+      for (int i = 0; i < size; i++) {
+        sketch.update(Short.toUnsignedInt(buffer.getShort()), buffer.get());
+      }
+    } else {
+      for (int i = 0; buffer.hasRemaining(); i++) {
+        byte rank = buffer.get();
+        if (rank != 0) {
+          sketch.update(i, rank);
+        }
+      }
+    }
+    return sketch;
+  }
+
+  /**
+   * Visit the non-zero registers in index order.
+   */
+  private void forEachRegister(RegisterConsumer consumer) {
+    if (registers != null) {
+      for (int i = 0; i < registers.length; i++) {
+        if (registers[i] != 0) {
+          consumer.accept(i, registers[i]);
+        }
+      }
+    } else {
+      for (int i = 0; i < sparseSize; i++) {
+        consumer.accept(sparse[i] >>> RANK_BITS, sparse[i] & RANK_MASK);
+      }
+    }
+  }
+
+  private void update(int index, int rank) {
+    if (registers != null) {
+      if (registers[index] < rank) {
+        registers[index] = (byte) rank;
+      }
+      return;
+    }
+    // entries sort by index, a rank is never 0, so the insertion point of (index, 0) is the entry of index if any
+    int position = -Arrays.binarySearch(sparse, 0, sparseSize, index << RANK_BITS) - 1;
+    if (position < sparseSize && sparse[position] >>> RANK_BITS == index) {
+      if ((sparse[position] & RANK_MASK) < rank) {
+        sparse[position] = index << RANK_BITS | rank;
+      }
+      return;
+    }
+    if (sparseSize + 1 > (1 << precision) / 8) {
+      toDense();
+      update(index, rank);
+      return;
+    }
+    if (sparseSize == sparse.length) {
+      sparse = Arrays.copyOf(sparse, sparse.length * 2);
+    }
+    System.arraycopy(sparse, position, sparse, position + 1, sparseSize - position);
+    sparse[position] = index << RANK_BITS | rank;
+    sparseSize++;
+  }
+
+  private void toDense() {
+    registers = new byte[1 << precision];
+    for (int i = 0; i < sparseSize; i++) {
+      registers[sparse[i] >>> RANK_BITS] = (byte) (sparse[i] & RANK_MASK);
+    }
+    sparse = null;
+    sparseSize = 0;
+  }
+
+  private int countZeros() {
+    int zeros = 0;
+    for (byte register : registers) {
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    return zeros;
+  }
+
+  private static double sigma(double x) {
+    if (x == 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double y = 1;
+    double z = x;
+    double previous;
+    do {
+      x *= x;
+      previous = z;
+      z += x * y;
+      y += y;
+    } while (previous != z);
+    return z;
+  }
+
+  private static double tau(double x) {
+    if (x == 0 || x == 1) {
+      return 0;
+    }
+    double y = 1;
+    double z = 1 - x;
+    double previous;
+    do {
+      x = Math.sqrt(x);
+      previous = z;
+      y *= 0.5;
+      z -= Math.pow(1 - x, 2) * y;
+    } while (previous != z);
+    return z / 3;
+  }
+
+  /**
+   * SplitMix64 finalizer, ids are far from uniformly distributed themselves.
+   */
+  private static long mix(long value) {
+    long z = value + 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  @FunctionalInterface
+  private interface RegisterConsumer {
+    void accept(int index, int rank);
+  }
+}
@@ -0,0 +1,15 @@
+package live.yurii.yugram.analytics;
+
+/**
+ * What a distinct count sketch counts, and whose it is.
+ */
+public enum SketchKind {
+  /**
+   * Distinct senders of a chat, or of all chats for owner {@link VolumeCounter#ALL}.
+   */
+  CHAT_SENDERS,
+  /**
+   * Distinct chats a sender wrote in, or chats with any message for owner {@link VolumeCounter#ALL}.
+   */
+  SENDER_CHATS
+}
@@ -0,0 +1,108 @@
+package live.yurii.yugram.analytics;
+
+/**
+ * Space-Saving summary (Metwally, Agrawal, El Abbadi) of the most frequent keys in a stream, in fixed memory.
+ * <p>
+ * Keeps at most {@code capacity} counters. A new key that finds all counters taken replaces the smallest
+ * one and inherits its count as the possible overestimate ({@code error}). Every key occurring more than
+ * {@code total / capacity} times is guaranteed to be tracked, and its count is at most {@code error} too high.
+ * Counters live in primitive arrays and are searched linearly, which for a few dozen counters is cheaper
+ * than hashing. Not thread-safe.
+ */
+final class SpaceSaving {
+
+  private final long[] keys;
+  private final long[] counts;
+  private final long[] errors;
+  private int size;
+  private long total;
+
+  SpaceSaving(int capacity) {
+    this.keys = new long[capacity];
+    this.counts = new long[capacity];
+    this.errors = new long[capacity];
+  }
+
+  void add(long key) {
+    total++;
+    for (int i = 0; i < size; i++) {
+      if (keys[i] == key) {
+        counts[i]++;
+        return;
+      }
+    }
+    if (size < keys.length) {
+      put(size++, key, 1, 0);
+      return;
+    }
+    int smallest = indexOfSmallest();
+    put(smallest, key, counts[smallest] + 1, counts[smallest]);
+  }
+
+  /**
+   * Put back a counter taken from {@link #forEach}, used when loading a snapshot into an empty summary.
+   */
+  void restore(long key, long count, long error) {
+    if (size < keys.length) {
+      put(size++, key, count, error);
+    }
+  }
+
+  /**
+   * Overwrite the number of counted keys, restored counters alone do not carry it.
+   */
+  void restoreTotal(long total) {
+    this.total = total;
+  }
+
+  long total() {
+    return total;
+  }
+
+  boolean tracks(long key) {
+    for (int i = 0; i < size; i++) {
+      if (keys[i] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean isFull() {
+    return size == keys.length;
+  }
+
+  /**
+   * Upper bound of the count of any key that is not tracked.
+   */
+  long untrackedBound() {
+    return isFull() ? counts[indexOfSmallest()] : 0;
+  }
+
+  void forEach(CounterConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      consumer.accept(keys[i], counts[i], errors[i]);
+    }
+  }
+
+  private void put(int index, long key, long count, long error) {
+    keys[index] = key;
+    counts[index] = count;
+    errors[index] = error;
+  }
+
+  private int indexOfSmallest() {
+    int smallest = 0;
+    for (int i = 1; i < size; i++) {
+      if (counts[i] < counts[smallest]) {
+        smallest = i;
+      }
+    }
+    return smallest;
+  }
+
+  @FunctionalInterface
+  interface CounterConsumer {
+    void accept(long key, long count, long error);
+  }
+}
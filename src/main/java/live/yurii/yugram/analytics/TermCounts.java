@@ -0,0 +1,154 @@
+package live.yurii.yugram.analytics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntPredicate;
+
+/**
+ * Exponentially decayed recent and baseline counts of terms, in an open addressing table of primitive arrays.
+ * <p>
+ * Decay is applied lazily: each term remembers when its counts were last brought up to date, and counts of a
+ * message older than that are added already decayed, so messages may arrive in any order. Holds at most
+ * {@code capacity} terms; adding one more first trims it to the half with the highest baseline counts, which keeps
+ * insertion amortized constant time. The table starts small and doubles while it is half full, so a quiet
+ * chat only takes memory for the terms it has. Not thread-safe.
+ */
+final class TermCounts {
+
+  private static final int INITIAL_TABLE_SIZE = 16;
+
+  private final int capacity;
+  private final int maxTableSize;
+  private final double recentRate;
+  private final double baselineRate;
+  private String[] terms;
+  private double[] recent;
+  private double[] baseline;
+  private long[] updated;
+  private int size;
+
+  /**
+   * @param recentRate   decay per second of the recent counts, {@code ln 2 / half-life}
+   * @param baselineRate decay per second of the baseline counts
+   */
+  TermCounts(int capacity, double recentRate, double baselineRate) {
+    this.capacity = capacity;
+    this.recentRate = recentRate;
+    this.baselineRate = baselineRate;
+    // at most half full at capacity
+    this.maxTableSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+    allocate(Math.min(INITIAL_TABLE_SIZE, maxTableSize));
+  }
+
+  void add(String term, long epochSecond) {
+    int slot = slot(term);
+    if (terms[slot] == null) {
+      if (size == capacity) {
+        prune();
+        slot = slot(term);
+      } else if ((size + 1) * 2 > terms.length && terms.length < maxTableSize) {
+        rehash(terms.length * 2, i -> true);
+        slot = slot(term);
+      }
+      terms[slot] = term;
+      updated[slot] = epochSecond;
+      size++;
+    }
+    long age = updated[slot] - epochSecond;
+    if (age >= 0) {
+      recent[slot] += Math.exp(-recentRate * age);
+      baseline[slot] += Math.exp(-baselineRate * age);
+    } else {
+      recent[slot] = recent[slot] * Math.exp(recentRate * age) + 1;
+      baseline[slot] = baseline[slot] * Math.exp(baselineRate * age) + 1;
+      updated[slot] = epochSecond;
+    }
+  }
+
+  /**
+   * Visit every term with its counts decayed to {@code epochSecond}.
+   */
+  void forEach(long epochSecond, TermConsumer consumer) {
+    for (int i = 0; i < terms.length; i++) {
+      if (terms[i] != null) {
+        long age = Math.max(0, epochSecond - updated[i]);
+        consumer.accept(terms[i], recent[i] * Math.exp(-recentRate * age), baseline[i] * Math.exp(-baselineRate * age));
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int slot(String term) {
+    int mask = terms.length - 1;
+    int slot = (term.hashCode() * 0x9e3779b9) >>> 1 & mask;
+    while (terms[slot] != null && !terms[slot].equals(term)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Keep the {@code capacity / 2} terms with the highest baseline counts, compared as decayed to the newest update.
+   * Ties are broken by the term, so which of equally counted terms survive does not depend on their slots.
+   */
+  private void prune() {
+    long now = newest();
+    double[] decayed = new double[terms.length];
+    Integer[] occupied = new Integer[size];
+    int n = 0;
+    for (int i = 0; i < terms.length; i++) {
+      if (terms[i] != null) {
+        decayed[i] = baseline[i] * Math.exp(-baselineRate * (now - updated[i]));
+        occupied[n++] = i;
+      }
+    }
+    Arrays.sort(occupied, Comparator.comparingDouble((Integer slot) -> decayed[slot]).reversed()
+        .thenComparing(slot -> terms[slot]));
+    boolean[] kept = new boolean[terms.length];
+    for (int i = 0; i < capacity / 2; i++) {
+      kept[occupied[i]] = true;
+    }
+    rehash(terms.length, slot -> kept[slot]);
+  }
+
+  /**
+   * Move the terms in the slots accepted by {@code keep} to a table of {@code tableSize} slots.
+   */
+  private void rehash(int tableSize, IntPredicate keep) {
+    String[] oldTerms = terms;
+    double[] oldRecent = recent;
+    double[] oldBaseline = baseline;
+    long[] oldUpdated = updated;
+    allocate(tableSize);
+    for (int i = 0; i < oldTerms.length; i++) {
+      if (oldTerms[i] != null && keep.test(i)) {
+        int slot = slot(oldTerms[i]);
+        terms[slot] = oldTerms[i];
+        recent[slot] = oldRecent[i];
+        baseline[slot] = oldBaseline[i];
+        updated[slot] = oldUpdated[i];
+        size++;
+      }
+    }
+  }
+
+  private long newest() {
+    return Arrays.stream(updated).max().orElse(0);
+  }
+
+  private void allocate(int tableSize) {
+    terms = new String[tableSize];
+    recent = new double[tableSize];
+    baseline = new double[tableSize];
+    updated = new long[tableSize];
+    size = 0;
+  }
+
+  @FunctionalInterface
+  interface TermConsumer {
+    void accept(String term, double recent, double baseline);
+  }
+}
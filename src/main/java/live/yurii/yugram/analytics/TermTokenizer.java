@@ -0,0 +1,100 @@
+package live.yurii.yugram.analytics;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits message texts into lower-case terms, for Latin and Cyrillic alike.
+ * <p>
+ * A term is a run of letters and digits containing at least one letter; an apostrophe between two letters
+ * stays part of it, as in Ukrainian "п'ять". Links, stop words and terms that are too short or too long to
+ * be words are skipped, and "ё" is folded into "е".
+ */
+@Component
+public class TermTokenizer {
+
+  private static final Pattern LINK = Pattern.compile("(?i)\\b(?:https?://|www\\.)\\S+");
+  private static final int MAX_TERM_LENGTH = 32;
+
+  private final Set<String> stopWords = new HashSet<>();
+  private final int minTermLength;
+
+  public TermTokenizer(TrendingTermsProperties properties) {
+    this.minTermLength = properties.getMinTermLength();
+    for (String language : properties.getStopWordLanguages()) {
+      stopWords.addAll(loadStopWords(language));
+    }
+  }
+
+  /**
+   * Distinct terms of {@code text} in order of first occurrence.
+   */
+  public Set<String> terms(String text) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (text == null || text.isBlank()) {
+      return terms;
+    }
+    String stripped = LINK.matcher(text).replaceAll(" ");
+    StringBuilder term = new StringBuilder();
+    boolean hasLetter = false;
+    int length = stripped.length();
+    for (int i = 0; i < length; ) {
+      int codePoint = stripped.codePointAt(i);
+      i += Character.charCount(codePoint);
+      if (Character.isLetterOrDigit(codePoint)) {
+        hasLetter |= Character.isLetter(codePoint);
+        term.appendCodePoint(fold(Character.toLowerCase(codePoint)));
+      } else if (isApostrophe(codePoint) && hasLetter && i < length && Character.isLetter(stripped.codePointAt(i))) {
+        term.append('\'');
+      } else {
+        addTerm(terms, term, hasLetter);
+        term.setLength(0);
+        hasLetter = false;
+      }
+    }
+    addTerm(terms, term, hasLetter);
+    return terms;
+  }
+
+  private void addTerm(Set<String> terms, StringBuilder term, boolean hasLetter) {
+    int length = term.codePointCount(0, term.length());
+    if (hasLetter && length >= minTermLength && length <= MAX_TERM_LENGTH) {
+      String candidate = term.toString();
+      if (!stopWords.contains(candidate)) {
+        terms.add(candidate);
+      }
+    }
+  }
+
+  private static int fold(int codePoint) {
+    return codePoint == 'ё' ? 'е' : codePoint;
+  }
+
+  private static boolean isApostrophe(int codePoint) {
+    return codePoint == '\'' || codePoint == '’' || codePoint == 'ʼ';
+  }
+
+  private static Set<String> loadStopWords(String language) {
+    ClassPathResource resource = new ClassPathResource("analytics/stopwords/" + language + ".txt");
+    try {
+      Set<String> words = new HashSet<>();
+      for (String line : resource.getContentAsString(StandardCharsets.UTF_8).split("\\R")) {
+        String word = line.strip();
+        if (!word.isEmpty() && !word.startsWith("#")) {
+          words.add(word.replace('ё', 'е').replace('’', '\'').replace('ʼ', '\''));
+        }
+      }
+      return words;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to load the stop words of " + language, e);
+    }
+  }
+}
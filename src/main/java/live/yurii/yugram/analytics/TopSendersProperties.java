@@ -0,0 +1,42 @@
+package live.yurii.yugram.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the streaming top senders per chat.
+ * Memory per chat is {@code panes * capacity} counters of 24 bytes each, whatever the traffic.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.analytics.top-senders")
+public class TopSendersProperties {
+
+  /**
+   * Sliding window the top senders are counted over.
+   */
+  private Duration window = Duration.ofHours(24);
+
+  /**
+   * Number of panes the window is split into; the window slides by one pane at a time.
+   */
+  private int panes = 12;
+
+  /**
+   * Counters per pane. Senders with more than 1/capacity of a pane's messages are always found.
+   */
+  private int capacity = 32;
+
+  /**
+   * Maximum number of chats tracked, the least recently active ones are dropped beyond it.
+   */
+  private int maxChats = 10000;
+
+  /**
+   * Delay in milliseconds between two snapshots of changed panes to the database.
+   */
+  private long snapshotIntervalMs = 300000;
+}
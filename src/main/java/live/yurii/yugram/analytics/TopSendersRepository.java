@@ -0,0 +1,70 @@
+package live.yurii.yugram.analytics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshots of the top sender panes. A pane is always replaced as a whole.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TopSendersRepository {
+
+  private static final String DELETE_PANE = "DELETE FROM top_sender_panes WHERE chat_id = ? AND pane_start = ?";
+
+  private static final String INSERT_COUNTER = """
+      INSERT INTO top_sender_panes (chat_id, pane_start, sender_id, message_count, error_count) VALUES (?, ?, ?, ?, ?)""";
+
+  private static final RowMapper<PaneCounter> ROW_MAPPER = (rs, rowNum) -> new PaneCounter(
+      rs.getLong("chat_id"),
+      rs.getLong("pane_start"),
+      rs.getLong("sender_id"),
+      rs.getLong("message_count"),
+      rs.getLong("error_count"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Replace the stored panes with the given counters, which include every counter of these panes.
+   */
+  public void replacePanes(List<PaneCounter> counters) {
+    List<Object[]> panes = counters.stream()
+        .map(counter -> List.of(counter.chatId(), counter.paneStart()))
+        .distinct()
+        .map(List::toArray)
+        .toList();
+    jdbcTemplate.batchUpdate(DELETE_PANE, new ArrayList<>(panes));
+    jdbcTemplate.batchUpdate(INSERT_COUNTER, counters, counters.size(), (ps, counter) -> {
+      ps.setLong(1, counter.chatId());
+      ps.setLong(2, counter.paneStart());
+      ps.setLong(3, counter.senderId());
+      ps.setLong(4, counter.count());
+      ps.setLong(5, counter.error());
+    });
+  }
+
+  public List<PaneCounter> findSince(long paneStart) {
+    return jdbcTemplate.query("SELECT chat_id, pane_start, sender_id, message_count, error_count FROM top_sender_panes"
+        + " WHERE pane_start >= ? ORDER BY chat_id, pane_start", ROW_MAPPER, paneStart);
+  }
+
+  public List<PaneCounter> findByChatSince(long chatId, long paneStart) {
+    return jdbcTemplate.query("SELECT chat_id, pane_start, sender_id, message_count, error_count FROM top_sender_panes"
+        + " WHERE chat_id = ? AND pane_start >= ? ORDER BY pane_start", ROW_MAPPER, chatId, paneStart);
+  }
+
+  public int deleteBefore(long paneStart) {
+    return jdbcTemplate.update("DELETE FROM top_sender_panes WHERE pane_start < ?", paneStart);
+  }
+
+  /**
+   * One counter of a pane. The pane's total message count is stored with {@link VolumeCounter#ALL} as sender.
+   */
+  public record PaneCounter(long chatId, long paneStart, long senderId, long count, long error) {
+  }
+}
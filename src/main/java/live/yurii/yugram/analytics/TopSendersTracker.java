@@ -0,0 +1,348 @@
+package live.yurii.yugram.analytics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.analytics.TopSendersRepository.PaneCounter;
+import live.yurii.yugram.analytics.dto.TopSenderDto;
+import live.yurii.yugram.analytics.dto.TopSendersDto;
+import live.yurii.yugram.cluster.LeaseAcquiredEvent;
+import live.yurii.yugram.cluster.LeaseLostEvent;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.cluster.LeasedResource;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Most active senders per chat over a sliding window, counted on the ingest path in constant memory per chat.
+ * <p>
+ * The window is split into panes by message date, each with its own {@link SpaceSaving} summary; a pane is
+ * reused once it falls out of the window. A query adds up the panes in the window. A sender that is not
+ * tracked in a full pane may still have sent up to that pane's smallest count there, which is added to
+ * both the estimate and its error. Changed panes are snapshotted to the database and loaded back on startup.
+ * <p>
+ * A snapshot replaces whole panes, so a chat must never be counted from empty panes while stored ones exist.
+ * A chat dropped beyond the maximum is parked until the next snapshot has written its changed panes, and taken
+ * back from there if it is counted again meanwhile. Any other chat that is created again, or whose shard this
+ * node acquires, is loaded from the stored panes first.
+ */
+@Slf4j
+@Component
+public class TopSendersTracker {
+
+  private final TopSendersProperties properties;
+  private final TopSendersRepository repository;
+  private final TransactionTemplate transactionTemplate;
+  private final LeaseManager leaseManager;
+  private final long paneSeconds;
+  private final Cache<Long, ChatSenders> chats;
+  /**
+   * Chats dropped beyond the maximum whose panes the next snapshot writes, bounded by the evictions in between.
+   */
+  private final Map<Long, ChatSenders> evicted = new ConcurrentHashMap<>();
+  /**
+   * Held while a snapshot runs, the scheduled one and the one on shutdown never overlap.
+   */
+  private final ReentrantLock paneWrites = new ReentrantLock();
+
+  public TopSendersTracker(TopSendersProperties properties, TopSendersRepository repository,
+                           TransactionTemplate transactionTemplate, LeaseManager leaseManager) {
+    this.properties = properties;
+    this.repository = repository;
+    this.transactionTemplate = transactionTemplate;
+    this.leaseManager = leaseManager;
+    this.paneSeconds = Math.max(1, properties.getWindow().toSeconds() / properties.getPanes());
+    this.chats = Caffeine.newBuilder()
+        .maximumSize(properties.getMaxChats())
+        .evictionListener((Long chatId, ChatSenders senders, RemovalCause cause) -> {
+          if (chatId != null && senders != null) {
+            evicted.put(chatId, senders);
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Runs before the event listener is registered, so no message can be counted into a pane being loaded.
+   */
+  @PostConstruct
+  public void restore() {
+    List<PaneCounter> counters = repository.findSince(windowStart());
+    for (PaneCounter counter : counters) {
+      chats.get(counter.chatId(), ChatSenders::new).restore(counter);
+    }
+    log.info("Restored {} top sender counters of {} chats", counters.size(), chats.estimatedSize());
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    MessageDto message = event.getMessage();
+    if (event.isCreated() && message.getDate() != null && message.getDate() >= windowStart()) {
+      ChatSenders loaded = chatSenders(message.getChatId());
+      // counted while the chat is held, an eviction right after loading it would otherwise take the count along
+      chats.asMap().compute(message.getChatId(), (chatId, senders) -> {
+        ChatSenders counted = senders != null ? senders : loaded;
+        counted.add(message.getSenderId(), paneOf(message.getDate()));
+        evicted.remove(chatId, counted);
+        return counted;
+      });
+    }
+  }
+
+  public TopSendersDto topSenders(long chatId, int limit) {
+    long from = windowStart();
+    ChatSenders senders = leaseManager.ownsChat(chatId) ? chatSenders(chatId) : chats.getIfPresent(chatId);
+    return TopSendersDto.builder()
+        .chatId(chatId)
+        .from(from)
+        .messageCount(senders != null ? senders.total(from) : 0)
+        .senders(senders != null ? senders.top(from, limit) : List.of())
+        .build();
+  }
+
+  @Scheduled(fixedDelayString = "${app.analytics.top-senders.snapshot-interval-ms:300000}")
+  public void snapshot() {
+    paneWrites.lock();
+    try {
+      Map<ChatSenders, List<PaneCounter>> changed = new HashMap<>();
+      Consumer<ChatSenders> take = senders -> {
+        List<PaneCounter> counters = senders.takeChanged();
+        if (!counters.isEmpty()) {
+          changed.put(senders, counters);
+        }
+      };
+      // a chat is parked before it leaves the cache, so one missing from the cache here is parked below
+      chats.asMap().values().forEach(take);
+      Map<Long, ChatSenders> written = Map.copyOf(evicted);
+      written.values().forEach(take);
+      List<PaneCounter> counters = changed.values().stream().flatMap(List::stream).toList();
+      DbFlushEvent flushEvent = DbFlushEvent.start("top-senders", counters.size());
+      try {
+        transactionTemplate.executeWithoutResult(status -> {
+          repository.replacePanes(counters);
+          repository.deleteBefore(windowStart());
+        });
+        flushEvent.finish(true);
+        // a chat taken back and dropped again meanwhile stays parked with its new counts
+        written.forEach((chatId, senders) -> evicted.computeIfPresent(chatId,
+            (id, parked) -> parked == senders && !senders.hasChanged() ? null : parked));
+        log.debug("Snapshotted {} top sender counters of {} chats", counters.size(), changed.size());
+      } catch (RuntimeException e) {
+        flushEvent.finish(false);
+        log.error("Failed to snapshot top senders of {} chats, will retry on the next snapshot", changed.size(), e);
+        changed.forEach((senders, failed) -> senders.markChanged(failed));
+      }
+    } finally {
+      paneWrites.unlock();
+    }
+  }
+
+  /**
+   * Panes counted by another node replace whatever this node counted before it owned the shard.
+   */
+  @EventListener
+  public void onLeaseAcquired(LeaseAcquiredEvent event) {
+    if (event.getResource().kind() == LeasedResource.Kind.CHAT_SHARD) {
+      forget(event.getResource().id());
+    }
+  }
+
+  /**
+   * The new owner counts the shard's chats from now on, a later snapshot here would replace its panes.
+   */
+  @EventListener
+  public void onLeaseLost(LeaseLostEvent event) {
+    if (event.getResource().kind() == LeasedResource.Kind.CHAT_SHARD) {
+      forget(event.getResource().id());
+    }
+  }
+
+  @PreDestroy
+  public void snapshotOnShutdown() {
+    snapshot();
+  }
+
+  /**
+   * The chat held in the cache, loaded outside of it, so no query runs while a cache entry is locked.
+   * Of two concurrent loads, the first to be cached is kept.
+   */
+  private ChatSenders chatSenders(long chatId) {
+    ChatSenders senders = chats.getIfPresent(chatId);
+    if (senders != null) {
+      return senders;
+    }
+    ChatSenders held = chats.asMap().merge(chatId, load(chatId), (cached, loaded) -> cached);
+    evicted.remove(chatId, held);
+    return held;
+  }
+
+  /**
+   * A parked chat is taken back as it is, its panes may not be written yet.
+   */
+  private ChatSenders load(long chatId) {
+    ChatSenders parked = evicted.get(chatId);
+    if (parked != null) {
+      return parked;
+    }
+    ChatSenders senders = new ChatSenders(chatId);
+    repository.findByChatSince(chatId, windowStart()).forEach(senders::restore);
+    return senders;
+  }
+
+  private void forget(int shard) {
+    chats.asMap().keySet().removeIf(chatId -> leaseManager.shardOf(chatId) == shard);
+    evicted.keySet().removeIf(chatId -> leaseManager.shardOf(chatId) == shard);
+  }
+
+  private long windowStart() {
+    return paneOf(Instant.now().getEpochSecond()) - (properties.getPanes() - 1) * paneSeconds;
+  }
+
+  private long paneOf(long epochSecond) {
+    return epochSecond - Math.floorMod(epochSecond, paneSeconds);
+  }
+
+  /**
+   * Ring of panes of one chat, slot {@code (paneStart / paneSeconds) % panes}.
+   */
+  private final class ChatSenders {
+
+    private final long chatId;
+    private final long[] paneStarts = new long[properties.getPanes()];
+    private final SpaceSaving[] panes = new SpaceSaving[properties.getPanes()];
+    private final boolean[] changed = new boolean[properties.getPanes()];
+
+    private ChatSenders(long chatId) {
+      this.chatId = chatId;
+    }
+
+    synchronized void add(long senderId, long paneStart) {
+      SpaceSaving pane = pane(paneStart);
+      if (pane != null) {
+        pane.add(senderId);
+        changed[slot(paneStart)] = true;
+      }
+    }
+
+    synchronized void restore(PaneCounter counter) {
+      SpaceSaving pane = pane(counter.paneStart());
+      if (pane == null) {
+        return;
+      }
+      if (counter.senderId() == VolumeCounter.ALL) {
+        pane.restoreTotal(counter.count());
+      } else {
+        pane.restore(counter.senderId(), counter.count(), counter.error());
+      }
+    }
+
+    synchronized long total(long from) {
+      long total = 0;
+      for (int i = 0; i < panes.length; i++) {
+        if (panes[i] != null && paneStarts[i] >= from) {
+          total += panes[i].total();
+        }
+      }
+      return total;
+    }
+
+    synchronized List<TopSenderDto> top(long from, int limit) {
+      Map<Long, long[]> merged = new HashMap<>();
+      List<SpaceSaving> window = new ArrayList<>();
+      for (int i = 0; i < panes.length; i++) {
+        if (panes[i] != null && paneStarts[i] >= from) {
+          window.add(panes[i]);
+          panes[i].forEach((senderId, count, error) -> {
+            long[] estimate = merged.computeIfAbsent(senderId, key -> new long[2]);
+            estimate[0] += count;
+            estimate[1] += error;
+          });
+        }
+      }
+      for (SpaceSaving pane : window) {
+        long bound = pane.untrackedBound();
+        if (bound > 0) {
+          merged.forEach((senderId, estimate) -> {
+            if (!pane.tracks(senderId)) {
+              estimate[0] += bound;
+              estimate[1] += bound;
+            }
+          });
+        }
+      }
+      return merged.entrySet().stream()
+          .sorted(Comparator.comparingLong((Map.Entry<Long, long[]> entry) -> entry.getValue()[0])
+              .thenComparingLong(entry -> -entry.getValue()[1])
+              .reversed())
+          .limit(limit)
+          .map(entry -> new TopSenderDto(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+          .toList();
+    }
+
+    synchronized List<PaneCounter> takeChanged() {
+      List<PaneCounter> counters = new ArrayList<>();
+      for (int i = 0; i < panes.length; i++) {
+        if (changed[i]) {
+          changed[i] = false;
+          long paneStart = paneStarts[i];
+          counters.add(new PaneCounter(chatId, paneStart, VolumeCounter.ALL, panes[i].total(), 0));
+          panes[i].forEach((senderId, count, error) -> counters.add(new PaneCounter(chatId, paneStart, senderId, count, error)));
+        }
+      }
+      return counters;
+    }
+
+    synchronized boolean hasChanged() {
+      for (boolean paneChanged : changed) {
+        if (paneChanged) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    synchronized void markChanged(List<PaneCounter> counters) {
+      counters.forEach(counter -> {
+        int slot = slot(counter.paneStart());
+        if (paneStarts[slot] == counter.paneStart()) {
+          changed[slot] = true;
+        }
+      });
+    }
+
+    /**
+     * The pane starting at {@code paneStart}, replacing an older one in its slot; null if the slot holds a newer pane.
+     */
+    private SpaceSaving pane(long paneStart) {
+      int slot = slot(paneStart);
+      if (panes[slot] == null || paneStarts[slot] < paneStart) {
+        panes[slot] = new SpaceSaving(properties.getCapacity());
+        paneStarts[slot] = paneStart;
+      }
+      return paneStarts[slot] == paneStart ? panes[slot] : null;
+    }
+
+    private int slot(long paneStart) {
+      return (int) Math.floorMod(paneStart / paneSeconds, (long) panes.length);
+    }
+  }
+}
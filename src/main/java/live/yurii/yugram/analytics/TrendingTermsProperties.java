@@ -0,0 +1,64 @@
+package live.yurii.yugram.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuration properties for the trending terms per chat.
+ * Memory per chat is at most {@code terms-per-chat} terms with three counters each, whatever the traffic,
+ * and grows with the terms a chat actually has.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.analytics.trending")
+public class TrendingTermsProperties {
+
+  /**
+   * Half-life of the recent count of a term, roughly how far back "right now" reaches.
+   */
+  private Duration recentHalfLife = Duration.ofMinutes(30);
+
+  /**
+   * Half-life of the baseline count a term's recent count is compared with.
+   */
+  private Duration baselineHalfLife = Duration.ofHours(24);
+
+  /**
+   * Terms counted per chat. When full, the half with the lowest baseline counts is dropped.
+   */
+  private int termsPerChat = 2048;
+
+  /**
+   * Terms counted across all chats.
+   */
+  private int globalTerms = 16384;
+
+  /**
+   * Maximum number of chats tracked, the least recently active ones are dropped beyond it.
+   */
+  private int maxChats = 5000;
+
+  /**
+   * Recent count below which a term is never reported as trending, however sudden.
+   */
+  private double minRecentCount = 3;
+
+  /**
+   * Terms shorter than this many characters are ignored.
+   */
+  private int minTermLength = 3;
+
+  /**
+   * Stop word lists to apply, loaded from {@code analytics/stopwords/<language>.txt}.
+   */
+  private List<String> stopWordLanguages = List.of("en", "ru", "uk");
+
+  /**
+   * Stored messages of this span before startup are counted again on startup, so that baselines do not start empty.
+   */
+  private Duration warmUp = Duration.ofHours(6);
+}
@@ -0,0 +1,34 @@
+package live.yurii.yugram.analytics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads recent message texts to warm up the in-memory term counts; the counts themselves are not stored.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TrendingTermsRepository {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Stream the chat, id, date and content of all messages with content dated in {@code [from, to)}, oldest first.
+   */
+  public void scanContent(long from, long to, ContentVisitor visitor) {
+    jdbcTemplate.query("""
+            SELECT chat_id, id, date, content FROM messages
+            WHERE date >= ? AND date < ? AND content <> ''
+            ORDER BY date""",
+        (RowCallbackHandler) rs -> visitor.visit(rs.getLong("chat_id"), rs.getLong("id"), rs.getLong("date"),
+            rs.getString("content")),
+        from, to);
+  }
+
+  @FunctionalInterface
+  public interface ContentVisitor {
+    void visit(long chatId, long messageId, long date, String content);
+  }
+}
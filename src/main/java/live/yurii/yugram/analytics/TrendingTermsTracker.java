@@ -0,0 +1,211 @@
+package live.yurii.yugram.analytics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import live.yurii.yugram.analytics.dto.TrendingTermDto;
+import live.yurii.yugram.analytics.dto.TrendingTermsDto;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.ChangeOperation;
+import live.yurii.yugram.changes.RemoteChangeEvent;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Terms spiking in a chat right now, counted on the ingest path in bounded memory per chat.
+ * <p>
+ * Every term keeps two exponentially decayed message counts: a recent one with a short half-life and a
+ * baseline with a long one. For a term mentioned at a steady rate the recent count settles at
+ * {@code baseline * recentHalfLife / baselineHalfLife}; the burst score is how many Poisson standard
+ * deviations the recent count exceeds that. Counts are updated as messages commit and decayed when
+ * queried, so results are current to the last message. They live in memory only and are rebuilt from the
+ * stored messages of the last {@code warm-up} on startup; messages arriving meanwhile are held back and counted
+ * afterwards, unless the scan already counted them. With leases, the messages of chats other nodes
+ * write arrive through the change feed, so every node answers for all chats.
+ */
+@Slf4j
+@Component
+public class TrendingTermsTracker {
+
+  private final TrendingTermsProperties properties;
+  private final TermTokenizer tokenizer;
+  private final TrendingTermsRepository repository;
+  private final double recentRate;
+  private final double baselineRate;
+  private final double expectedRatio;
+  private final Cache<Long, TermCounts> chats;
+  private final TermCounts global;
+  private final List<Arrival> arrivedDuringWarmUp = new ArrayList<>();
+  private boolean warmedUp;
+
+  public TrendingTermsTracker(TrendingTermsProperties properties, TermTokenizer tokenizer,
+                              TrendingTermsRepository repository) {
+    this.properties = properties;
+    this.tokenizer = tokenizer;
+    this.repository = repository;
+    this.recentRate = Math.log(2) / properties.getRecentHalfLife().toSeconds();
+    this.baselineRate = Math.log(2) / properties.getBaselineHalfLife().toSeconds();
+    this.expectedRatio = baselineRate / recentRate;
+    this.chats = Caffeine.newBuilder()
+        .maximumSize(properties.getMaxChats())
+        .build();
+    this.global = new TermCounts(properties.getGlobalTerms(), recentRate, baselineRate);
+    this.warmedUp = properties.getWarmUp().isZero();
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    MessageDto message = event.getMessage();
+    if (event.isCreated() && message.getDate() != null) {
+      arrive(new Arrival(message.getChatId(), message.getId(), message.getDate(), message.getContent()));
+    }
+  }
+
+  @EventListener
+  public void onRemoteChange(RemoteChangeEvent event) {
+    if (event.getKind() == ChangeKind.MESSAGE && event.getOperation() == ChangeOperation.CREATED) {
+      MessageDto message = event.getState(MessageDto.class);
+      if (message.getDate() != null) {
+        arrive(new Arrival(message.getChatId(), message.getId(), message.getDate(), message.getContent()));
+      }
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startWarmUp() {
+    if (!properties.getWarmUp().isZero()) {
+      Thread.ofVirtual().name("trending-warm-up").start(this::warmUp);
+    }
+  }
+
+  /**
+   * Count the stored messages of the last {@code warm-up}, then the messages that arrived in the meantime and
+   * are newer than the newest scanned message of their chat.
+   */
+  void warmUp() {
+    long to = Instant.now().getEpochSecond();
+    long from = to - properties.getWarmUp().toSeconds();
+    // the scan is ordered by date, so per chat this is the newest message it counted
+    Map<Long, Long> highWaterMarks = new HashMap<>();
+    int[] messages = new int[1];
+    try {
+      repository.scanContent(from, to, (chatId, messageId, date, content) -> {
+        add(chatId, date, content);
+        highWaterMarks.merge(chatId, messageId, Math::max);
+        messages[0]++;
+      });
+    } catch (RuntimeException e) {
+      log.error("Failed to count the terms of the stored messages", e);
+    }
+    synchronized (arrivedDuringWarmUp) {
+      int skipped = 0;
+      for (Arrival arrival : arrivedDuringWarmUp) {
+        if (arrival.messageId() <= highWaterMarks.getOrDefault(arrival.chatId(), Long.MIN_VALUE)) {
+          skipped++;
+        } else {
+          add(arrival.chatId(), arrival.date(), arrival.content());
+        }
+      }
+      log.info("Counted the terms of {} messages of the last {}, {} messages arrived meanwhile, {} of them already counted",
+          messages[0], properties.getWarmUp(), arrivedDuringWarmUp.size(), skipped);
+      warmedUp = true;
+      arrivedDuringWarmUp.clear();
+    }
+  }
+
+  /**
+   * The terms with the highest burst scores across the given chats, or all chats if none are given.
+   */
+  public TrendingTermsDto trending(List<Long> chatIds, int limit) {
+    long now = Instant.now().getEpochSecond();
+    Map<String, double[]> merged = new HashMap<>();
+    TermCounts.TermConsumer merge = (term, recent, baseline) -> {
+      double[] counts = merged.computeIfAbsent(term, key -> new double[2]);
+      counts[0] += recent;
+      counts[1] += baseline;
+    };
+    if (chatIds.isEmpty()) {
+      synchronized (global) {
+        global.forEach(now, merge);
+      }
+    } else {
+      for (Long chatId : Set.copyOf(chatIds)) {
+        TermCounts counts = chats.getIfPresent(chatId);
+        if (counts != null) {
+          synchronized (counts) {
+            counts.forEach(now, merge);
+          }
+        }
+      }
+    }
+    List<TrendingTermDto> terms = merged.entrySet().stream()
+        .filter(entry -> entry.getValue()[0] >= properties.getMinRecentCount())
+        .map(entry -> score(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+        .filter(term -> term.getScore() > 0)
+        .sorted(Comparator.comparingDouble(TrendingTermDto::getScore).reversed())
+        .limit(limit)
+        .toList();
+    return TrendingTermsDto.builder()
+        .chatIds(List.copyOf(chatIds))
+        .at(now)
+        .terms(terms)
+        .build();
+  }
+
+  private void arrive(Arrival arrival) {
+    synchronized (arrivedDuringWarmUp) {
+      if (!warmedUp) {
+        arrivedDuringWarmUp.add(arrival);
+        return;
+      }
+    }
+    add(arrival.chatId(), arrival.date(), arrival.content());
+  }
+
+  private void add(long chatId, long date, String content) {
+    // decayed to nothing long before they would be queried, and only crowd out live terms
+    if (date < Instant.now().getEpochSecond() - 4 * properties.getBaselineHalfLife().toSeconds()) {
+      return;
+    }
+    Set<String> terms = tokenizer.terms(content);
+    if (terms.isEmpty()) {
+      return;
+    }
+    TermCounts counts = chats.get(chatId, key -> new TermCounts(properties.getTermsPerChat(), recentRate, baselineRate));
+    synchronized (counts) {
+      terms.forEach(term -> counts.add(term, date));
+    }
+    synchronized (global) {
+      terms.forEach(term -> global.add(term, date));
+    }
+  }
+
+  private TrendingTermDto score(String term, double recent, double baseline) {
+    double expected = baseline * expectedRatio;
+    return TrendingTermDto.builder()
+        .term(term)
+        .recentCount(round(recent))
+        .expectedCount(round(expected))
+        .score(round((recent - expected) / Math.sqrt(expected + 1)))
+        .build();
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+
+  private record Arrival(long chatId, long messageId, long date, String content) {
+  }
+}
@@ -0,0 +1,98 @@
+package live.yurii.yugram.analytics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Messages counted since the last flush, per chat, sender and hour.
+ * <p>
+ * Every message increments four hourly counters: its chat and sender, the chat across all senders,
+ * the sender across all chats, and the total. {@link #ALL} stands for "all chats" or "all senders";
+ * Telegram never assigns id 0 to a chat or user.
+ * <p>
+ * While a range of hours is being rebuilt from the stored messages, its counts are held aside and only
+ * become pending once the rebuild is over, so that no flush writes into the rows being rebuilt.
+ */
+@Component
+public class VolumeCounter {
+
+  public static final long ALL = 0L;
+
+  private Map<VolumeKey, Long> pending = new HashMap<>();
+  private Map<VolumeKey, Long> held;
+  private long heldFrom;
+  private long heldTo;
+
+  public synchronized void add(long chatId, long senderId, long date) {
+    long hour = Granularity.HOUR.floor(date);
+    Map<VolumeKey, Long> counts = countsOf(hour);
+    counts.merge(new VolumeKey(chatId, senderId, hour), 1L, Long::sum);
+    counts.merge(new VolumeKey(chatId, ALL, hour), 1L, Long::sum);
+    counts.merge(new VolumeKey(ALL, senderId, hour), 1L, Long::sum);
+    counts.merge(new VolumeKey(ALL, ALL, hour), 1L, Long::sum);
+  }
+
+  /**
+   * Hold the counts of the hours in {@code [from, to)} aside until {@link #release()}, pending ones included.
+   * Pending counts of {@code [rebuiltFrom, rebuiltTo)} are dropped, the rebuild counts them from the stored messages.
+   */
+  public synchronized void hold(long from, long to, long rebuiltFrom, long rebuiltTo) {
+    held = new HashMap<>();
+    heldFrom = from;
+    heldTo = to;
+    Map<VolumeKey, Long> counts = pending;
+    pending = new HashMap<>();
+    counts.forEach((key, count) -> {
+      if (key.bucketStart() < rebuiltFrom || key.bucketStart() >= rebuiltTo) {
+        countsOf(key.bucketStart()).merge(key, count, Long::sum);
+      }
+    });
+  }
+
+  /**
+   * Make the held counts pending, adding up with the ones counted in the meantime.
+   */
+  public synchronized void release() {
+    if (held != null) {
+      held.forEach((key, count) -> pending.merge(key, count, Long::sum));
+      held = null;
+    }
+  }
+
+  /**
+   * Take all pending hourly counts.
+   *
+   * @return the counts by key, empty if nothing was counted since the last drain
+   */
+  public synchronized Map<VolumeKey, Long> drain() {
+    Map<VolumeKey, Long> batch = pending;
+    pending = new HashMap<>();
+    return batch;
+  }
+
+  /**
+   * Give back counts that failed to persist, adding up with the ones counted in the meantime.
+   *
+   * @param batch the counts previously returned by {@link #drain()}
+   */
+  public synchronized void restore(Map<VolumeKey, Long> batch) {
+    batch.forEach((key, count) -> countsOf(key.bucketStart()).merge(key, count, Long::sum));
+  }
+
+  public synchronized int pendingCount() {
+    return pending.size();
+  }
+
+  private Map<VolumeKey, Long> countsOf(long hour) {
+    return held != null && hour >= heldFrom && hour < heldTo ? held : pending;
+  }
+
+  public record VolumeKey(long chatId, long senderId, long bucketStart) {
+
+    VolumeKey atGranularity(Granularity granularity) {
+      return new VolumeKey(chatId, senderId, granularity.floor(bucketStart));
+    }
+  }
+}
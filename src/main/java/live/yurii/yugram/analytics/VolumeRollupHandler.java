@@ -0,0 +1,221 @@
+package live.yurii.yugram.analytics;
+
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.analytics.VolumeCounter.VolumeKey;
+import live.yurii.yugram.analytics.dto.VolumeBackfillDto;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the message volume rollups up to date.
+ * <p>
+ * Committed new messages are counted in memory and added to the hourly and daily tables in one
+ * transaction per flush, so both always agree. A backfill rebuilds a range from the stored messages
+ * and leaves the most recent {@code late-arrival} span alone.
+ * <p>
+ * A rebuild must count each message exactly once, either from the table or from memory. New messages are
+ * counted right after their transaction commits, while holding the read side of a commit gate. The
+ * rebuild takes its repeatable read snapshot under the write side and the flush lock, so every message
+ * counted before is visible to it, no message counted after is, and no flush is in flight. The pending
+ * counts of the rebuilt hours are dropped then, and the counts of its days are held aside until it is
+ * over. The rebuild itself runs without blocking the flush.
+ */
+@Slf4j
+@Component
+public class VolumeRollupHandler {
+
+  private final VolumeCounter counter;
+  private final VolumeRollupRepository repository;
+  private final VolumeRollupProperties properties;
+  private final TransactionTemplate transactionTemplate;
+  private final TransactionTemplate rebuildTemplate;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final ReentrantLock rebuildLock = new ReentrantLock();
+  private final ReentrantReadWriteLock commitGate = new ReentrantReadWriteLock();
+
+  public VolumeRollupHandler(VolumeCounter counter, VolumeRollupRepository repository, VolumeRollupProperties properties,
+                             TransactionTemplate transactionTemplate) {
+    this.counter = counter;
+    this.repository = repository;
+    this.properties = properties;
+    this.transactionTemplate = transactionTemplate;
+    this.rebuildTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    this.rebuildTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+  }
+
+  /**
+   * Counts the message once its transaction commits, like a {@code @TransactionalEventListener}, but holds
+   * the commit gate from before the commit until it is counted.
+   */
+  @EventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    MessageDto message = event.getMessage();
+    // edits do not change the volume
+    if (event.isCreated() && message.getDate() != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new CountAfterCommit(message));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.analytics.volume.flush-interval-ms:1000}")
+  public void flush() {
+    // a rebuild taking its snapshot right now leaves the counts for the next flush
+    if (!writeLock.tryLock()) {
+      return;
+    }
+    try {
+      flushLocked();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    log.info("Flushing {} pending volume counters before shutdown", counter.pendingCount());
+    writeLock.lock();
+    try {
+      flushLocked();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void flushLocked() {
+    Map<VolumeKey, Long> batch = counter.drain();
+    if (batch.isEmpty()) {
+      return;
+    }
+    DbFlushEvent flushEvent = DbFlushEvent.start("volume", batch.size());
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        repository.increment(Granularity.HOUR, batch);
+        repository.increment(Granularity.DAY, batch);
+      });
+      flushEvent.finish(true);
+      log.debug("Added {} hourly volume counters", batch.size());
+    } catch (RuntimeException e) {
+      flushEvent.finish(false);
+      log.error("Failed to add {} hourly volume counters, will retry on the next flush", batch.size(), e);
+      counter.restore(batch);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillIfEmpty() {
+    if (!properties.isBackfillOnStartup() || !repository.isEmpty()) {
+      return;
+    }
+    Thread.ofVirtual().name("volume-backfill").start(() -> {
+      try {
+        backfill(null, null);
+      } catch (RuntimeException e) {
+        log.error("Failed to backfill the message volume rollups", e);
+      }
+    });
+  }
+
+  /**
+   * Rebuild the rollups of messages dated in {@code [from, to)}, widened to whole days.
+   *
+   * @param from epoch seconds, null for the oldest stored message
+   * @param to   epoch seconds, null for now
+   * @return the rebuilt range and the number of rows written
+   */
+  public VolumeBackfillDto backfill(Long from, Long to) {
+    long cutoff = Granularity.HOUR.floor(Instant.now().minus(properties.getLateArrival()).getEpochSecond());
+    long start = from != null ? from : repository.findMessageDateRange()
+        .map(VolumeRollupRepository.DateRange::oldest)
+        .orElse(cutoff);
+    long hoursFrom = Granularity.HOUR.floor(start);
+    long hoursTo = Math.min(Granularity.HOUR.ceil(to != null ? to : cutoff), cutoff);
+    long daysFrom = Granularity.DAY.floor(hoursFrom);
+    long daysTo = Granularity.DAY.ceil(hoursTo);
+    long chunk = Granularity.DAY.ceil(Math.max(properties.getBackfillChunk().toSeconds(), 1));
+    log.info("Backfilling message volume rollups from {} to {}", Instant.ofEpochSecond(hoursFrom), Instant.ofEpochSecond(hoursTo));
+
+    long hourlyRows = 0;
+    long dailyRows = 0;
+    for (long chunkFrom = daysFrom; chunkFrom < daysTo; chunkFrom += chunk) {
+      long chunkTo = Math.min(chunkFrom + chunk, daysTo);
+      int[] rows = rebuild(Math.max(chunkFrom, hoursFrom), Math.min(chunkTo, hoursTo), chunkFrom, chunkTo);
+      hourlyRows += rows[0];
+      dailyRows += rows[1];
+    }
+    log.info("Backfilled {} hourly and {} daily volume rows", hourlyRows, dailyRows);
+
+    return VolumeBackfillDto.builder()
+        .from(hoursFrom)
+        .to(hoursTo)
+        .hourlyRows(hourlyRows)
+        .dailyRows(dailyRows)
+        .build();
+  }
+
+  private int[] rebuild(long hoursFrom, long hoursTo, long daysFrom, long daysTo) {
+    rebuildLock.lock();
+    try {
+      // the transaction takes its connection before the gate stops commits, which hold theirs while they wait
+      return rebuildTemplate.execute(status -> {
+        writeLock.lock();
+        commitGate.writeLock().lock();
+        try {
+          counter.hold(daysFrom, daysTo, hoursFrom, hoursTo);
+          repository.takeSnapshot();
+        } finally {
+          commitGate.writeLock().unlock();
+          writeLock.unlock();
+        }
+        return new int[]{
+            hoursFrom < hoursTo ? repository.rebuildHourly(hoursFrom, hoursTo) : 0,
+            repository.rebuildDaily(daysFrom, daysTo)};
+      });
+    } finally {
+      counter.release();
+      rebuildLock.unlock();
+    }
+  }
+
+  private final class CountAfterCommit implements TransactionSynchronization {
+
+    private final MessageDto message;
+    private boolean gateHeld;
+
+    private CountAfterCommit(MessageDto message) {
+      this.message = message;
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      commitGate.readLock().lock();
+      gateHeld = true;
+    }
+
+    @Override
+    public void afterCommit() {
+      counter.add(message.getChatId(), message.getSenderId(), message.getDate());
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+      if (gateHeld) {
+        gateHeld = false;
+        commitGate.readLock().unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package live.yurii.yugram.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the hourly and daily message volume rollups.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.analytics.volume")
+public class VolumeRollupProperties {
+
+  /**
+   * Delay in milliseconds between two flushes of counted messages into the rollup tables.
+   */
+  private long flushIntervalMs = 1000;
+
+  /**
+   * Build the rollups from the stored messages on startup when they are empty.
+   */
+  private boolean backfillOnStartup = true;
+
+  /**
+   * Range of message dates rebuilt per transaction by a backfill, rounded up to whole days.
+   */
+  private Duration backfillChunk = Duration.ofDays(7);
+
+  /**
+   * Most recent time span a backfill leaves to the incremental counting,
+   * so that messages arriving during the backfill are not counted twice.
+   */
+  private Duration lateArrival = Duration.ofHours(1);
+
+  /**
+   * Upper bound of buckets returned by one histogram request.
+   */
+  private int maxBuckets = 10000;
+}
@@ -0,0 +1,126 @@
+package live.yurii.yugram.analytics;
+
+import live.yurii.yugram.analytics.VolumeCounter.VolumeKey;
+import live.yurii.yugram.analytics.dto.VolumeBucketDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and writes the rollup tables, which have no entities: rows are only ever added up or rebuilt in bulk.
+ */
+@Repository
+@RequiredArgsConstructor
+public class VolumeRollupRepository {
+
+  private static final String INCREMENT = """
+      INSERT INTO %1$s (chat_id, sender_id, bucket_start, message_count) VALUES (?, ?, ?, ?)
+      ON CONFLICT (chat_id, sender_id, bucket_start) DO UPDATE SET message_count = %1$s.message_count + EXCLUDED.message_count""";
+
+  private static final String SELECT_BUCKETS = """
+      SELECT bucket_start, message_count FROM %s
+      WHERE chat_id = ? AND sender_id = ? AND bucket_start >= ? AND bucket_start < ?
+      ORDER BY bucket_start""";
+
+  private static final String DELETE_RANGE = "DELETE FROM %s WHERE bucket_start >= ? AND bucket_start < ?";
+
+  // One scan of the messages yields all four counters of every hour, see VolumeCounter
+  private static final String REBUILD_HOURLY = """
+      INSERT INTO message_volume_hourly (chat_id, sender_id, bucket_start, message_count)
+      SELECT COALESCE(chat_id, 0), COALESCE(sender_id, 0), bucket_start, COUNT(*)
+      FROM (SELECT chat_id, sender_id, date - date % 3600 AS bucket_start FROM messages WHERE date >= ? AND date < ?) m
+      GROUP BY GROUPING SETS ((chat_id, sender_id, bucket_start), (chat_id, bucket_start), (sender_id, bucket_start), (bucket_start))""";
+
+  private static final String REBUILD_DAILY = """
+      INSERT INTO message_volume_daily (chat_id, sender_id, bucket_start, message_count)
+      SELECT chat_id, sender_id, bucket_start - bucket_start % 86400, SUM(message_count)
+      FROM message_volume_hourly WHERE bucket_start >= ? AND bucket_start < ?
+      GROUP BY chat_id, sender_id, bucket_start - bucket_start % 86400""";
+
+  private static final RowMapper<VolumeBucketDto> BUCKET_MAPPER = (rs, rowNum) -> VolumeBucketDto.builder()
+      .start(rs.getLong("bucket_start"))
+      .count(rs.getLong("message_count"))
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Add hourly counts to the rollups of the given granularity.
+   */
+  public void increment(Granularity granularity, Map<VolumeKey, Long> hourlyCounts) {
+    // sorted, so that concurrent flushes lock rows in the same order
+    List<Map.Entry<VolumeKey, Long>> rows = hourlyCounts.entrySet().stream()
+        .collect(Collectors.toMap(entry -> entry.getKey().atGranularity(granularity), Map.Entry::getValue, Long::sum))
+        .entrySet().stream()
+        .sorted(Map.Entry.comparingByKey(Comparator.comparingLong(VolumeKey::chatId)
+            .thenComparingLong(VolumeKey::senderId)
+            .thenComparingLong(VolumeKey::bucketStart)))
+        .toList();
+    jdbcTemplate.batchUpdate(INCREMENT.formatted(granularity.table()), rows, rows.size(), (ps, row) -> {
+      ps.setLong(1, row.getKey().chatId());
+      ps.setLong(2, row.getKey().senderId());
+      ps.setLong(3, row.getKey().bucketStart());
+      ps.setLong(4, row.getValue());
+    });
+  }
+
+  /**
+   * Non-empty buckets of one counter in {@code [from, to)}, oldest first.
+   */
+  public List<VolumeBucketDto> findBuckets(Granularity granularity, long chatId, long senderId, long from, long to) {
+    return jdbcTemplate.query(SELECT_BUCKETS.formatted(granularity.table()), BUCKET_MAPPER, chatId, senderId, from, to);
+  }
+
+  /**
+   * Take the snapshot of the current repeatable read transaction; its later statements see what was committed until now.
+   */
+  public void takeSnapshot() {
+    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+  }
+
+  public boolean isEmpty() {
+    return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+        "SELECT EXISTS (SELECT 1 FROM message_volume_hourly)", Boolean.class));
+  }
+
+  /**
+   * Dates of the oldest and newest stored message, empty when there are no messages.
+   */
+  public Optional<DateRange> findMessageDateRange() {
+    return jdbcTemplate.query("SELECT MIN(date) AS oldest, MAX(date) AS newest FROM messages", rs -> {
+      rs.next();
+      long oldest = rs.getLong("oldest");
+      return rs.wasNull() ? Optional.empty() : Optional.of(new DateRange(oldest, rs.getLong("newest")));
+    });
+  }
+
+  /**
+   * Replace the hourly rollups of {@code [from, to)} with counts of the stored messages.
+   *
+   * @return number of rows written
+   */
+  public int rebuildHourly(long from, long to) {
+    jdbcTemplate.update(DELETE_RANGE.formatted(Granularity.HOUR.table()), from, to);
+    return jdbcTemplate.update(REBUILD_HOURLY, from, to);
+  }
+
+  /**
+   * Replace the daily rollups of {@code [from, to)} with sums of the hourly ones.
+   *
+   * @return number of rows written
+   */
+  public int rebuildDaily(long from, long to) {
+    jdbcTemplate.update(DELETE_RANGE.formatted(Granularity.DAY.table()), from, to);
+    return jdbcTemplate.update(REBUILD_DAILY, from, to);
+  }
+
+  public record DateRange(long oldest, long newest) {
+  }
+}
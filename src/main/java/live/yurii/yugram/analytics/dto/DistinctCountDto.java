@@ -0,0 +1,34 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistinctCountDto {
+  /**
+   * Chats or senders counted over, empty for all of them.
+   */
+  private List<Long> ids;
+  /**
+   * First day counted, in epoch seconds.
+   */
+  private long from;
+  /**
+   * End of the last day counted (exclusive), in epoch seconds.
+   */
+  private long to;
+  private long estimate;
+  private double relativeStandardError;
+  /**
+   * Bounds of the 95% confidence interval, two standard errors around the estimate.
+   */
+  private long lowerBound;
+  private long upperBound;
+}
@@ -0,0 +1,22 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopSenderDto {
+  private long senderId;
+  /**
+   * Estimated number of messages, never below the true one.
+   */
+  private long count;
+  /**
+   * How much {@code count} may overestimate, the sender sent at least {@code count - error} messages.
+   */
+  private long error;
+}
@@ -0,0 +1,25 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopSendersDto {
+  private long chatId;
+  /**
+   * Start of the window in epoch seconds; the window ends now.
+   */
+  private long from;
+  /**
+   * Exact number of messages in the window.
+   */
+  private long messageCount;
+  private List<TopSenderDto> senders;
+}
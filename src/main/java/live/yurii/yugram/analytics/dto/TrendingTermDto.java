@@ -0,0 +1,26 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingTermDto {
+  private String term;
+  /**
+   * Messages mentioning the term, decayed with the recent half-life.
+   */
+  private double recentCount;
+  /**
+   * Recent count the term's baseline predicts.
+   */
+  private double expectedCount;
+  /**
+   * How far the recent count exceeds the expected one, in standard deviations of a Poisson count.
+   */
+  private double score;
+}
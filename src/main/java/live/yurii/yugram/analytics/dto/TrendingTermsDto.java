@@ -0,0 +1,24 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingTermsDto {
+  /**
+   * Chats the terms were counted in, empty for all chats.
+   */
+  private List<Long> chatIds;
+  /**
+   * Epoch second the counts were decayed to.
+   */
+  private long at;
+  private List<TrendingTermDto> terms;
+}
@@ -0,0 +1,17 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VolumeBackfillDto {
+  private long from;
+  private long to;
+  private long hourlyRows;
+  private long dailyRows;
+}
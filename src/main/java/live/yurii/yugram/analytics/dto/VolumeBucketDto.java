@@ -0,0 +1,18 @@
+package live.yurii.yugram.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VolumeBucketDto {
+  /**
+   * Start of the bucket in epoch seconds.
+   */
+  private long start;
+  private long count;
+}
@@ -0,0 +1,32 @@
+package live.yurii.yugram.analytics.dto;
+
+import live.yurii.yugram.analytics.Granularity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VolumeHistogramDto {
+  private Granularity granularity;
+  /**
+   * Chat counted, null for all chats.
+   */
+  private Long chatId;
+  /**
+   * Sender counted, null for all senders.
+   */
+  private Long senderId;
+  private long from;
+  private long to;
+  private long total;
+  /**
+   * One bucket per step from {@code from} (inclusive) to {@code to} (exclusive), empty ones included.
+   */
+  private List<VolumeBucketDto> buckets;
+}
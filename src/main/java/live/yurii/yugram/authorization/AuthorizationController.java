@@ -1,14 +1,21 @@
 package live.yurii.yugram.authorization;
 
+import live.yurii.yugram.configuration.TdLibAccounts;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+/**
+ * Authorization of one account at a time, the default account unless {@code account} is given.
+ */
 @Slf4j
 @RequiredArgsConstructor
 @RestController
@@ -16,25 +23,33 @@ import org.springframework.web.bind.annotation.RestController;
 public class AuthorizationController {
 
   private final ApplicationEventPublisher publisher;
+  private final TdLibAccounts accounts;
 
   @PostMapping("/login")
-  public ResponseEntity<String> login() {
-    log.debug("Login request received");
-    publisher.publishEvent(new LoginRequestEvent(this));
+  public ResponseEntity<String> login(@RequestParam(defaultValue = "0") int account) {
+    log.debug("Login request received for account {}", account);
+    publisher.publishEvent(new LoginRequestEvent(this, known(account)));
     return ResponseEntity.accepted().body("Login request accepted. POST OTP code to '/auth/otp'");
   }
 
   @PostMapping(value = "/otp", consumes = "text/plain", produces = "text/plain")
-  public ResponseEntity<String> verifyOtp(@RequestBody String code) {
-    log.debug("OTP code received: {}", code);
-    publisher.publishEvent(new OtpCodeReceivedEvent(this, code));
+  public ResponseEntity<String> verifyOtp(@RequestParam(defaultValue = "0") int account, @RequestBody String code) {
+    log.debug("OTP code received for account {}: {}", account, code);
+    publisher.publishEvent(new OtpCodeReceivedEvent(this, known(account), code));
     return ResponseEntity.accepted().body("OTP code accepted");
   }
 
   @PostMapping("/logout")
-  public ResponseEntity<String> logout() {
-    log.debug("Logout request received");
-    publisher.publishEvent(new LogoutRequestEvent(this));
+  public ResponseEntity<String> logout(@RequestParam(defaultValue = "0") int account) {
+    log.debug("Logout request received for account {}", account);
+    publisher.publishEvent(new LogoutRequestEvent(this, known(account)));
     return ResponseEntity.accepted().body("Logout request accepted");
   }
+
+  private int known(int account) {
+    if (!accounts.contains(account)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown account " + account);
+    }
+    return account;
+  }
 }
@@ -1,5 +1,7 @@
 package live.yurii.yugram.authorization;
 
+import live.yurii.yugram.configuration.TdLibAccounts;
+import live.yurii.yugram.configuration.TdLibAccounts.TdLibAccount;
 import live.yurii.yugram.configuration.TdLibParameters;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,37 +10,46 @@ import org.drinkless.tdlib.TdApi;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * Walks the client of each account through its own authorization.
+ */
 @Slf4j
 @RequiredArgsConstructor
 @Component
 public class AuthorizationEventHandler {
 
-  private final Client client;
-  private final TdLibParameters parameters;
+  private final TdLibAccounts accounts;
 
   @EventListener
   public void onAuthorizationStateChange(UpdateAuthorizationStateEvent event) {
-    log.debug("Authorization state event received: {}", event);
+    log.debug("Authorization state event received for account {}", event.getAccountId());
     if (event.getState().getConstructor() != TdApi.UpdateAuthorizationState.CONSTRUCTOR) {
       return;
     }
+    TdLibAccount account = accounts.get(event.getAccountId());
     TdApi.AuthorizationState newState = event.getState().authorizationState;
-    log.debug("Authorization state has changed: {}", newState);
+    // states carry the phone number and login hints, log only which one it is
+    log.debug("Authorization state of account {} has changed: {}", account.id(), newState.getClass().getSimpleName());
     switch(newState.getConstructor()) {
-      case TdApi.AuthorizationStateWaitTdlibParameters.CONSTRUCTOR -> sendTdLibParameters();
-      case TdApi.AuthorizationStateWaitPhoneNumber.CONSTRUCTOR -> sendPhoneNumber();
+      case TdApi.AuthorizationStateWaitTdlibParameters.CONSTRUCTOR -> sendTdLibParameters(account);
+      case TdApi.AuthorizationStateWaitPhoneNumber.CONSTRUCTOR -> sendPhoneNumber(account);
       case TdApi.AuthorizationStateWaitCode.CONSTRUCTOR -> sendCode();
-      case TdApi.AuthorizationStateWaitPassword.CONSTRUCTOR -> sendPassword();
-      case TdApi.AuthorizationStateReady.CONSTRUCTOR -> log.info("Authorization state is ready");
+      case TdApi.AuthorizationStateWaitPassword.CONSTRUCTOR -> sendPassword(account);
+      case TdApi.AuthorizationStateReady.CONSTRUCTOR -> log.info("Authorization state of account {} is ready", account.id());
       case TdApi.AuthorizationStateLoggingOut.CONSTRUCTOR -> log.info("Not implemented yet: Logging out :(");
-      case TdApi.AuthorizationStateClosing.CONSTRUCTOR -> log.info("Closing state...");
-      case TdApi.AuthorizationStateClosed.CONSTRUCTOR -> log.info("Closed");
-      default -> log.warn("Unsupported authorization state: {}", newState);
+      case TdApi.AuthorizationStateClosing.CONSTRUCTOR -> log.info("Closing state of account {}...", account.id());
+      case TdApi.AuthorizationStateClosed.CONSTRUCTOR -> log.info("Closed account {}", account.id());
+      default -> log.warn("Unsupported authorization state: {}", newState.getClass().getSimpleName());
     }
   }
 
-  @EventListener(LoginRequestEvent.class)
-  public void sendTdLibParameters() {
+  @EventListener
+  public void sendTdLibParameters(LoginRequestEvent event) {
+    sendTdLibParameters(accounts.get(event.getAccountId()));
+  }
+
+  private void sendTdLibParameters(TdLibAccount account) {
+    TdLibParameters parameters = account.parameters();
     TdApi.SetTdlibParameters request = new TdApi.SetTdlibParameters();
     request.databaseDirectory = parameters.getDatabaseDirectory();
     request.filesDirectory = "files";
@@ -51,40 +62,49 @@ public class AuthorizationEventHandler {
     request.deviceModel = parameters.getDeviceModel();
     request.applicationVersion = parameters.getApplicationVersion();
 
-    log.info("Sending TDLib parameters");
-    client.send(request, new AuthorizationRequestHandler(), e -> log.error("Failed to send TDLib parameters", e));
+    log.info("Sending TDLib parameters of account {}", account.id());
+    account.client().send(request, new AuthorizationRequestHandler(account.id()),
+        e -> log.error("Failed to send TDLib parameters of account {}", account.id(), e));
   }
 
-  private void sendPhoneNumber() {
-    var function = new TdApi.SetAuthenticationPhoneNumber(parameters.getPhoneNumber(), null);
-    client.send(function, new AuthorizationRequestHandler());
-    log.debug("Sent phone number: {}", parameters.getPhoneNumber());
+  private void sendPhoneNumber(TdLibAccount account) {
+    var function = new TdApi.SetAuthenticationPhoneNumber(account.parameters().getPhoneNumber(), null);
+    account.client().send(function, new AuthorizationRequestHandler(account.id()));
+    log.debug("Sent phone number of account {}", account.id());
   }
 
   @EventListener
   public void verifyOtp(OtpCodeReceivedEvent event) {
-    client.send(new TdApi.CheckAuthenticationCode(event.getCode()), new AuthorizationRequestHandler());
-    log.info("OTP code sent to Telegram");
+    TdLibAccount account = accounts.get(event.getAccountId());
+    account.client().send(new TdApi.CheckAuthenticationCode(event.getCode()), new AuthorizationRequestHandler(account.id()));
+    log.info("OTP code of account {} sent to Telegram", account.id());
   }
 
-  private void sendPassword() {
-    client.send(new TdApi.CheckAuthenticationPassword(parameters.getPassword()), new AuthorizationRequestHandler());
-    log.debug("Sent password: ***************");
+  private void sendPassword(TdLibAccount account) {
+    account.client().send(new TdApi.CheckAuthenticationPassword(account.parameters().getPassword()),
+        new AuthorizationRequestHandler(account.id()));
+    log.debug("Sent password of account {}: ***************", account.id());
   }
 
   private void sendCode() {
     log.info("Code authentication is supported in 'verifyOtp' method");
   }
 
+  @RequiredArgsConstructor
   class AuthorizationRequestHandler implements Client.ResultHandler {
 
+    private final int accountId;
+
     @Override
     public void onResult(TdApi.Object object) {
-      log.info("Received response from TDLib: {}", object);
+      log.debug("Received response from TDLib for account {}: {}", accountId, object.getClass().getSimpleName());
       switch (object.getConstructor()) {
         case TdApi.Ok.CONSTRUCTOR -> log.info("TDLib parameters set successfully");
-        case TdApi.Error.CONSTRUCTOR -> log.error("Received an error: {}. Credentials: {}", object, parameters);
-        default -> log.warn("Received wrong response from TDLib: {}", object);
+        case TdApi.Error.CONSTRUCTOR -> {
+          TdApi.Error error = (TdApi.Error) object;
+          log.error("Received an error for account {}: {} {}", accountId, error.code, error.message);
+        }
+        default -> log.warn("Received wrong response from TDLib: {}", object.getClass().getSimpleName());
       }
     }
   }
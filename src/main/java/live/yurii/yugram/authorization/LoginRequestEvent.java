@@ -1,9 +1,15 @@
 package live.yurii.yugram.authorization;
 
+import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
+@Getter
 public class LoginRequestEvent extends ApplicationEvent {
-  public LoginRequestEvent(AuthorizationController source) {
+
+  private final int accountId;
+
+  public LoginRequestEvent(AuthorizationController source, int accountId) {
     super(source);
+    this.accountId = accountId;
   }
 }
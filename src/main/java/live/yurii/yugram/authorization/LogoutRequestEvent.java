@@ -1,9 +1,15 @@
 package live.yurii.yugram.authorization;
 
+import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
+@Getter
 public class LogoutRequestEvent extends ApplicationEvent {
-  public LogoutRequestEvent(AuthorizationController source) {
+
+  private final int accountId;
+
+  public LogoutRequestEvent(AuthorizationController source, int accountId) {
     super(source);
+    this.accountId = accountId;
   }
 }
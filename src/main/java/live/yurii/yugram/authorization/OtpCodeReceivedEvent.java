@@ -6,10 +6,12 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class OtpCodeReceivedEvent extends ApplicationEvent {
 
+  private final int accountId;
   private final String code;
 
-  public OtpCodeReceivedEvent(AuthorizationController source, String code) {
+  public OtpCodeReceivedEvent(AuthorizationController source, int accountId, String code) {
     super(source);
+    this.accountId = accountId;
     this.code = code;
   }
 }
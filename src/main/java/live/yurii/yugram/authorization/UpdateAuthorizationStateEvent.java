@@ -8,10 +8,12 @@ import org.springframework.context.ApplicationEvent;
 @Slf4j
 @Getter
 public class UpdateAuthorizationStateEvent extends ApplicationEvent {
+  private final int accountId;
   private final TdApi.UpdateAuthorizationState state;
 
-  public UpdateAuthorizationStateEvent(Object source, TdApi.UpdateAuthorizationState update) {
+  public UpdateAuthorizationStateEvent(Object source, int accountId, TdApi.UpdateAuthorizationState update) {
     super(source);
+    this.accountId = accountId;
     this.state = update;
   }
 }
@@ -0,0 +1,19 @@
+package live.yurii.yugram.batch;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the {@code /byIds} lookup endpoints.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.batch")
+public class BatchLookupProperties {
+
+  /**
+   * Maximum number of distinct ids accepted by one lookup.
+   */
+  private int maxIds = 5000;
+}
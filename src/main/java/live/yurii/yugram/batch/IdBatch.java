@@ -0,0 +1,59 @@
+package live.yurii.yugram.batch;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The ids of one {@code /byIds} lookup: distinct, in the order they were requested.
+ */
+public final class IdBatch {
+
+  private final List<Long> ids;
+
+  private IdBatch(List<Long> ids) {
+    this.ids = ids;
+  }
+
+  /**
+   * @throws ResponseStatusException 400 if there are more than {@code maxIds} distinct ids
+   */
+  public static IdBatch of(List<Long> requested, int maxIds) {
+    LinkedHashSet<Long> distinct = new LinkedHashSet<>();
+    requested.stream().filter(Objects::nonNull).forEach(distinct::add);
+    if (distinct.size() > maxIds) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "At most " + maxIds + " ids can be looked up at once, got " + distinct.size());
+    }
+    return new IdBatch(List.copyOf(distinct));
+  }
+
+  public List<Long> ids() {
+    return ids;
+  }
+
+  /**
+   * Arrange the found values in request order and collect the ids that were not found.
+   */
+  public <V> Result<V> arrange(Map<Long, V> found) {
+    List<V> values = new ArrayList<>(found.size());
+    List<Long> missingIds = new ArrayList<>();
+    for (Long id : ids) {
+      V value = found.get(id);
+      if (value != null) {
+        values.add(value);
+      } else {
+        missingIds.add(id);
+      }
+    }
+    return new Result<>(values, missingIds);
+  }
+
+  public record Result<V>(List<V> values, List<Long> missingIds) {
+  }
+}
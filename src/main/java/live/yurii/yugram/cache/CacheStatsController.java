@@ -0,0 +1,40 @@
+package live.yurii.yugram.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/caches")
+public class CacheStatsController {
+
+  private final List<EntityCache<?>> caches;
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, CacheStatsDto>> getCacheStats() {
+    log.debug("Getting cache statistics");
+
+    Map<String, CacheStatsDto> response = new TreeMap<>();
+    caches.forEach(cache -> response.put(cache.getName(), CacheStatsDto.of(cache.size(), cache.stats())));
+    return ResponseEntity.ok(response);
+  }
+
+  public record CacheStatsDto(long size, long hitCount, long missCount, double hitRate, long loadCount,
+                              double averageLoadPenaltyMillis, long evictionCount) {
+
+    static CacheStatsDto of(long size, CacheStats stats) {
+      return new CacheStatsDto(size, stats.hitCount(), stats.missCount(), stats.hitRate(), stats.loadCount(),
+          stats.averageLoadPenalty() / 1_000_000d, stats.evictionCount());
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package live.yurii.yugram.cache;
+
+import live.yurii.yugram.changes.ChangeFeedProperties;
+import live.yurii.yugram.changes.RemoteChangeEvent;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Change counters per table and per chat, used to derive ETags of the list endpoints.
+ * <p>
+ * Versions are bumped only after a write is committed. A reader that picks up a version before the
+ * bump may return newer rows under the older tag, which merely causes one extra full response later;
+ * the opposite order could make clients keep stale pages. The epoch makes tags of a previous run invalid.
+ * <p>
+ * Names of users and chats are versioned per id, for pages that only show a few of them. Ids share a fixed
+ * number of stripes: a change may also change the tags of pages showing another id of its stripe, never
+ * leave the tag of a page showing it unchanged.
+ * <p>
+ * The writes of other nodes are counted as they arrive through the change feed. With the change feed
+ * disabled they are not seen at all. Tags of data other nodes write for then also change with every
+ * {@code app.leases.remote-change-window}, which bounds how long a client may keep a page they changed.
+ */
+@Component
+public class ChangeVersions {
+
+  private static final int NAME_STRIPE_BITS = 12;
+
+  private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+  private final AtomicLong messages = new AtomicLong();
+  private final AtomicLong chats = new AtomicLong();
+  private final AtomicLong users = new AtomicLong();
+  private final Map<Long, AtomicLong> messagesByChat = new ConcurrentHashMap<>();
+  private final AtomicLongArray names = new AtomicLongArray(1 << NAME_STRIPE_BITS);
+  private final ObjectProvider<LeaseManager> leaseManager;
+  private final ObjectProvider<ChangeFeedProperties> changeFeedProperties;
+
+  public ChangeVersions(ObjectProvider<LeaseManager> leaseManager,
+                        ObjectProvider<ChangeFeedProperties> changeFeedProperties) {
+    this.leaseManager = leaseManager;
+    this.changeFeedProperties = changeFeedProperties;
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    messagePersisted(event.getMessage().getChatId());
+  }
+
+  @EventListener
+  public void onRemoteChange(RemoteChangeEvent event) {
+    switch (event.getKind()) {
+      case MESSAGE -> messagePersisted(event.getChatId());
+      case CHAT -> {
+        nameChanged(event.getEntityId());
+        chatsChanged();
+      }
+      case USER -> {
+        nameChanged(event.getEntityId());
+        usersChanged();
+      }
+      default -> {
+      }
+    }
+  }
+
+  public void messagePersisted(long chatId) {
+    messagesByChat.computeIfAbsent(chatId, id -> new AtomicLong()).incrementAndGet();
+    messages.incrementAndGet();
+  }
+
+  public void chatsChanged() {
+    chats.incrementAndGet();
+  }
+
+  public void usersChanged() {
+    users.incrementAndGet();
+  }
+
+  /**
+   * A user or chat was written, which may have changed the name pages show for its id.
+   */
+  public void nameChanged(long id) {
+    names.incrementAndGet(nameStripe(id));
+  }
+
+  public String messagesTag() {
+    return tag("m", messages.get(), LeaseManager::ownsEverything);
+  }
+
+  public String chatMessagesTag(long chatId) {
+    AtomicLong version = messagesByChat.get(chatId);
+    return tag("m" + chatId, version != null ? version.get() : 0, leases -> leases.ownsChat(chatId));
+  }
+
+  public String chatsTag() {
+    return tag("c", chats.get(), LeaseManager::ownsEverything);
+  }
+
+  public String usersTag() {
+    return tag("u", users.get(), LeaseManager::ownsEverything);
+  }
+
+  /**
+   * Tag of the names of the given users and chats. Versions only grow, so their sum changes with any of them.
+   */
+  public String namesTag(long[] ids) {
+    long version = Arrays.stream(ids).mapToInt(ChangeVersions::nameStripe).distinct().mapToLong(names::get).sum();
+    return tag("n", version, LeaseManager::ownsEverything);
+  }
+
+  private static int nameStripe(long id) {
+    return (int) ((id * 0x9e3779b97f4a7c15L) >>> (64 - NAME_STRIPE_BITS));
+  }
+
+  private String tag(String scope, long version, Predicate<LeaseManager> writtenHere) {
+    String tag = epoch + "-" + scope + "-" + version;
+    LeaseManager leases = leaseManager.getIfAvailable();
+    ChangeFeedProperties changeFeed = changeFeedProperties.getIfAvailable();
+    if (leases == null || writtenHere.test(leases) || changeFeed != null && changeFeed.isEnabled()) {
+      return tag;
+    }
+    return tag + "-w" + leases.remoteChangeWindow();
+  }
+}
@@ -0,0 +1,117 @@
+package live.yurii.yugram.cache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import live.yurii.yugram.diagnostics.jfr.PageBuildEvent;
+import live.yurii.yugram.formats.BinaryFormats;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET handling for list endpoints.
+ * <p>
+ * The ETag is derived from {@link ChangeVersions} before anything is queried, so a client that
+ * already has the current page gets 304 Not Modified without a database round trip. Identical
+ * requests arriving while a page is being built share that single computation.
+ * <p>
+ * The same page is served as JSON, CBOR, Smile or columns, and the ETag is strong, so it names the
+ * negotiated representation as well: a cache must not answer a CBOR request with a 304 for the JSON
+ * bytes it holds.
+ */
+@Component
+public class ConditionalRequests {
+
+  /**
+   * The representations in the order Spring MVC's converters offer them, JSON first.
+   */
+  private static final List<MediaType> REPRESENTATIONS =
+      List.of(MediaType.APPLICATION_JSON, BinaryFormats.CBOR, BinaryFormats.SMILE, BinaryFormats.COLUMNAR);
+
+  private final SingleFlight<String, Object> inFlight = new SingleFlight<>();
+  private final ContentNegotiationManager contentNegotiationManager;
+
+  public ConditionalRequests(ContentNegotiationManager contentNegotiationManager) {
+    this.contentNegotiationManager = contentNegotiationManager;
+  }
+
+  /**
+   * Respond with the body built by {@code loader}, or with 304 if the client has {@code etag} already.
+   *
+   * @return the response, or null when 304 Not Modified has been written to the response already
+   */
+  @SuppressWarnings("unchecked")
+  public <T> ResponseEntity<T> respond(WebRequest request, String etag, Supplier<T> loader) {
+    PageBuildEvent pageEvent = new PageBuildEvent();
+    pageEvent.begin();
+    String description = describe(request);
+    if (request.checkNotModified(etag + "-" + representation(request))) {
+      // the 304 stands in for the 200 of this representation, so caches need its Vary too
+      if (request instanceof ServletWebRequest servletWebRequest && servletWebRequest.getResponse() != null) {
+        servletWebRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+      }
+      pageEvent.finish(endpoint(request), description, true);
+      return null;
+    }
+    T body;
+    try {
+      // the body is the same for every representation, only its conversion differs
+      body = (T) inFlight.execute(etag + " " + description, loader::get);
+    } finally {
+      pageEvent.finish(endpoint(request), description, false);
+    }
+    // no-cache makes browsers revalidate with If-None-Match instead of guessing freshness,
+    // Vary keeps the JSON and binary representations of a page apart in caches
+    return ResponseEntity.ok().cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT).body(body);
+  }
+
+  /**
+   * The media type the response will be written in, picked like the converters pick it: the most
+   * specific accepted type first, and for each the first representation compatible with it.
+   */
+  private String representation(WebRequest request) {
+    List<MediaType> accepted;
+    try {
+      accepted = new ArrayList<>(contentNegotiationManager.resolveMediaTypes((NativeWebRequest) request));
+    } catch (HttpMediaTypeNotAcceptableException e) {
+      // answered with 406 later anyway
+      return "none";
+    }
+    MimeTypeUtils.sortBySpecificity(accepted);
+    for (MediaType acceptable : accepted) {
+      for (MediaType representation : REPRESENTATIONS) {
+        if (acceptable.isCompatibleWith(representation)) {
+          return representation.getSubtype();
+        }
+      }
+    }
+    return "none";
+  }
+
+  private static String endpoint(WebRequest request) {
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    return pattern != null ? pattern.toString() : "";
+  }
+
+  private static String describe(WebRequest request) {
+    if (request instanceof ServletWebRequest servletWebRequest) {
+      HttpServletRequest servletRequest = servletWebRequest.getRequest();
+      String query = servletRequest.getQueryString();
+      return query != null ? servletRequest.getRequestURI() + "?" + query : servletRequest.getRequestURI();
+    }
+    return request.getDescription(false);
+  }
+}
@@ -0,0 +1,83 @@
+package live.yurii.yugram.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bounded read-through cache of entities keyed by their Telegram id.
+ * <p>
+ * Misses are loaded from the database; absent rows are not cached, so an entity created later is
+ * visible immediately. Writers call {@link #put(long, Object)} after their transaction commits,
+ * which keeps readers from seeing stale rows until the time to live expires.
+ *
+ * @param <V> cached value type
+ */
+public abstract class EntityCache<V> {
+
+  @Getter
+  private final String name;
+  protected final Cache<Long, V> cache;
+
+  protected EntityCache(String name, EntityCacheProperties.Spec spec) {
+    this.name = name;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(spec.getMaximumSize())
+        .expireAfterWrite(spec.getTimeToLive())
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Load an entity that is not cached yet.
+   *
+   * @param id entity id
+   * @return the entity or null if it does not exist
+   */
+  protected abstract V load(long id);
+
+  /**
+   * Load entities that are not cached yet, with one query.
+   *
+   * @param ids entity ids
+   * @return the entities that exist, by id
+   */
+  protected abstract Map<Long, V> loadAll(Set<? extends Long> ids);
+
+  public Optional<V> get(long id) {
+    return Optional.ofNullable(cache.get(id, this::load));
+  }
+
+  /**
+   * Get entities by id, loading all the missing ones at once. Ids that do not exist are left out.
+   */
+  public Map<Long, V> getAll(Collection<Long> ids) {
+    return cache.getAll(ids, this::loadAll);
+  }
+
+  public void put(long id, V value) {
+    cache.put(id, value);
+  }
+
+  public void invalidate(long id) {
+    cache.invalidate(id);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.estimatedSize();
+  }
+}
@@ -0,0 +1,39 @@
+package live.yurii.yugram.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the in-process entity caches.
+ * Entries are refreshed by the ingest handlers on every write, the time to live only bounds
+ * staleness for rows changed outside of this application.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class EntityCacheProperties {
+
+  private Spec chats = new Spec(10_000, Duration.ofMinutes(30));
+  private Spec users = new Spec(50_000, Duration.ofMinutes(30));
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Spec {
+
+    /**
+     * Maximum number of entries before the least valuable ones are evicted.
+     */
+    private long maximumSize;
+
+    /**
+     * Time after which an entry is reloaded from the database.
+     */
+    private Duration timeToLive;
+  }
+}
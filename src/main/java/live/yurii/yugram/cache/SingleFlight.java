@@ -0,0 +1,47 @@
+package live.yurii.yugram.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key onto one in-flight computation.
+ * Nothing is cached: once the computation completes, the next call computes again.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+  public V execute(K key, Supplier<V> supplier) {
+    CompletableFuture<V> call = new CompletableFuture<>();
+    CompletableFuture<V> inFlight = calls.putIfAbsent(key, call);
+    if (inFlight != null) {
+      return join(inFlight);
+    }
+    try {
+      V result = supplier.get();
+      call.complete(result);
+      return result;
+    } catch (RuntimeException | Error e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      calls.remove(key, call);
+    }
+  }
+
+  private V join(CompletableFuture<V> inFlight) {
+    try {
+      return inFlight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package live.yurii.yugram.changes;
+
+import live.yurii.yugram.changes.dto.ChangeBatchDto;
+import live.yurii.yugram.changes.dto.ChangeConsumerDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/changes")
+@CrossOrigin(origins = "*")
+public class ChangeController {
+
+  private final ChangeFeed changeFeed;
+  private final ChangeFeedProperties changeFeedProperties;
+
+  /**
+   * Changes after {@code after}, or after the consumer's acknowledged offset, waiting up to {@code wait}
+   * seconds for some when there are none yet.
+   */
+  @GetMapping
+  public CompletableFuture<ResponseEntity<ChangeBatchDto>> getChanges(
+      @RequestParam(required = false) Long after,
+      @RequestParam(required = false) String consumer,
+      @RequestParam(defaultValue = "100") int limit,
+      @RequestParam(required = false) Long wait) {
+    log.debug("Polling changes after: {}, consumer: {}, limit: {}, wait: {}", after, consumer, limit, wait);
+
+    long from = after != null ? after : consumer != null ? changeFeed.offset(consumer) : 0;
+    int bounded = Math.max(1, Math.min(limit, changeFeedProperties.getMaxBatchSize()));
+    Duration timeout = wait != null
+        ? Duration.ofSeconds(Math.max(0, Math.min(wait, changeFeedProperties.getMaxWait().toSeconds())))
+        : changeFeedProperties.getDefaultWait();
+    return changeFeed.poll(from, bounded, timeout).thenApply(ResponseEntity::ok);
+  }
+
+  /**
+   * Acknowledge the changes up to {@code seq}; entries acknowledged by all live consumers are pruned.
+   */
+  @PostMapping("/consumers/{consumer}/ack")
+  public ResponseEntity<ChangeConsumerDto> ack(@PathVariable String consumer, @RequestParam long seq) {
+    log.debug("Consumer {} acknowledges changes up to {}", consumer, seq);
+
+    if (seq < 0 || seq > changeFeed.lastSeq()) {
+      return ResponseEntity.badRequest().build();
+    }
+    return ResponseEntity.ok(changeFeed.ack(consumer, seq));
+  }
+
+  @GetMapping("/consumers")
+  public ResponseEntity<List<ChangeConsumerDto>> getConsumers() {
+    log.debug("Getting change feed consumers");
+
+    return ResponseEntity.ok(changeFeed.consumers());
+  }
+}
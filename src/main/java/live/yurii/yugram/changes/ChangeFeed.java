@@ -0,0 +1,130 @@
+package live.yurii.yugram.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import live.yurii.yugram.changes.ChangeOutboxRepository.Change;
+import live.yurii.yugram.changes.ChangeOutboxRepository.Consumer;
+import live.yurii.yugram.changes.dto.ChangeBatchDto;
+import live.yurii.yugram.changes.dto.ChangeConsumerDto;
+import live.yurii.yugram.changes.dto.ChangeDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the change feed: batches after a seq, long polls that wait for new changes, consumer offsets
+ * and the pruning of acknowledged entries.
+ */
+@Slf4j
+@Component
+public class ChangeFeed {
+
+  private final ChangeOutboxRepository outboxRepository;
+  private final ChangeNotifier notifier;
+  private final ChangeFeedProperties properties;
+  private final ObjectMapper objectMapper;
+  // a woken poll reads on its own thread, never on the one delivering notifications
+  private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+
+  public ChangeFeed(ChangeOutboxRepository outboxRepository, ChangeNotifier notifier, ChangeFeedProperties properties,
+                    ObjectMapper objectMapper) {
+    this.outboxRepository = outboxRepository;
+    this.notifier = notifier;
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Changes after {@code after}; without any, wait up to {@code wait} for some.
+   *
+   * @return completes with the changes, or with none once waited
+   */
+  public CompletableFuture<ChangeBatchDto> poll(long after, int limit, Duration wait) {
+    ChangeBatchDto batch = read(after, limit);
+    if (!batch.getChanges().isEmpty() || wait.isZero()) {
+      return CompletableFuture.completedFuture(batch);
+    }
+    return notifier.await(after, wait).thenApplyAsync(woken -> woken ? read(after, limit) : batch, readers);
+  }
+
+  /**
+   * The offset of a consumer, 0 for one that never acknowledged anything.
+   */
+  public long offset(String consumer) {
+    return outboxRepository.findConsumer(consumer).map(Consumer::ackedSeq).orElse(0L);
+  }
+
+  public long lastSeq() {
+    return Math.max(notifier.lastSeq(), outboxRepository.lastSeq());
+  }
+
+  public ChangeConsumerDto ack(String consumer, long seq) {
+    long now = now();
+    long acked = outboxRepository.ack(consumer, seq, now);
+    return toDto(new Consumer(consumer, acked, now), lastSeq(), now);
+  }
+
+  public List<ChangeConsumerDto> consumers() {
+    long lastSeq = lastSeq();
+    long now = now();
+    return outboxRepository.findConsumers().stream().map(consumer -> toDto(consumer, lastSeq, now)).toList();
+  }
+
+  @Scheduled(fixedDelayString = "${app.changes.prune-interval-ms:60000}")
+  public void prune() {
+    long now = now();
+    // without live consumers only the retention applies
+    long acked = outboxRepository.minAckedSince(now - properties.getConsumerExpiry().toSeconds()).orElse(0L);
+    int pruned = outboxRepository.prune(acked, now - properties.getRetention().toSeconds());
+    if (pruned > 0) {
+      log.debug("Pruned {} changes, acknowledged up to {}", pruned, acked);
+    }
+  }
+
+  private ChangeBatchDto read(long after, int limit) {
+    List<ChangeDto> changes = outboxRepository.findAfter(after, limit).stream().map(this::toDto).toList();
+    long next = changes.isEmpty() ? after : changes.getLast().getSeq();
+    return ChangeBatchDto.builder()
+        .changes(changes)
+        .next(next)
+        .lastSeq(Math.max(next, notifier.lastSeq()))
+        .build();
+  }
+
+  private ChangeDto toDto(Change change) {
+    try {
+      return ChangeDto.builder()
+          .seq(change.seq())
+          .kind(change.kind())
+          .entityId(change.entityId())
+          .chatId(change.chatId())
+          .operation(change.operation())
+          .createdAt(change.createdAt())
+          .state(objectMapper.readTree(change.payload()))
+          .build();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Unreadable payload of change " + change.seq(), e);
+    }
+  }
+
+  private ChangeConsumerDto toDto(Consumer consumer, long lastSeq, long now) {
+    return ChangeConsumerDto.builder()
+        .consumer(consumer.consumer())
+        .ackedSeq(consumer.ackedSeq())
+        .lag(Math.max(0, lastSeq - consumer.ackedSeq()))
+        .updatedAt(consumer.updatedAt())
+        .live(now - consumer.updatedAt() <= properties.getConsumerExpiry().toSeconds())
+        .build();
+  }
+
+  private static long now() {
+    return Instant.now().getEpochSecond();
+  }
+}
@@ -0,0 +1,68 @@
+package live.yurii.yugram.changes;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the change feed of messages, chats and users.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.changes")
+public class ChangeFeedProperties {
+
+  /**
+   * Write changes to the outbox along with the rows they change.
+   */
+  private boolean enabled = true;
+
+  /**
+   * Committed changes get their place in the feed at the latest after this long, sooner when written by this node.
+   */
+  private Duration sequenceInterval = Duration.ofMillis(500);
+
+  /**
+   * Changes sequenced per statement.
+   */
+  private int sequenceBatchSize = 1000;
+
+  /**
+   * Channel of the Postgres notification sent when changes were sequenced.
+   */
+  private String channel = "yugram_changes";
+
+  /**
+   * Delay before listening again after the notification connection failed.
+   */
+  private Duration reconnectDelay = Duration.ofSeconds(5);
+
+  /**
+   * Upper bound of changes per response.
+   */
+  private int maxBatchSize = 500;
+
+  /**
+   * How long a poll without new changes waits for some by default, and at most.
+   * Both stay below {@code spring.mvc.async.request-timeout}.
+   */
+  private Duration defaultWait = Duration.ofSeconds(25);
+  private Duration maxWait = Duration.ofSeconds(55);
+
+  /**
+   * Delay in milliseconds between two prunes of the outbox.
+   */
+  private long pruneIntervalMs = 60000;
+
+  /**
+   * Consumers that did not acknowledge anything for this long no longer hold entries back.
+   */
+  private Duration consumerExpiry = Duration.ofDays(7);
+
+  /**
+   * Entries older than this are pruned even when a live consumer has not acknowledged them yet.
+   */
+  private Duration retention = Duration.ofDays(7);
+}
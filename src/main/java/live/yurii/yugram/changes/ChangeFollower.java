@@ -0,0 +1,125 @@
+package live.yurii.yugram.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.changes.ChangeOutboxRepository.Change;
+import live.yurii.yugram.cluster.LeaseManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the change feed and publishes the changes of other nodes as {@link RemoteChangeEvent}s.
+ * <p>
+ * With leases, each node only sees the writes it makes itself. Caches, change versions and the in-memory
+ * analytics of a node would otherwise go stale for the chats, users and watch terms written elsewhere. The
+ * follower starts at the end of the feed. Whatever was committed before then is read from the database
+ * anyway, by the caches on a miss and by the analytics when they warm up. A single node writes everything
+ * itself, so the follower only runs with leases enabled.
+ */
+@Slf4j
+@Component
+public class ChangeFollower {
+
+  private static final Duration WAIT = Duration.ofSeconds(30);
+
+  private final ChangeOutboxRepository outboxRepository;
+  private final ChangeNotifier notifier;
+  private final ChangeFeedProperties properties;
+  private final LeaseManager leaseManager;
+  private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher publisher;
+  private final Counter applied;
+  private volatile boolean running;
+  private volatile Thread thread;
+  private long cursor;
+
+  public ChangeFollower(ChangeOutboxRepository outboxRepository, ChangeNotifier notifier, ChangeFeedProperties properties,
+                        LeaseManager leaseManager, ObjectMapper objectMapper, ApplicationEventPublisher publisher,
+                        MeterRegistry meterRegistry) {
+    this.outboxRepository = outboxRepository;
+    this.notifier = notifier;
+    this.properties = properties;
+    this.leaseManager = leaseManager;
+    this.objectMapper = objectMapper;
+    this.publisher = publisher;
+    this.applied = Counter.builder("yugram.changes.applied")
+        .description("Changes of other nodes applied to the in-memory state of this node")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!properties.isEnabled() || !leaseManager.isEnabled()) {
+      return;
+    }
+    cursor = outboxRepository.lastSeq();
+    running = true;
+    thread = Thread.ofPlatform().name("change-follower").daemon().start(this::run);
+    log.info("Following the changes of other nodes from seq {}", cursor);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    Thread follower = thread;
+    if (follower != null) {
+      follower.interrupt();
+      follower.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        notifier.await(cursor, WAIT).get();
+        follow();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException | RuntimeException e) {
+        log.error("Failed to read the change feed after seq {}, retrying in {}", cursor, properties.getReconnectDelay(), e);
+        LockSupport.parkNanos(properties.getReconnectDelay().toNanos());
+      }
+    }
+  }
+
+  /**
+   * Publish the changes of other nodes after the cursor, until none are left.
+   */
+  void follow() {
+    List<Change> changes = outboxRepository.findAfter(cursor, properties.getMaxBatchSize());
+    while (!changes.isEmpty()) {
+      for (Change change : changes) {
+        if (!leaseManager.nodeId().equals(change.origin())) {
+          apply(change);
+        }
+        cursor = change.seq();
+      }
+      changes = outboxRepository.findAfter(cursor, properties.getMaxBatchSize());
+    }
+  }
+
+  private void apply(Change change) {
+    try {
+      Object state = objectMapper.readValue(change.payload(), change.kind().stateType());
+      publisher.publishEvent(new RemoteChangeEvent(this, change.kind(), change.operation(), change.entityId(),
+          change.chatId(), state));
+      applied.increment();
+    } catch (JsonProcessingException | RuntimeException e) {
+      // one change that cannot be applied must not hold up the ones after it
+      log.error("Failed to apply change {} of {} {}", change.seq(), change.kind(), change.entityId(), e);
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package live.yurii.yugram.changes;
+
+import live.yurii.yugram.chats.dto.ChatDto;
+import live.yurii.yugram.messages.dto.MessageDto;
+import live.yurii.yugram.users.dto.UserDto;
+import live.yurii.yugram.watchlist.dto.WatchTermDto;
+
+/**
+ * What a change is about, with the type of the state it carries.
+ */
+public enum ChangeKind {
+  MESSAGE(MessageDto.class),
+  CHAT(ChatDto.class),
+  USER(UserDto.class),
+  WATCH_TERM(WatchTermDto.class);
+
+  private final Class<?> stateType;
+
+  ChangeKind(Class<?> stateType) {
+    this.stateType = stateType;
+  }
+
+  public Class<?> stateType() {
+    return stateType;
+  }
+}
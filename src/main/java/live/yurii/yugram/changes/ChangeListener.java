@@ -0,0 +1,82 @@
+package live.yurii.yugram.changes;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Listens for the notifications of the sequencers of all nodes and wakes the local polls.
+ * <p>
+ * The connection is opened outside the pool, a listening connection is never returned to it. After
+ * (re)connecting, the last seq is read once, so that notifications sent while not listening are not missed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChangeListener {
+
+  private static final int POLL_TIMEOUT_MS = 1000;
+
+  private final DataSourceProperties dataSourceProperties;
+  private final ChangeFeedProperties properties;
+  private final ChangeOutboxRepository outboxRepository;
+  private final ChangeNotifier notifier;
+  private volatile boolean running;
+  private volatile Thread thread;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    running = true;
+    thread = Thread.ofPlatform().name("change-listener").daemon().start(this::run);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    Thread listener = thread;
+    if (listener != null) {
+      listener.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  private void run() {
+    while (running) {
+      try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+          dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN \"" + properties.getChannel().replace("\"", "\"\"") + "\"");
+        }
+        notifier.advance(outboxRepository.lastSeq());
+        log.info("Listening for new changes on channel {}", properties.getChannel());
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+          if (notifications == null) {
+            continue;
+          }
+          for (PGNotification notification : notifications) {
+            notifier.advance(Long.parseLong(notification.getParameter()));
+          }
+        }
+      } catch (SQLException | RuntimeException e) {
+        if (running) {
+          log.warn("Lost the notification connection, listening again in {}", properties.getReconnectDelay(), e);
+          LockSupport.parkNanos(properties.getReconnectDelay().toNanos());
+        }
+      }
+    }
+  }
+}
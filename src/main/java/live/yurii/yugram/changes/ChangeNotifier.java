@@ -0,0 +1,64 @@
+package live.yurii.yugram.changes;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last seq known to be in the feed, and the polls waiting for a newer one.
+ */
+@Component
+public class ChangeNotifier {
+
+  private final AtomicLong lastSeq = new AtomicLong();
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+  public long lastSeq() {
+    return lastSeq.get();
+  }
+
+  public int waiting() {
+    return waiters.size();
+  }
+
+  /**
+   * Note that the feed reached {@code seq} and wake the polls waiting for less.
+   */
+  public void advance(long seq) {
+    long current = lastSeq.accumulateAndGet(seq, Math::max);
+    Iterator<Waiter> iterator = waiters.iterator();
+    while (iterator.hasNext()) {
+      Waiter waiter = iterator.next();
+      if (waiter.after() < current) {
+        waiter.woken().complete(true);
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Wait for the feed to go past {@code after}.
+   *
+   * @return completes with true once it did, or with false after {@code wait}
+   */
+  public CompletableFuture<Boolean> await(long after, Duration wait) {
+    CompletableFuture<Boolean> woken = new CompletableFuture<>();
+    Waiter waiter = new Waiter(after, woken);
+    waiters.add(waiter);
+    woken.whenComplete((result, error) -> waiters.remove(waiter));
+    // advanced between the caller's read and the registration
+    if (lastSeq.get() > after) {
+      woken.complete(true);
+    }
+    return woken.completeOnTimeout(false, wait.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private record Waiter(long after, CompletableFuture<Boolean> woken) {
+  }
+}
@@ -0,0 +1,13 @@
+package live.yurii.yugram.changes;
+
+public enum ChangeOperation {
+  CREATED,
+  /**
+   * The stored row changed, like a message whose text was edited.
+   */
+  UPDATED,
+  /**
+   * The row was deleted; the state is the row as it was.
+   */
+  DELETED
+}
@@ -0,0 +1,175 @@
+package live.yurii.yugram.changes;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The outbox of changes, the last seq handed out and the offsets of the consumers.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChangeOutboxRepository {
+
+  private static final String INSERT = """
+      INSERT INTO change_outbox (kind, entity_id, chat_id, operation, payload, created_at, origin)
+      VALUES (?, ?, ?, ?, ?, ?, ?)""";
+
+  /**
+   * Number the committed changes not in the feed yet after {@code last_seq}, in the order they were written.
+   */
+  private static final String SEQUENCE = """
+      UPDATE change_outbox o SET seq = ? + pending.n
+      FROM (SELECT id, ROW_NUMBER() OVER (ORDER BY id) AS n FROM change_outbox WHERE seq IS NULL ORDER BY id LIMIT ?) pending
+      WHERE o.id = pending.id""";
+
+  private static final String SELECT_AFTER = """
+      SELECT seq, kind, entity_id, chat_id, operation, payload, created_at, origin FROM change_outbox
+      WHERE seq > ? ORDER BY seq LIMIT ?""";
+
+  private static final String ACK = """
+      INSERT INTO change_consumers (consumer, acked_seq, updated_at) VALUES (?, ?, ?)
+      ON CONFLICT (consumer) DO UPDATE SET acked_seq = GREATEST(change_consumers.acked_seq, EXCLUDED.acked_seq),
+          updated_at = EXCLUDED.updated_at
+      RETURNING acked_seq""";
+
+  private static final RowMapper<Change> ROW_MAPPER = (rs, rowNum) -> new Change(
+      rs.getLong("seq"),
+      ChangeKind.valueOf(rs.getString("kind")),
+      rs.getLong("entity_id"),
+      rs.getObject("chat_id", Long.class),
+      ChangeOperation.valueOf(rs.getString("operation")),
+      rs.getString("payload"),
+      rs.getLong("created_at"),
+      rs.getString("origin"));
+
+  private static final RowMapper<Consumer> CONSUMER_MAPPER = (rs, rowNum) -> new Consumer(
+      rs.getString("consumer"),
+      rs.getLong("acked_seq"),
+      rs.getLong("updated_at"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Write changes in the current transaction, outside the feed until sequenced.
+   *
+   * @param origin the node writing them
+   */
+  public void insertAll(List<NewChange> changes, long now, String origin) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(INSERT, changes, changes.size(), (ps, change) -> {
+      ps.setString(1, change.kind().name());
+      ps.setLong(2, change.entityId());
+      ps.setObject(3, change.chatId());
+      ps.setString(4, change.operation().name());
+      ps.setString(5, change.payload());
+      ps.setLong(6, now);
+      ps.setString(7, origin);
+    });
+  }
+
+  /**
+   * Whether a committed change waits for its seq.
+   */
+  public boolean hasUnsequenced() {
+    return !jdbcTemplate.queryForList("SELECT 1 FROM change_outbox WHERE seq IS NULL LIMIT 1", Integer.class).isEmpty();
+  }
+
+  /**
+   * Lock the last seq handed out until the transaction ends. Statements after it see all changes committed
+   * before the lock was granted, so no two sequencers number the same change.
+   */
+  public long lockLastSeq() {
+    Long lastSeq = jdbcTemplate.queryForObject("SELECT last_seq FROM change_feed_state WHERE id = 1 FOR UPDATE", Long.class);
+    return lastSeq != null ? lastSeq : 0;
+  }
+
+  /**
+   * Give up to {@code limit} committed changes the seqs following {@code lastSeq}; call with the lock held.
+   *
+   * @return the number of changes sequenced
+   */
+  public int sequence(long lastSeq, int limit) {
+    int sequenced = jdbcTemplate.update(SEQUENCE, lastSeq, limit);
+    if (sequenced > 0) {
+      jdbcTemplate.update("UPDATE change_feed_state SET last_seq = ? WHERE id = 1", lastSeq + sequenced);
+    }
+    return sequenced;
+  }
+
+  /**
+   * Wake the listeners of all nodes once the transaction commits.
+   */
+  public void notify(String channel, long lastSeq) {
+    jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", Object.class, channel, Long.toString(lastSeq));
+  }
+
+  public long lastSeq() {
+    Long lastSeq = jdbcTemplate.queryForObject("SELECT last_seq FROM change_feed_state WHERE id = 1", Long.class);
+    return lastSeq != null ? lastSeq : 0;
+  }
+
+  /**
+   * Changes after {@code seq} in feed order, read through the unique index on seq.
+   */
+  public List<Change> findAfter(long seq, int limit) {
+    return jdbcTemplate.query(SELECT_AFTER, ROW_MAPPER, seq, limit);
+  }
+
+  /**
+   * Move a consumer's offset forward, never back.
+   *
+   * @return the offset now stored
+   */
+  public long ack(String consumer, long seq, long now) {
+    Long acked = jdbcTemplate.queryForObject(ACK, Long.class, consumer, seq, now);
+    return acked != null ? acked : seq;
+  }
+
+  public Optional<Consumer> findConsumer(String consumer) {
+    return jdbcTemplate.query("SELECT consumer, acked_seq, updated_at FROM change_consumers WHERE consumer = ?",
+        CONSUMER_MAPPER, consumer).stream().findFirst();
+  }
+
+  public List<Consumer> findConsumers() {
+    return jdbcTemplate.query("SELECT consumer, acked_seq, updated_at FROM change_consumers ORDER BY consumer",
+        CONSUMER_MAPPER);
+  }
+
+  /**
+   * The lowest offset of the consumers that acknowledged something since {@code since}.
+   */
+  public Optional<Long> minAckedSince(long since) {
+    return Optional.ofNullable(jdbcTemplate.queryForObject(
+        "SELECT MIN(acked_seq) FROM change_consumers WHERE updated_at >= ?", Long.class, since));
+  }
+
+  /**
+   * Delete the sequenced changes up to {@code seq} and the ones created before {@code createdBefore}.
+   *
+   * @return the number of changes deleted
+   */
+  public int prune(long seq, long createdBefore) {
+    return jdbcTemplate.update("DELETE FROM change_outbox WHERE seq <= ?", seq)
+        + jdbcTemplate.update("DELETE FROM change_outbox WHERE created_at < ? AND seq IS NOT NULL", createdBefore);
+  }
+
+  /**
+   * A change to write; {@code payload} is the JSON of the changed row as the read endpoints return it.
+   */
+  public record NewChange(ChangeKind kind, long entityId, Long chatId, ChangeOperation operation, String payload) {
+  }
+
+  public record Change(long seq, ChangeKind kind, long entityId, Long chatId, ChangeOperation operation, String payload,
+                       long createdAt, String origin) {
+  }
+
+  public record Consumer(String consumer, long ackedSeq, long updatedAt) {
+  }
+}
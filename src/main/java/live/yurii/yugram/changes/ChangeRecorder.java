@@ -0,0 +1,54 @@
+package live.yurii.yugram.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import live.yurii.yugram.changes.ChangeOutboxRepository.NewChange;
+import live.yurii.yugram.cluster.LeaseManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Writes changes to the outbox in the transaction of the rows they change, so that the feed has a change
+ * exactly when its row was committed.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChangeRecorder {
+
+  private final ChangeOutboxRepository outboxRepository;
+  private final ChangeFeedProperties properties;
+  private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher publisher;
+  private final LeaseManager leaseManager;
+
+  /**
+   * Record a change inside the current transaction.
+   *
+   * @param state the changed row as the read endpoints return it
+   */
+  public void record(ChangeKind kind, long entityId, Long chatId, ChangeOperation operation, Object state) {
+    if (properties.isEnabled()) {
+      recordAll(List.of(change(kind, entityId, chatId, operation, state)));
+    }
+  }
+
+  public void recordAll(List<NewChange> changes) {
+    if (!properties.isEnabled() || changes.isEmpty()) {
+      return;
+    }
+    outboxRepository.insertAll(changes, Instant.now().getEpochSecond(), leaseManager.nodeId());
+    publisher.publishEvent(new ChangesRecordedEvent(this, changes.size()));
+  }
+
+  public NewChange change(ChangeKind kind, long entityId, Long chatId, ChangeOperation operation, Object state) {
+    try {
+      return new NewChange(kind, entityId, chatId, operation, objectMapper.writeValueAsString(state));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize the change of " + kind + " " + entityId, e);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package live.yurii.yugram.changes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gives committed changes their place in the feed and wakes the consumers.
+ * <p>
+ * A seq taken from a sequence while writing would let a consumer read past a change that commits later
+ * with a lower one. Changes are therefore numbered only once committed, by one sequencer at a time across
+ * all nodes, in the order they were written. The sequencer of a node runs as soon as the node commits
+ * changes and every {@code sequence-interval} for the changes of other nodes; the numbering commits with a
+ * notification that wakes the polls of every node.
+ */
+@Slf4j
+@Component
+public class ChangeSequencer {
+
+  private final ChangeOutboxRepository outboxRepository;
+  private final ChangeFeedProperties properties;
+  private final ChangeNotifier notifier;
+  private final TransactionTemplate transactionTemplate;
+  private final Counter sequenced;
+  private final AtomicBoolean pending = new AtomicBoolean();
+  private volatile boolean running;
+  private volatile Thread thread;
+
+  public ChangeSequencer(ChangeOutboxRepository outboxRepository, ChangeFeedProperties properties, ChangeNotifier notifier,
+                         TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+    this.outboxRepository = outboxRepository;
+    this.properties = properties;
+    this.notifier = notifier;
+    this.transactionTemplate = transactionTemplate;
+    this.sequenced = Counter.builder("yugram.changes.sequenced")
+        .description("Changes given their place in the feed by this node")
+        .register(meterRegistry);
+    Gauge.builder("yugram.changes.last-seq", notifier, ChangeNotifier::lastSeq)
+        .description("The newest seq of the change feed known to this node")
+        .register(meterRegistry);
+    Gauge.builder("yugram.changes.waiting", notifier, ChangeNotifier::waiting)
+        .description("Polls of the change feed waiting for new changes")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    running = true;
+    thread = Thread.ofPlatform().name("change-sequencer").daemon().start(this::run);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    Thread sequencer = thread;
+    if (sequencer != null) {
+      LockSupport.unpark(sequencer);
+      sequencer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  @TransactionalEventListener
+  public void onChangesRecorded(ChangesRecordedEvent event) {
+    pending.set(true);
+    Thread sequencer = thread;
+    if (sequencer != null) {
+      LockSupport.unpark(sequencer);
+    }
+  }
+
+  private void run() {
+    while (running) {
+      pending.set(false);
+      try {
+        while (running && sequence() == properties.getSequenceBatchSize()) {
+          // a backlog, continue at once
+        }
+      } catch (RuntimeException e) {
+        log.error("Failed to sequence changes, retrying in {}", properties.getSequenceInterval(), e);
+      }
+      if (!pending.get()) {
+        LockSupport.parkNanos(properties.getSequenceInterval().toNanos());
+      }
+    }
+  }
+
+  /**
+   * Number the next batch of committed changes.
+   *
+   * @return the number of changes sequenced
+   */
+  int sequence() {
+    if (!outboxRepository.hasUnsequenced()) {
+      return 0;
+    }
+    long[] lastSeq = new long[1];
+    Integer count = transactionTemplate.execute(status -> {
+      long previous = outboxRepository.lockLastSeq();
+      int numbered = outboxRepository.sequence(previous, properties.getSequenceBatchSize());
+      lastSeq[0] = previous + numbered;
+      if (numbered > 0) {
+        outboxRepository.notify(properties.getChannel(), lastSeq[0]);
+      }
+      return numbered;
+    });
+    int numbered = count != null ? count : 0;
+    if (numbered > 0) {
+      sequenced.increment(numbered);
+      notifier.advance(lastSeq[0]);
+      log.debug("Sequenced {} changes up to {}", numbered, lastSeq[0]);
+    }
+    return numbered;
+  }
+}
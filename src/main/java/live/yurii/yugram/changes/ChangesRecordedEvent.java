@@ -0,0 +1,18 @@
+package live.yurii.yugram.changes;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link ChangeRecorder} inside the transaction that wrote changes to the outbox.
+ */
+@Getter
+public class ChangesRecordedEvent extends ApplicationEvent {
+
+  private final int count;
+
+  public ChangesRecordedEvent(Object source, int count) {
+    super(source);
+    this.count = count;
+  }
+}
@@ -0,0 +1,35 @@
+package live.yurii.yugram.changes;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * A change another node committed, published by {@link ChangeFollower} in feed order so that this node can
+ * update what it keeps in memory. Changes this node wrote are not published again.
+ */
+@Getter
+public class RemoteChangeEvent extends ApplicationEvent {
+
+  private final ChangeKind kind;
+  private final ChangeOperation operation;
+  private final long entityId;
+  private final Long chatId;
+  /**
+   * The changed row, of the kind's {@link ChangeKind#stateType()}.
+   */
+  private final Object state;
+
+  public RemoteChangeEvent(Object source, ChangeKind kind, ChangeOperation operation, long entityId, Long chatId,
+                           Object state) {
+    super(source);
+    this.kind = kind;
+    this.operation = operation;
+    this.entityId = entityId;
+    this.chatId = chatId;
+    this.state = state;
+  }
+
+  public <T> T getState(Class<T> type) {
+    return type.cast(state);
+  }
+}
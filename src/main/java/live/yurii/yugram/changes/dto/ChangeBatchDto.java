@@ -0,0 +1,24 @@
+package live.yurii.yugram.changes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeBatchDto {
+  private List<ChangeDto> changes;
+  /**
+   * The {@code after} of the next poll: the seq of the last change returned, or the one polled after.
+   */
+  private long next;
+  /**
+   * The newest seq known to the answering node.
+   */
+  private long lastSeq;
+}
@@ -0,0 +1,24 @@
+package live.yurii.yugram.changes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeConsumerDto {
+  private String consumer;
+  private long ackedSeq;
+  /**
+   * Changes in the feed the consumer has not acknowledged.
+   */
+  private long lag;
+  private long updatedAt;
+  /**
+   * Whether the consumer still holds back the pruning of the entries it has not acknowledged.
+   */
+  private boolean live;
+}
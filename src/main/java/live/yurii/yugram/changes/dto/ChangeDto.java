@@ -0,0 +1,26 @@
+package live.yurii.yugram.changes.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.ChangeOperation;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeDto {
+  private long seq;
+  private ChangeKind kind;
+  private long entityId;
+  private Long chatId;
+  private ChangeOperation operation;
+  private long createdAt;
+  /**
+   * The row after the change, as the read endpoints of its kind return it.
+   */
+  private JsonNode state;
+}
@@ -0,0 +1,15 @@
+package live.yurii.yugram.chats;
+
+import live.yurii.yugram.chats.dto.ChatDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ChatBatchRepository {
+
+  /**
+   * Find chats by id with a single {@code = ANY(?)} query. The result is in no particular order.
+   * A private chat stored by several accounts is found once, the one of the lowest account id.
+   */
+  List<ChatDto> findDtosByIds(Collection<Long> ids);
+}
@@ -0,0 +1,33 @@
+package live.yurii.yugram.chats;
+
+import live.yurii.yugram.chats.dto.ChatDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+class ChatBatchRepositoryImpl implements ChatBatchRepository {
+
+  private static final String SELECT_BY_IDS = "SELECT DISTINCT ON (id) id, type, title FROM chats WHERE id = ANY(?)"
+      + " ORDER BY id, account_id";
+
+  private static final RowMapper<ChatDto> ROW_MAPPER = (rs, rowNum) -> ChatDto.builder()
+      .id(rs.getLong("id"))
+      .type(rs.getString("type"))
+      .title(rs.getString("title"))
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public List<ChatDto> findDtosByIds(Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    return jdbcTemplate.query(SELECT_BY_IDS,
+        ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())), ROW_MAPPER);
+  }
+}
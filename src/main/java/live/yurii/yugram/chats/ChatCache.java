@@ -0,0 +1,51 @@
+package live.yurii.yugram.chats;
+
+import live.yurii.yugram.cache.EntityCache;
+import live.yurii.yugram.cache.EntityCacheProperties;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.RemoteChangeEvent;
+import live.yurii.yugram.chats.dto.ChatDto;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of chats. {@link ChatHandler} refreshes entries whenever it writes a chat, and the
+ * chats other nodes write arrive as {@link RemoteChangeEvent}s.
+ */
+@Component
+public class ChatCache extends EntityCache<ChatDto> {
+
+  private final ChatRepository chatRepository;
+
+  public ChatCache(ChatRepository chatRepository, EntityCacheProperties properties) {
+    super("chats", properties.getChats());
+    this.chatRepository = chatRepository;
+  }
+
+  @Override
+  protected ChatDto load(long id) {
+    return chatRepository.findDtoById(id).orElse(null);
+  }
+
+  @Override
+  protected Map<Long, ChatDto> loadAll(Set<? extends Long> ids) {
+    return chatRepository.findDtosByIds(Set.copyOf(ids)).stream()
+        .collect(Collectors.toMap(ChatDto::getId, Function.identity()));
+  }
+
+  public void refresh(ChatEntity entity) {
+    put(entity.getId(), ChatDto.fromEntity(entity));
+  }
+
+  @EventListener
+  public void onRemoteChange(RemoteChangeEvent event) {
+    if (event.getKind() == ChangeKind.CHAT) {
+      put(event.getEntityId(), event.getState(ChatDto.class));
+    }
+  }
+}
@@ -1,5 +1,10 @@
 package live.yurii.yugram.chats;
 
+import live.yurii.yugram.batch.BatchLookupProperties;
+import live.yurii.yugram.batch.IdBatch;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.cache.ConditionalRequests;
+import live.yurii.yugram.chats.dto.ChatBatchResponse;
 import live.yurii.yugram.chats.dto.ChatDto;
 import live.yurii.yugram.chats.dto.ChatPageResponse;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +14,9 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -18,12 +26,17 @@ import org.springframework.web.bind.annotation.*;
 public class ChatController {
 
   private final ChatRepository chatRepository;
+  private final ChatCache chatCache;
+  private final ConditionalRequests conditionalRequests;
+  private final ChangeVersions changeVersions;
+  private final BatchLookupProperties batchLookupProperties;
   private static final int DEFAULT_PAGE_SIZE = 20;
 
   @GetMapping("/all")
   public ResponseEntity<ChatPageResponse> getAllChats(
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "20") int size) {
+      @RequestParam(defaultValue = "20") int size,
+      WebRequest request) {
 
     log.debug("Getting all chats with page: {}, size: {}", page, size);
 
@@ -32,25 +45,26 @@ public class ChatController {
     int normalizedSize = Math.max(1, Math.min(size, DEFAULT_PAGE_SIZE));
     Pageable pageable = PageRequest.of(normalizedPage, normalizedSize);
 
-    Page<ChatEntity> chatPage = chatRepository.findAll(pageable);
-
-    ChatPageResponse response = ChatPageResponse.builder()
-        .content(chatPage.getContent().stream().map(ChatDto::fromEntity).toList())
-        .page(chatPage.getNumber())
-        .size(chatPage.getSize())
-        .totalElements(chatPage.getTotalElements())
-        .totalPages(chatPage.getTotalPages())
-        .first(chatPage.isFirst())
-        .last(chatPage.isLast())
-        .build();
-
-    return ResponseEntity.ok(response);
+    return conditionalRequests.respond(request, changeVersions.chatsTag(), () -> {
+      Page<ChatDto> chatPage = chatRepository.findAllDtos(pageable);
+
+      return ChatPageResponse.builder()
+          .content(chatPage.getContent())
+          .page(chatPage.getNumber())
+          .size(chatPage.getSize())
+          .totalElements(chatPage.getTotalElements())
+          .totalPages(chatPage.getTotalPages())
+          .first(chatPage.isFirst())
+          .last(chatPage.isLast())
+          .build();
+    });
   }
 
   @GetMapping("/withMessages")
   public ResponseEntity<ChatPageResponse> getChatsWithMessages(
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "20") int size) {
+      @RequestParam(defaultValue = "20") int size,
+      WebRequest request) {
 
     log.debug("Getting chats with messages - page: {}, size: {}", page, size);
 
@@ -59,27 +73,54 @@ public class ChatController {
     int normalizedSize = Math.max(1, Math.min(size, DEFAULT_PAGE_SIZE));
     Pageable pageable = PageRequest.of(normalizedPage, normalizedSize);
 
-    Page<ChatEntity> chatPage = chatRepository.findChatsWithMessages(pageable);
-
-    ChatPageResponse response = ChatPageResponse.builder()
-        .content(chatPage.getContent().stream().map(ChatDto::fromEntity).toList())
-        .page(chatPage.getNumber())
-        .size(chatPage.getSize())
-        .totalElements(chatPage.getTotalElements())
-        .totalPages(chatPage.getTotalPages())
-        .first(chatPage.isFirst())
-        .last(chatPage.isLast())
-        .build();
-
-    return ResponseEntity.ok(response);
+    return conditionalRequests.respond(request, changeVersions.chatsTag() + "." + changeVersions.messagesTag(), () -> {
+      Page<ChatDto> chatPage = chatRepository.findChatsWithMessages(pageable);
+
+      return ChatPageResponse.builder()
+          .content(chatPage.getContent())
+          .page(chatPage.getNumber())
+          .size(chatPage.getSize())
+          .totalElements(chatPage.getTotalElements())
+          .totalPages(chatPage.getTotalPages())
+          .first(chatPage.isFirst())
+          .last(chatPage.isLast())
+          .build();
+    });
   }
 
   @GetMapping("/byId/{id}")
   public ResponseEntity<ChatDto> getChatById(@PathVariable Long id) {
     log.debug("Getting chat by id: {}", id);
 
-    return chatRepository.findById(id)
-        .map(chat -> ResponseEntity.ok(ChatDto.fromEntity(chat)))
+    return chatCache.get(id)
+        .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
   }
-}
\ No newline at end of file
+
+  @GetMapping("/byIds")
+  public ResponseEntity<ChatBatchResponse> getChatsByIds(@RequestParam List<Long> ids) {
+    log.debug("Getting chats by {} ids", ids.size());
+
+    return ResponseEntity.ok(findChatsByIds(ids));
+  }
+
+  /**
+   * Same as the GET variant, for id sets that do not fit into a URL.
+   */
+  @PostMapping("/byIds")
+  public ResponseEntity<ChatBatchResponse> postChatsByIds(@RequestBody List<Long> ids) {
+    log.debug("Getting chats by {} ids", ids.size());
+
+    return ResponseEntity.ok(findChatsByIds(ids));
+  }
+
+  private ChatBatchResponse findChatsByIds(List<Long> requested) {
+    IdBatch batch = IdBatch.of(requested, batchLookupProperties.getMaxIds());
+    IdBatch.Result<ChatDto> result = batch.arrange(chatCache.getAll(batch.ids()));
+
+    return ChatBatchResponse.builder()
+        .content(result.values())
+        .missingIds(result.missingIds())
+        .build();
+  }
+}
@@ -6,6 +6,7 @@ import org.drinkless.tdlib.*;
 
 @Entity
 @Table(name = "chats")
+@IdClass(ChatKey.class)
 @Getter
 @Setter
 @ToString
@@ -24,6 +25,10 @@ public class ChatEntity {
   @Column(name = "title")
   private String title;
 
+  @Id
+  @Column(name = "account_id")
+  private int accountId; // the account whose chat it is, see TdLibParameters.storingAccount
+
   public ChatEntity(long id) {
     this.id = id;
   }
@@ -38,6 +43,11 @@ public class ChatEntity {
     return this;
   }
 
+  public ChatEntity withAccountId(int accountId) {
+    this.accountId = accountId;
+    return this;
+  }
+
   @Getter
   public enum ChatType {
     PRIVATE(1579049844),
@@ -1,10 +1,15 @@
 package live.yurii.yugram.chats;
 
+import live.yurii.yugram.cache.*;
+import live.yurii.yugram.changes.*;
+import live.yurii.yugram.chats.dto.*;
+import live.yurii.yugram.configuration.*;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.drinkless.tdlib.*;
 import org.springframework.context.event.*;
 import org.springframework.stereotype.*;
+import org.springframework.transaction.support.*;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -12,13 +17,35 @@ import org.springframework.stereotype.*;
 public class ChatHandler {
 
   private final ChatRepository chatRepository;
+  private final ChatCache chatCache;
+  private final ChangeVersions changeVersions;
+  private final ChangeRecorder changeRecorder;
+  private final TransactionTemplate transactionTemplate;
 
   @EventListener
   public void handle(NewChatEvent event) {
     TdApi.Chat tgChat = event.getUpdateNewChat().chat;
-    chatRepository.findById(tgChat.id).ifPresentOrElse(
-        entity -> chatRepository.save(updateEntity(entity, tgChat)),
-        () -> chatRepository.save(createEntity(tgChat)));
+    int account = TdLibParameters.storingAccount(event.getAccountId(), tgChat.id);
+    ChatEntity saved = transactionTemplate.execute(status -> chatRepository.findById(new ChatKey(tgChat.id, account))
+        .map(entity -> {
+          boolean changed = updateEntity(entity, tgChat);
+          ChatEntity updated = chatRepository.save(entity);
+          if (changed) {
+            changeRecorder.record(ChangeKind.CHAT, updated.getId(), updated.getId(), ChangeOperation.UPDATED,
+                ChatDto.fromEntity(updated));
+          }
+          return updated;
+        })
+        .orElseGet(() -> {
+          ChatEntity created = chatRepository.save(createEntity(tgChat).withAccountId(account));
+          changeRecorder.record(ChangeKind.CHAT, created.getId(), created.getId(), ChangeOperation.CREATED,
+              ChatDto.fromEntity(created));
+          return created;
+        }));
+    // refresh only after commit, so readers never see uncommitted rows
+    chatCache.refresh(saved);
+    changeVersions.nameChanged(saved.getId());
+    changeVersions.chatsChanged();
   }
 
   private ChatEntity createEntity(TdApi.Chat tgChat) {
@@ -27,16 +54,22 @@ public class ChatHandler {
         .withTitle(tgChat.title);
   }
 
-  private ChatEntity updateEntity(ChatEntity entity, TdApi.Chat tgChat) {
+  /**
+   * @return whether the title or the type changed
+   */
+  private boolean updateEntity(ChatEntity entity, TdApi.Chat tgChat) {
+    boolean changed = false;
     if (tgChat.title != null && !tgChat.title.equals(entity.getTitle())) {
       entity.setTitle(tgChat.title);
+      changed = true;
     }
     if (tgChat.type != null) {
       ChatEntity.ChatType newType = ChatEntity.ChatType.fromConstructor(tgChat.type.getConstructor());
       if (!newType.equals(entity.getType())) {
         entity.setType(newType);
+        changed = true;
       }
     }
-    return entity;
+    return changed;
   }
 }
@@ -0,0 +1,20 @@
+package live.yurii.yugram.chats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Primary key of {@link ChatEntity}. Every account has its own private chats and basic groups, and a private
+ * chat's id is the other user's, so two accounts talking to the same user have two chats of that id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatKey implements Serializable {
+
+  private long id;
+  private int accountId;
+}
@@ -1,14 +1,40 @@
 package live.yurii.yugram.chats;
 
+import live.yurii.yugram.chats.dto.ChatDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The {@code *Dtos} queries select {@link ChatDto}s directly, nothing enters the persistence context.
+ */
 @Repository
-public interface ChatRepository extends JpaRepository<ChatEntity, Long> {
+public interface ChatRepository extends JpaRepository<ChatEntity, ChatKey>, ChatBatchRepository {
+
+    String SELECT_DTO = "SELECT new live.yurii.yugram.chats.dto.ChatDto(c.id, CAST(c.type AS String), c.title)"
+        + " FROM ChatEntity c";
+
+    String WITH_MESSAGES = " WHERE EXISTS (SELECT 1 FROM MessageEntity m WHERE m.chatId = c.id AND m.accountId = c.accountId)";
+
+    @Transactional(readOnly = true)
+    @Query(value = SELECT_DTO, countQuery = "SELECT COUNT(c) FROM ChatEntity c")
+    Page<ChatDto> findAllDtos(Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(value = SELECT_DTO + WITH_MESSAGES + " ORDER BY c.id",
+        countQuery = "SELECT COUNT(c) FROM ChatEntity c" + WITH_MESSAGES)
+    Page<ChatDto> findChatsWithMessages(Pageable pageable);
 
-    @Query("SELECT DISTINCT c FROM ChatEntity c INNER JOIN MessageEntity m ON c.id = m.chatId ORDER BY c.id")
-    Page<ChatEntity> findChatsWithMessages(Pageable pageable);
+    /**
+     * A chat several accounts have their own of is the one {@link #findDtosByIds} picks.
+     */
+    default Optional<ChatDto> findDtoById(Long id) {
+        return findDtosByIds(List.of(id)).stream().findFirst();
+    }
 }
@@ -8,10 +8,12 @@ import org.springframework.context.*;
 @Getter
 public class NewChatEvent extends ApplicationEvent {
 
+  private final int accountId;
   private final TdApi.UpdateNewChat updateNewChat;
 
-  public NewChatEvent(MainUpdateHandler source, TdApi.UpdateNewChat updateNewChat) {
+  public NewChatEvent(MainUpdateHandler source, int accountId, TdApi.UpdateNewChat updateNewChat) {
     super(source);
+    this.accountId = accountId;
     this.updateNewChat = updateNewChat;
   }
 }
@@ -0,0 +1,17 @@
+package live.yurii.yugram.chats.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatBatchResponse {
+  private List<ChatDto> content;
+  private List<Long> missingIds;
+}
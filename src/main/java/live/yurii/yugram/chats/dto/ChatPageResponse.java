@@ -1,5 +1,7 @@
 package live.yurii.yugram.chats.dto;
 
+import live.yurii.yugram.formats.Column;
+import live.yurii.yugram.formats.ColumnarPage;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,7 +13,13 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class ChatPageResponse {
+public class ChatPageResponse implements ColumnarPage<ChatDto> {
+
+  private static final List<Column<ChatDto>> COLUMNS = List.of(
+      Column.of("id", ChatDto::getId),
+      Column.of("type", ChatDto::getType),
+      Column.of("title", ChatDto::getTitle));
+
   private List<ChatDto> content;
   private int page;
   private int size;
@@ -19,4 +27,9 @@ public class ChatPageResponse {
   private int totalPages;
   private boolean first;
   private boolean last;
-}
\ No newline at end of file
+
+  @Override
+  public List<Column<ChatDto>> columns() {
+    return COLUMNS;
+  }
+}
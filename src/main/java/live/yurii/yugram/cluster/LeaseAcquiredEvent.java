@@ -0,0 +1,21 @@
+package live.yurii.yugram.cluster;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link LeaseManager} when this node starts writing for a resource, before any of its updates
+ * are handled.
+ */
+@Getter
+public class LeaseAcquiredEvent extends ApplicationEvent {
+
+  private final LeasedResource resource;
+  private final long token;
+
+  public LeaseAcquiredEvent(Object source, LeasedResource resource, long token) {
+    super(source);
+    this.resource = resource;
+    this.token = token;
+  }
+}
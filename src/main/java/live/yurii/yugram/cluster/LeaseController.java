@@ -0,0 +1,41 @@
+package live.yurii.yugram.cluster;
+
+import live.yurii.yugram.cluster.dto.ClusterDto;
+import live.yurii.yugram.cluster.dto.LeaseDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/cluster")
+@CrossOrigin(origins = "*")
+public class LeaseController {
+
+  private final LeaseManager leaseManager;
+
+  /**
+   * The answering node and the leases of all nodes.
+   */
+  @GetMapping
+  public ResponseEntity<ClusterDto> getCluster() {
+    log.debug("Getting the leases of the cluster");
+
+    List<LeaseDto> leases = leaseManager.isEnabled()
+        ? leaseManager.leases().stream().map(LeaseDto::fromLease).toList()
+        : List.of();
+    return ResponseEntity.ok(ClusterDto.builder()
+        .nodeId(leaseManager.nodeId())
+        .leasesEnabled(leaseManager.isEnabled())
+        .ownedShards(leaseManager.ownedShards())
+        .leases(leases)
+        .build());
+  }
+}
@@ -0,0 +1,19 @@
+package live.yurii.yugram.cluster;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link LeaseManager} when this node stops writing for a resource, because another node took
+ * the lease over or this one gave it up.
+ */
+@Getter
+public class LeaseLostEvent extends ApplicationEvent {
+
+  private final LeasedResource resource;
+
+  public LeaseLostEvent(Object source, LeasedResource resource) {
+    super(source);
+    this.resource = resource;
+  }
+}
@@ -0,0 +1,11 @@
+package live.yurii.yugram.cluster;
+
+/**
+ * Thrown inside a write transaction of a resource whose lease this node no longer holds, rolling the write back.
+ */
+public class LeaseLostException extends RuntimeException {
+
+  public LeaseLostException(LeasedResource resource, String nodeId) {
+    super("Node " + nodeId + " does not hold the lease of " + resource.key());
+  }
+}
@@ -0,0 +1,360 @@
+package live.yurii.yugram.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.cluster.LeaseRepository.Lease;
+import live.yurii.yugram.cluster.LeasedResource.Kind;
+import live.yurii.yugram.configuration.TdLibParameters;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Decides which node writes for which account and chat shard, so that several nodes can share one database.
+ * <p>
+ * Every node runs a client of each account and so receives all updates, but only the owner of a chat's shard
+ * stores its messages and chats, and only the owner of an account stores the users it sees. Ownership is a
+ * lease in the database, renewed by a heartbeat; a node takes at most its fair share of the leases given the
+ * nodes alive, hands its surplus over when nodes join and picks up the leases of dead nodes once they expire.
+ * The messages of a shard that arrive while it changes hands end up as gaps that the new owner repairs.
+ * <p>
+ * A node stops writing for a lease as soon as its TTL may have run out since the last successful renewal.
+ * Message writes also check the lease's fencing token right before their transaction commits, so a node that was
+ * paused past its TTL cannot overwrite the newer owner's rows. Reads are served by every node.
+ * <p>
+ * The heartbeat runs on its own thread: a late heartbeat costs every lease, so it must not wait behind the
+ * {@code @Scheduled} jobs, some of which block for longer than the TTL.
+ * <p>
+ * With leases disabled the node owns everything, which is only safe when it is the only one.
+ */
+@Slf4j
+@Component
+public class LeaseManager {
+
+  private static final String NODE = "node:";
+
+  private final LeaseRepository leaseRepository;
+  private final LeaseProperties properties;
+  private final ApplicationEventPublisher publisher;
+  private final String nodeId;
+  private final List<LeasedResource> accounts;
+  private final List<LeasedResource> chatShards;
+  private final Map<LeasedResource, Held> held = new ConcurrentHashMap<>();
+  private final Counter acquired;
+  private final Counter lost;
+  private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("lease-heartbeat").daemon().factory());
+  private ScheduledFuture<?> scheduledHeartbeat;
+  private volatile int liveNodes = 1;
+
+  public LeaseManager(LeaseRepository leaseRepository, LeaseProperties properties, TdLibParameters tdLibParameters,
+                      ApplicationEventPublisher publisher, MeterRegistry meterRegistry) {
+    this.leaseRepository = leaseRepository;
+    this.properties = properties;
+    this.publisher = publisher;
+    this.nodeId = properties.getNodeId() != null && !properties.getNodeId().isBlank()
+        ? properties.getNodeId()
+        : hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    this.accounts = tdLibParameters.resolveAccounts().stream()
+        .map(account -> LeasedResource.account(account.getId()))
+        .toList();
+    this.chatShards = IntStream.range(0, properties.getChatShards()).mapToObj(LeasedResource::chatShard).toList();
+    this.acquired = Counter.builder("yugram.leases.acquired")
+        .description("Leases this node took over")
+        .register(meterRegistry);
+    this.lost = Counter.builder("yugram.leases.lost")
+        .description("Leases this node lost or handed over")
+        .register(meterRegistry);
+    for (Kind kind : Kind.values()) {
+      Gauge.builder("yugram.leases.owned", this, manager -> manager.ownedCount(kind))
+          .description("Leases this node holds")
+          .tag("kind", kind.tag())
+          .register(meterRegistry);
+    }
+    Gauge.builder("yugram.leases.nodes", this, manager -> manager.liveNodes)
+        .description("Nodes with a live heartbeat, this one included")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Take the leases before the queued updates are handled, so that they are not dropped as not owned.
+   */
+  @EventListener(ContextRefreshedEvent.class)
+  public synchronized void start() {
+    if (properties.isEnabled() && scheduledHeartbeat == null) {
+      log.info("Node {} takes its share of {} account and {} chat shard leases", nodeId, accounts.size(), chatShards.size());
+      heartbeat();
+      long interval = properties.getHeartbeatIntervalMs();
+      scheduledHeartbeat = heartbeats.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public synchronized void heartbeat() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    long started = System.nanoTime();
+    long ttl = properties.getTtl().toSeconds();
+    try {
+      leaseRepository.acquire(NODE + nodeId, nodeId, ttl);
+      liveNodes = Math.max(1, leaseRepository.countLive(NODE));
+      balance(accounts, started, ttl);
+      balance(chatShards, started, ttl);
+      leaseRepository.deleteExpired(NODE, properties.getForgetNodesAfter().toSeconds());
+    } catch (RuntimeException e) {
+      log.error("Heartbeat of node {} failed, its leases stay valid until their TTL runs out", nodeId, e);
+    }
+  }
+
+  /**
+   * Renew the leases held, hand over the ones beyond the fair share and take free ones up to it.
+   */
+  private void balance(List<LeasedResource> resources, long started, long ttl) {
+    int fairShare = Math.ceilDiv(resources.size(), liveNodes);
+    List<LeasedResource> owned = new ArrayList<>();
+    for (LeasedResource resource : resources) {
+      Held current = held.get(resource);
+      if (current == null) {
+        continue;
+      }
+      OptionalLong token = leaseRepository.acquire(resource.key(), nodeId, ttl);
+      if (token.isPresent() && token.getAsLong() == current.token()) {
+        held.put(resource, new Held(current.token(), started + properties.getTtl().toNanos()));
+        owned.add(resource);
+      } else {
+        log.warn("Node {} lost the lease of {}", nodeId, resource.key());
+        lose(resource);
+        token.ifPresent(newToken -> {
+          // expired and taken over in between, writes of the old token are fenced off
+          take(resource, newToken, started);
+          owned.add(resource);
+        });
+      }
+    }
+    while (owned.size() > fairShare) {
+      LeasedResource surplus = owned.removeLast();
+      lose(surplus);
+      leaseRepository.release(surplus.key(), nodeId);
+      log.info("Node {} handed over the lease of {}, {} nodes share {} leases", nodeId, surplus.key(), liveNodes,
+          resources.size());
+    }
+    for (LeasedResource resource : resources) {
+      if (owned.size() >= fairShare) {
+        break;
+      }
+      if (held.containsKey(resource)) {
+        continue;
+      }
+      OptionalLong token = leaseRepository.acquire(resource.key(), nodeId, ttl);
+      if (token.isPresent()) {
+        take(resource, token.getAsLong(), started);
+        owned.add(resource);
+      }
+    }
+  }
+
+  private void take(LeasedResource resource, long token, long started) {
+    held.put(resource, new Held(token, started + properties.getTtl().toNanos()));
+    acquired.increment();
+    log.info("Node {} took the lease of {} with token {}", nodeId, resource.key(), token);
+    publisher.publishEvent(new LeaseAcquiredEvent(this, resource, token));
+  }
+
+  private void lose(LeasedResource resource) {
+    held.remove(resource);
+    lost.increment();
+    publisher.publishEvent(new LeaseLostEvent(this, resource));
+  }
+
+  @PreDestroy
+  public void stop() {
+    release();
+    heartbeats.shutdownNow();
+  }
+
+  /**
+   * Stop the heartbeat and let the leases go.
+   */
+  public synchronized void release() {
+    if (scheduledHeartbeat != null) {
+      scheduledHeartbeat.cancel(false);
+      scheduledHeartbeat = null;
+    }
+    if (!properties.isEnabled()) {
+      return;
+    }
+    try {
+      for (LeasedResource resource : held.keySet()) {
+        leaseRepository.release(resource.key(), nodeId);
+      }
+      leaseRepository.release(NODE + nodeId, nodeId);
+      log.info("Node {} released {} leases", nodeId, held.size());
+    } catch (RuntimeException e) {
+      log.warn("Failed to release the leases of node {}, they expire after {}", nodeId, properties.getTtl(), e);
+    }
+    held.clear();
+  }
+
+  public boolean isEnabled() {
+    return properties.isEnabled();
+  }
+
+  public String nodeId() {
+    return nodeId;
+  }
+
+  public int shardCount() {
+    return properties.getChatShards();
+  }
+
+  public int shardOf(long chatId) {
+    return Math.floorMod(chatId, properties.getChatShards());
+  }
+
+  public boolean owns(LeasedResource resource) {
+    if (!properties.isEnabled()) {
+      return true;
+    }
+    Held lease = held.get(resource);
+    return lease != null && System.nanoTime() - lease.validUntil() < 0;
+  }
+
+  public boolean ownsChat(long chatId) {
+    return owns(LeasedResource.chatShard(shardOf(chatId)));
+  }
+
+  public boolean ownsAccount(int accountId) {
+    return owns(LeasedResource.account(accountId));
+  }
+
+  /**
+   * Whether no other node writes anything, as when leases are disabled.
+   */
+  public boolean ownsEverything() {
+    return !properties.isEnabled()
+        || accounts.stream().allMatch(this::owns) && chatShards.stream().allMatch(this::owns);
+  }
+
+  /**
+   * The chat shards this node writes for, all of them with leases disabled.
+   */
+  public Set<Integer> ownedShards() {
+    Set<Integer> shards = new TreeSet<>();
+    chatShards.stream().filter(this::owns).forEach(shard -> shards.add(shard.id()));
+    return shards;
+  }
+
+  /**
+   * Make the current transaction fail unless this node still holds the lease of the chat's shard.
+   */
+  public void fenceChat(long chatId) {
+    fence(List.of(LeasedResource.chatShard(shardOf(chatId))));
+  }
+
+  /**
+   * Make the current transaction fail unless this node still holds all the leases. The tokens of all the leases
+   * fenced in a transaction are checked by one query right before it commits, outside a transaction at once.
+   */
+  public void fence(Collection<LeasedResource> resources) {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      checkTokens(resources);
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Set<LeasedResource> fenced = (Set<LeasedResource>) TransactionSynchronizationManager.getResource(this);
+    if (fenced == null) {
+      Set<LeasedResource> pending = new HashSet<>();
+      TransactionSynchronizationManager.bindResource(this, pending);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void beforeCommit(boolean readOnly) {
+          checkTokens(pending);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(LeaseManager.this);
+        }
+      });
+      fenced = pending;
+    }
+    for (LeasedResource resource : resources) {
+      if (!held.containsKey(resource)) {
+        throw new LeaseLostException(resource, nodeId);
+      }
+      fenced.add(resource);
+    }
+  }
+
+  private void checkTokens(Collection<LeasedResource> resources) {
+    Map<String, Long> tokens = new HashMap<>();
+    for (LeasedResource resource : resources) {
+      Held lease = held.get(resource);
+      if (lease == null) {
+        throw new LeaseLostException(resource, nodeId);
+      }
+      tokens.put(resource.key(), lease.token());
+    }
+    if (tokens.isEmpty()) {
+      return;
+    }
+    Set<String> stillHeld = leaseRepository.findHeld(nodeId, tokens);
+    for (LeasedResource resource : resources) {
+      if (!stillHeld.contains(resource.key())) {
+        throw new LeaseLostException(resource, nodeId);
+      }
+    }
+  }
+
+  /**
+   * Number of the current {@code remote-change-window} since the epoch.
+   */
+  public long remoteChangeWindow() {
+    return System.currentTimeMillis() / Math.max(1, properties.getRemoteChangeWindow().toMillis());
+  }
+
+  public List<Lease> leases() {
+    return leaseRepository.findAll();
+  }
+
+  private int ownedCount(Kind kind) {
+    return (int) held.keySet().stream().filter(resource -> resource.kind() == kind && owns(resource)).count();
+  }
+
+  private static String hostName() {
+    String hostName = System.getenv("HOSTNAME");
+    return hostName != null && !hostName.isBlank() ? hostName : "node";
+  }
+
+  /**
+   * A lease of this node, to be written for until {@code validUntil} in {@link System#nanoTime()}.
+   */
+  private record Held(long token, long validUntil) {
+  }
+}
@@ -0,0 +1,52 @@
+package live.yurii.yugram.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for running several nodes against one database.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.leases")
+public class LeaseProperties {
+
+  /**
+   * Take leases before writing. Without them the node writes everything, which is only safe when it is the only one.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Name of this node in the lease table, unique among the nodes. A random one is made up when empty.
+   */
+  private String nodeId;
+
+  /**
+   * How long a lease stays valid without a heartbeat; a dead node's work is taken over after this.
+   */
+  private Duration ttl = Duration.ofSeconds(15);
+
+  /**
+   * Delay in milliseconds between two heartbeats, well below the TTL.
+   */
+  private long heartbeatIntervalMs = 5000;
+
+  /**
+   * Number of chat shards, the units in which chats are assigned to nodes. Must be the same on all nodes.
+   */
+  private int chatShards = 16;
+
+  /**
+   * Node leases expired longer than this are deleted.
+   */
+  private Duration forgetNodesAfter = Duration.ofHours(1);
+
+  /**
+   * With the change feed disabled, a node that does not own every chat changes the ETags of data written
+   * elsewhere at least this often, so its responses lag the writes of other nodes by no more than this.
+   */
+  private Duration remoteChangeWindow = Duration.ofSeconds(1);
+}
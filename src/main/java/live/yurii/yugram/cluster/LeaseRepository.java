@@ -0,0 +1,107 @@
+package live.yurii.yugram.cluster;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Leases with their owner and fencing token. All times come from the database clock.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LeaseRepository {
+
+  private static final String NOW = "CAST(EXTRACT(EPOCH FROM clock_timestamp()) AS BIGINT)";
+
+  /**
+   * Take a free or expired lease, or renew one held by the same owner. The token only grows when the owner changes.
+   */
+  private static final String ACQUIRE = """
+      INSERT INTO leases AS l (resource, owner, token, acquired_at, renewed_at, expires_at)
+      SELECT ?, ?, 1, clock.now, clock.now, clock.now + ? FROM (SELECT %s AS now) clock
+      ON CONFLICT (resource) DO UPDATE SET
+          owner = EXCLUDED.owner,
+          token = CASE WHEN l.owner = EXCLUDED.owner THEN l.token ELSE l.token + 1 END,
+          acquired_at = CASE WHEN l.owner = EXCLUDED.owner THEN l.acquired_at ELSE EXCLUDED.acquired_at END,
+          renewed_at = EXCLUDED.renewed_at,
+          expires_at = EXCLUDED.expires_at
+      WHERE l.owner = EXCLUDED.owner OR l.expires_at <= EXCLUDED.renewed_at
+      RETURNING token""".formatted(NOW);
+
+  private static final RowMapper<Lease> ROW_MAPPER = (rs, rowNum) -> new Lease(
+      rs.getString("resource"),
+      rs.getString("owner"),
+      rs.getLong("token"),
+      rs.getLong("acquired_at"),
+      rs.getLong("renewed_at"),
+      rs.getLong("expires_at"),
+      rs.getBoolean("expired"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * @return the token of the lease, or empty if another owner holds it
+   */
+  public OptionalLong acquire(String resource, String owner, long ttlSeconds) {
+    List<Long> tokens = jdbcTemplate.queryForList(ACQUIRE, Long.class, resource, owner, ttlSeconds);
+    return tokens.isEmpty() ? OptionalLong.empty() : OptionalLong.of(tokens.getFirst());
+  }
+
+  /**
+   * Let the lease expire at once, so that another node can take it on its next heartbeat.
+   */
+  public void release(String resource, String owner) {
+    jdbcTemplate.update("UPDATE leases SET expires_at = 0 WHERE resource = ? AND owner = ?", resource, owner);
+  }
+
+  /**
+   * The resources of {@code tokens} whose lease the owner still holds with that token, in a single query. No row is
+   * locked, so a heartbeat renewing the leases never waits for a write.
+   */
+  public Set<String> findHeld(String owner, Map<String, Long> tokens) {
+    List<String> resources = new ArrayList<>(tokens.keySet());
+    return new HashSet<>(jdbcTemplate.query("""
+            SELECT resource FROM leases WHERE owner = ? AND (resource, token) IN (SELECT * FROM unnest(?, ?))""",
+        ps -> {
+          ps.setString(1, owner);
+          ps.setArray(2, ps.getConnection().createArrayOf("varchar", resources.toArray()));
+          ps.setArray(3, ps.getConnection().createArrayOf("bigint", resources.stream().map(tokens::get).toArray()));
+        },
+        (rs, rowNum) -> rs.getString("resource")));
+  }
+
+  /**
+   * Unexpired leases whose resource starts with the prefix.
+   */
+  public int countLive(String prefix) {
+    Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM leases WHERE resource LIKE ? AND expires_at > " + NOW,
+        Integer.class, prefix + "%");
+    return count != null ? count : 0;
+  }
+
+  /**
+   * Delete the leases with the prefix expired for longer than {@code seconds}.
+   */
+  public int deleteExpired(String prefix, long seconds) {
+    return jdbcTemplate.update("DELETE FROM leases WHERE resource LIKE ? AND expires_at < " + NOW + " - ?",
+        prefix + "%", seconds);
+  }
+
+  public List<Lease> findAll() {
+    return jdbcTemplate.query("""
+        SELECT resource, owner, token, acquired_at, renewed_at, expires_at, expires_at <= %s AS expired
+        FROM leases ORDER BY resource""".formatted(NOW), ROW_MAPPER);
+  }
+
+  public record Lease(String resource, String owner, long token, long acquiredAt, long renewedAt, long expiresAt,
+                      boolean expired) {
+  }
+}
@@ -0,0 +1,37 @@
+package live.yurii.yugram.cluster;
+
+/**
+ * Something only one node at a time may write for: the users of an account or the chats of a shard.
+ */
+public record LeasedResource(Kind kind, int id) {
+
+  public static LeasedResource account(int accountId) {
+    return new LeasedResource(Kind.ACCOUNT, accountId);
+  }
+
+  public static LeasedResource chatShard(int shard) {
+    return new LeasedResource(Kind.CHAT_SHARD, shard);
+  }
+
+  /**
+   * The name of the lease in the lease table.
+   */
+  public String key() {
+    return kind.prefix + id;
+  }
+
+  public enum Kind {
+    ACCOUNT("account:"),
+    CHAT_SHARD("chat-shard:");
+
+    private final String prefix;
+
+    Kind(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public String tag() {
+      return name().toLowerCase().replace('_', '-');
+    }
+  }
+}
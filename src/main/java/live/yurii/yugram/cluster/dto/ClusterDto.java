@@ -0,0 +1,26 @@
+package live.yurii.yugram.cluster.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterDto {
+  /**
+   * The node answering.
+   */
+  private String nodeId;
+  private boolean leasesEnabled;
+  /**
+   * Chat shards the answering node writes for.
+   */
+  private Set<Integer> ownedShards;
+  private List<LeaseDto> leases;
+}
@@ -0,0 +1,36 @@
+package live.yurii.yugram.cluster.dto;
+
+import live.yurii.yugram.cluster.LeaseRepository.Lease;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaseDto {
+  private String resource;
+  private String owner;
+  /**
+   * Fencing token, grows with every change of owner.
+   */
+  private long token;
+  private long acquiredAt;
+  private long renewedAt;
+  private long expiresAt;
+  private boolean expired;
+
+  public static LeaseDto fromLease(Lease lease) {
+    return LeaseDto.builder()
+        .resource(lease.resource())
+        .owner(lease.owner())
+        .token(lease.token())
+        .acquiredAt(lease.acquiredAt())
+        .renewedAt(lease.renewedAt())
+        .expiresAt(lease.expiresAt())
+        .expired(lease.expired())
+        .build();
+  }
+}
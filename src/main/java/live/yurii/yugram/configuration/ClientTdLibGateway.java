@@ -0,0 +1,38 @@
+package live.yurii.yugram.configuration;
+
+import live.yurii.yugram.configuration.TdLibAccounts.TdLibAccount;
+import lombok.RequiredArgsConstructor;
+import org.drinkless.tdlib.TdApi;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link TdLibGateway} of the native clients. Futures complete on TDLib's thread, callers that do more than
+ * hand the result on should continue asynchronously.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientTdLibGateway implements TdLibGateway {
+
+  private final TdLibAccounts accounts;
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends TdApi.Object> CompletableFuture<T> send(int accountId, TdApi.Function<T> function) {
+    Optional<TdLibAccount> account = accounts.find(accountId);
+    if (account.isEmpty()) {
+      return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown account " + accountId));
+    }
+    CompletableFuture<T> future = new CompletableFuture<>();
+    account.get().client().send(function, result -> {
+      if (result instanceof TdApi.Error error) {
+        future.completeExceptionally(new TdLibException(error));
+      } else {
+        future.complete((T) result);
+      }
+    }, future::completeExceptionally);
+    return future;
+  }
+}
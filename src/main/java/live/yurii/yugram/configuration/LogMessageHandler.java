@@ -1,18 +1,252 @@
 package live.yurii.yugram.configuration;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.drinkless.tdlib.Client;
+import org.slf4j.event.Level;
+import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bridges TDLib log messages into the application log without ever blocking TDLib.
+ * <p>
+ * TDLib calls {@link #onLogMessage} on its own threads, which only put the message into a lock-free ring
+ * and drop it, counted, when the ring is full. A single log thread takes them out, splits off the TDLib
+ * header and logs them with the verbosity, source and thread as key-value pairs. Messages from the same
+ * source location are rate limited: beyond the limit of a window only a sample is logged, and the number
+ * suppressed is reported when the window ends.
+ * <p>
+ * The only exception is a fatal message, verbosity 0, after which TDLib aborts the process. It waits for the
+ * log thread to catch up with the messages before it and is then logged on the calling thread.
+ */
 @Slf4j
+@Component
 public class LogMessageHandler implements Client.LogMessageHandler {
 
+  /**
+   * {@code [ 2][t 4][1700000000.123456789][Td.cpp:123][#1][!Td]\tmessage}
+   */
+  private static final Pattern HEADER = Pattern.compile(
+      "^\\[\\s*(\\d+)]\\[t\\s*(\\d+)]\\[[\\d.]+]\\[([^]]+)]((?:\\[[^]]*])*)\\s*(.*)$", Pattern.DOTALL);
+  private static final Pattern DIGITS = Pattern.compile("\\d+");
+  private static final int MAX_PATTERNS = 10_000;
+  private static final int FATAL = 0;
+  private static final long FATAL_DRAIN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final TdLibLogProperties properties;
+  private final LogRing<Entry> ring;
+  private final Map<String, Window> windows = new HashMap<>();
+  private final LongAdder dropped = new LongAdder();
+  private final Counter logged;
+  private final Counter suppressed;
+  private final Counter droppedCounter;
+  private long reportedDropped;
+  /**
+   * Messages taken out of the ring and logged or suppressed, only written by the log thread.
+   */
+  private volatile long handled;
+  private volatile boolean running;
+  private Thread thread;
+
+  public LogMessageHandler(TdLibLogProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.ring = new LogRing<>(properties.getBufferSize());
+    this.logged = outcomeCounter(meterRegistry, "logged");
+    this.suppressed = outcomeCounter(meterRegistry, "suppressed");
+    this.droppedCounter = outcomeCounter(meterRegistry, "dropped");
+    Gauge.builder("yugram.tdlib.log.buffered", ring, LogRing::size)
+        .description("TDLib log messages waiting to be logged")
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    thread = Thread.ofPlatform().name("tdlib-log").daemon().start(this::run);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(thread);
+    thread.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  /**
+   * Called on TDLib threads, must never block.
+   */
   @Override
   public void onLogMessage(int verbosityLevel, String message) {
-    switch (verbosityLevel) {
-      case 0, 1 -> log.error("TDLib: {}", message);
-      case 2 -> log.warn("TDLib: {}", message);
-      case 3 -> log.info("TDLib: {}", message);
-      default -> log.debug("TDLib: {}", message);
+    if (verbosityLevel == FATAL) {
+      logFatal(message);
+    } else if (!ring.offer(new Entry(verbosityLevel, message))) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Log a fatal message before returning to TDLib, which aborts the process right after.
+   */
+  private void logFatal(String message) {
+    long position = ring.offered();
+    long deadline = System.nanoTime() + FATAL_DRAIN_NANOS;
+    while (handled < position && thread != null && thread.isAlive() && System.nanoTime() - deadline < 0) {
+      LockSupport.unpark(thread);
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    Line line = Line.parse(message);
+    logged.increment();
+    log.atLevel(level(FATAL))
+        .addKeyValue("tdlibVerbosity", FATAL)
+        .addKeyValue("tdlibSource", line.source())
+        .addKeyValue("tdlibThread", line.thread())
+        .addKeyValue("sampled", false)
+        .log("TDLib [{}]: {}", line.source(), line.text());
+  }
+
+  private void run() {
+    long nextReport = System.nanoTime() + properties.getReportInterval().toNanos();
+    while (running || ring.size() > 0) {
+      Entry entry = ring.poll();
+      if (entry != null) {
+        try {
+          log(entry);
+        } catch (RuntimeException e) {
+          log.error("Failed to log a TDLib message", e);
+        }
+        handled++;
+      }
+      long now = System.nanoTime();
+      if (now - nextReport >= 0) {
+        nextReport = now + properties.getReportInterval().toNanos();
+        report(now);
+      }
+      if (entry == null) {
+        LockSupport.parkNanos(properties.getPollInterval().toNanos());
+      }
+    }
+    report(System.nanoTime());
+  }
+
+  /**
+   * Report the messages dropped since the last report and the windows that have ended.
+   */
+  private void report(long now) {
+    long total = dropped.sum();
+    if (total > reportedDropped) {
+      droppedCounter.increment(total - reportedDropped);
+      log.warn("Dropped {} TDLib log messages, the buffer of {} was full", total - reportedDropped, ring.capacity());
+      reportedDropped = total;
+    }
+    windows.entrySet().removeIf(pattern -> {
+      if (now - pattern.getValue().start < properties.getRateWindow().toNanos()) {
+        return false;
+      }
+      reportSuppressed(pattern.getKey(), pattern.getValue());
+      return true;
+    });
+  }
+
+  private void log(Entry entry) {
+    Line line = Line.parse(entry.message());
+    String source = line.source();
+    String text = line.text();
+    String pattern = !source.isEmpty() ? source : DIGITS.matcher(text.substring(0, Math.min(text.length(), 100))).replaceAll("#");
+
+    long now = System.nanoTime();
+    Window window = windows.get(pattern);
+    if (window == null || now - window.start >= properties.getRateWindow().toNanos()) {
+      if (window != null) {
+        reportSuppressed(pattern, window);
+      } else if (windows.size() >= MAX_PATTERNS) {
+        windows.forEach(this::reportSuppressed);
+        windows.clear();
+      }
+      window = new Window(now, entry.verbosityLevel());
+      windows.put(pattern, window);
+    }
+    window.count++;
+    boolean sampled = false;
+    if (window.count > properties.getRatePerPattern()) {
+      window.suppressed++;
+      sampled = properties.getSampleEvery() > 0 && window.suppressed % properties.getSampleEvery() == 0;
+      if (!sampled) {
+        suppressed.increment();
+        return;
+      }
+    }
+    logged.increment();
+    log.atLevel(level(entry.verbosityLevel()))
+        .addKeyValue("tdlibVerbosity", entry.verbosityLevel())
+        .addKeyValue("tdlibSource", source)
+        .addKeyValue("tdlibThread", line.thread())
+        .addKeyValue("sampled", sampled)
+        .log("TDLib [{}]: {}", source, text);
+  }
+
+  private void reportSuppressed(String pattern, Window window) {
+    if (window.suppressed > 0) {
+      log.atLevel(level(window.verbosityLevel))
+          .addKeyValue("tdlibSource", pattern)
+          .addKeyValue("suppressed", window.suppressed)
+          .log("TDLib [{}]: suppressed {} similar messages in {}", pattern, window.suppressed, properties.getRateWindow());
+    }
+  }
+
+  private static Level level(int verbosityLevel) {
+    return switch (verbosityLevel) {
+      case 0, 1 -> Level.ERROR;
+      case 2 -> Level.WARN;
+      case 3 -> Level.INFO;
+      default -> Level.DEBUG;
+    };
+  }
+
+  private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+    return Counter.builder("yugram.tdlib.log")
+        .description("TDLib log messages by what happened to them")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  private record Entry(int verbosityLevel, String message) {
+  }
+
+  /**
+   * A message split into its TDLib header fields and text; fields are empty without a header.
+   */
+  private record Line(String thread, String source, String text) {
+
+    static Line parse(String message) {
+      Matcher matcher = HEADER.matcher(message);
+      if (!matcher.matches()) {
+        return new Line("", "", message.strip());
+      }
+      return new Line(matcher.group(2), matcher.group(3), matcher.group(5).strip());
+    }
+  }
+
+  private static final class Window {
+
+    private final long start;
+    private final int verbosityLevel;
+    private long count;
+    private long suppressed;
+
+    private Window(long start, int verbosityLevel) {
+      this.start = start;
+      this.verbosityLevel = verbosityLevel;
     }
   }
 }
@@ -0,0 +1,89 @@
+package live.yurii.yugram.configuration;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of many producers and a single consumer, after Dmitry Vyukov's bounded queue.
+ * <p>
+ * Every slot carries a sequence number telling whether it is free for the producer of a position or
+ * filled for the consumer of it. Producers claim positions with a compare-and-set on the tail and
+ * never wait: when the ring is full, {@link #offer} fails at once.
+ */
+final class LogRing<T> {
+
+  private final int mask;
+  private final AtomicReferenceArray<T> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+
+  /**
+   * @param capacity rounded up to a power of two
+   */
+  LogRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Add a value unless the ring is full, from any thread.
+   */
+  boolean offer(T value) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.set(index, value);
+          // publishes the value to the consumer
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        // the consumer has not freed this slot yet
+        return false;
+      }
+      // another producer claimed the position, try the next one
+    }
+  }
+
+  /**
+   * Take the oldest value, null if the ring is empty. Only ever called by the consumer thread.
+   */
+  T poll() {
+    long position = head;
+    int index = (int) (position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    T value = slots.get(index);
+    slots.set(index, null);
+    head = position + 1;
+    // frees the slot for the producer one lap ahead
+    sequences.set(index, position + mask + 1);
+    return value;
+  }
+
+  int size() {
+    return (int) Math.max(0, tail.get() - head);
+  }
+
+  /**
+   * Number of values ever offered, the position the next one is added at.
+   */
+  long offered() {
+    return tail.get();
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,43 @@
+package live.yurii.yugram.configuration;
+
+import org.drinkless.tdlib.Client;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The TDLib clients of all accounts by account id.
+ */
+public class TdLibAccounts {
+
+  private final Map<Integer, TdLibAccount> accounts = new LinkedHashMap<>();
+
+  public TdLibAccounts(Collection<TdLibAccount> accounts) {
+    accounts.forEach(account -> this.accounts.put(account.id(), account));
+  }
+
+  public Optional<TdLibAccount> find(int accountId) {
+    return Optional.ofNullable(accounts.get(accountId));
+  }
+
+  public TdLibAccount get(int accountId) {
+    return find(accountId).orElseThrow(() -> new IllegalArgumentException("Unknown account " + accountId));
+  }
+
+  public boolean contains(int accountId) {
+    return accounts.containsKey(accountId);
+  }
+
+  public Collection<TdLibAccount> all() {
+    return Collections.unmodifiableCollection(accounts.values());
+  }
+
+  /**
+   * @param parameters the shared settings combined with the account's own
+   */
+  public record TdLibAccount(int id, String name, TdLibParameters parameters, Client client) {
+  }
+}
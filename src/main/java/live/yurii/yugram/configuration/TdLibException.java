@@ -0,0 +1,18 @@
+package live.yurii.yugram.configuration;
+
+import lombok.Getter;
+import org.drinkless.tdlib.TdApi;
+
+/**
+ * An error TDLib answered a request with.
+ */
+@Getter
+public class TdLibException extends RuntimeException {
+
+  private final int code;
+
+  public TdLibException(TdApi.Error error) {
+    super("TDLib error " + error.code + ": " + error.message);
+    this.code = error.code;
+  }
+}
@@ -0,0 +1,21 @@
+package live.yurii.yugram.configuration;
+
+import org.drinkless.tdlib.TdApi;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Requests to TDLib answered as futures.
+ * <p>
+ * Callers neither implement result handlers nor tell errors from results themselves, and tests stand in a
+ * fake for the native client.
+ */
+public interface TdLibGateway {
+
+  /**
+   * Send a request to the TDLib client of an account.
+   *
+   * @return the result, or completed exceptionally with a {@link TdLibException} if TDLib answered with an error
+   */
+  <T extends TdApi.Object> CompletableFuture<T> send(int accountId, TdApi.Function<T> function);
+}
@@ -0,0 +1,47 @@
+package live.yurii.yugram.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the bridge of TDLib log messages into the application log.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.telegram.log")
+public class TdLibLogProperties {
+
+  /**
+   * Messages buffered between TDLib and the log, rounded up to a power of two. Messages arriving
+   * while it is full are dropped and counted.
+   */
+  private int bufferSize = 4096;
+
+  /**
+   * Messages logged per pattern, i.e. TDLib source location, in each rate window.
+   */
+  private int ratePerPattern = 20;
+
+  /**
+   * Length of the rate window; the messages suppressed in it are reported when it ends.
+   */
+  private Duration rateWindow = Duration.ofSeconds(10);
+
+  /**
+   * Of the messages suppressed in a window, every n-th is logged anyway, 0 for none.
+   */
+  private int sampleEvery = 100;
+
+  /**
+   * How often dropped messages are reported.
+   */
+  private Duration reportInterval = Duration.ofMinutes(1);
+
+  /**
+   * How long the log thread sleeps when there is nothing to log.
+   */
+  private Duration pollInterval = Duration.ofMillis(10);
+}
@@ -1,19 +1,39 @@
 package live.yurii.yugram.configuration;
 
+import live.yurii.yugram.watermarks.MessageIds;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TDLib settings shared by all accounts. Without {@code accounts} the phone number, password and database
+ * directory given here make up the only account, {@link #DEFAULT_ACCOUNT_ID}.
+ */
 @Data
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Component
 @ConfigurationProperties(prefix = "app.telegram.client")
 public class TdLibParameters {
 
+  public static final int DEFAULT_ACCOUNT_ID = 0;
+
+  /**
+   * The {@code account_id} of supergroups, channels and their messages, which all accounts share. Their chat ids
+   * never equal those of private chats and basic groups, so the default account can use the same number.
+   */
+  public static final int SHARED_ACCOUNT_ID = 0;
+
   private Integer apiId;
+  @ToString.Exclude
   private String apiHash;
   private String applicationVersion;
   private String databaseDirectory;
@@ -21,10 +41,72 @@ public class TdLibParameters {
   private Boolean enableStorageOptimizer;
   private String logFile;
   private Integer logFileMaxSize;
+  /**
+   * Verbosity of the TDLib log file and of the messages bridged into the application log, 0 for fatal errors only.
+   */
   private Integer logVerbosityLevel;
   private String systemLanguageCode;
   private Boolean useMessageDatabase;
   private Boolean useSecretChats;
+  @ToString.Exclude
   private String phoneNumber;
+  @ToString.Exclude
   private String password;
+  /**
+   * Accounts run side by side in this process, each with its own TDLib client and database directory.
+   */
+  @Builder.Default
+  private List<Account> accounts = new ArrayList<>();
+
+  /**
+   * The configured accounts, or the default account made of the shared settings.
+   */
+  public List<Account> resolveAccounts() {
+    if (accounts.isEmpty()) {
+      return List.of(new Account(DEFAULT_ACCOUNT_ID, "default", databaseDirectory, phoneNumber, password));
+    }
+    return accounts;
+  }
+
+  /**
+   * The account a chat and its messages are stored under, the {@code account_id} of their rows. Supergroups and
+   * channels number their messages per chat and are the same chat for every account, so they are stored once.
+   * Private chats and basic groups number their messages per account, and a private chat's id is the other
+   * user's, so every account stores its own.
+   */
+  public static int storingAccount(int accountId, long chatId) {
+    return MessageIds.isSequential(chatId) ? SHARED_ACCOUNT_ID : accountId;
+  }
+
+  /**
+   * The settings of one account: the shared ones with the account's database directory and credentials.
+   */
+  public TdLibParameters forAccount(Account account) {
+    return toBuilder()
+        .databaseDirectory(account.getDatabaseDirectory())
+        .phoneNumber(account.getPhoneNumber())
+        .password(account.getPassword())
+        .accounts(List.of())
+        .build();
+  }
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Account {
+
+    /**
+     * Stored with the rows the account persists, and selects the account in requests.
+     */
+    private int id;
+    private String name;
+    /**
+     * TDLib database directory, never shared with another account.
+     */
+    private String databaseDirectory;
+    @ToString.Exclude
+    private String phoneNumber;
+    @ToString.Exclude
+    private String password;
+  }
 }
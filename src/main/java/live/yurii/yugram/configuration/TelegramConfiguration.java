@@ -1,6 +1,7 @@
 package live.yurii.yugram.configuration;
 
 import live.yurii.yugram.MainUpdateHandler;
+import live.yurii.yugram.configuration.TdLibAccounts.TdLibAccount;
 import lombok.extern.slf4j.Slf4j;
 import org.drinkless.tdlib.Client;
 import org.drinkless.tdlib.TdApi;
@@ -8,25 +9,52 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 @Slf4j
 @Configuration
 public class TelegramConfiguration {
 
+  /**
+   * One client per account. The clients share the TDLib log, the connection pool, the caches and the ingest
+   * lanes of the process; each has its own database directory and authorization.
+   */
   @Bean
-  public Client client(@Autowired TdLibParameters parameters, @Autowired MainUpdateHandler updateHandler) {
-    Client.setLogMessageHandler(0, new LogMessageHandler());
+  public TdLibAccounts tdLibAccounts(@Autowired TdLibParameters parameters, @Autowired MainUpdateHandler updateHandler,
+                                     @Autowired LogMessageHandler logMessageHandler) {
+    Client.setLogMessageHandler(parameters.getLogVerbosityLevel(), logMessageHandler);
 
     try {
-      Client.execute(new TdApi.SetLogVerbosityLevel(0));
+      Client.execute(new TdApi.SetLogVerbosityLevel(parameters.getLogVerbosityLevel()));
       Client.execute(new TdApi.SetLogStream(new TdApi.LogStreamFile(parameters.getLogFile(), parameters.getLogFileMaxSize(), false)));
     } catch (Client.ExecutionException error) {
       throw new RuntimeException("Write access to the current directory is required", error);
     }
 
-    return Client.create(
-        updateHandler,
-        e -> log.error("Failed to send TDLib parameters", e),
-        e -> log.error("Failed to execute TDLib request", e)
-    );
+    Set<Integer> ids = new HashSet<>();
+    Set<Path> directories = new HashSet<>();
+    List<TdLibAccount> accounts = new ArrayList<>();
+    for (TdLibParameters.Account account : parameters.resolveAccounts()) {
+      if (!ids.add(account.getId())) {
+        throw new IllegalStateException("Account id " + account.getId() + " is configured twice");
+      }
+      // TDLib locks its database directory, a second client on it would never start
+      if (account.getDatabaseDirectory() == null
+          || !directories.add(Path.of(account.getDatabaseDirectory()).toAbsolutePath().normalize())) {
+        throw new IllegalStateException("Account " + account.getId() + " needs a database directory of its own");
+      }
+      Client client = Client.create(
+          updateHandler.forAccount(account.getId()),
+          e -> log.error("Failed to handle a TDLib update of account {}", account.getId(), e),
+          e -> log.error("Failed to execute a TDLib request of account {}", account.getId(), e)
+      );
+      accounts.add(new TdLibAccount(account.getId(), account.getName(), parameters.forAccount(account), client));
+      log.info("Created the TDLib client of account {} ({})", account.getId(), account.getName());
+    }
+    return new TdLibAccounts(accounts);
   }
 }
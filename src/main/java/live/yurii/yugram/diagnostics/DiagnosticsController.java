@@ -0,0 +1,79 @@
+package live.yurii.yugram.diagnostics;
+
+import live.yurii.yugram.diagnostics.jfr.ContinuousRecording;
+import live.yurii.yugram.diagnostics.jfr.JfrSummary;
+import live.yurii.yugram.ingest.IngestExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/diagnostics")
+public class DiagnosticsController {
+
+  private final VirtualThreadPinningMonitor pinningMonitor;
+  private final IngestExecutor ingestExecutor;
+  private final ContinuousRecording continuousRecording;
+  private final StartupTimeline startupTimeline;
+
+  @GetMapping("/threads")
+  public ResponseEntity<ThreadsDto> getThreads() {
+    log.debug("Getting thread diagnostics");
+
+    return ResponseEntity.ok(new ThreadsDto(
+        Thread.currentThread().isVirtual(),
+        ingestExecutor.backlog(),
+        pinningMonitor.isEnabled(),
+        pinningMonitor.pinnedCount(),
+        pinningMonitor.sites()));
+  }
+
+  /**
+   * Milliseconds from the JVM start to readiness, the first update and the first persisted message.
+   */
+  @GetMapping("/startup")
+  public ResponseEntity<StartupTimeline.Timeline> getStartup() {
+    log.debug("Getting the startup timeline");
+
+    return ResponseEntity.ok(startupTimeline.timeline());
+  }
+
+  /**
+   * Dump the continuous flight recording and summarize the application's events in it.
+   */
+  @PostMapping("/jfr/dump")
+  public ResponseEntity<JfrDumpDto> dumpRecording() throws IOException {
+    log.debug("Dumping the flight recording");
+
+    if (!continuousRecording.isEnabled()) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Flight recording is not enabled");
+    }
+    Path file = continuousRecording.dump();
+    return ResponseEntity.ok(new JfrDumpDto(file.toString(), JfrSummary.summarize(file)));
+  }
+
+  /**
+   * @param virtualRequestThreads whether this request was served by a virtual thread
+   */
+  public record ThreadsDto(boolean virtualRequestThreads, int ingestBacklog, boolean pinningRecorded,
+                           long pinnedCount, List<VirtualThreadPinningMonitor.PinningSite> pinningSites) {
+  }
+
+  /**
+   * @param file the dump, to open in JDK Mission Control or summarize again with {@link JfrSummary}
+   */
+  public record JfrDumpDto(String file, List<JfrSummary.EventSummary> events) {
+  }
+}
@@ -0,0 +1,31 @@
+package live.yurii.yugram.diagnostics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for virtual thread pinning diagnostics.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.diagnostics.pinning")
+public class PinningProperties {
+
+  /**
+   * Record {@code jdk.VirtualThreadPinned} events while the application runs.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Pins shorter than this are not recorded.
+   */
+  private Duration threshold = Duration.ofMillis(20);
+
+  /**
+   * Number of stack frames kept per pinning site.
+   */
+  private int stackDepth = 12;
+}
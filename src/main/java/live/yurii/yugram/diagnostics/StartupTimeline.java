@@ -0,0 +1,116 @@
+package live.yurii.yugram.diagnostics;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * How long after the JVM started the application became ready, received its first update and committed
+ * its first message, the measure of a restart.
+ * <p>
+ * Updates arriving before the application is ready wait in a queue, so the first persisted message is what
+ * AOT processing, the class data archive and the deferred initialization are meant to bring forward.
+ * Compare {@code yugram.startup.time} or {@code GET /diagnostics/startup} of restarts with and without them.
+ */
+@Slf4j
+@Component
+public class StartupTimeline {
+
+  private static final long NOT_YET = -1;
+
+  private final MeterRegistry meterRegistry;
+  private final AtomicLong ready = new AtomicLong(NOT_YET);
+  private final AtomicLong firstUpdate = new AtomicLong(NOT_YET);
+  private final AtomicLong firstPersisted = new AtomicLong(NOT_YET);
+
+  public StartupTimeline(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void registerGauges() {
+    register("ready", ready);
+    register("first-update", firstUpdate);
+    register("first-persisted", firstPersisted);
+  }
+
+  /**
+   * Before the queued updates are processed.
+   */
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    ready.compareAndSet(NOT_YET, uptime());
+  }
+
+  public void onUpdateReceived() {
+    if (firstUpdate.get() == NOT_YET) {
+      firstUpdate.compareAndSet(NOT_YET, uptime());
+    }
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    if (firstPersisted.get() == NOT_YET && firstPersisted.compareAndSet(NOT_YET, uptime())) {
+      log.info("First message persisted {} ms after the JVM started, ready after {} ms, first update after {} ms ({})",
+          firstPersisted.get(), ready.get(), firstUpdate.get(), mode());
+    }
+  }
+
+  public Timeline timeline() {
+    return new Timeline(ManagementFactory.getRuntimeMXBean().getStartTime(), milliseconds(ready),
+        milliseconds(firstUpdate), milliseconds(firstPersisted), AotDetector.useGeneratedArtifacts(), sharedArchive());
+  }
+
+  private void register(String phase, AtomicLong millis) {
+    ToDoubleFunction<AtomicLong> value = phaseMillis -> phaseMillis.get() == NOT_YET ? Double.NaN : phaseMillis.get();
+    TimeGauge.builder("yugram.startup.time", millis, TimeUnit.MILLISECONDS, value)
+        .description("Time from the JVM start to a phase of the startup")
+        .tag("phase", phase)
+        .register(meterRegistry);
+  }
+
+  private String mode() {
+    String archive = sharedArchive();
+    return (AotDetector.useGeneratedArtifacts() ? "AOT" : "no AOT") + ", "
+        + (archive != null ? "class data archive " + archive : "default class data archive");
+  }
+
+  private static long uptime() {
+    return ManagementFactory.getRuntimeMXBean().getUptime();
+  }
+
+  private static Long milliseconds(AtomicLong phase) {
+    return phase.get() == NOT_YET ? null : phase.get();
+  }
+
+  private static String sharedArchive() {
+    String file = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+        .getVMOption("SharedArchiveFile").getValue();
+    return file.isEmpty() ? null : file;
+  }
+
+  /**
+   * Phases in milliseconds after {@code jvmStart}, null until reached.
+   *
+   * @param sharedArchive the class data archive given with {@code -XX:SharedArchiveFile}, null for the JDK's
+   */
+  public record Timeline(long jvmStart, Long readyAfter, Long firstUpdateAfter, Long firstPersistedAfter,
+                         boolean aot, String sharedArchive) {
+  }
+}
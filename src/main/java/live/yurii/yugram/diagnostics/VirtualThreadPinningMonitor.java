@@ -0,0 +1,163 @@
+package live.yurii.yugram.diagnostics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread.
+ * <p>
+ * A pinned virtual thread holds its carrier for the whole blocking call, so enough of them at once
+ * starve every other virtual thread. Since JDK 24 {@code synchronized} no longer pins, what remains
+ * are native frames (the TDLib JNI callbacks) and class initializers. Events are taken from a JFR
+ * stream and grouped by the first application frame, tagged with the layer (JDBC, Hibernate, TDLib)
+ * that was on the stack.
+ */
+@Slf4j
+@Component
+public class VirtualThreadPinningMonitor {
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  private final PinningProperties properties;
+  private final Map<String, Site> sites = new ConcurrentHashMap<>();
+  private final LongAdder pinnedCount = new LongAdder();
+  private RecordingStream stream;
+
+  public VirtualThreadPinningMonitor(PinningProperties properties) {
+    this.properties = properties;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    stream = new RecordingStream();
+    stream.enable(PINNED_EVENT).withThreshold(properties.getThreshold()).withStackTrace();
+    stream.onEvent(PINNED_EVENT, this::onPinned);
+    stream.startAsync();
+    log.info("Recording virtual thread pinning longer than {}", properties.getThreshold());
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (stream != null) {
+      stream.close();
+    }
+  }
+
+  public boolean isEnabled() {
+    return stream != null;
+  }
+
+  public long pinnedCount() {
+    return pinnedCount.sum();
+  }
+
+  /**
+   * Pinning sites, the most frequent first.
+   */
+  public List<PinningSite> sites() {
+    return sites.values().stream()
+        .map(Site::snapshot)
+        .sorted(Comparator.comparingLong(PinningSite::count).reversed())
+        .toList();
+  }
+
+  void onPinned(RecordedEvent event) {
+    pinnedCount.increment();
+    List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+    String layer = layerOf(frames);
+    String location = layer + " at " + firstApplicationFrame(frames);
+    Site site = sites.computeIfAbsent(location, key -> {
+      List<String> stack = frames.stream().limit(properties.getStackDepth()).map(VirtualThreadPinningMonitor::describe).toList();
+      log.warn("Virtual thread pinned for {} ms in {}, stack: {}", event.getDuration().toMillis(), key, stack);
+      return new Site(layer, key, stack);
+    });
+    site.record(event.getDuration().toNanos());
+  }
+
+  static String layerOf(List<RecordedFrame> frames) {
+    for (RecordedFrame frame : frames) {
+      String type = typeOf(frame);
+      if (type.startsWith("org.hibernate.")) {
+        return "hibernate";
+      }
+      if (type.startsWith("org.postgresql.") || type.startsWith("com.zaxxer.hikari.") || type.startsWith("java.sql.")) {
+        return "jdbc";
+      }
+      if (type.startsWith("org.drinkless.tdlib.")) {
+        return "tdlib";
+      }
+    }
+    return "other";
+  }
+
+  private static String firstApplicationFrame(List<RecordedFrame> frames) {
+    return frames.stream()
+        .filter(frame -> typeOf(frame).startsWith("live.yurii.yugram."))
+        .findFirst()
+        .or(() -> frames.stream().filter(frame -> !isJdk(typeOf(frame))).findFirst())
+        .or(() -> frames.stream().findFirst())
+        .map(VirtualThreadPinningMonitor::describe)
+        .orElse("unknown");
+  }
+
+  private static boolean isJdk(String type) {
+    return type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.");
+  }
+
+  private static String typeOf(RecordedFrame frame) {
+    return frame.getMethod() != null ? frame.getMethod().getType().getName() : "";
+  }
+
+  private static String describe(RecordedFrame frame) {
+    if (frame.getMethod() == null) {
+      return "unknown";
+    }
+    return typeOf(frame) + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+  }
+
+  public record PinningSite(String layer, String location, long count, double maxMillis, double totalMillis,
+                            List<String> stack) {
+  }
+
+  private static final class Site {
+
+    private final String layer;
+    private final String location;
+    private final List<String> stack;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private volatile long maxNanos;
+
+    private Site(String layer, String location, List<String> stack) {
+      this.layer = layer;
+      this.location = location;
+      this.stack = stack;
+    }
+
+    private void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      if (nanos > maxNanos) {
+        maxNanos = nanos;
+      }
+    }
+
+    private PinningSite snapshot() {
+      return new PinningSite(layer, location, count.sum(), maxNanos / 1_000_000d, totalNanos.sum() / 1_000_000d, stack);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flight recording kept running in the background, dumped on demand and on shutdown.
+ * <p>
+ * Its settings are the JDK's plus the application's own events, so a stalled ingest lane shows up next to
+ * the garbage collections, lock contention and socket reads of the same moment. Without it the events are
+ * still recorded by a recording started from the command line, e.g.
+ * {@code -XX:StartFlightRecording:settings=default,settings=yugram-continuous.jfc}.
+ */
+@Slf4j
+@Component
+public class ContinuousRecording {
+
+  private static final DateTimeFormatter DUMP_NAME = DateTimeFormatter.ofPattern("'yugram-'yyyyMMdd-HHmmss'.jfr'");
+
+  private final JfrProperties properties;
+  private volatile Recording recording;
+  private Thread starting;
+
+  public ContinuousRecording(JfrProperties properties) {
+    this.properties = properties;
+  }
+
+  /**
+   * Starting the recorder takes seconds of a cold JVM, so it happens in the background instead of holding back
+   * the updates queued until the application is ready. Invalid settings still fail the start.
+   */
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    Map<String, String> settings = new HashMap<>(jdkSettings().getSettings());
+    settings.putAll(applicationSettings().getSettings());
+    starting = Thread.ofPlatform().daemon().name("jfr-start").start(() -> {
+      try {
+        Recording started = new Recording(settings);
+        started.setName("yugram");
+        started.setToDisk(true);
+        started.setMaxAge(properties.getMaxAge());
+        started.setMaxSize(properties.getMaxSize().toBytes());
+        started.start();
+        recording = started;
+        log.info("Flight recording started with {} and {} settings, keeping {} or {}",
+            properties.getJdkSettings(), properties.getProfile(), properties.getMaxAge(), properties.getMaxSize());
+      } catch (RuntimeException e) {
+        log.error("Failed to start the flight recording", e);
+      }
+    });
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (starting != null) {
+      starting.join();
+    }
+    if (recording == null) {
+      return;
+    }
+    try {
+      if (properties.isDumpOnExit()) {
+        log.info("Flight recording dumped to {}", dump());
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed to dump the flight recording", e);
+    } finally {
+      recording.close();
+    }
+  }
+
+  public boolean isEnabled() {
+    return recording != null;
+  }
+
+  /**
+   * Write what the recording holds to a new file in the dump directory.
+   *
+   * @throws IllegalStateException if no recording is running
+   */
+  public synchronized Path dump() {
+    if (recording == null) {
+      throw new IllegalStateException("Flight recording is not enabled");
+    }
+    try {
+      Files.createDirectories(properties.getDumpDirectory());
+      Path file = properties.getDumpDirectory().resolve(DUMP_NAME.format(LocalDateTime.now())).toAbsolutePath();
+      recording.dump(file);
+      return file;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to dump the flight recording", e);
+    }
+  }
+
+  private Configuration jdkSettings() {
+    try {
+      return Configuration.getConfiguration(properties.getJdkSettings());
+    } catch (IOException | ParseException e) {
+      throw new IllegalStateException("Unknown JDK flight recorder settings " + properties.getJdkSettings(), e);
+    }
+  }
+
+  private Configuration applicationSettings() {
+    String resource = "jfr/yugram-" + properties.getProfile() + ".jfc";
+    InputStream stream = ContinuousRecording.class.getClassLoader().getResourceAsStream(resource);
+    if (stream == null) {
+      throw new IllegalStateException("Flight recorder settings not found: " + resource);
+    }
+    try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+      return Configuration.create(reader);
+    } catch (IOException | ParseException e) {
+      throw new IllegalStateException("Invalid flight recorder settings " + resource, e);
+    }
+  }
+}
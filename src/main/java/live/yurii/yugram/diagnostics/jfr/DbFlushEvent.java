@@ -0,0 +1,45 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A batch of state kept in memory was written to the database.
+ */
+@Name("yugram.DbFlush")
+@Label("Database Flush")
+@Category({"Yugram", "Persistence"})
+@Description("A batch of state kept in memory was written to the database")
+@StackTrace(false)
+public class DbFlushEvent extends Event {
+
+  @Label("Target")
+  @Description("What was written, e.g. users or volume")
+  String target;
+
+  @Label("Batch Size")
+  int batchSize;
+
+  @Label("Succeeded")
+  boolean succeeded;
+
+  public static DbFlushEvent start(String target, int batchSize) {
+    DbFlushEvent event = new DbFlushEvent();
+    event.target = target;
+    event.batchSize = batchSize;
+    event.begin();
+    return event;
+  }
+
+  public void finish(boolean succeeded) {
+    end();
+    if (shouldCommit()) {
+      this.succeeded = succeeded;
+      commit();
+    }
+  }
+}
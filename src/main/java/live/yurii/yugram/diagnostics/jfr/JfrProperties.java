@@ -0,0 +1,54 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Configuration properties for the continuous flight recording.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.diagnostics.jfr")
+public class JfrProperties {
+
+  /**
+   * Keep a flight recording running while the application runs.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Settings of the application's own events, {@code classpath:jfr/yugram-<profile>.jfc}: {@code continuous}
+   * records only slow dispatches and page builds, {@code profile} records every update.
+   */
+  private String profile = "continuous";
+
+  /**
+   * JDK settings the application's are added to, {@code default} or {@code profile}.
+   */
+  private String jdkSettings = "default";
+
+  /**
+   * Recorded data older than this is discarded.
+   */
+  private Duration maxAge = Duration.ofHours(6);
+
+  /**
+   * Recorded data beyond this size is discarded, oldest first.
+   */
+  private DataSize maxSize = DataSize.ofMegabytes(256);
+
+  /**
+   * Directory dumps are written to.
+   */
+  private Path dumpDirectory = Path.of("jfr");
+
+  /**
+   * Dump the recording when the application stops.
+   */
+  private boolean dumpOnExit = true;
+}
@@ -0,0 +1,118 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of the application's own events in a {@code .jfr} file: count, latency percentiles and batch sizes
+ * per event and update type, flush target or endpoint, the most time-consuming first.
+ * <p>
+ * Runs on its own, needing nothing but the JDK:
+ * {@code java -cp target/classes live.yurii.yugram.diagnostics.jfr.JfrSummary jfr/yugram-20250101-120000.jfr}
+ */
+public final class JfrSummary {
+
+  private static final String PREFIX = "yugram.";
+  private static final List<String> GROUP_FIELDS = List.of("updateType", "target", "endpoint", "accepted");
+
+  private JfrSummary() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: JfrSummary <recording.jfr>");
+      System.exit(2);
+    }
+    List<EventSummary> summaries = summarize(Path.of(args[0]));
+    System.out.printf("%-22s %-40s %9s %11s %9s %9s %9s %10s %7s%n",
+        "event", "group", "count", "total ms", "p50 ms", "p99 ms", "max ms", "items", "failed");
+    for (EventSummary summary : summaries) {
+      System.out.printf("%-22s %-40s %9d %11.1f %9.2f %9.2f %9.2f %10d %7d%n",
+          summary.event(), summary.group(), summary.count(), summary.totalMillis(), summary.p50Millis(),
+          summary.p99Millis(), summary.maxMillis(), summary.items(), summary.failed());
+    }
+  }
+
+  public static List<EventSummary> summarize(Path file) throws IOException {
+    Map<String, Group> groups = new HashMap<>();
+    try (RecordingFile recording = new RecordingFile(file)) {
+      while (recording.hasMoreEvents()) {
+        RecordedEvent event = recording.readEvent();
+        String name = event.getEventType().getName();
+        if (name.startsWith(PREFIX)) {
+          String group = groupOf(event);
+          groups.computeIfAbsent(name + " " + group, key -> new Group(name.substring(PREFIX.length()), group)).add(event);
+        }
+      }
+    }
+    return groups.values().stream()
+        .map(Group::summary)
+        .sorted(Comparator.comparingDouble(EventSummary::totalMillis).reversed())
+        .toList();
+  }
+
+  private static String groupOf(RecordedEvent event) {
+    for (String field : GROUP_FIELDS) {
+      if (event.hasField(field)) {
+        return String.valueOf((Object) event.getValue(field));
+      }
+    }
+    return "";
+  }
+
+  /**
+   * @param items sum of the batch sizes of flushes
+   * @param failed flushes that failed
+   */
+  public record EventSummary(String event, String group, long count, double totalMillis, double p50Millis,
+                             double p99Millis, double maxMillis, long items, long failed) {
+  }
+
+  private static final class Group {
+
+    private final String event;
+    private final String group;
+    private final List<Long> durations = new ArrayList<>();
+    private long items;
+    private long failed;
+
+    private Group(String event, String group) {
+      this.event = event;
+      this.group = group;
+    }
+
+    private void add(RecordedEvent recorded) {
+      durations.add(recorded.getDuration().toNanos());
+      if (recorded.hasField("batchSize")) {
+        items += recorded.getInt("batchSize");
+      }
+      if (recorded.hasField("succeeded") && !recorded.getBoolean("succeeded")) {
+        failed++;
+      }
+    }
+
+    private EventSummary summary() {
+      long[] sorted = durations.stream().mapToLong(Long::longValue).sorted().toArray();
+      return new EventSummary(event, group, sorted.length, millis(Arrays.stream(sorted).sum()),
+          millis(percentile(sorted, 0.5)), millis(percentile(sorted, 0.99)), millis(sorted[sorted.length - 1]),
+          items, failed);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+      return sorted[(int) Math.ceil(quantile * sorted.length) - 1];
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000d;
+    }
+  }
+}
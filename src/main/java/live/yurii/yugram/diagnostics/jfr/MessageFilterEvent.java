@@ -0,0 +1,40 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A new message was checked against the chats to save. One per message, so only enabled by the profiling settings.
+ */
+@Name("yugram.MessageFilter")
+@Label("Message Filter")
+@Category({"Yugram", "Ingest"})
+@Description("A new message was checked against the chats to save")
+@Enabled(false)
+@StackTrace(false)
+public class MessageFilterEvent extends Event {
+
+  @Label("Chat Id")
+  long chatId;
+
+  @Label("Message Id")
+  long messageId;
+
+  @Label("Accepted")
+  boolean accepted;
+
+  public static void record(long chatId, long messageId, boolean accepted) {
+    MessageFilterEvent event = new MessageFilterEvent();
+    if (event.isEnabled()) {
+      event.chatId = chatId;
+      event.messageId = messageId;
+      event.accepted = accepted;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A list endpoint answered a conditional GET, by building the page or with 304 Not Modified.
+ */
+@Name("yugram.PageBuild")
+@Label("Page Build")
+@Category({"Yugram", "REST"})
+@Description("A list endpoint built a page or answered 304 Not Modified")
+@Threshold("10 ms")
+@StackTrace(false)
+public class PageBuildEvent extends Event {
+
+  @Label("Endpoint")
+  @Description("The mapping pattern, e.g. /messages/byChatId/{chatId}")
+  String endpoint;
+
+  @Label("Request")
+  String request;
+
+  @Label("Not Modified")
+  boolean notModified;
+
+  public void finish(String endpoint, String request, boolean notModified) {
+    end();
+    if (shouldCommit()) {
+      this.endpoint = endpoint;
+      this.request = request;
+      this.notModified = notModified;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * The handlers of an update ran on its ingest lane, the transaction commit and every listener included.
+ */
+@Name("yugram.UpdateDispatch")
+@Label("Update Dispatch")
+@Category({"Yugram", "Ingest"})
+@Description("The handlers of an update ran on its ingest lane")
+@Threshold("20 ms")
+@StackTrace(false)
+public class UpdateDispatchEvent extends Event {
+
+  @Label("Constructor")
+  int constructor;
+
+  @Label("Update Type")
+  String updateType;
+
+  @Label("Chat Id")
+  @Description("The ingest lane key: the chat id, or the user id of user updates")
+  long chatId;
+
+  @Label("Queue Wait")
+  @Description("Time the update waited in its lane before the handlers ran")
+  @Timespan(Timespan.NANOSECONDS)
+  long queueWait;
+
+  public void finish(int constructor, String updateType, long chatId, long queueWait) {
+    end();
+    if (shouldCommit()) {
+      this.constructor = constructor;
+      this.updateType = updateType;
+      this.chatId = chatId;
+      this.queueWait = queueWait;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package live.yurii.yugram.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.drinkless.tdlib.TdApi;
+
+/**
+ * An update arrived from TDLib. One per update, so only enabled by the profiling settings.
+ */
+@Name("yugram.UpdateReceived")
+@Label("Update Received")
+@Category({"Yugram", "Ingest"})
+@Description("An update arrived from TDLib")
+@Enabled(false)
+@StackTrace(false)
+public class UpdateReceivedEvent extends Event {
+
+  @Label("Constructor")
+  int constructor;
+
+  @Label("Update Type")
+  String updateType;
+
+  @Label("Before Ready")
+  @Description("Arrived before the application was ready and was queued")
+  boolean beforeReady;
+
+  public static void record(TdApi.Object update, boolean beforeReady) {
+    UpdateReceivedEvent event = new UpdateReceivedEvent();
+    if (event.isEnabled()) {
+      event.constructor = update.getConstructor();
+      event.updateType = update.getClass().getSimpleName();
+      event.beforeReady = beforeReady;
+      event.commit();
+    }
+  }
+}
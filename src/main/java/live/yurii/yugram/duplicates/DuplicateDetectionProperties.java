@@ -0,0 +1,71 @@
+package live.yurii.yugram.duplicates;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the near-duplicate detection.
+ * <p>
+ * With {@code bands} bands of {@code rows} rows, two messages become candidates with probability
+ * {@code 1 - (1 - s^rows)^bands} for a word shingle similarity {@code s}: for 16 bands of 4 rows about 0.89 at
+ * 0.6 and 0.12 at 0.3. Stored signatures are only comparable with signatures of the same shape, changing
+ * {@code bands}, {@code rows} or {@code shingle-size} requires emptying {@code message_signatures}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.duplicates")
+public class DuplicateDetectionProperties {
+
+  /**
+   * Words per shingle.
+   */
+  private int shingleSize = 3;
+
+  /**
+   * LSH bands, the signature has {@code bands * rows} hashes.
+   */
+  private int bands = 16;
+
+  /**
+   * Hashes per LSH band.
+   */
+  private int rows = 4;
+
+  /**
+   * Estimated similarity from which a candidate counts as a near-duplicate.
+   */
+  private double threshold = 0.6;
+
+  /**
+   * Messages with fewer shingles are too short to tell a republished story from a common phrase and are skipped.
+   */
+  private int minShingles = 5;
+
+  /**
+   * How far back new messages are compared; older signatures stay stored but leave the index.
+   */
+  private Duration window = Duration.ofDays(7);
+
+  /**
+   * Maximum number of signatures in the index, the oldest ones leave it first.
+   */
+  private int maxEntries = 200000;
+
+  /**
+   * Delay in milliseconds between two writes of new signatures to the database.
+   */
+  private long flushIntervalMs = 1000;
+
+  /**
+   * Compute the signatures of the stored messages of the last {@code window} on startup when there are none.
+   */
+  private boolean backfillOnStartup = true;
+
+  /**
+   * Upper bound of clusters per request.
+   */
+  private int maxClustersPerRequest = 100;
+}
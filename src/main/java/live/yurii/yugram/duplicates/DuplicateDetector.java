@@ -0,0 +1,214 @@
+package live.yurii.yugram.duplicates;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.ChangeOperation;
+import live.yurii.yugram.changes.RemoteChangeEvent;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.duplicates.LshIndex.Entry;
+import live.yurii.yugram.duplicates.MessageSignatureRepository.SignedMessage;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds near-duplicates of every new message among the messages of the last {@code window} as it arrives.
+ * <p>
+ * A message's MinHash signature is looked up in the {@link LshIndex}; of the candidates with an estimated
+ * similarity of at least {@code threshold}, the message joins the cluster that was first seen earliest.
+ * Clusters are never merged, so a cluster, referred to by its first message, stays stable. Signatures are
+ * written to the database in batches and loaded back into the index on startup.
+ * <p>
+ * Loading up to {@code max-entries} signatures takes a while, so it runs in the background instead of
+ * holding up the startup. Messages arriving meanwhile are held back and clustered once the stored ones
+ * are in, so that they still join the clusters of older messages.
+ * <p>
+ * With leases, the messages of chats other nodes write arrive through the change feed. They join the index,
+ * so that near-duplicates across chat shards are found, but only the node that wrote a message stores its
+ * signature.
+ */
+@Slf4j
+@Component
+public class DuplicateDetector {
+
+  private final DuplicateDetectionProperties properties;
+  private final MessageSignatureRepository repository;
+  private final MinHasher minHasher;
+  private final LshIndex index;
+  private final List<SignedMessage> pending = new ArrayList<>();
+  private final List<Arrival> arrivedDuringRestore = new ArrayList<>();
+  private boolean restored;
+
+  public DuplicateDetector(DuplicateDetectionProperties properties, MessageSignatureRepository repository) {
+    this.properties = properties;
+    this.repository = repository;
+    this.minHasher = new MinHasher(properties.getBands() * properties.getRows(), properties.getShingleSize(),
+        properties.getMinShingles());
+    this.index = new LshIndex(properties.getBands(), properties.getRows(), properties.getMaxEntries());
+  }
+
+  @PostConstruct
+  public void startRestore() {
+    Thread.ofVirtual().name("duplicates-restore").start(this::restore);
+  }
+
+  /**
+   * Load the stored signatures, then cluster the messages that arrived in the meantime.
+   */
+  void restore() {
+    try {
+      repository.scanSince(windowStart(), entry -> {
+        synchronized (index) {
+          index.add(entry);
+        }
+      });
+    } catch (RuntimeException e) {
+      log.error("Failed to load the message signatures, near-duplicates are only found among new messages", e);
+    }
+    synchronized (index) {
+      log.info("Loaded {} message signatures into the duplicate index, {} messages arrived meanwhile",
+          index.size(), arrivedDuringRestore.size());
+      restored = true;
+      arrivedDuringRestore.forEach(this::cluster);
+      arrivedDuringRestore.clear();
+    }
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    MessageDto message = event.getMessage();
+    // an edit keeps the cluster the message joined when it arrived
+    if (event.isCreated() && message.getDate() != null) {
+      add(message.getId(), message.getChatId(), message.getDate(), message.getContent(), true);
+    }
+  }
+
+  @EventListener
+  public void onRemoteChange(RemoteChangeEvent event) {
+    if (event.getKind() == ChangeKind.MESSAGE && event.getOperation() == ChangeOperation.CREATED) {
+      MessageDto message = event.getState(MessageDto.class);
+      if (message.getDate() != null) {
+        add(message.getId(), message.getChatId(), message.getDate(), message.getContent(), false);
+      }
+    }
+  }
+
+  /**
+   * @param store whether this node stores the signature, false for messages of other nodes
+   */
+  private void add(long messageId, long chatId, int date, String content, boolean store) {
+    int[] signature = minHasher.signature(content);
+    if (signature == null || date < windowStart()) {
+      return;
+    }
+    Arrival arrival = new Arrival(messageId, chatId, date, signature, store);
+    synchronized (index) {
+      if (restored) {
+        cluster(arrival);
+      } else {
+        arrivedDuringRestore.add(arrival);
+      }
+    }
+  }
+
+  /**
+   * Callers hold the index lock.
+   */
+  private void cluster(Arrival arrival) {
+    long messageId = arrival.messageId();
+    int[] signature = arrival.signature();
+    if (index.contains(new MessageRef(arrival.chatId(), messageId))) {
+      return;
+    }
+    Entry[] best = new Entry[1];
+    double[] bestSimilarity = {1};
+    index.forEachCandidate(signature, candidate -> {
+      double similarity = MinHasher.similarity(signature, candidate.signature());
+      if (similarity >= properties.getThreshold() && (best[0] == null || isFirstSeenBefore(candidate, best[0]))) {
+        best[0] = candidate;
+        bestSimilarity[0] = similarity;
+      }
+    });
+    Entry entry = best[0] != null
+        ? new Entry(messageId, arrival.chatId(), arrival.date(), best[0].clusterChatId(), best[0].clusterId(),
+        best[0].clusterDate(), signature)
+        : new Entry(messageId, arrival.chatId(), arrival.date(), arrival.chatId(), messageId, arrival.date(), signature);
+    index.add(entry);
+    if (arrival.store()) {
+      pending.add(new SignedMessage(entry, bestSimilarity[0]));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.duplicates.flush-interval-ms:1000}")
+  public void flush() {
+    List<SignedMessage> batch;
+    synchronized (index) {
+      index.evictBefore(windowStart());
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = new ArrayList<>(pending);
+      pending.clear();
+    }
+    DbFlushEvent flushEvent = DbFlushEvent.start("duplicates", batch.size());
+    try {
+      repository.insertAll(batch);
+      flushEvent.finish(true);
+      log.debug("Stored {} message signatures", batch.size());
+    } catch (RuntimeException e) {
+      flushEvent.finish(false);
+      log.error("Failed to store {} message signatures, will retry on the next flush", batch.size(), e);
+      synchronized (index) {
+        pending.addAll(0, batch);
+      }
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillIfEmpty() {
+    if (!properties.isBackfillOnStartup() || !repository.isEmpty()) {
+      return;
+    }
+    Thread.ofVirtual().name("duplicates-backfill").start(() -> {
+      try {
+        int[] messages = new int[1];
+        repository.scanUnsignedMessages(windowStart(), (messageId, chatId, date, content) -> {
+          add(messageId, chatId, date, content, true);
+          messages[0]++;
+        });
+        flush();
+        log.info("Looked for near-duplicates among {} stored messages", messages[0]);
+      } catch (RuntimeException e) {
+        log.error("Failed to compute the signatures of the stored messages", e);
+      }
+    });
+  }
+
+  private static boolean isFirstSeenBefore(Entry entry, Entry other) {
+    return entry.clusterDate() < other.clusterDate()
+        || entry.clusterDate() == other.clusterDate() && (entry.clusterId() < other.clusterId()
+        || entry.clusterId() == other.clusterId() && entry.clusterChatId() < other.clusterChatId());
+  }
+
+  private record Arrival(long messageId, long chatId, int date, int[] signature, boolean store) {
+  }
+
+  private int windowStart() {
+    return (int) (Instant.now().getEpochSecond() - properties.getWindow().toSeconds());
+  }
+}
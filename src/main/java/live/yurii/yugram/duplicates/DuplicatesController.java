@@ -0,0 +1,84 @@
+package live.yurii.yugram.duplicates;
+
+import live.yurii.yugram.duplicates.dto.DuplicateClusterDto;
+import live.yurii.yugram.duplicates.dto.DuplicateMemberDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/duplicates")
+@CrossOrigin(origins = "*")
+public class DuplicatesController {
+
+  private final MessageSignatureRepository messageSignatureRepository;
+  private final DuplicateDetectionProperties duplicateDetectionProperties;
+
+  /**
+   * Clusters of near-duplicate messages with a member dated in {@code [from, to)}, given in epoch seconds,
+   * the most recently active first. Defaults to the last day.
+   */
+  @GetMapping("/clusters")
+  public ResponseEntity<List<DuplicateClusterDto>> getClusters(
+      @RequestParam(required = false) Integer from,
+      @RequestParam(required = false) Integer to,
+      @RequestParam(defaultValue = "2") int minSize,
+      @RequestParam(defaultValue = "20") int limit) {
+    log.debug("Getting duplicate clusters from: {}, to: {}, minSize: {}, limit: {}", from, to, minSize, limit);
+
+    int end = to != null ? to : (int) Instant.now().getEpochSecond() + 1;
+    int start = from != null ? from : end - 86400;
+    if (start >= end) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+    }
+    List<MessageRef> clusters = messageSignatureRepository.findClusters(start, end, Math.max(2, minSize),
+        Math.max(1, Math.min(limit, duplicateDetectionProperties.getMaxClustersPerRequest())));
+
+    return ResponseEntity.ok(clusters(clusters));
+  }
+
+  /**
+   * The cluster a message of the given chat belongs to, a cluster of one if it has no near-duplicates.
+   */
+  @GetMapping("/messages/{messageId}")
+  public ResponseEntity<DuplicateClusterDto> getMessageCluster(@PathVariable Long messageId,
+                                                               @RequestParam Long chatId) {
+    log.debug("Getting the duplicate cluster of message {} of chat {}", messageId, chatId);
+
+    MessageRef cluster = messageSignatureRepository.findCluster(new MessageRef(chatId, messageId));
+    if (cluster == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(clusters(List.of(cluster)).getFirst());
+  }
+
+  private List<DuplicateClusterDto> clusters(List<MessageRef> clusters) {
+    if (clusters.isEmpty()) {
+      return List.of();
+    }
+    Map<MessageRef, List<DuplicateMemberDto>> members = new LinkedHashMap<>();
+    clusters.forEach(cluster -> members.put(cluster, new ArrayList<>()));
+    messageSignatureRepository.findMembers(clusters, (cluster, member) -> members.get(cluster).add(member));
+    return members.entrySet().stream()
+        .map(entry -> DuplicateClusterDto.builder()
+            .clusterChatId(entry.getKey().chatId())
+            .clusterId(entry.getKey().messageId())
+            .size(entry.getValue().size())
+            .firstSeen(entry.getValue().getFirst().getDate())
+            .lastSeen(entry.getValue().getLast().getDate())
+            .members(entry.getValue())
+            .build())
+        .toList();
+  }
+}
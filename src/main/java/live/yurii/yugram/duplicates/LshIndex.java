@@ -0,0 +1,146 @@
+package live.yurii.yugram.duplicates;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-sensitive hashing index of MinHash signatures, holding at most {@code capacity} entries.
+ * <p>
+ * Each signature is cut into bands of {@code rows} hashes, and every band is a key into a bucket of the
+ * entries sharing it. A lookup only visits the buckets of its own bands, so its cost depends on how many
+ * similar entries there are, not on the index size; buckets of text that is reposted very often keep only
+ * their newest entries. Entries live in a ring and the oldest one is removed from its buckets when a new one
+ * takes its slot. Not thread-safe.
+ */
+final class LshIndex {
+
+  private static final int MAX_BUCKET_SIZE = 64;
+
+  private final int bands;
+  private final int rows;
+  private final Entry[] ring;
+  private final Map<Long, long[]> buckets = new HashMap<>();
+  private final Map<MessageRef, Long> sequenceByMessage = new HashMap<>();
+  private long oldestSequence;
+  private long nextSequence;
+
+  LshIndex(int bands, int rows, int capacity) {
+    this.bands = bands;
+    this.rows = rows;
+    this.ring = new Entry[capacity];
+  }
+
+  void add(Entry entry) {
+    if (nextSequence - oldestSequence == ring.length) {
+      evictOldest();
+    }
+    ring[(int) (nextSequence % ring.length)] = entry;
+    sequenceByMessage.put(entry.ref(), nextSequence);
+    for (int band = 0; band < bands; band++) {
+      long key = bandKey(entry.signature(), band);
+      long[] bucket = buckets.get(key);
+      long[] grown;
+      if (bucket == null) {
+        grown = new long[1];
+      } else if (bucket.length == MAX_BUCKET_SIZE) {
+        grown = Arrays.copyOfRange(bucket, 1, bucket.length + 1);
+      } else {
+        grown = Arrays.copyOf(bucket, bucket.length + 1);
+      }
+      grown[grown.length - 1] = nextSequence;
+      buckets.put(key, grown);
+    }
+    nextSequence++;
+  }
+
+  /**
+   * Remove the entries dated before {@code date} from the oldest on, up to the first newer one.
+   */
+  void evictBefore(int date) {
+    while (oldestSequence < nextSequence && ring[(int) (oldestSequence % ring.length)].date() < date) {
+      evictOldest();
+    }
+  }
+
+  boolean contains(MessageRef message) {
+    return sequenceByMessage.containsKey(message);
+  }
+
+  /**
+   * Visit the entries sharing at least one band with {@code signature}, each once.
+   */
+  void forEachCandidate(int[] signature, CandidateConsumer consumer) {
+    Set<Long> seen = new HashSet<>();
+    for (int band = 0; band < bands; band++) {
+      long[] bucket = buckets.get(bandKey(signature, band));
+      if (bucket == null) {
+        continue;
+      }
+      for (long sequence : bucket) {
+        if (seen.add(sequence)) {
+          consumer.accept(ring[(int) (sequence % ring.length)]);
+        }
+      }
+    }
+  }
+
+  int size() {
+    return sequenceByMessage.size();
+  }
+
+  private void evictOldest() {
+    int slot = (int) (oldestSequence % ring.length);
+    remove(ring[slot], oldestSequence);
+    ring[slot] = null;
+    oldestSequence++;
+  }
+
+  private void remove(Entry entry, long sequence) {
+    sequenceByMessage.remove(entry.ref(), sequence);
+    for (int band = 0; band < bands; band++) {
+      long key = bandKey(entry.signature(), band);
+      long[] bucket = buckets.get(key);
+      if (bucket == null) {
+        continue;
+      }
+      long[] remaining = Arrays.stream(bucket).filter(other -> other != sequence).toArray();
+      if (remaining.length == 0) {
+        buckets.remove(key);
+      } else {
+        buckets.put(key, remaining);
+      }
+    }
+  }
+
+  private long bandKey(int[] signature, int band) {
+    long key = band;
+    for (int i = band * rows; i < (band + 1) * rows; i++) {
+      key = (key * 0x9e3779b97f4a7c15L) ^ signature[i];
+    }
+    return key * 0xbf58476d1ce4e5b9L ^ band;
+  }
+
+  /**
+   * A message in the index. {@code clusterChatId}, {@code clusterId} and {@code clusterDate} are the chat, id and
+   * date of the first seen message of its cluster.
+   */
+  record Entry(long messageId, long chatId, int date, long clusterChatId, long clusterId, int clusterDate,
+               int[] signature) {
+
+    MessageRef ref() {
+      return new MessageRef(chatId, messageId);
+    }
+
+    MessageRef cluster() {
+      return new MessageRef(clusterChatId, clusterId);
+    }
+  }
+
+  @FunctionalInterface
+  interface CandidateConsumer {
+    void accept(Entry entry);
+  }
+}
@@ -0,0 +1,8 @@
+package live.yurii.yugram.duplicates;
+
+/**
+ * A message by its chat and id, message ids being unique per chat only. A cluster is referred to by its
+ * first seen message.
+ */
+public record MessageRef(long chatId, long messageId) {
+}
@@ -0,0 +1,160 @@
+package live.yurii.yugram.duplicates;
+
+import live.yurii.yugram.duplicates.LshIndex.Entry;
+import live.yurii.yugram.duplicates.dto.DuplicateMemberDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * MinHash signatures of messages and the near-duplicate cluster each message joined, stored as 4 bytes per hash.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MessageSignatureRepository {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public void insertAll(List<SignedMessage> messages) {
+    jdbcTemplate.batchUpdate("""
+            INSERT INTO message_signatures (message_id, chat_id, date, cluster_chat_id, cluster_id, similarity, signature)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (chat_id, message_id) DO NOTHING""",
+        messages, messages.size(), (ps, message) -> {
+          Entry entry = message.entry();
+          ps.setLong(1, entry.messageId());
+          ps.setLong(2, entry.chatId());
+          ps.setInt(3, entry.date());
+          ps.setLong(4, entry.clusterChatId());
+          ps.setLong(5, entry.clusterId());
+          ps.setDouble(6, message.similarity());
+          ps.setBytes(7, toBytes(entry.signature()));
+        });
+  }
+
+  /**
+   * Stream the signatures of messages dated from {@code from} on, oldest first.
+   */
+  public void scanSince(int from, EntryVisitor visitor) {
+    jdbcTemplate.query("""
+            SELECT s.message_id, s.chat_id, s.date, s.cluster_chat_id, s.cluster_id,
+                   COALESCE(c.date, s.date) AS cluster_date, s.signature
+            FROM message_signatures s
+            LEFT JOIN message_signatures c ON c.chat_id = s.cluster_chat_id AND c.message_id = s.cluster_id
+            WHERE s.date >= ? ORDER BY s.date, s.message_id""",
+        (RowCallbackHandler) rs -> visitor.visit(new Entry(rs.getLong("message_id"), rs.getLong("chat_id"),
+            rs.getInt("date"), rs.getLong("cluster_chat_id"), rs.getLong("cluster_id"), rs.getInt("cluster_date"),
+            fromBytes(rs.getBytes("signature")))),
+        from);
+  }
+
+  /**
+   * Stream the stored messages dated from {@code from} on that have no signature yet, oldest first.
+   */
+  public void scanUnsignedMessages(int from, MessageVisitor visitor) {
+    jdbcTemplate.query("""
+            SELECT m.id, m.chat_id, m.date, m.content FROM messages m
+            WHERE m.date >= ?
+              AND NOT EXISTS (SELECT 1 FROM message_signatures s WHERE s.chat_id = m.chat_id AND s.message_id = m.id)
+            ORDER BY m.date, m.id""",
+        (RowCallbackHandler) rs -> visitor.visit(rs.getLong("id"), rs.getLong("chat_id"), rs.getInt("date"),
+            rs.getString("content")),
+        from);
+  }
+
+  public boolean isEmpty() {
+    return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+        "SELECT EXISTS (SELECT 1 FROM message_signatures)", Boolean.class));
+  }
+
+  /**
+   * The clusters with at least {@code minSize} members and a member dated in {@code [from, to)},
+   * the most recently active first.
+   */
+  public List<MessageRef> findClusters(int from, int to, int minSize, int limit) {
+    return jdbcTemplate.query("""
+            SELECT cluster_chat_id, cluster_id FROM message_signatures
+            WHERE (cluster_chat_id, cluster_id) IN (SELECT DISTINCT cluster_chat_id, cluster_id FROM message_signatures
+                                                    WHERE date >= ? AND date < ?)
+            GROUP BY cluster_chat_id, cluster_id
+            HAVING COUNT(*) >= ?
+            ORDER BY MAX(date) DESC, cluster_id DESC, cluster_chat_id DESC
+            LIMIT ?""",
+        (rs, rowNum) -> new MessageRef(rs.getLong("cluster_chat_id"), rs.getLong("cluster_id")),
+        from, to, minSize, limit);
+  }
+
+  public MessageRef findCluster(MessageRef message) {
+    List<MessageRef> clusters = jdbcTemplate.query(
+        "SELECT cluster_chat_id, cluster_id FROM message_signatures WHERE chat_id = ? AND message_id = ?",
+        (rs, rowNum) -> new MessageRef(rs.getLong("cluster_chat_id"), rs.getLong("cluster_id")),
+        message.chatId(), message.messageId());
+    return clusters.isEmpty() ? null : clusters.getFirst();
+  }
+
+  /**
+   * Members of the given clusters in first seen order, with their text if the message is still stored.
+   * A private chat message stored by several accounts shows the text of the lowest account id.
+   */
+  public void findMembers(Collection<MessageRef> clusters, MemberVisitor visitor) {
+    jdbcTemplate.query("""
+            SELECT s.cluster_chat_id, s.cluster_id, s.message_id, s.chat_id, s.date, s.similarity,
+                   (SELECT m.content FROM messages m WHERE m.chat_id = s.chat_id AND m.id = s.message_id
+                    ORDER BY m.account_id LIMIT 1) AS content
+            FROM message_signatures s
+            WHERE (s.cluster_chat_id, s.cluster_id) IN (SELECT * FROM unnest(?, ?))
+            ORDER BY s.cluster_chat_id, s.cluster_id, s.date, s.message_id""",
+        ps -> {
+          ps.setArray(1, ps.getConnection().createArrayOf("bigint",
+              clusters.stream().map(MessageRef::chatId).toArray()));
+          ps.setArray(2, ps.getConnection().createArrayOf("bigint",
+              clusters.stream().map(MessageRef::messageId).toArray()));
+        },
+        (RowCallbackHandler) rs -> visitor.visit(
+            new MessageRef(rs.getLong("cluster_chat_id"), rs.getLong("cluster_id")), DuplicateMemberDto.builder()
+            .messageId(rs.getLong("message_id"))
+            .chatId(rs.getLong("chat_id"))
+            .date(rs.getInt("date"))
+            .similarity(rs.getDouble("similarity"))
+            .content(rs.getString("content"))
+            .build()));
+  }
+
+  private static byte[] toBytes(int[] signature) {
+    ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+    buffer.asIntBuffer().put(signature);
+    return buffer.array();
+  }
+
+  private static int[] fromBytes(byte[] bytes) {
+    int[] signature = new int[bytes.length / Integer.BYTES];
+    ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+    return signature;
+  }
+
+  /**
+   * A new index entry with its estimated similarity to the message it was matched with.
+   */
+  public record SignedMessage(Entry entry, double similarity) {
+  }
+
+  @FunctionalInterface
+  public interface EntryVisitor {
+    void visit(Entry entry);
+  }
+
+  @FunctionalInterface
+  public interface MessageVisitor {
+    void visit(long messageId, long chatId, int date, String content);
+  }
+
+  @FunctionalInterface
+  public interface MemberVisitor {
+    void visit(MessageRef cluster, DuplicateMemberDto member);
+  }
+}
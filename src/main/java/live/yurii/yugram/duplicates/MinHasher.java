@@ -0,0 +1,129 @@
+package live.yurii.yugram.duplicates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+/**
+ * MinHash signatures of the word shingles of message texts.
+ * <p>
+ * Texts are lower-cased with "ё" folded into "е" and links removed, so that reposts with another link
+ * or changed punctuation still compare equal. Each shingle is hashed to 64 bits once; hash {@code i} of
+ * the signature is then the multiply-shift {@code (a_i * x + b_i) >>> 33}, with seeds fixed so that stored
+ * signatures stay comparable across restarts. The fraction of equal positions of two signatures estimates
+ * the Jaccard similarity of their shingle sets.
+ */
+final class MinHasher {
+
+  private static final Pattern LINK = Pattern.compile("(?i)\\b(?:https?://|www\\.|t\\.me/)\\S+");
+  private static final long SEED = 0x5eed_1234_abcdL;
+
+  private final int shingleSize;
+  private final int minShingles;
+  private final long[] multipliers;
+  private final long[] increments;
+
+  MinHasher(int hashes, int shingleSize, int minShingles) {
+    this.shingleSize = shingleSize;
+    this.minShingles = minShingles;
+    this.multipliers = new long[hashes];
+    this.increments = new long[hashes];
+    SplittableRandom random = new SplittableRandom(SEED);
+    for (int i = 0; i < hashes; i++) {
+      multipliers[i] = random.nextLong() | 1;
+      increments[i] = random.nextLong();
+    }
+  }
+
+  /**
+   * Signature of {@code text}, or null if it has fewer than {@code minShingles} distinct shingles.
+   */
+  int[] signature(String text) {
+    if (text == null || text.isBlank()) {
+      return null;
+    }
+    long[] shingles = shingles(words(text));
+    if (shingles.length < minShingles) {
+      return null;
+    }
+    int[] signature = new int[multipliers.length];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    for (long shingle : shingles) {
+      for (int i = 0; i < signature.length; i++) {
+        int hash = (int) ((multipliers[i] * shingle + increments[i]) >>> 33);
+        if (hash < signature[i]) {
+          signature[i] = hash;
+        }
+      }
+    }
+    return signature;
+  }
+
+  static double similarity(int[] first, int[] second) {
+    int equal = 0;
+    for (int i = 0; i < first.length; i++) {
+      if (first[i] == second[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / first.length;
+  }
+
+  /**
+   * Distinct shingle hashes, sorted.
+   */
+  private long[] shingles(List<String> words) {
+    long[] shingles = new long[Math.max(0, words.size() - shingleSize + 1)];
+    for (int i = 0; i < shingles.length; i++) {
+      long hash = 0xcbf29ce484222325L;
+      for (int j = i; j < i + shingleSize; j++) {
+        String word = words.get(j);
+        for (int k = 0; k < word.length(); k++) {
+          hash = (hash ^ word.charAt(k)) * 0x100000001b3L;
+        }
+        hash = (hash ^ ' ') * 0x100000001b3L;
+      }
+      shingles[i] = mix(hash);
+    }
+    Arrays.sort(shingles);
+    int distinct = 0;
+    for (int i = 0; i < shingles.length; i++) {
+      if (i == 0 || shingles[i] != shingles[i - 1]) {
+        shingles[distinct++] = shingles[i];
+      }
+    }
+    return Arrays.copyOf(shingles, distinct);
+  }
+
+  private static List<String> words(String text) {
+    String stripped = LINK.matcher(text).replaceAll(" ");
+    List<String> words = new ArrayList<>();
+    StringBuilder word = new StringBuilder();
+    for (int i = 0; i < stripped.length(); i++) {
+      char c = stripped.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        c = Character.toLowerCase(c);
+        word.append(c == 'ё' ? 'е' : c);
+      } else if (!word.isEmpty()) {
+        words.add(word.toString());
+        word.setLength(0);
+      }
+    }
+    if (!word.isEmpty()) {
+      words.add(word.toString());
+    }
+    return words;
+  }
+
+  /**
+   * SplitMix64 finalizer, FNV-1a alone leaves the low bits of similar shingles correlated.
+   */
+  private static long mix(long value) {
+    long z = value;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,30 @@
+package live.yurii.yugram.duplicates.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DuplicateClusterDto {
+  /**
+   * Chat of the first seen message of the cluster.
+   */
+  private long clusterChatId;
+  /**
+   * Id of the first seen message of the cluster.
+   */
+  private long clusterId;
+  private int size;
+  private int firstSeen;
+  private int lastSeen;
+  /**
+   * Members in the order they were first seen.
+   */
+  private List<DuplicateMemberDto> members;
+}
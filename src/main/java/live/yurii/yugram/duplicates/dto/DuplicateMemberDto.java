@@ -0,0 +1,21 @@
+package live.yurii.yugram.duplicates.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DuplicateMemberDto {
+  private long messageId;
+  private long chatId;
+  private int date;
+  /**
+   * Estimated similarity to the message it was matched with when it arrived, 1 for the first seen message.
+   */
+  private double similarity;
+  private String content;
+}
@@ -0,0 +1,21 @@
+package live.yurii.yugram.formats;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Media types of the binary representations, next to the default JSON.
+ */
+public final class BinaryFormats {
+
+  public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+
+  public static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+  /**
+   * Page responses as one CBOR map of column arrays instead of an array of row objects.
+   */
+  public static final MediaType COLUMNAR = MediaType.valueOf("application/vnd.yugram.columnar+cbor");
+
+  private BinaryFormats() {
+  }
+}
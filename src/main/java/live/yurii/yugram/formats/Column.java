@@ -0,0 +1,13 @@
+package live.yurii.yugram.formats;
+
+import java.util.function.Function;
+
+/**
+ * One column of a {@link ColumnarPage}: its name, as in the JSON representation, and how to read it from a row.
+ */
+public record Column<R>(String name, Function<R, ?> value) {
+
+  public static <R> Column<R> of(String name, Function<R, ?> value) {
+    return new Column<>(name, value);
+  }
+}
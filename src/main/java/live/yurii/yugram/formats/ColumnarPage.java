@@ -0,0 +1,30 @@
+package live.yurii.yugram.formats;
+
+import java.util.List;
+
+/**
+ * A page response that can also be written column by column, see {@link ColumnarPageHttpMessageConverter}.
+ * <p>
+ * The getters match the ones Lombok generates for the page response DTOs.
+ */
+public interface ColumnarPage<R> {
+
+  List<R> getContent();
+
+  int getPage();
+
+  int getSize();
+
+  long getTotalElements();
+
+  int getTotalPages();
+
+  boolean isFirst();
+
+  boolean isLast();
+
+  /**
+   * Columns of the rows, in output order.
+   */
+  List<Column<R>> columns();
+}
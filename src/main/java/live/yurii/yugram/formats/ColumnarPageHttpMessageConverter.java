@@ -0,0 +1,93 @@
+package live.yurii.yugram.formats;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes {@link ColumnarPage}s as {@link BinaryFormats#COLUMNAR}, for bulk consumers that load pages into data frames.
+ * <p>
+ * The body is a single CBOR map with the page metadata and a {@code columns} map from column name to an
+ * array holding that column for all rows:
+ * <pre>
+ * {"page": 0, "size": 10, "totalElements": 2, "totalPages": 1, "first": true, "last": true, "rows": 2,
+ *  "columns": {"id": [1, 2], "chatId": [200, 200], "content": ["Hello", "World"]}}
+ * </pre>
+ * Field names are written once per page instead of once per row, and columns that are null in every
+ * row are left out, like the JSON representation leaves out empty optional fields. Any CBOR decoder
+ * can read it.
+ */
+public class ColumnarPageHttpMessageConverter extends AbstractHttpMessageConverter<ColumnarPage<?>> {
+
+  private final CBORFactory factory = new CBORFactory();
+
+  public ColumnarPageHttpMessageConverter() {
+    super(BinaryFormats.COLUMNAR);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return ColumnarPage.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected ColumnarPage<?> readInternal(Class<? extends ColumnarPage<?>> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Columnar pages are write-only", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(ColumnarPage<?> page, HttpOutputMessage outputMessage) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(outputMessage.getBody())) {
+      write(page, generator);
+    }
+  }
+
+  private static <R> void write(ColumnarPage<R> page, JsonGenerator generator) throws IOException {
+    List<R> rows = page.getContent() != null ? page.getContent() : List.of();
+    generator.writeStartObject();
+    generator.writeNumberField("page", page.getPage());
+    generator.writeNumberField("size", page.getSize());
+    generator.writeNumberField("totalElements", page.getTotalElements());
+    generator.writeNumberField("totalPages", page.getTotalPages());
+    generator.writeBooleanField("first", page.isFirst());
+    generator.writeBooleanField("last", page.isLast());
+    generator.writeNumberField("rows", rows.size());
+    generator.writeObjectFieldStart("columns");
+    for (Column<R> column : page.columns()) {
+      if (rows.stream().allMatch(row -> column.value().apply(row) == null)) {
+        continue;
+      }
+      generator.writeFieldName(column.name());
+      generator.writeStartArray(rows, rows.size());
+      for (R row : rows) {
+        writeValue(column.value().apply(row), generator);
+      }
+      generator.writeEndArray();
+    }
+    generator.writeEndObject();
+    generator.writeEndObject();
+  }
+
+  private static void writeValue(Object value, JsonGenerator generator) throws IOException {
+    switch (value) {
+      case null -> generator.writeNull();
+      case Long number -> generator.writeNumber(number);
+      case Integer number -> generator.writeNumber(number);
+      case String text -> generator.writeString(text);
+      case Boolean flag -> generator.writeBoolean(flag);
+      default -> throw new IllegalArgumentException("Unsupported column value " + value.getClass().getName());
+    }
+  }
+}
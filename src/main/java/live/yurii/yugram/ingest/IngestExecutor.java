@@ -0,0 +1,132 @@
+package live.yurii.yugram.ingest;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs update handlers off the TDLib callback thread.
+ * <p>
+ * Work is spread over a fixed number of single-worker lanes chosen by key, so updates with the same key
+ * (a chat or a user) are handled one at a time and in arrival order while different keys proceed in
+ * parallel. A full lane blocks the submitter, which pushes back on TDLib instead of growing without bound.
+ * Every task records how long it waited in its lane and how long its handlers took, commit included.
+ */
+@Slf4j
+@Component
+public class IngestExecutor implements SmartLifecycle {
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+  private final ThreadPoolExecutor[] lanes;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  private volatile boolean running;
+
+  public IngestExecutor(IngestProperties properties, MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    ThreadFactory threadFactory = properties.isVirtualThreads()
+        ? Thread.ofVirtual().name("ingest-", 0).factory()
+        : Thread.ofPlatform().name("ingest-", 0).factory();
+    this.lanes = new ThreadPoolExecutor[properties.getLanes()];
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(properties.getQueueCapacity()), threadFactory, IngestExecutor::waitForSpace);
+    }
+    Gauge.builder("yugram.ingest.backlog", this, IngestExecutor::backlog)
+        .description("Updates waiting in all ingest lanes")
+        .register(meterRegistry);
+    log.info("Ingest runs on {} lanes of {} threads", lanes.length, properties.isVirtualThreads() ? "virtual" : "platform");
+  }
+
+  public void execute(long key, String description, Runnable task) {
+    long submitted = System.nanoTime();
+    lanes[laneOf(key)].execute(() -> {
+      long started = System.nanoTime();
+      timer("yugram.ingest.wait", description, "queued").record(started - submitted, TimeUnit.NANOSECONDS);
+      String outcome = "success";
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        outcome = "error";
+        log.error("Failed to handle {}", description, e);
+      } finally {
+        timer("yugram.ingest.duration", description, outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      }
+    });
+  }
+
+  /**
+   * Number of updates waiting in all lanes.
+   */
+  public int backlog() {
+    int backlog = 0;
+    for (ThreadPoolExecutor lane : lanes) {
+      backlog += lane.getQueue().size();
+    }
+    return backlog;
+  }
+
+  @Override
+  public void start() {
+    running = true;
+  }
+
+  /**
+   * Handle everything already queued. Lifecycle beans stop before any bean is destroyed,
+   * so the handlers' own shutdown hooks still see these updates.
+   */
+  @Override
+  public void stop() {
+    running = false;
+    for (ThreadPoolExecutor lane : lanes) {
+      lane.shutdown();
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MILLIS);
+    try {
+      for (ThreadPoolExecutor lane : lanes) {
+        if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+          log.warn("Ingest lane did not drain in time, {} updates are lost", lane.shutdownNow().size());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private Timer timer(String name, String event, String outcome) {
+    return timers.computeIfAbsent(name + ":" + event + ":" + outcome, key -> Timer.builder(name)
+        .description(name.endsWith("wait") ? "Time updates waited in their ingest lane" : "Time the handlers of an update took")
+        .tag("event", event)
+        .tag("outcome", outcome)
+        .register(meterRegistry));
+  }
+
+  private int laneOf(long key) {
+    // chat ids share long runs of digits, mix them before taking the lane
+    return Math.floorMod(Long.hashCode(key * 0x9E3779B97F4A7C15L), lanes.length);
+  }
+
+  private static void waitForSpace(Runnable task, ThreadPoolExecutor lane) {
+    if (lane.isShutdown()) {
+      throw new RejectedExecutionException("Ingest is shutting down");
+    }
+    try {
+      lane.getQueue().put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for an ingest lane", e);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package live.yurii.yugram.ingest;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the workers that process TDLib updates.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.ingest")
+public class IngestProperties {
+
+  /**
+   * Number of ordered lanes. Updates of the same chat or user always go to the same lane.
+   */
+  private int lanes = 8;
+
+  /**
+   * Updates queued per lane before the TDLib callback thread is made to wait.
+   */
+  private int queueCapacity = 10000;
+
+  /**
+   * Run lane workers on virtual threads instead of platform threads.
+   */
+  private boolean virtualThreads = false;
+}
@@ -0,0 +1,19 @@
+package live.yurii.yugram.live;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class LiveFeedConfiguration {
+
+  /**
+   * Runs the per-subscriber drain tasks. A write to a stalled browser blocks only its own virtual thread.
+   */
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService liveFeedExecutor() {
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("live-feed-", 0).factory());
+  }
+}
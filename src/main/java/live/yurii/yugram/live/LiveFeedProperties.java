@@ -0,0 +1,52 @@
+package live.yurii.yugram.live;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the Server-Sent Events feeds.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.live")
+public class LiveFeedProperties {
+
+  /**
+   * Number of events buffered per subscriber before the overflow policy applies.
+   */
+  private int bufferSize = 256;
+
+  /**
+   * What to do with a subscriber whose buffer is full.
+   */
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+  /**
+   * Maximum number of concurrent subscribers per feed.
+   */
+  private int maxSubscribers = 1000;
+
+  /**
+   * Lifetime of a subscription; browsers reconnect automatically when it ends.
+   */
+  private Duration timeout = Duration.ofMinutes(30);
+
+  /**
+   * Interval between heartbeat comments sent to idle subscribers, in milliseconds.
+   */
+  private long heartbeatIntervalMs = 15000;
+
+  public enum OverflowPolicy {
+    /**
+     * Discard the oldest buffered events and tell the subscriber how many were lost.
+     */
+    DROP_OLDEST,
+    /**
+     * Disconnect the subscriber, it is expected to reload and subscribe again.
+     */
+    DISCONNECT
+  }
+}
@@ -0,0 +1,178 @@
+package live.yurii.yugram.live;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Fans events out to Server-Sent Events subscribers.
+ * <p>
+ * {@link #publish} never blocks the caller: every subscriber has a bounded buffer that is drained by
+ * its own task on the executor, so a slow browser only ever delays itself. When a buffer is full the
+ * configured {@link LiveFeedProperties.OverflowPolicy} either drops the oldest events (the subscriber
+ * receives a {@code dropped} event with their count) or disconnects the subscriber.
+ *
+ * @param <T> event payload type
+ */
+@Slf4j
+public class SseFanout<T> {
+
+  private final String name;
+  private final LiveFeedProperties properties;
+  private final Executor executor;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  // slots taken against max-subscribers, reserved before a subscriber is added and released when it is removed
+  private final AtomicInteger reserved = new AtomicInteger();
+
+  public SseFanout(String name, LiveFeedProperties properties, Executor executor) {
+    this.name = name;
+    this.properties = properties;
+    this.executor = executor;
+  }
+
+  public SseEmitter subscribe(Predicate<T> filter) {
+    if (reserved.incrementAndGet() > properties.getMaxSubscribers()) {
+      reserved.decrementAndGet();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscribers of " + name);
+    }
+    SseEmitter emitter;
+    try {
+      emitter = new SseEmitter(properties.getTimeout().toMillis());
+      Subscriber subscriber = new Subscriber(emitter, filter);
+      emitter.onCompletion(() -> remove(subscriber));
+      emitter.onTimeout(subscriber::close);
+      emitter.onError(e -> remove(subscriber));
+      subscribers.add(subscriber);
+    } catch (RuntimeException e) {
+      reserved.decrementAndGet();
+      throw e;
+    }
+    log.debug("New subscriber of {}, {} in total", name, subscribers.size());
+    return emitter;
+  }
+
+  public void publish(String eventName, String eventId, T data) {
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.filter.test(data)) {
+        subscriber.offer(new LiveEvent<>(eventName, eventId, data));
+      }
+    }
+  }
+
+  /**
+   * Send a comment to every subscriber, which keeps proxies from closing idle connections
+   * and detects browsers that went away.
+   */
+  public void heartbeat() {
+    subscribers.forEach(Subscriber::requestHeartbeat);
+  }
+
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  /**
+   * Only the first removal of a subscriber releases its slot.
+   */
+  private void remove(Subscriber subscriber) {
+    if (subscribers.remove(subscriber)) {
+      reserved.decrementAndGet();
+    }
+  }
+
+  private record LiveEvent<T>(String name, String id, T data) {
+  }
+
+  private final class Subscriber {
+
+    private final SseEmitter emitter;
+    private final Predicate<T> filter;
+    private final ArrayBlockingQueue<LiveEvent<T>> buffer = new ArrayBlockingQueue<>(properties.getBufferSize());
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean heartbeatDue;
+    private volatile boolean closed;
+
+    private Subscriber(SseEmitter emitter, Predicate<T> filter) {
+      this.emitter = emitter;
+      this.filter = filter;
+    }
+
+    private void offer(LiveEvent<T> event) {
+      if (closed) {
+        return;
+      }
+      while (!buffer.offer(event)) {
+        if (properties.getOverflowPolicy() == LiveFeedProperties.OverflowPolicy.DISCONNECT) {
+          log.info("Disconnecting slow subscriber of {}", name);
+          closed = true;
+          remove(this);
+          executor.execute(this::close);
+          return;
+        }
+        if (buffer.poll() != null) {
+          dropped.incrementAndGet();
+        }
+      }
+      scheduleDrain();
+    }
+
+    private void requestHeartbeat() {
+      heartbeatDue = true;
+      scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+      if (draining.compareAndSet(false, true)) {
+        executor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      try {
+        do {
+          long lost = dropped.getAndSet(0);
+          if (lost > 0) {
+            emitter.send(SseEmitter.event().name("dropped").data(lost));
+          }
+          if (heartbeatDue) {
+            heartbeatDue = false;
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+          }
+          LiveEvent<T> event;
+          while ((event = buffer.poll()) != null) {
+            emitter.send(SseEmitter.event().name(event.name()).id(event.id()).data(event.data(), MediaType.APPLICATION_JSON));
+          }
+          draining.set(false);
+          // events offered after the last poll but before the flag was cleared need another round
+        } while (!closed && hasPendingWork() && draining.compareAndSet(false, true));
+      } catch (IOException | IllegalStateException e) {
+        log.debug("Subscriber of {} went away: {}", name, e.getMessage());
+        close();
+      }
+    }
+
+    private boolean hasPendingWork() {
+      return !buffer.isEmpty() || dropped.get() > 0 || heartbeatDue;
+    }
+
+    private void close() {
+      closed = true;
+      remove(this);
+      buffer.clear();
+      emitter.complete();
+    }
+  }
+}
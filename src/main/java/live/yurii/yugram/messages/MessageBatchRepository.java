@@ -0,0 +1,15 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.messages.dto.MessageDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MessageBatchRepository {
+
+  /**
+   * Find messages by id with a single {@code = ANY(?)} query. The result is in no particular order.
+   * An id stored in several chats is found once, in the chat with the lowest id.
+   */
+  List<MessageDto> findDtosByIds(Collection<Long> ids);
+}
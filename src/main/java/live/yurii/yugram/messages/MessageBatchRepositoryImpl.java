@@ -0,0 +1,35 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+class MessageBatchRepositoryImpl implements MessageBatchRepository {
+
+  private static final String SELECT_BY_IDS = "SELECT DISTINCT ON (id) id, sender_id, chat_id, date, content FROM messages"
+      + " WHERE id = ANY(?) ORDER BY id, chat_id, account_id";
+
+  private static final RowMapper<MessageDto> ROW_MAPPER = (rs, rowNum) -> MessageDto.builder()
+      .id(rs.getLong("id"))
+      .senderId(rs.getLong("sender_id"))
+      .chatId(rs.getLong("chat_id"))
+      .date(rs.getInt("date"))
+      .content(rs.getString("content"))
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public List<MessageDto> findDtosByIds(Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    return jdbcTemplate.query(SELECT_BY_IDS,
+        ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())), ROW_MAPPER);
+  }
+}
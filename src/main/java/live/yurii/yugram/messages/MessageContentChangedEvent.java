@@ -0,0 +1,24 @@
+package live.yurii.yugram.messages;
+
+import lombok.Getter;
+import org.drinkless.tdlib.TdApi;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * An edit of a message's content, as received by an account's client.
+ */
+@Getter
+public class MessageContentChangedEvent extends ApplicationEvent {
+
+  /**
+   * The account whose client received the edit.
+   */
+  private final int accountId;
+  private final TdApi.UpdateMessageContent updateMessageContent;
+
+  public MessageContentChangedEvent(Object source, int accountId, TdApi.UpdateMessageContent updateMessageContent) {
+    super(source);
+    this.accountId = accountId;
+    this.updateMessageContent = updateMessageContent;
+  }
+}
@@ -1,5 +1,12 @@
 package live.yurii.yugram.messages;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import live.yurii.yugram.batch.BatchLookupProperties;
+import live.yurii.yugram.batch.IdBatch;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.cache.ConditionalRequests;
+import live.yurii.yugram.messages.dto.MessageBatchResponse;
 import live.yurii.yugram.messages.dto.MessageDto;
 import live.yurii.yugram.messages.dto.MessagePageResponse;
 import lombok.RequiredArgsConstructor;
@@ -9,8 +16,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -20,12 +32,23 @@ import java.util.List;
 public class MessageController {
 
   private final MessageRepository messageRepository;
+  private final MessageTailCache messageTailCache;
+  private final ConditionalRequests conditionalRequests;
+  private final ChangeVersions changeVersions;
+  private final BatchLookupProperties batchLookupProperties;
+  private final MessageEnricher messageEnricher;
+  /**
+   * Ids of the senders and chats named on an enriched page, by the messages tag and the page it was built for.
+   */
+  private final Cache<String, long[]> enrichedPageIds = Caffeine.newBuilder().maximumSize(10_000).build();
   private static final int DEFAULT_PAGE_SIZE = 10;
 
   @GetMapping("/all")
   public ResponseEntity<MessagePageResponse> getAllMessages(
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "10") int size) {
+      @RequestParam(defaultValue = "10") int size,
+      @RequestParam(defaultValue = "false") boolean enrich,
+      WebRequest request) {
 
     log.debug("Getting all messages with page: {}, size: {}", page, size);
 
@@ -34,63 +57,70 @@ public class MessageController {
     int normalizedSize = Math.max(1, Math.min(size, DEFAULT_PAGE_SIZE));
     Pageable pageable = PageRequest.of(normalizedPage, normalizedSize);
 
-    Page<MessageEntity> messagePage = messageRepository.findAll(pageable);
-
-    MessagePageResponse response = MessagePageResponse.builder()
-        .content(messagePage.getContent().stream().map(MessageDto::fromEntity).toList())
-        .page(messagePage.getNumber())
-        .size(messagePage.getSize())
-        .totalElements(messagePage.getTotalElements())
-        .totalPages(messagePage.getTotalPages())
-        .first(messagePage.isFirst())
-        .last(messagePage.isLast())
-        .build();
-
-    return ResponseEntity.ok(response);
+    return respond(request, changeVersions.messagesTag(), pageable, enrich, () -> messageRepository.findAllDtos(pageable));
   }
 
   @GetMapping("/byChatId/{chatId}")
   public ResponseEntity<MessagePageResponse> getMessagesByChatId(
       @PathVariable Long chatId,
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "10") int size) {
+      @RequestParam(defaultValue = "10") int size,
+      @RequestParam(defaultValue = "false") boolean enrich,
+      WebRequest request) {
 
     log.debug("Getting messages for chatId: {} with page: {}, size: {}", chatId, page, size);
 
     // Validate and normalize pagination parameters
     int normalizedPage = Math.max(0, page);
     int normalizedSize = Math.max(1, Math.min(size, DEFAULT_PAGE_SIZE));
-    Pageable pageable = PageRequest.of(normalizedPage, normalizedSize);
-
-    Page<MessageEntity> messagePage = messageRepository.findByChatId(chatId, pageable);
+    Pageable pageable = PageRequest.of(normalizedPage, normalizedSize, MessageTailCache.NEWEST_FIRST);
 
-    MessagePageResponse response = MessagePageResponse.builder()
-        .content(messagePage.getContent().stream().map(MessageDto::fromEntity).toList())
-        .page(messagePage.getNumber())
-        .size(messagePage.getSize())
-        .totalElements(messagePage.getTotalElements())
-        .totalPages(messagePage.getTotalPages())
-        .first(messagePage.isFirst())
-        .last(messagePage.isLast())
-        .build();
-
-    return ResponseEntity.ok(response);
+    // The newest pages are served from memory, only deep history goes to the database
+    return respond(request, changeVersions.chatMessagesTag(chatId), pageable, enrich,
+        () -> messageTailCache.findPage(chatId, normalizedPage, normalizedSize)
+            .orElseGet(() -> messageRepository.findDtosByChatId(chatId, pageable)));
   }
 
   @GetMapping("/byId/{id}")
-  public ResponseEntity<MessageDto> getMessageById(@PathVariable Long id) {
+  public ResponseEntity<MessageDto> getMessageById(
+      @PathVariable Long id,
+      @RequestParam(defaultValue = "false") boolean enrich) {
     log.debug("Getting message by id: {}", id);
 
-    return messageRepository.findById(id)
-        .map(message -> ResponseEntity.ok(MessageDto.fromEntity(message)))
+    return messageRepository.findDtoById(id)
+        .map(message -> enrich ? messageEnricher.enrich(message) : message)
+        .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
   }
 
+  @GetMapping("/byIds")
+  public ResponseEntity<MessageBatchResponse> getMessagesByIds(
+      @RequestParam List<Long> ids,
+      @RequestParam(defaultValue = "false") boolean enrich) {
+    log.debug("Getting messages by {} ids", ids.size());
+
+    return ResponseEntity.ok(findMessagesByIds(ids, enrich));
+  }
+
+  /**
+   * Same as the GET variant, for id sets that do not fit into a URL.
+   */
+  @PostMapping("/byIds")
+  public ResponseEntity<MessageBatchResponse> postMessagesByIds(
+      @RequestBody List<Long> ids,
+      @RequestParam(defaultValue = "false") boolean enrich) {
+    log.debug("Getting messages by {} ids", ids.size());
+
+    return ResponseEntity.ok(findMessagesByIds(ids, enrich));
+  }
+
   @GetMapping("/byChatIdAndSenderId/{id}")
   public ResponseEntity<MessagePageResponse> getMessagesByChatIdAndSenderId(
       @PathVariable Long id,
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "10") int size) {
+      @RequestParam(defaultValue = "10") int size,
+      @RequestParam(defaultValue = "false") boolean enrich,
+      WebRequest request) {
 
     log.debug("Getting messages where chatId and senderId are both: {} with page: {}, size: {}", id, page, size);
 
@@ -99,10 +129,56 @@ public class MessageController {
     int normalizedSize = Math.max(1, Math.min(size, DEFAULT_PAGE_SIZE));
     Pageable pageable = PageRequest.of(normalizedPage, normalizedSize);
 
-    Page<MessageEntity> messagePage = messageRepository.findByChatIdAndSenderId(id, id, pageable);
+    return respond(request, changeVersions.chatMessagesTag(id), pageable, enrich,
+        () -> messageRepository.findDtosByChatIdAndSenderId(id, id, pageable));
+  }
+
+  @GetMapping("/chat-ids")
+  public ResponseEntity<List<Long>> getDistinctChatIds(WebRequest request) {
+    log.debug("Getting distinct chat IDs");
+
+    return conditionalRequests.respond(request, changeVersions.messagesTag(), messageRepository::findDistinctChatIds);
+  }
 
-    MessagePageResponse response = MessagePageResponse.builder()
-        .content(messagePage.getContent().stream().map(MessageDto::fromEntity).toList())
+  private MessageBatchResponse findMessagesByIds(List<Long> requested, boolean enrich) {
+    IdBatch batch = IdBatch.of(requested, batchLookupProperties.getMaxIds());
+    IdBatch.Result<MessageDto> result = batch.arrange(messageRepository.findDtosByIds(batch.ids()).stream()
+        .collect(Collectors.toMap(MessageDto::getId, Function.identity())));
+
+    return MessageBatchResponse.builder()
+        .content(content(result.values(), enrich))
+        .missingIds(result.missingIds())
+        .build();
+  }
+
+  /**
+   * Respond with a page of messages, tagged by {@code messagesTag}.
+   * <p>
+   * Enriched messages carry user and chat names, so their pages also change with the names of the senders and
+   * chats on them. The ids of those are only known once the page is built; they are remembered while the
+   * messages tag stays the same, so that an unchanged page is still confirmed without loading it.
+   */
+  private ResponseEntity<MessagePageResponse> respond(WebRequest request, String messagesTag, Pageable pageable,
+                                                      boolean enrich, Supplier<Page<MessageDto>> loader) {
+    if (!enrich) {
+      return conditionalRequests.respond(request, messagesTag, () -> response(loader.get(), false));
+    }
+    String key = messagesTag + " " + request.getDescription(false) + " " + pageable;
+    long[] ids = enrichedPageIds.getIfPresent(key);
+    Page<MessageDto> built = null;
+    if (ids == null) {
+      built = loader.get();
+      ids = namedIds(built.getContent());
+      enrichedPageIds.put(key, ids);
+    }
+    Page<MessageDto> page = built;
+    return conditionalRequests.respond(request, messagesTag + "." + changeVersions.namesTag(ids),
+        () -> response(page != null ? page : loader.get(), true));
+  }
+
+  private MessagePageResponse response(Page<MessageDto> messagePage, boolean enrich) {
+    return MessagePageResponse.builder()
+        .content(content(messagePage.getContent(), enrich))
         .page(messagePage.getNumber())
         .size(messagePage.getSize())
         .totalElements(messagePage.getTotalElements())
@@ -110,15 +186,18 @@ public class MessageController {
         .first(messagePage.isFirst())
         .last(messagePage.isLast())
         .build();
-
-    return ResponseEntity.ok(response);
   }
 
-  @GetMapping("/chat-ids")
-  public ResponseEntity<List<Long>> getDistinctChatIds() {
-    log.debug("Getting distinct chat IDs");
+  private static long[] namedIds(List<MessageDto> messages) {
+    return messages.stream()
+        .flatMapToLong(message -> message.getSenderId() != null
+            ? LongStream.of(message.getChatId(), message.getSenderId())
+            : LongStream.of(message.getChatId()))
+        .distinct()
+        .toArray();
+  }
 
-    List<Long> chatIds = messageRepository.findDistinctChatIds();
-    return ResponseEntity.ok(chatIds);
+  private List<MessageDto> content(List<MessageDto> messages, boolean enrich) {
+    return enrich ? messageEnricher.enrich(messages) : messages;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.chats.ChatCache;
+import live.yurii.yugram.chats.dto.ChatDto;
+import live.yurii.yugram.messages.dto.MessageDto;
+import live.yurii.yugram.users.UserCache;
+import live.yurii.yugram.users.dto.UserDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds sender and chat names to messages, so that they can be rendered without further lookups.
+ * <p>
+ * Names come from the user and chat caches, which ingest keeps warm; all misses of a page are loaded
+ * with one query per cache. Senders with negative ids are chats posting on their own behalf
+ * (channels, anonymous admins) and are resolved as chats.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageEnricher {
+
+  private final UserCache userCache;
+  private final ChatCache chatCache;
+
+  public List<MessageDto> enrich(List<MessageDto> messages) {
+    if (messages.isEmpty()) {
+      return messages;
+    }
+    Set<Long> userIds = new HashSet<>();
+    Set<Long> chatIds = new HashSet<>();
+    for (MessageDto message : messages) {
+      chatIds.add(message.getChatId());
+      if (message.getSenderId() != null) {
+        (message.getSenderId() > 0 ? userIds : chatIds).add(message.getSenderId());
+      }
+    }
+    Map<Long, UserDto> users = userIds.isEmpty() ? Map.of() : userCache.getAll(userIds);
+    Map<Long, ChatDto> chats = chatCache.getAll(chatIds);
+    return messages.stream().map(message -> enrich(message, users, chats)).toList();
+  }
+
+  public MessageDto enrich(MessageDto message) {
+    return enrich(List.of(message)).getFirst();
+  }
+
+  private static MessageDto enrich(MessageDto message, Map<Long, UserDto> users, Map<Long, ChatDto> chats) {
+    // cached DTOs are shared, every enriched message is a copy
+    MessageDto.MessageDtoBuilder enriched = message.toBuilder();
+    ChatDto chat = chats.get(message.getChatId());
+    if (chat != null) {
+      enriched.chatTitle(chat.getTitle());
+    }
+    UserDto user = message.getSenderId() != null ? users.get(message.getSenderId()) : null;
+    if (user != null) {
+      enriched.senderName(displayName(user)).senderUsername(user.getUsername());
+    } else if (message.getSenderId() != null && chats.get(message.getSenderId()) != null) {
+      enriched.senderName(chats.get(message.getSenderId()).getTitle());
+    }
+    return enriched.build();
+  }
+
+  private static String displayName(UserDto user) {
+    String firstName = user.getFirstName() != null ? user.getFirstName() : "";
+    String lastName = user.getLastName() != null ? user.getLastName() : "";
+    String name = (firstName + " " + lastName).trim();
+    return name.isEmpty() ? user.getUsername() : name;
+  }
+}
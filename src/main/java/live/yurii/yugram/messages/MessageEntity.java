@@ -3,6 +3,7 @@ package live.yurii.yugram.messages;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
 import jakarta.persistence.Table;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -11,6 +12,7 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "messages")
+@IdClass(MessageKey.class)
 @Data
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @AllArgsConstructor
@@ -23,6 +25,7 @@ public class MessageEntity {
   @Column(name = "sender_id")
   private long senderId; // can be user or chat
 
+  @Id
   @Column(name = "chat_id")
   private long chatId;
 
@@ -32,6 +35,10 @@ public class MessageEntity {
   @Column(name = "content")
   private String content; // interesting only for text messages (also as a description for photos, videos, etc.)
 
+  @Id
+  @Column(name = "account_id")
+  private int accountId; // the account whose chat it is, see TdLibParameters.storingAccount
+
   public MessageEntity(long id) {
     this.id = id;
   }
@@ -55,4 +62,9 @@ public class MessageEntity {
     this.content = content;
     return this;
   }
+
+  public MessageEntity withAccountId(int accountId) {
+    this.accountId = accountId;
+    return this;
+  }
 }
@@ -0,0 +1,60 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.live.LiveFeedProperties;
+import live.yurii.yugram.live.SseFanout;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Pushes committed messages to live subscribers as {@code message} events, and edits as {@code edit} events.
+ */
+@Component
+public class MessageFeed {
+
+  private final SseFanout<MessageDto> fanout;
+  private final MessageEnricher messageEnricher;
+
+  public MessageFeed(LiveFeedProperties properties, @Qualifier("liveFeedExecutor") ExecutorService executor,
+                     MessageEnricher messageEnricher) {
+    this.fanout = new SseFanout<>("messages", properties, executor);
+    this.messageEnricher = messageEnricher;
+  }
+
+  /**
+   * Subscribe to messages of the given chats, or of all chats if none are given.
+   */
+  public SseEmitter subscribe(Set<Long> chatIds) {
+    if (chatIds.isEmpty()) {
+      return fanout.subscribe(message -> true);
+    }
+    return fanout.subscribe(message -> chatIds.contains(message.getChatId()));
+  }
+
+  /**
+   * Live messages are always enriched, a client has no page to look the names up from.
+   */
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    if (fanout.subscriberCount() == 0) {
+      return;
+    }
+    MessageDto message = messageEnricher.enrich(event.getMessage());
+    fanout.publish(event.isCreated() ? "message" : "edit", String.valueOf(message.getId()), message);
+  }
+
+  @Scheduled(fixedRateString = "${app.live.heartbeat-interval-ms:15000}")
+  public void heartbeat() {
+    fanout.heartbeat();
+  }
+
+  public int subscriberCount() {
+    return fanout.subscriberCount();
+  }
+}
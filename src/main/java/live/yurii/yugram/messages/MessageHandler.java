@@ -1,14 +1,23 @@
 package live.yurii.yugram.messages;
 
 import jakarta.transaction.Transactional;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.ChangeOperation;
+import live.yurii.yugram.changes.ChangeRecorder;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.configuration.TdLibParameters;
+import live.yurii.yugram.diagnostics.jfr.MessageFilterEvent;
 import live.yurii.yugram.messages.config.MessageSaveProperties;
+import live.yurii.yugram.messages.dto.MessageDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.drinkless.tdlib.TdApi;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.Objects;
 import java.util.Optional;
 
 @Slf4j
@@ -18,8 +27,12 @@ public class MessageHandler implements InitializingBean {
 
   private final MessageRepository messageRepository;
   private final MessageSaveProperties saveProperties;
+  private final ApplicationEventPublisher publisher;
+  private final MessageMetrics messageMetrics;
+  private final LeaseManager leaseManager;
+  private final ChangeRecorder changeRecorder;
 
-  private static String getText(TdApi.MessageContent content) {
+  public static String getText(TdApi.MessageContent content) {
     return switch (content.getConstructor()) {
       case TdApi.MessageText.CONSTRUCTOR -> ((TdApi.MessageText) content).text.text;
       case TdApi.MessagePhoto.CONSTRUCTOR -> ((TdApi.MessagePhoto) content).caption.text;
@@ -34,14 +47,66 @@ public class MessageHandler implements InitializingBean {
     TdApi.Message tgMessage = event.getUpdateNewMessage().message;
 
     // Only save messages from specific chat IDs
-    if (!saveProperties.shouldSaveChatId(tgMessage.chatId)) {
+    boolean saved = saveProperties.shouldSaveChatId(tgMessage.chatId);
+    messageMetrics.filtered(saved);
+    MessageFilterEvent.record(tgMessage.chatId, tgMessage.id, saved);
+    if (!saved) {
       log.trace("Not saving message ID {} from chat ID {} (not in save list)", tgMessage.id, tgMessage.chatId);
       return;
     }
+    // a node that lost the chat's shard meanwhile must not overwrite what the new owner stores
+    leaseManager.fenceChat(tgMessage.chatId);
 
-    messageRepository.findById(tgMessage.id).ifPresentOrElse(
-        entity -> messageRepository.save(updateEntity(entity, tgMessage)),
-        () -> createEntity(tgMessage).ifPresent(messageRepository::save));
+    int account = TdLibParameters.storingAccount(event.getAccountId(), tgMessage.chatId);
+    messageRepository.findById(new MessageKey(tgMessage.chatId, tgMessage.id, account)).ifPresentOrElse(
+        entity -> {
+          String content = entity.getContent();
+          persisted(messageRepository.save(updateEntity(entity, tgMessage)), false, content);
+        },
+        () -> createEntity(tgMessage)
+            .map(entity -> messageRepository.save(entity.withAccountId(account)))
+            .ifPresent(entity -> persisted(entity, true, null)));
+    publisher.publishEvent(new MessageIngestedEvent(this, event.getAccountId(), tgMessage.chatId, tgMessage.id, tgMessage.date));
+  }
+
+  /**
+   * Store the new text of an edited message. Edits of messages never stored, or to a content without text,
+   * are ignored like such messages are.
+   */
+  @Transactional
+  @EventListener
+  public void handle(MessageContentChangedEvent event) {
+    TdApi.UpdateMessageContent update = event.getUpdateMessageContent();
+    if (!saveProperties.shouldSaveChatId(update.chatId)) {
+      return;
+    }
+    String text = getText(update.newContent);
+    if (text == null || text.isBlank()) {
+      return;
+    }
+    leaseManager.fenceChat(update.chatId);
+
+    int account = TdLibParameters.storingAccount(event.getAccountId(), update.chatId);
+    messageRepository.findById(new MessageKey(update.chatId, update.messageId, account))
+        .filter(entity -> !text.equals(entity.getContent()))
+        .ifPresent(entity -> {
+          String content = entity.getContent();
+          persisted(messageRepository.save(entity.withContent(text)), false, content);
+        });
+  }
+
+  /**
+   * Tell the listeners about a written message and record it in the change feed, edits only if the text changed.
+   *
+   * @param previousContent the content before an update
+   */
+  private void persisted(MessageEntity entity, boolean created, String previousContent) {
+    MessageDto message = MessageDto.fromEntity(entity);
+    publisher.publishEvent(new MessagePersistedEvent(this, message, created));
+    if (created || !Objects.equals(previousContent, entity.getContent())) {
+      changeRecorder.record(ChangeKind.MESSAGE, entity.getId(), entity.getChatId(),
+          created ? ChangeOperation.CREATED : ChangeOperation.UPDATED, message);
+    }
   }
 
   @Override
@@ -67,7 +132,7 @@ public class MessageHandler implements InitializingBean {
         .withContent(getText(tgMessage.content)));
   }
 
-  private long getSenderId(TdApi.MessageSender sender) {
+  public static long getSenderId(TdApi.MessageSender sender) {
     if (sender instanceof TdApi.MessageSenderUser) {
       return ((TdApi.MessageSenderUser) sender).userId;
     }
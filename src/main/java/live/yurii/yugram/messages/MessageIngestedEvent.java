@@ -0,0 +1,26 @@
+package live.yurii.yugram.messages;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link MessageHandler} inside its transaction for every message of a saved chat it handled,
+ * whether the message was stored or, having no text, skipped. Unlike {@link MessagePersistedEvent} it accounts
+ * for every message id TDLib delivered.
+ */
+@Getter
+public class MessageIngestedEvent extends ApplicationEvent {
+
+  private final int accountId;
+  private final long chatId;
+  private final long messageId;
+  private final int date;
+
+  public MessageIngestedEvent(Object source, int accountId, long chatId, long messageId, int date) {
+    super(source);
+    this.accountId = accountId;
+    this.chatId = chatId;
+    this.messageId = messageId;
+    this.date = date;
+  }
+}
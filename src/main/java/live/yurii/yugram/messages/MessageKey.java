@@ -0,0 +1,21 @@
+package live.yurii.yugram.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Primary key of {@link MessageEntity}. Message ids are numbered per chat in supergroups and channels and per
+ * account in private chats and basic groups, so the id alone names a message in neither.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageKey implements Serializable {
+
+  private long chatId;
+  private long id;
+  private int accountId;
+}
@@ -0,0 +1,63 @@
+package live.yurii.yugram.messages;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of message saving: new messages let through or held back by the chat filter, and the lag from
+ * a message being sent to it being committed here.
+ */
+@Component
+public class MessageMetrics {
+
+  /**
+   * Messages sent longer ago than this are history being loaded, not live traffic, and only counted.
+   */
+  private static final Duration MAX_LAG = Duration.ofDays(1);
+
+  private final Counter accepted;
+  private final Counter rejected;
+  private final Timer lag;
+  private final Counter historic;
+
+  public MessageMetrics(MeterRegistry registry) {
+    this.accepted = Counter.builder("yugram.messages.filter")
+        .description("New messages checked against the chats to save")
+        .tag("result", "accepted")
+        .register(registry);
+    this.rejected = Counter.builder("yugram.messages.filter")
+        .description("New messages checked against the chats to save")
+        .tag("result", "rejected")
+        .register(registry);
+    this.lag = Timer.builder("yugram.messages.lag")
+        .description("Time from a message being sent to it being committed")
+        .register(registry);
+    this.historic = Counter.builder("yugram.messages.historic")
+        .description("Messages committed more than a day after being sent, left out of the lag")
+        .register(registry);
+  }
+
+  public void filtered(boolean saved) {
+    (saved ? accepted : rejected).increment();
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    Integer date = event.getMessage().getDate();
+    if (!event.isCreated() || date == null) {
+      return;
+    }
+    long lagMillis = System.currentTimeMillis() - date * 1000L;
+    if (lagMillis > MAX_LAG.toMillis()) {
+      historic.increment();
+    } else {
+      lag.record(Math.max(0, lagMillis), TimeUnit.MILLISECONDS);
+    }
+  }
+}
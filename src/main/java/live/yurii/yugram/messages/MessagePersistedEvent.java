@@ -0,0 +1,22 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link MessageHandler} inside the transaction that wrote a message.
+ * Listeners that must only see committed rows use {@code @TransactionalEventListener}.
+ */
+@Getter
+public class MessagePersistedEvent extends ApplicationEvent {
+
+  private final MessageDto message;
+  private final boolean created;
+
+  public MessagePersistedEvent(Object source, MessageDto message, boolean created) {
+    super(source);
+    this.message = message;
+    this.created = created;
+  }
+}
@@ -1,17 +1,47 @@
 package live.yurii.yugram.messages;
 
+import live.yurii.yugram.messages.dto.MessageDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * The {@code *Dtos} queries select {@link MessageDto}s directly, nothing enters the persistence context.
+ */
 @Repository
-public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
-  Page<MessageEntity> findByChatId(Long chatId, Pageable pageable);
-  Page<MessageEntity> findByChatIdAndSenderId(Long chatId, Long senderId, Pageable pageable);
+public interface MessageRepository extends JpaRepository<MessageEntity, MessageKey>, MessageBatchRepository {
+
+  String SELECT_DTO = "SELECT new live.yurii.yugram.messages.dto.MessageDto(m.id, m.senderId, m.chatId, m.date, m.content)"
+      + " FROM MessageEntity m";
+
+  @Transactional(readOnly = true)
+  @Query(value = SELECT_DTO, countQuery = "SELECT COUNT(m) FROM MessageEntity m")
+  Page<MessageDto> findAllDtos(Pageable pageable);
+
+  @Transactional(readOnly = true)
+  @Query(value = SELECT_DTO + " WHERE m.chatId = :chatId",
+      countQuery = "SELECT COUNT(m) FROM MessageEntity m WHERE m.chatId = :chatId")
+  Page<MessageDto> findDtosByChatId(@Param("chatId") Long chatId, Pageable pageable);
+
+  @Transactional(readOnly = true)
+  @Query(value = SELECT_DTO + " WHERE m.chatId = :chatId AND m.senderId = :senderId",
+      countQuery = "SELECT COUNT(m) FROM MessageEntity m WHERE m.chatId = :chatId AND m.senderId = :senderId")
+  Page<MessageDto> findDtosByChatIdAndSenderId(@Param("chatId") Long chatId, @Param("senderId") Long senderId,
+                                               Pageable pageable);
+
+  /**
+   * Message ids are unique per chat only, an id found in several chats is the one {@link #findDtosByIds} picks.
+   */
+  default Optional<MessageDto> findDtoById(Long id) {
+    return findDtosByIds(List.of(id)).stream().findFirst();
+  }
 
   @Query("SELECT DISTINCT m.chatId FROM MessageEntity m")
   List<Long> findDistinctChatIds();
@@ -0,0 +1,26 @@
+package live.yurii.yugram.messages;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/messages")
+@CrossOrigin(origins = "*")
+public class MessageStreamController {
+
+  private final MessageFeed messageFeed;
+
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamMessages(@RequestParam(defaultValue = "") Set<Long> chatIds) {
+    log.debug("Streaming messages for chatIds: {}", chatIds);
+
+    return messageFeed.subscribe(chatIds);
+  }
+}
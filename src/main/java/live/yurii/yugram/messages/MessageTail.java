@@ -0,0 +1,147 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Ring buffer of the newest messages of one chat, ordered from newest to oldest id.
+ * Appending a newer message is O(1); the rare out-of-order message is inserted in place.
+ */
+final class MessageTail {
+
+  private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+  private final MessageDto[] ring;
+  private int start;
+  private int size;
+  private long totalCount;
+  private long weight;
+
+  MessageTail(int capacity, List<MessageDto> messages, long totalCount) {
+    this.ring = new MessageDto[capacity];
+    this.totalCount = totalCount;
+    messages.stream()
+        .sorted(Comparator.comparing(MessageDto::getId).reversed())
+        .limit(capacity)
+        .forEach(message -> {
+          set(size++, message);
+          weight += estimate(message);
+        });
+  }
+
+  synchronized void upsert(MessageDto message, boolean created) {
+    long id = message.getId();
+    int index = indexOf(id);
+    if (index >= 0) {
+      weight += estimate(message) - estimate(get(index));
+      set(index, message);
+      return;
+    }
+    if (created) {
+      totalCount++;
+    }
+    if (size == 0 || id > get(0).getId()) {
+      addNewest(message);
+      return;
+    }
+    int position = insertionPoint(id);
+    if (position == ring.length) {
+      // older than everything a full tail holds
+      return;
+    }
+    if (size == ring.length) {
+      weight -= estimate(get(size - 1));
+      size--;
+    }
+    for (int i = size; i > position; i--) {
+      set(i, get(i - 1));
+    }
+    set(position, message);
+    size++;
+    weight += estimate(message);
+  }
+
+  /**
+   * Slice a page out of the tail.
+   *
+   * @return the page, or empty if it reaches beyond the cached messages
+   */
+  synchronized Optional<Page<MessageDto>> page(int page, int pageSize) {
+    long offset = (long) page * pageSize;
+    boolean holdsWholeChat = size >= totalCount;
+    if (!holdsWholeChat && offset + pageSize > size) {
+      return Optional.empty();
+    }
+    List<MessageDto> content = new ArrayList<>(pageSize);
+    for (long i = offset; i < Math.min(size, offset + pageSize); i++) {
+      content.add(get((int) i));
+    }
+    return Optional.of(new PageImpl<>(content, PageRequest.of(page, pageSize, MessageTailCache.NEWEST_FIRST), totalCount));
+  }
+
+  synchronized int weight() {
+    return (int) Math.min(Integer.MAX_VALUE, weight + ENTRY_OVERHEAD_BYTES);
+  }
+
+  private void addNewest(MessageDto message) {
+    if (size == ring.length) {
+      // the slot before start holds the oldest message of a full ring
+      weight -= estimate(get(size - 1));
+    } else {
+      size++;
+    }
+    start = (start - 1 + ring.length) % ring.length;
+    ring[start] = message;
+    weight += estimate(message);
+  }
+
+  private int indexOf(long id) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long middleId = get(middle).getId();
+      if (middleId == id) {
+        return middle;
+      } else if (middleId > id) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return -1;
+  }
+
+  private int insertionPoint(long id) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (get(middle).getId() > id) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private MessageDto get(int index) {
+    return ring[(start + index) % ring.length];
+  }
+
+  private void set(int index, MessageDto message) {
+    ring[(start + index) % ring.length] = message;
+  }
+
+  private static long estimate(MessageDto message) {
+    return ENTRY_OVERHEAD_BYTES + (message.getContent() != null ? message.getContent().length() * 2L : 0);
+  }
+}
@@ -0,0 +1,88 @@
+package live.yurii.yugram.messages;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.messages.config.MessageTailCacheProperties;
+import live.yurii.yugram.messages.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+
+/**
+ * Newest messages per chat, kept in memory so that opening a chat does not hit the database.
+ * <p>
+ * A tail is warmed from the database on first access and then kept current by
+ * {@link MessagePersistedEvent}s after their transaction commits. Tails are bounded globally by
+ * their estimated size in bytes, the least recently used chats are evicted first.
+ * <p>
+ * Only the chats this node writes for are cached, the ones stored by other nodes would never be updated.
+ */
+@Slf4j
+@Component
+public class MessageTailCache {
+
+  static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "id");
+
+  private final MessageRepository messageRepository;
+  private final int capacityPerChat;
+  private final Cache<Long, MessageTail> tails;
+  private final ObjectProvider<LeaseManager> leaseManager;
+
+  public MessageTailCache(MessageRepository messageRepository, MessageTailCacheProperties properties,
+                          ObjectProvider<LeaseManager> leaseManager) {
+    this.messageRepository = messageRepository;
+    this.leaseManager = leaseManager;
+    this.capacityPerChat = properties.getCapacityPerChat();
+    this.tails = Caffeine.newBuilder()
+        .maximumWeight(properties.getMaximumWeightBytes())
+        .weigher((Long chatId, MessageTail tail) -> tail.weight())
+        .expireAfterAccess(properties.getExpireAfterAccess())
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Find a page of the newest messages of a chat.
+   *
+   * @return the page, or empty if it is deeper than the cached tail or written by another node and must be read
+   * from the database
+   */
+  public Optional<Page<MessageDto>> findPage(long chatId, int page, int size) {
+    if ((long) (page + 1) * size > capacityPerChat) {
+      return Optional.empty();
+    }
+    LeaseManager leases = leaseManager.getIfAvailable();
+    if (leases != null && !leases.ownsChat(chatId)) {
+      tails.invalidate(chatId);
+      return Optional.empty();
+    }
+    return tails.get(chatId, this::warm).page(page, size);
+  }
+
+  @TransactionalEventListener
+  public void onMessagePersisted(MessagePersistedEvent event) {
+    MessageDto message = event.getMessage();
+    tails.asMap().computeIfPresent(message.getChatId(), (chatId, tail) -> {
+      tail.upsert(message, event.isCreated());
+      return tail;
+    });
+  }
+
+  public void invalidateAll() {
+    tails.invalidateAll();
+  }
+
+  private MessageTail warm(long chatId) {
+    log.debug("Warming message tail of chat {}", chatId);
+    Page<MessageDto> newest = messageRepository.findDtosByChatId(chatId, PageRequest.of(0, capacityPerChat, NEWEST_FIRST));
+    return new MessageTail(capacityPerChat, newest.getContent(),
+        newest.getTotalElements());
+  }
+}
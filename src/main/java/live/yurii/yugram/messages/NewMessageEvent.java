@@ -7,10 +7,15 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class NewMessageEvent extends ApplicationEvent {
 
+  /**
+   * The account whose client received the message.
+   */
+  private final int accountId;
   private final TdApi.UpdateNewMessage updateNewMessage;
 
-  public NewMessageEvent(Object source, TdApi.UpdateNewMessage updateNewMessage) {
+  public NewMessageEvent(Object source, int accountId, TdApi.UpdateNewMessage updateNewMessage) {
     super(source);
+    this.accountId = accountId;
     this.updateNewMessage = updateNewMessage;
   }
 }
@@ -0,0 +1,32 @@
+package live.yurii.yugram.messages.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the in-memory tail of the newest messages per chat.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.messages.tail-cache")
+public class MessageTailCacheProperties {
+
+  /**
+   * Number of newest messages kept per chat.
+   */
+  private int capacityPerChat = 200;
+
+  /**
+   * Upper bound of the estimated memory used by all tails together, in bytes.
+   * Tails of the least recently used chats are evicted first.
+   */
+  private long maximumWeightBytes = 64L * 1024 * 1024;
+
+  /**
+   * Tails not read or written for this long are dropped and warmed again on the next access.
+   */
+  private Duration expireAfterAccess = Duration.ofHours(1);
+}
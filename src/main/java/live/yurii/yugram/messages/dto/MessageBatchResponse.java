@@ -0,0 +1,17 @@
+package live.yurii.yugram.messages.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageBatchResponse {
+  private List<MessageDto> content;
+  private List<Long> missingIds;
+}
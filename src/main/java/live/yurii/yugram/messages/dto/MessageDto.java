@@ -1,5 +1,6 @@
 package live.yurii.yugram.messages.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import live.yurii.yugram.messages.MessageEntity;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,7 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MessageDto {
@@ -17,6 +18,18 @@ public class MessageDto {
   private Integer date;
   private String content;
 
+  // Filled in for enriched views only, otherwise left out of the JSON
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String senderName;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String senderUsername;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String chatTitle;
+
+  public MessageDto(Long id, Long senderId, Long chatId, Integer date, String content) {
+    this(id, senderId, chatId, date, content, null, null, null);
+  }
+
   public static MessageDto fromEntity(MessageEntity entity) {
     return MessageDto.builder()
         .id(entity.getId())
@@ -26,4 +39,4 @@ public class MessageDto {
         .content(entity.getContent())
         .build();
   }
-}
\ No newline at end of file
+}
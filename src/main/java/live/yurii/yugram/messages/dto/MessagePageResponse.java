@@ -1,5 +1,7 @@
 package live.yurii.yugram.messages.dto;
 
+import live.yurii.yugram.formats.Column;
+import live.yurii.yugram.formats.ColumnarPage;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,7 +13,18 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class MessagePageResponse {
+public class MessagePageResponse implements ColumnarPage<MessageDto> {
+
+  private static final List<Column<MessageDto>> COLUMNS = List.of(
+      Column.of("id", MessageDto::getId),
+      Column.of("senderId", MessageDto::getSenderId),
+      Column.of("chatId", MessageDto::getChatId),
+      Column.of("date", MessageDto::getDate),
+      Column.of("content", MessageDto::getContent),
+      Column.of("senderName", MessageDto::getSenderName),
+      Column.of("senderUsername", MessageDto::getSenderUsername),
+      Column.of("chatTitle", MessageDto::getChatTitle));
+
   private List<MessageDto> content;
   private int page;
   private int size;
@@ -19,4 +32,9 @@ public class MessagePageResponse {
   private int totalPages;
   private boolean first;
   private boolean last;
-}
\ No newline at end of file
+
+  @Override
+  public List<Column<MessageDto>> columns() {
+    return COLUMNS;
+  }
+}
@@ -0,0 +1,49 @@
+package live.yurii.yugram.queries;
+
+import live.yurii.yugram.queries.dto.QueryStatsDto;
+import live.yurii.yugram.queries.dto.SlowQueryDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/admin/queries")
+public class QueryController {
+
+  private final RepositoryMetrics repositoryMetrics;
+  private final SlowQueryLog slowQueryLog;
+  private final QueryProperties queryProperties;
+  private static final int MAX_SLOW_QUERIES = 200;
+
+  /**
+   * Latency, rows and count query overhead of every repository method called so far.
+   */
+  @GetMapping
+  public ResponseEntity<QueryStatsDto> getQueryStats() {
+    log.debug("Getting repository query statistics");
+
+    return ResponseEntity.ok(QueryStatsDto.builder()
+        .slowThresholdMillis(queryProperties.getSlowThreshold().toNanos() / 1_000_000d)
+        .slowQueries(slowQueryLog.slowQueryCount())
+        .methods(repositoryMetrics.stats())
+        .build());
+  }
+
+  /**
+   * The most recent slow statements with the types of their bind parameters and, if sampled, their plans.
+   */
+  @GetMapping("/slow")
+  public ResponseEntity<List<SlowQueryDto>> getSlowQueries(@RequestParam(defaultValue = "50") int limit) {
+    log.debug("Getting {} slow queries", limit);
+
+    return ResponseEntity.ok(slowQueryLog.recent(Math.max(1, Math.min(limit, MAX_SLOW_QUERIES))));
+  }
+}
@@ -0,0 +1,49 @@
+package live.yurii.yugram.queries;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source so that every statement is timed, and adds an advice to every Spring Data
+ * repository so that the statements are attributed to the repository method running them.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "app.queries", name = "enabled", havingValue = "true")
+public class QueryInstrumentation {
+
+  @Bean
+  static BeanPostProcessor queryInstrumentationPostProcessor(ObjectProvider<RepositoryMetrics> repositoryMetrics,
+                                                             ObjectProvider<SlowQueryLog> slowQueryLog) {
+    return new BeanPostProcessor() {
+
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+          factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+              (proxyFactory, repository) -> proxyFactory.addAdvice((MethodInterceptor) invocation ->
+                  repositoryMetrics.getObject().invoke(repository.getRepositoryInterface(), invocation))));
+        }
+        return bean;
+      }
+
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+          return ProxyDataSourceBuilder.create(beanName, dataSource)
+              .listener(new StatementListener(repositoryMetrics, slowQueryLog))
+              .build();
+        }
+        return bean;
+      }
+    };
+  }
+}
@@ -0,0 +1,46 @@
+package live.yurii.yugram.queries;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for repository and statement instrumentation.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.queries")
+public class QueryProperties {
+
+  /**
+   * Time repository methods and statements, takes effect on restart.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Statements taking at least this long are captured with the types of their bind parameters.
+   */
+  private Duration slowThreshold = Duration.ofMillis(200);
+
+  /**
+   * Number of the most recent slow statements kept.
+   */
+  private int maxSlowQueries = 200;
+
+  /**
+   * Fraction of slow SELECTs run again with {@code EXPLAIN (ANALYZE, BUFFERS)}, 0 for none.
+   */
+  private double explainSampleRate = 0.1;
+
+  /**
+   * The same statement is explained at most once in this interval.
+   */
+  private Duration explainInterval = Duration.ofMinutes(10);
+
+  /**
+   * Statement timeout of an explain, which runs the statement again.
+   */
+  private Duration explainTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,207 @@
+package live.yurii.yugram.queries;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import live.yurii.yugram.queries.dto.RepositoryMethodStatsDto;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency, rows returned and count query time of every Spring Data repository method.
+ * <p>
+ * A repository call is attributed the statements it runs through the thread it runs on, so the count
+ * query behind a {@code Page} is told apart from the query of its content. Percentiles of the last
+ * minutes are kept for {@code /admin/queries}, histograms are published for Prometheus.
+ */
+@Component
+public class RepositoryMetrics {
+
+  static final String DURATION = "yugram.repository.duration";
+  static final String ROWS = "yugram.repository.rows";
+  static final String COUNT_DURATION = "yugram.repository.count.duration";
+  static final String STATEMENTS = "yugram.repository.statements";
+
+  private final MeterRegistry meterRegistry;
+  private final ThreadLocal<Invocation> current = new ThreadLocal<>();
+  private final Map<String, MethodMeters> meters = new ConcurrentHashMap<>();
+
+  public RepositoryMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Run a repository method, timing it and the statements it runs.
+   */
+  public Object invoke(Class<?> repository, MethodInvocation invocation) throws Throwable {
+    String repositoryName = repository.getSimpleName();
+    String methodName = invocation.getMethod().getName();
+    MethodMeters methodMeters = meters(repositoryName, methodName);
+    Invocation outer = current.get();
+    Invocation call = new Invocation(repositoryName + "." + methodName);
+    current.set(call);
+    long started = System.nanoTime();
+    boolean failed = true;
+    try {
+      Object result = invocation.proceed();
+      failed = false;
+      if (invocation.getMethod().getReturnType() != void.class) {
+        long rows = rows(result);
+        if (rows >= 0) {
+          methodMeters.rows.record(rows);
+        }
+      }
+      return result;
+    } finally {
+      long elapsed = System.nanoTime() - started;
+      current.set(outer);
+      (failed ? methodMeters.failed : methodMeters.succeeded).record(elapsed, TimeUnit.NANOSECONDS);
+      methodMeters.statements.record(call.statements);
+      if (call.countNanos > 0) {
+        methodMeters.countDuration.record(call.countNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * Attribute a statement that ran on this thread to the repository method running on it, if any.
+   */
+  void statementExecuted(String sql, long nanos) {
+    Invocation call = current.get();
+    if (call == null) {
+      return;
+    }
+    call.statements++;
+    if (isCountQuery(sql)) {
+      call.countNanos += nanos;
+    }
+  }
+
+  /**
+   * The repository method running on this thread, e.g. {@code MessageRepository.findDtosByChatId}.
+   */
+  Optional<String> currentMethod() {
+    return Optional.ofNullable(current.get()).map(call -> call.method);
+  }
+
+  /**
+   * Statistics of every repository method called so far, the most time-consuming first.
+   */
+  public List<RepositoryMethodStatsDto> stats() {
+    return meters.values().stream()
+        .map(MethodMeters::stats)
+        .sorted(Comparator.comparingDouble(RepositoryMethodStatsDto::getTotalMillis).reversed())
+        .toList();
+  }
+
+  static boolean isCountQuery(String sql) {
+    return sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select count(");
+  }
+
+  /**
+   * Rows a repository method returned, -1 for methods that return no rows.
+   */
+  private static long rows(Object result) {
+    return switch (result) {
+      case null -> 0;
+      case Slice<?> slice -> slice.getNumberOfElements();
+      case Collection<?> collection -> collection.size();
+      case Optional<?> optional -> optional.isPresent() ? 1 : 0;
+      case Number number -> -1;
+      case Boolean bool -> -1;
+      default -> 1;
+    };
+  }
+
+  private MethodMeters meters(String repository, String method) {
+    return meters.computeIfAbsent(repository + "." + method, key -> new MethodMeters(repository, method));
+  }
+
+  private static final class Invocation {
+
+    private final String method;
+    private int statements;
+    private long countNanos;
+
+    private Invocation(String method) {
+      this.method = method;
+    }
+  }
+
+  private final class MethodMeters {
+
+    private final String repository;
+    private final String method;
+    private final Timer succeeded;
+    private final Timer failed;
+    private final DistributionSummary rows;
+    private final DistributionSummary statements;
+    private final Timer countDuration;
+
+    private MethodMeters(String repository, String method) {
+      this.repository = repository;
+      this.method = method;
+      this.succeeded = timer(repository, method, "success");
+      this.failed = timer(repository, method, "error");
+      this.rows = DistributionSummary.builder(ROWS)
+          .description("Rows returned by a repository method")
+          .tag("repository", repository)
+          .tag("method", method)
+          .publishPercentiles(0.5, 0.99)
+          .register(meterRegistry);
+      this.statements = DistributionSummary.builder(STATEMENTS)
+          .description("Statements run by a repository method")
+          .tag("repository", repository)
+          .tag("method", method)
+          .register(meterRegistry);
+      this.countDuration = Timer.builder(COUNT_DURATION)
+          .description("Time a repository method spent in count queries, e.g. for the total of a page")
+          .tag("repository", repository)
+          .tag("method", method)
+          .register(meterRegistry);
+    }
+
+    private RepositoryMethodStatsDto stats() {
+      double totalMillis = succeeded.totalTime(TimeUnit.MILLISECONDS) + failed.totalTime(TimeUnit.MILLISECONDS);
+      double countMillis = countDuration.totalTime(TimeUnit.MILLISECONDS);
+      ValueAtPercentile[] percentiles = succeeded.takeSnapshot().percentileValues();
+      return RepositoryMethodStatsDto.builder()
+          .repository(repository)
+          .method(method)
+          .calls(succeeded.count() + failed.count())
+          .errors(failed.count())
+          .totalMillis(totalMillis)
+          .meanMillis(succeeded.mean(TimeUnit.MILLISECONDS))
+          .p50Millis(percentiles.length > 0 ? percentiles[0].value(TimeUnit.MILLISECONDS) : 0)
+          .p99Millis(percentiles.length > 1 ? percentiles[1].value(TimeUnit.MILLISECONDS) : 0)
+          .maxMillis(Math.max(succeeded.max(TimeUnit.MILLISECONDS), failed.max(TimeUnit.MILLISECONDS)))
+          .meanRows(rows.mean())
+          .maxRows(rows.max())
+          .meanStatements(statements.mean())
+          .countMillis(countMillis)
+          .countShare(totalMillis > 0 ? countMillis / totalMillis : 0)
+          .build();
+    }
+
+    private Timer timer(String repository, String method, String outcome) {
+      return Timer.builder(DURATION)
+          .description("Time a repository method took, its statements and mapping included")
+          .tag("repository", repository)
+          .tag("method", method)
+          .tag("outcome", outcome)
+          .publishPercentiles(0.5, 0.99)
+          .register(meterRegistry);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package live.yurii.yugram.queries;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import live.yurii.yugram.queries.dto.SlowQueryDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.Temporal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The most recent statements that took longer than the slow threshold.
+ * <p>
+ * Bind values are never kept in the capture or logged, only their types, and constants in plans are masked:
+ * they are message texts, chat and user ids.
+ * <p>
+ * A sample of the slow SELECTs is run again with {@code EXPLAIN (ANALYZE, BUFFERS)} on a virtual thread,
+ * one at a time, in a read-only transaction with a statement timeout, so that the plan is the one chosen
+ * for the same parameters. The same statement is explained at most once per interval, and statements
+ * bound to arrays or streams are never explained.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+  private static final ThreadLocal<Boolean> EXPLAINING = ThreadLocal.withInitial(() -> false);
+  // quoted literals such as '-1001154166453'::bigint, and bare numbers compared to in conditions such as (id > 5)
+  private static final Pattern QUOTED_CONSTANT = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMERIC_CONSTANT = Pattern.compile("(?<=[=<>] )-?\\d+(?:\\.\\d+)?");
+
+  private final QueryProperties properties;
+  private final DataSource dataSource;
+  private final Counter slowQueries;
+  private final Deque<SlowQueryDto> recent = new ArrayDeque<>();
+  private final Cache<String, Boolean> explained;
+  private final Semaphore explainPermit = new Semaphore(1);
+
+  public SlowQueryLog(QueryProperties properties, DataSource dataSource, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.dataSource = dataSource;
+    this.slowQueries = Counter.builder("yugram.queries.slow")
+        .description("Statements that took longer than the slow threshold")
+        .register(meterRegistry);
+    this.explained = Caffeine.newBuilder()
+        .expireAfterWrite(properties.getExplainInterval())
+        .maximumSize(1000)
+        .build();
+  }
+
+  /**
+   * Capture a statement if it took at least the slow threshold.
+   *
+   * @param parameters bind parameters in index order
+   * @param origin     the repository method running the statement, null to find the calling application frame
+   */
+  void record(String sql, List<Object> parameters, long nanos, boolean succeeded, String origin) {
+    if (nanos < properties.getSlowThreshold().toNanos() || EXPLAINING.get()) {
+      return;
+    }
+    slowQueries.increment();
+    SlowQueryDto slowQuery = SlowQueryDto.builder()
+        .at(Instant.now().getEpochSecond())
+        .durationMillis(nanos / 1_000_000d)
+        .origin(origin != null ? origin : callerFrame())
+        .sql(sql)
+        .parameterTypes(parameters.stream().map(SlowQueryLog::typeOf).toList())
+        .succeeded(succeeded)
+        .build();
+    log.warn("Slow query ({} ms) in {}: {} {}", Math.round(slowQuery.getDurationMillis()), slowQuery.getOrigin(),
+        sql, slowQuery.getParameterTypes());
+    synchronized (recent) {
+      recent.addFirst(slowQuery);
+      while (recent.size() > properties.getMaxSlowQueries()) {
+        recent.removeLast();
+      }
+    }
+    if (shouldExplain(sql, parameters)) {
+      Thread.ofVirtual().name("explain").start(() -> explain(slowQuery, parameters));
+    }
+  }
+
+  /**
+   * The most recent slow statements, newest first.
+   */
+  public List<SlowQueryDto> recent(int limit) {
+    synchronized (recent) {
+      return recent.stream().limit(limit).toList();
+    }
+  }
+
+  public long slowQueryCount() {
+    return (long) slowQueries.count();
+  }
+
+  private boolean shouldExplain(String sql, List<Object> parameters) {
+    if (!sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select")
+        || !parameters.stream().allMatch(SlowQueryLog::isExplainable)
+        || ThreadLocalRandom.current().nextDouble() >= properties.getExplainSampleRate()
+        || explained.asMap().putIfAbsent(sql, true) != null) {
+      return false;
+    }
+    return explainPermit.tryAcquire();
+  }
+
+  private void explain(SlowQueryDto slowQuery, List<Object> parameters) {
+    EXPLAINING.set(true);
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      connection.setReadOnly(true);
+      try (Statement statement = connection.createStatement()) {
+        // ANALYZE runs the statement, never longer than this
+        statement.execute("SET LOCAL statement_timeout = " + properties.getExplainTimeout().toMillis());
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + slowQuery.getSql())) {
+          for (int i = 0; i < parameters.size(); i++) {
+            explain.setObject(i + 1, parameters.get(i));
+          }
+          List<String> lines = new ArrayList<>();
+          try (ResultSet resultSet = explain.executeQuery()) {
+            while (resultSet.next()) {
+              lines.add(resultSet.getString(1));
+            }
+          }
+          synchronized (recent) {
+            slowQuery.setPlan(redact(String.join("\n", lines)));
+          }
+          log.info("Plan of the slow query in {}:\n{}", slowQuery.getOrigin(), slowQuery.getPlan());
+        }
+      } finally {
+        connection.rollback();
+      }
+    } catch (SQLException | RuntimeException e) {
+      log.warn("Failed to explain the slow query in {}: {}", slowQuery.getOrigin(), e.getMessage());
+    } finally {
+      EXPLAINING.remove();
+      explainPermit.release();
+    }
+  }
+
+  /**
+   * The plan with the constants the parameters were substituted as replaced by {@code ?}.
+   */
+  static String redact(String plan) {
+    String unquoted = QUOTED_CONSTANT.matcher(plan).replaceAll("'?'");
+    return NUMERIC_CONSTANT.matcher(unquoted).replaceAll("?");
+  }
+
+  private static String typeOf(Object parameter) {
+    return parameter == null ? "null" : parameter.getClass().getSimpleName();
+  }
+
+  private static boolean isExplainable(Object parameter) {
+    return parameter == null || parameter instanceof Number || parameter instanceof String || parameter instanceof Boolean
+        || parameter instanceof Temporal || parameter instanceof Date || parameter instanceof UUID;
+  }
+
+  private static String callerFrame() {
+    return StackWalker.getInstance().walk(frames -> frames
+        .filter(frame -> frame.getClassName().startsWith("live.yurii.yugram.")
+            && !frame.getClassName().startsWith("live.yurii.yugram.queries."))
+        .findFirst()
+        .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "." + frame.getMethodName())
+        .orElse("unknown"));
+  }
+}
@@ -0,0 +1,67 @@
+package live.yurii.yugram.queries;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every statement run through the data source and hands it to the repository metrics and the slow query log.
+ * Both are looked up on use, the data source is wrapped before they can be created.
+ */
+class StatementListener implements QueryExecutionListener {
+
+  private static final String STARTED = "yugram.started";
+
+  private final ObjectProvider<RepositoryMetrics> repositoryMetrics;
+  private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+  StatementListener(ObjectProvider<RepositoryMetrics> repositoryMetrics, ObjectProvider<SlowQueryLog> slowQueryLog) {
+    this.repositoryMetrics = repositoryMetrics;
+    this.slowQueryLog = slowQueryLog;
+  }
+
+  @Override
+  public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+    execution.addCustomValue(STARTED, System.nanoTime());
+  }
+
+  @Override
+  public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+    if (queries.isEmpty()) {
+      return;
+    }
+    Long started = execution.getCustomValue(STARTED, Long.class);
+    long nanos = started != null ? System.nanoTime() - started : TimeUnit.MILLISECONDS.toNanos(execution.getElapsedTime());
+    // a batch is attributed as one statement, captured with the parameters of its first row
+    QueryInfo query = queries.getFirst();
+    RepositoryMetrics metrics = repositoryMetrics.getIfAvailable();
+    String origin = null;
+    if (metrics != null) {
+      metrics.statementExecuted(query.getQuery(), nanos);
+      origin = metrics.currentMethod().orElse(null);
+    }
+    SlowQueryLog log = slowQueryLog.getIfAvailable();
+    if (log != null) {
+      log.record(query.getQuery(), parameters(query), nanos, execution.isSuccess(), origin);
+    }
+  }
+
+  private static List<Object> parameters(QueryInfo query) {
+    if (query.getParametersList().isEmpty()) {
+      return List.of();
+    }
+    return query.getParametersList().getFirst().stream()
+        .filter(operation -> operation.getArgs().length > 0 && operation.getArgs()[0] instanceof Integer)
+        .sorted(Comparator.comparingInt(operation -> (Integer) operation.getArgs()[0]))
+        .map(operation -> ParameterSetOperation.isSetNullParameterOperation(operation) || operation.getArgs().length < 2
+            ? null
+            : operation.getArgs()[1])
+        .toList();
+  }
+}
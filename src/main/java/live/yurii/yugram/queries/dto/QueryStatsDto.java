@@ -0,0 +1,22 @@
+package live.yurii.yugram.queries.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryStatsDto {
+
+  private double slowThresholdMillis;
+  private long slowQueries;
+  /**
+   * The most time-consuming first.
+   */
+  private List<RepositoryMethodStatsDto> methods;
+}
@@ -0,0 +1,37 @@
+package live.yurii.yugram.queries.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latencies of the last minutes, counts and totals since startup.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RepositoryMethodStatsDto {
+
+  private String repository;
+  private String method;
+  private long calls;
+  private long errors;
+  private double totalMillis;
+  private double meanMillis;
+  private double p50Millis;
+  private double p99Millis;
+  private double maxMillis;
+  private double meanRows;
+  private double maxRows;
+  private double meanStatements;
+  /**
+   * Time spent in count queries, e.g. for the totals of pages.
+   */
+  private double countMillis;
+  /**
+   * Share of {@link #totalMillis} spent in count queries.
+   */
+  private double countShare;
+}
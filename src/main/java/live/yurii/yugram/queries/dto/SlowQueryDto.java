@@ -0,0 +1,35 @@
+package live.yurii.yugram.queries.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowQueryDto {
+
+  /**
+   * Epoch seconds the statement finished at.
+   */
+  private long at;
+  private double durationMillis;
+  /**
+   * The repository method that ran the statement, or the first application frame calling it.
+   */
+  private String origin;
+  private String sql;
+  /**
+   * Types of the bind parameters in index order, the values are not captured.
+   */
+  private List<String> parameterTypes;
+  private boolean succeeded;
+  /**
+   * Output of {@code EXPLAIN (ANALYZE, BUFFERS)} with constants masked, null unless the statement was sampled and explained.
+   */
+  private String plan;
+}
@@ -0,0 +1,53 @@
+package live.yurii.yugram.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Marks the application's controllers lazy, so that they are created on their first request rather than
+ * while updates queue up waiting for the context.
+ * <p>
+ * Handler mappings register a lazy controller's methods by bean name without creating it. Controllers take
+ * part in neither ingest nor scheduling, which is what makes deferring them safe. With Spring AOT this runs
+ * at build time and {@code app.startup.lazy-controllers} is the build's value.
+ */
+@Slf4j
+@Component
+public class LazyControllers implements BeanFactoryPostProcessor, EnvironmentAware {
+
+  private Environment environment;
+
+  @Override
+  public void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+
+  @Override
+  public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    StartupProperties properties = Binder.get(environment)
+        .bindOrCreate("app.startup", StartupProperties.class);
+    if (!properties.isLazyControllers()) {
+      return;
+    }
+    int controllers = 0;
+    for (String name : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getBeanDefinition(name);
+      if (definition instanceof AnnotatedBeanDefinition annotated
+          && annotated.getFactoryMethodMetadata() == null
+          && annotated.getMetadata().getClassName().startsWith("live.yurii.yugram.")
+          && annotated.getMetadata().isAnnotated(Controller.class.getName())) {
+        definition.setLazyInit(true);
+        controllers++;
+      }
+    }
+    log.debug("Deferred the creation of {} controllers to their first request", controllers);
+  }
+}
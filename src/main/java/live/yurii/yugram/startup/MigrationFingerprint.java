@@ -0,0 +1,106 @@
+package live.yurii.yugram.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.Location;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Runs Flyway only when the migration scripts differ from the ones the schema was last migrated with.
+ * <p>
+ * Every migration validates all applied scripts against their checksums in the schema history, which
+ * means scanning, reading and parsing each of them before the first update can be stored. After a
+ * migration the SHA-256 of the scripts' names and contents is kept in {@code schema_fingerprint}; on the
+ * next start an equal fingerprint means there is nothing to migrate nor to validate. A changed, added or
+ * removed script, a missing table or a location in the cloud falls back to a regular migration.
+ */
+@Slf4j
+@Component
+public class MigrationFingerprint implements FlywayMigrationStrategy {
+
+  private final StartupProperties properties;
+  private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+  public MigrationFingerprint(StartupProperties properties) {
+    this.properties = properties;
+  }
+
+  @Override
+  public void migrate(Flyway flyway) {
+    if (!properties.isSkipUnchangedMigrations()) {
+      flyway.migrate();
+      return;
+    }
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(flyway.getConfiguration().getDataSource());
+    String fingerprint = fingerprint(flyway.getConfiguration().getLocations());
+    if (fingerprint != null && fingerprint.equals(stored(jdbcTemplate))) {
+      log.info("Migration scripts unchanged since the last migration, skipping Flyway");
+      return;
+    }
+    flyway.migrate();
+    if (fingerprint == null) {
+      return;
+    }
+    jdbcTemplate.update("""
+        INSERT INTO schema_fingerprint (id, fingerprint, migrated_at) VALUES (1, ?, now())
+        ON CONFLICT (id) DO UPDATE SET fingerprint = excluded.fingerprint, migrated_at = excluded.migrated_at""",
+        fingerprint);
+  }
+
+  private String stored(JdbcTemplate jdbcTemplate) {
+    try {
+      return jdbcTemplate.query("SELECT fingerprint FROM schema_fingerprint WHERE id = 1",
+          resultSet -> resultSet.next() ? resultSet.getString(1) : null);
+    } catch (DataAccessException e) {
+      // not migrated yet
+      return null;
+    }
+  }
+
+  /**
+   * @return null if a location is neither on the class path nor on the file system
+   */
+  private String fingerprint(Location[] locations) {
+    if (!Arrays.stream(locations).allMatch(location -> location.isClassPath() || location.isFileSystem())) {
+      return null;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Location location : locations) {
+        List<Resource> scripts = Arrays.stream(resolver.getResources(pattern(location)))
+            .sorted(Comparator.comparing(Resource::getFilename))
+            .toList();
+        for (Resource script : scripts) {
+          digest.update(script.getFilename().getBytes(StandardCharsets.UTF_8));
+          digest.update(script.getContentAsByteArray());
+        }
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the migration scripts", e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String pattern(Location location) {
+    String prefix = location.isClassPath() ? ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX : "file:";
+    return prefix + location.getRootPath() + "/**/*.sql";
+  }
+}
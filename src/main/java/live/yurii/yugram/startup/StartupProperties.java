@@ -0,0 +1,25 @@
+package live.yurii.yugram.startup;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for shortening the time from a restart to the first processed update.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.startup")
+public class StartupProperties {
+
+  /**
+   * Create the controllers on their first request instead of before updates are processed.
+   */
+  private boolean lazyControllers = true;
+
+  /**
+   * Skip Flyway's migration and validation when the migration scripts are the ones the schema was last
+   * migrated with.
+   */
+  private boolean skipUnchangedMigrations = true;
+}
@@ -0,0 +1,14 @@
+package live.yurii.yugram.users;
+
+import live.yurii.yugram.users.dto.UserDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UserBatchRepository {
+
+  /**
+   * Find users by id with a single {@code = ANY(?)} query. The result is in no particular order.
+   */
+  List<UserDto> findDtosByIds(Collection<Long> ids);
+}
@@ -0,0 +1,42 @@
+package live.yurii.yugram.users;
+
+import live.yurii.yugram.users.dto.UserDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+class UserBatchRepositoryImpl implements UserBatchRepository {
+
+  private static final String SELECT_BY_IDS = "SELECT id, username, first_name, last_name, phone_number, is_contact,"
+      + " is_mutual_contact, is_close_friend, is_premium, is_support, language_code, type FROM users WHERE id = ANY(?)";
+
+  private static final RowMapper<UserDto> ROW_MAPPER = (rs, rowNum) -> UserDto.builder()
+      .id(rs.getLong("id"))
+      .username(rs.getString("username"))
+      .firstName(rs.getString("first_name"))
+      .lastName(rs.getString("last_name"))
+      .phoneNumber(rs.getString("phone_number"))
+      .isContact(rs.getObject("is_contact", Boolean.class))
+      .isMutualContact(rs.getObject("is_mutual_contact", Boolean.class))
+      .isCloseFriend(rs.getObject("is_close_friend", Boolean.class))
+      .isPremium(rs.getObject("is_premium", Boolean.class))
+      .isSupport(rs.getObject("is_support", Boolean.class))
+      .languageCode(rs.getString("language_code"))
+      .type(rs.getString("type"))
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public List<UserDto> findDtosByIds(Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    return jdbcTemplate.query(SELECT_BY_IDS,
+        ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())), ROW_MAPPER);
+  }
+}
@@ -0,0 +1,106 @@
+package live.yurii.yugram.users;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import live.yurii.yugram.cache.EntityCache;
+import live.yurii.yugram.cache.EntityCacheProperties;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.RemoteChangeEvent;
+import live.yurii.yugram.users.dto.UserDto;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of users with a secondary index by username.
+ * {@link UserHandler} refreshes entries after every flushed batch, and the users other nodes write arrive as
+ * {@link RemoteChangeEvent}s.
+ */
+@Component
+public class UserCache extends EntityCache<UserDto> {
+
+  private final UserRepository userRepository;
+  private final Cache<String, Long> idsByUsername;
+
+  public UserCache(UserRepository userRepository, EntityCacheProperties properties) {
+    super("users", properties.getUsers());
+    this.userRepository = userRepository;
+    this.idsByUsername = Caffeine.newBuilder()
+        .maximumSize(properties.getUsers().getMaximumSize())
+        .expireAfterWrite(properties.getUsers().getTimeToLive())
+        .build();
+  }
+
+  @Override
+  protected UserDto load(long id) {
+    return userRepository.findDtoById(id).orElse(null);
+  }
+
+  @Override
+  protected Map<Long, UserDto> loadAll(Set<? extends Long> ids) {
+    return userRepository.findDtosByIds(Set.copyOf(ids)).stream()
+        .collect(Collectors.toMap(UserDto::getId, Function.identity()));
+  }
+
+  public Optional<UserDto> getByUsername(String username) {
+    Long id = idsByUsername.getIfPresent(username);
+    if (id != null) {
+      Optional<UserDto> user = get(id);
+      if (user.isPresent() && username.equals(user.get().getUsername())) {
+        return user;
+      }
+      // the user has changed the username since it was indexed
+      idsByUsername.invalidate(username);
+    }
+    Optional<UserDto> loaded = userRepository.findDtoByUsername(username);
+    if (loaded.isEmpty()) {
+      return loaded;
+    }
+    // a writer may have refreshed the entry since the row was read, so the row must not replace it
+    UserDto user = loaded.get();
+    UserDto cached = cache.asMap().putIfAbsent(user.getId(), user);
+    if (cached != null && !username.equals(cached.getUsername())) {
+      return loaded;
+    }
+    idsByUsername.put(username, user.getId());
+    return cached != null ? Optional.of(cached) : loaded;
+  }
+
+  public void refresh(UserEntity entity) {
+    refresh(UserDto.fromEntity(entity));
+  }
+
+  @EventListener
+  public void onRemoteChange(RemoteChangeEvent event) {
+    if (event.getKind() == ChangeKind.USER) {
+      refresh(event.getState(UserDto.class));
+    }
+  }
+
+  private void refresh(UserDto user) {
+    UserDto previous = cache.getIfPresent(user.getId());
+    if (previous != null && previous.getUsername() != null && !Objects.equals(previous.getUsername(), user.getUsername())) {
+      idsByUsername.invalidate(previous.getUsername());
+    }
+    index(user);
+  }
+
+  @Override
+  public void invalidateAll() {
+    super.invalidateAll();
+    idsByUsername.invalidateAll();
+  }
+
+  private void index(UserDto user) {
+    put(user.getId(), user);
+    if (user.getUsername() != null) {
+      idsByUsername.put(user.getUsername(), user.getId());
+    }
+  }
+}
@@ -1,5 +1,10 @@
 package live.yurii.yugram.users;
 
+import live.yurii.yugram.batch.BatchLookupProperties;
+import live.yurii.yugram.batch.IdBatch;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.cache.ConditionalRequests;
+import live.yurii.yugram.users.dto.UserBatchResponse;
 import live.yurii.yugram.users.dto.UserDto;
 import live.yurii.yugram.users.dto.UserPageResponse;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +14,9 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -17,12 +25,17 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
   private final UserRepository userRepository;
+  private final UserCache userCache;
+  private final ConditionalRequests conditionalRequests;
+  private final ChangeVersions changeVersions;
+  private final BatchLookupProperties batchLookupProperties;
   private static final int DEFAULT_PAGE_SIZE = 20;
 
   @GetMapping("/all")
   public ResponseEntity<UserPageResponse> getAllUsers(
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "20") int size) {
+      @RequestParam(defaultValue = "20") int size,
+      WebRequest request) {
 
     log.debug("Getting all users with page: {}, size: {}", page, size);
 
@@ -31,36 +44,53 @@ public class UserController {
     int normalizedSize = Math.max(1, Math.min(size, DEFAULT_PAGE_SIZE));
     Pageable pageable = PageRequest.of(normalizedPage, normalizedSize);
 
-    Page<UserEntity> userPage = userRepository.findAll(pageable);
-
-    UserPageResponse response = UserPageResponse.builder()
-        .content(userPage.getContent().stream().map(UserDto::fromEntity).toList())
-        .page(userPage.getNumber())
-        .size(userPage.getSize())
-        .totalElements(userPage.getTotalElements())
-        .totalPages(userPage.getTotalPages())
-        .first(userPage.isFirst())
-        .last(userPage.isLast())
-        .build();
+    return conditionalRequests.respond(request, changeVersions.usersTag(), () -> {
+      Page<UserDto> userPage = userRepository.findAllDtos(pageable);
 
-    return ResponseEntity.ok(response);
+      return UserPageResponse.builder()
+          .content(userPage.getContent())
+          .page(userPage.getNumber())
+          .size(userPage.getSize())
+          .totalElements(userPage.getTotalElements())
+          .totalPages(userPage.getTotalPages())
+          .first(userPage.isFirst())
+          .last(userPage.isLast())
+          .build();
+    });
   }
 
   @GetMapping("/byId/{id}")
   public ResponseEntity<UserDto> getUserById(@PathVariable Long id) {
     log.debug("Getting user by id: {}", id);
 
-    return userRepository.findById(id)
-        .map(user -> ResponseEntity.ok(UserDto.fromEntity(user)))
+    return userCache.get(id)
+        .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
   }
 
+  @GetMapping("/byIds")
+  public ResponseEntity<UserBatchResponse> getUsersByIds(@RequestParam List<Long> ids) {
+    log.debug("Getting users by {} ids", ids.size());
+
+    return ResponseEntity.ok(findUsersByIds(ids));
+  }
+
+  /**
+   * Same as the GET variant, for id sets that do not fit into a URL.
+   */
+  @PostMapping("/byIds")
+  public ResponseEntity<UserBatchResponse> postUsersByIds(@RequestBody List<Long> ids) {
+    log.debug("Getting users by {} ids", ids.size());
+
+    return ResponseEntity.ok(findUsersByIds(ids));
+  }
+
   @GetMapping("/byUsername/{username}")
   public ResponseEntity<UserDto> getUserByUsername(@PathVariable String username) {
     log.debug("Getting user by username: {}", username);
 
-    return userRepository.findByUsername(username)
-        .map(user -> ResponseEntity.ok(UserDto.fromEntity(user)))
+    return userCache.getByUsername(username)
+        .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
   }
 
@@ -68,8 +98,18 @@ public class UserController {
   public ResponseEntity<UserDto> getUserByPhoneNumber(@PathVariable String phoneNumber) {
     log.debug("Getting user by phone number: {}", phoneNumber);
 
-    return userRepository.findByPhoneNumber(phoneNumber)
-        .map(user -> ResponseEntity.ok(UserDto.fromEntity(user)))
+    return userRepository.findDtoByPhoneNumber(phoneNumber)
+        .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
   }
-}
\ No newline at end of file
+
+  private UserBatchResponse findUsersByIds(List<Long> requested) {
+    IdBatch batch = IdBatch.of(requested, batchLookupProperties.getMaxIds());
+    IdBatch.Result<UserDto> result = batch.arrange(userCache.getAll(batch.ids()));
+
+    return UserBatchResponse.builder()
+        .content(result.values())
+        .missingIds(result.missingIds())
+        .build();
+  }
+}
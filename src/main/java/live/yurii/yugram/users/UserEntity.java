@@ -49,6 +49,8 @@ public class UserEntity {
   @Column(name = "type")
   @Enumerated(EnumType.STRING)
   private UserType type;
+  @Column(name = "account_id")
+  private int accountId;
 
   public UserEntity(long id) {
     this.id = id;
@@ -109,6 +111,11 @@ public class UserEntity {
     return this;
   }
 
+  public UserEntity withAccountId(int accountId) {
+    this.accountId = accountId;
+    return this;
+  }
+
   @Getter
   public enum UserType {
 
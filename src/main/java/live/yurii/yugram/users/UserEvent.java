@@ -8,10 +8,12 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class UserEvent extends ApplicationEvent {
 
+  private final int accountId;
   private final TdApi.UpdateUser updateUser;
 
-  public UserEvent(MainUpdateHandler source, TdApi.UpdateUser updateUser) {
+  public UserEvent(MainUpdateHandler source, int accountId, TdApi.UpdateUser updateUser) {
     super(source);
+    this.accountId = accountId;
     this.updateUser = updateUser;
   }
 }
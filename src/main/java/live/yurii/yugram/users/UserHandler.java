@@ -1,11 +1,27 @@
 package live.yurii.yugram.users;
 
-import jakarta.transaction.Transactional;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.ChangeOutboxRepository.NewChange;
+import live.yurii.yugram.changes.ChangeOperation;
+import live.yurii.yugram.changes.ChangeRecorder;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.users.config.UserWriteBehindProperties;
+import live.yurii.yugram.users.dto.UserDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.drinkless.tdlib.TdApi;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -13,14 +29,77 @@ import org.springframework.stereotype.Component;
 public class UserHandler {
 
   private final UserRepository userRepository;
+  private final UserStateCache stateCache;
+  private final UserCache userCache;
+  private final ChangeVersions changeVersions;
+  private final UserWriteBehindProperties writeBehindProperties;
+  private final TransactionTemplate transactionTemplate;
+  private final ChangeRecorder changeRecorder;
 
-  @Transactional
   @EventListener
   public void handle(UserEvent event) {
     TdApi.User tgUser = event.getUpdateUser().user;
-    userRepository.findById(tgUser.id).ifPresentOrElse(
-        entity -> userRepository.save(updateEntity(entity, tgUser)),
-        () -> userRepository.save(createEntity(tgUser)));
+    if (!stateCache.offer(event.getAccountId(), tgUser)) {
+      log.trace("User {} is unchanged, skipping", tgUser.id);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.users.write-behind.flush-interval-ms:500}")
+  public void flush() {
+    List<UserStateCache.PendingUser> batch = stateCache.drain(writeBehindProperties.getMaxBatchSize());
+    while (!batch.isEmpty()) {
+      persist(batch);
+      batch = stateCache.drain(writeBehindProperties.getMaxBatchSize());
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    log.info("Flushing {} pending users before shutdown", stateCache.pendingCount());
+    flush();
+  }
+
+  private void persist(List<UserStateCache.PendingUser> batch) {
+    DbFlushEvent flushEvent = DbFlushEvent.start("users", batch.size());
+    try {
+      List<UserEntity> saved = transactionTemplate.execute(status -> {
+        Map<Long, UserEntity> existing = userRepository.findAllById(batch.stream().map(pending -> pending.user().id).toList())
+            .stream()
+            .collect(Collectors.toMap(UserEntity::getId, Function.identity()));
+        Map<Long, UserDto> before = existing.values().stream()
+            .collect(Collectors.toMap(UserEntity::getId, UserDto::fromEntity));
+        List<UserEntity> entities = batch.stream()
+            .map(pending -> existing.containsKey(pending.user().id)
+                ? updateEntity(existing.get(pending.user().id), pending.user())
+                : createEntity(pending.user()).withAccountId(pending.accountId()))
+            .toList();
+        List<UserEntity> users = userRepository.saveAll(entities);
+        // after a restart the state cache lets unchanged users through once, they are no change
+        List<NewChange> changes = new ArrayList<>();
+        for (UserEntity user : users) {
+          UserDto state = UserDto.fromEntity(user);
+          UserDto previous = before.get(user.getId());
+          if (!state.equals(previous)) {
+            changes.add(changeRecorder.change(ChangeKind.USER, user.getId(), null,
+                previous != null ? ChangeOperation.UPDATED : ChangeOperation.CREATED, state));
+          }
+        }
+        changeRecorder.recordAll(changes);
+        return users;
+      });
+      // refresh only after commit, so readers never see uncommitted rows
+      saved.forEach(user -> {
+        userCache.refresh(user);
+        changeVersions.nameChanged(user.getId());
+      });
+      changeVersions.usersChanged();
+      flushEvent.finish(true);
+      log.debug("Persisted {} changed users", batch.size());
+    } catch (RuntimeException e) {
+      flushEvent.finish(false);
+      log.error("Failed to persist {} users, will retry on the next flush", batch.size(), e);
+      stateCache.restore(batch);
+    }
   }
 
   private UserEntity updateEntity(UserEntity userEntity, TdApi.User tgUser) {
@@ -35,15 +114,25 @@ public class UserHandler {
       userEntity.setLastName(tgUser.lastName);
     }
 
-    if (tgUser.phoneNumber != null && !tgUser.phoneNumber.equals(userEntity.getLastName())) {
+    if (tgUser.phoneNumber != null && !tgUser.phoneNumber.equals(userEntity.getPhoneNumber())) {
       userEntity.setPhoneNumber(tgUser.phoneNumber);
     }
 
-    userEntity.setIsContact(tgUser.isContact);
-    userEntity.setIsMutualContact(tgUser.isMutualContact);
-    userEntity.setIsCloseFriend(tgUser.isCloseFriend);
-    userEntity.setIsPremium(tgUser.isPremium);
-    userEntity.setIsSupport(tgUser.isSupport);
+    if (!Boolean.valueOf(tgUser.isContact).equals(userEntity.getIsContact())) {
+      userEntity.setIsContact(tgUser.isContact);
+    }
+    if (!Boolean.valueOf(tgUser.isMutualContact).equals(userEntity.getIsMutualContact())) {
+      userEntity.setIsMutualContact(tgUser.isMutualContact);
+    }
+    if (!Boolean.valueOf(tgUser.isCloseFriend).equals(userEntity.getIsCloseFriend())) {
+      userEntity.setIsCloseFriend(tgUser.isCloseFriend);
+    }
+    if (!Boolean.valueOf(tgUser.isPremium).equals(userEntity.getIsPremium())) {
+      userEntity.setIsPremium(tgUser.isPremium);
+    }
+    if (!Boolean.valueOf(tgUser.isSupport).equals(userEntity.getIsSupport())) {
+      userEntity.setIsSupport(tgUser.isSupport);
+    }
 
     if (tgUser.languageCode != null && !tgUser.languageCode.equals(userEntity.getLanguageCode())) {
       userEntity.setLanguageCode(tgUser.languageCode);
@@ -73,7 +162,7 @@ public class UserHandler {
         .withType(UserEntity.UserType.fromConstructor(user.type.getConstructor()));
   }
 
-  private String getUserName(TdApi.Usernames usernames) {
+  static String getUserName(TdApi.Usernames usernames) {
     if (usernames == null) {
       return null;
     }
@@ -1,18 +1,43 @@
 package live.yurii.yugram.users;
 
+import live.yurii.yugram.users.dto.UserDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
+/**
+ * The {@code *Dto*} queries select {@link UserDto}s directly, nothing enters the persistence context.
+ */
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, Long> {
-    
-    Optional<UserEntity> findByUsername(String username);
-    
-    Optional<UserEntity> findByPhoneNumber(String phoneNumber);
-    
+public interface UserRepository extends JpaRepository<UserEntity, Long>, UserBatchRepository {
+
+    String SELECT_DTO = "SELECT new live.yurii.yugram.users.dto.UserDto(u.id, u.username, u.firstName, u.lastName,"
+        + " u.phoneNumber, u.isContact, u.isMutualContact, u.isCloseFriend, u.isPremium, u.isSupport, u.languageCode,"
+        + " CAST(u.type AS String)) FROM UserEntity u";
+
+    @Transactional(readOnly = true)
+    @Query(value = SELECT_DTO, countQuery = "SELECT COUNT(u) FROM UserEntity u")
+    Page<UserDto> findAllDtos(Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + " WHERE u.id = :id")
+    Optional<UserDto> findDtoById(@Param("id") Long id);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + " WHERE u.username = :username")
+    Optional<UserDto> findDtoByUsername(@Param("username") String username);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + " WHERE u.phoneNumber = :phoneNumber")
+    Optional<UserDto> findDtoByPhoneNumber(@Param("phoneNumber") String phoneNumber);
+
     boolean existsByUsername(String username);
     
     boolean existsByPhoneNumber(String phoneNumber);
-}
\ No newline at end of file
+}
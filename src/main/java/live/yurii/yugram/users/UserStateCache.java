@@ -0,0 +1,217 @@
+package live.yurii.yugram.users;
+
+import org.drinkless.tdlib.TdApi;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory state of users as last handed over to persistence.
+ * <p>
+ * Every incoming {@link TdApi.User} is reduced to a 64-bit fingerprint of the persisted fields.
+ * Updates whose fingerprint equals the known one are dropped without touching the database,
+ * real changes are kept per user (the latest one wins) until {@link UserHandler} drains them.
+ */
+@Component
+public class UserStateCache {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final int FIELD_SEPARATOR = 0x10000;
+  private static final int NULL_MARKER = 0x10001;
+
+  private final FingerprintTable knownFingerprints = new FingerprintTable();
+  private final Map<Long, PendingUser> pendingUsers = new LinkedHashMap<>();
+
+  /**
+   * Offer a user received from TDLib.
+   *
+   * @param accountId the account that received the update, stored with a new user
+   * @param user      the user from {@code UpdateUser}
+   * @return true if the user differs from the known state and was queued for persistence
+   */
+  public synchronized boolean offer(int accountId, TdApi.User user) {
+    long fingerprint = fingerprint(user);
+    if (knownFingerprints.matches(user.id, fingerprint)) {
+      // the latest state is already persisted, an older queued change must not overwrite it
+      pendingUsers.remove(user.id);
+      return false;
+    }
+    pendingUsers.put(user.id, new PendingUser(user, fingerprint, accountId));
+    return true;
+  }
+
+  /**
+   * Take up to {@code maxBatchSize} pending users for persistence.
+   * Their fingerprints become the known state immediately, so later identical updates are dropped.
+   *
+   * @param maxBatchSize maximum number of users to take
+   * @return the pending users in arrival order
+   */
+  public synchronized List<PendingUser> drain(int maxBatchSize) {
+    List<PendingUser> batch = new ArrayList<>(Math.min(maxBatchSize, pendingUsers.size()));
+    Iterator<PendingUser> iterator = pendingUsers.values().iterator();
+    while (iterator.hasNext() && batch.size() < maxBatchSize) {
+      PendingUser pending = iterator.next();
+      iterator.remove();
+      knownFingerprints.put(pending.user().id, pending.fingerprint());
+      batch.add(pending);
+    }
+    return batch;
+  }
+
+  /**
+   * Give back a batch that failed to persist. Users changed again in the meantime keep their newer state.
+   *
+   * @param batch the batch previously returned by {@link #drain(int)}
+   */
+  public synchronized void restore(List<PendingUser> batch) {
+    for (PendingUser pending : batch) {
+      knownFingerprints.remove(pending.user().id);
+      pendingUsers.putIfAbsent(pending.user().id, pending);
+    }
+  }
+
+  public synchronized int pendingCount() {
+    return pendingUsers.size();
+  }
+
+  static long fingerprint(TdApi.User user) {
+    long hash = FNV_OFFSET_BASIS;
+    hash = hash(hash, UserHandler.getUserName(user.usernames));
+    hash = hash(hash, user.firstName);
+    hash = hash(hash, user.lastName);
+    hash = hash(hash, user.phoneNumber);
+    hash = hash(hash, user.languageCode);
+    int flags = (user.isContact ? 1 : 0)
+        | (user.isMutualContact ? 1 << 1 : 0)
+        | (user.isCloseFriend ? 1 << 2 : 0)
+        | (user.isPremium ? 1 << 3 : 0)
+        | (user.isSupport ? 1 << 4 : 0);
+    hash = hash(hash, flags);
+    return hash(hash, user.type != null ? user.type.getConstructor() : 0);
+  }
+
+  private static long hash(long hash, String value) {
+    if (value == null) {
+      return hash(hash, NULL_MARKER);
+    }
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash(hash, FIELD_SEPARATOR);
+  }
+
+  private static long hash(long hash, int value) {
+    for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+      hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  public record PendingUser(TdApi.User user, long fingerprint, int accountId) {
+  }
+
+  /**
+   * Open addressing map from user id to fingerprint on primitive arrays.
+   * Id 0 is used as the empty slot marker, TDLib never assigns it to a user.
+   */
+  static final class FingerprintTable {
+
+    private static final long EMPTY = 0L;
+
+    private long[] keys = new long[1024];
+    private long[] values = new long[1024];
+    private int size;
+
+    boolean matches(long key, long value) {
+      int index = indexOf(key);
+      return index >= 0 && values[index] == value;
+    }
+
+    void put(long key, long value) {
+      if (key == EMPTY) {
+        return;
+      }
+      if ((size + 1) * 2 > keys.length) {
+        resize(keys.length * 2);
+      }
+      int mask = keys.length - 1;
+      int index = slot(key, mask);
+      while (keys[index] != EMPTY && keys[index] != key) {
+        index = (index + 1) & mask;
+      }
+      if (keys[index] == EMPTY) {
+        keys[index] = key;
+        size++;
+      }
+      values[index] = value;
+    }
+
+    void remove(long key) {
+      int gap = indexOf(key);
+      if (gap < 0) {
+        return;
+      }
+      size--;
+      int mask = keys.length - 1;
+      int index = gap;
+      while (true) {
+        index = (index + 1) & mask;
+        if (keys[index] == EMPTY) {
+          break;
+        }
+        int home = slot(keys[index], mask);
+        boolean inPlace = gap <= index ? gap < home && home <= index : gap < home || home <= index;
+        if (!inPlace) {
+          keys[gap] = keys[index];
+          values[gap] = values[index];
+          gap = index;
+        }
+      }
+      keys[gap] = EMPTY;
+      values[gap] = 0L;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private int indexOf(long key) {
+      if (key == EMPTY) {
+        return -1;
+      }
+      int mask = keys.length - 1;
+      int index = slot(key, mask);
+      while (keys[index] != EMPTY) {
+        if (keys[index] == key) {
+          return index;
+        }
+        index = (index + 1) & mask;
+      }
+      return -1;
+    }
+
+    private void resize(int capacity) {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      keys = new long[capacity];
+      values = new long[capacity];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != EMPTY) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    static int slot(long key, int mask) {
+      long hash = key * 0x9e3779b97f4a7c15L;
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package live.yurii.yugram.users.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the write-behind persistence of users.
+ * TDLib sends {@code UpdateUser} very often; changes are collected in memory and written in batches.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.users.write-behind")
+public class UserWriteBehindProperties {
+
+  /**
+   * Delay in milliseconds between two flushes of pending user changes.
+   * Changes of the same user within this window are coalesced into a single write.
+   */
+  private long flushIntervalMs = 500;
+
+  /**
+   * Maximum number of users written in a single transaction.
+   */
+  private int maxBatchSize = 500;
+}
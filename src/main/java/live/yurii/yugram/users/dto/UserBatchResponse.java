@@ -0,0 +1,17 @@
+package live.yurii.yugram.users.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchResponse {
+  private List<UserDto> content;
+  private List<Long> missingIds;
+}
@@ -1,5 +1,7 @@
 package live.yurii.yugram.users.dto;
 
+import live.yurii.yugram.formats.Column;
+import live.yurii.yugram.formats.ColumnarPage;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,7 +13,22 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class UserPageResponse {
+public class UserPageResponse implements ColumnarPage<UserDto> {
+
+  private static final List<Column<UserDto>> COLUMNS = List.of(
+      Column.of("id", UserDto::getId),
+      Column.of("username", UserDto::getUsername),
+      Column.of("firstName", UserDto::getFirstName),
+      Column.of("lastName", UserDto::getLastName),
+      Column.of("phoneNumber", UserDto::getPhoneNumber),
+      Column.of("isContact", UserDto::getIsContact),
+      Column.of("isMutualContact", UserDto::getIsMutualContact),
+      Column.of("isCloseFriend", UserDto::getIsCloseFriend),
+      Column.of("isPremium", UserDto::getIsPremium),
+      Column.of("isSupport", UserDto::getIsSupport),
+      Column.of("languageCode", UserDto::getLanguageCode),
+      Column.of("type", UserDto::getType));
+
   private List<UserDto> content;
   private int page;
   private int size;
@@ -19,4 +36,9 @@ public class UserPageResponse {
   private int totalPages;
   private boolean first;
   private boolean last;
-}
\ No newline at end of file
+
+  @Override
+  public List<Column<UserDto>> columns() {
+    return COLUMNS;
+  }
+}
@@ -0,0 +1,152 @@
+package live.yurii.yugram.watchlist;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding all occurrences of many patterns in one pass over a text.
+ * <p>
+ * Matching costs time linear in the text length plus the number of matches, however many patterns there
+ * are. Transitions of all states live in one open addressing table keyed by {@code state << 16 | char},
+ * so the automaton is a handful of primitive arrays whatever the alphabet. Immutable once built, and
+ * therefore safe to share between threads.
+ */
+final class AhoCorasick {
+
+  private static final int ROOT = 0;
+  private static final int NONE = -1;
+
+  private final long[] edgeKeys;
+  private final int[] edgeTargets;
+  private final int edgeMask;
+  private final int[] fail;
+  private final int[] output;
+  private final int[] outputLink;
+  private final int[] patternLengths;
+
+  /**
+   * @param patterns non-empty patterns without duplicates, reported by their index in this list
+   */
+  AhoCorasick(List<String> patterns) {
+    // trie first, with children kept per state for the breadth-first pass
+    List<List<long[]>> children = new ArrayList<>();
+    children.add(new ArrayList<>());
+    List<Integer> outputs = new ArrayList<>();
+    outputs.add(NONE);
+    int edgeCount = 0;
+    for (int p = 0; p < patterns.size(); p++) {
+      String pattern = patterns.get(p);
+      int state = ROOT;
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = pattern.charAt(i);
+        int next = NONE;
+        for (long[] child : children.get(state)) {
+          if (child[0] == c) {
+            next = (int) child[1];
+            break;
+          }
+        }
+        if (next == NONE) {
+          next = children.size();
+          children.add(new ArrayList<>());
+          outputs.add(NONE);
+          children.get(state).add(new long[]{c, next});
+          edgeCount++;
+        }
+        state = next;
+      }
+      outputs.set(state, p);
+    }
+
+    int tableSize = Integer.highestOneBit(Math.max(edgeCount, 1) * 2) << 1;
+    edgeKeys = new long[tableSize];
+    edgeTargets = new int[tableSize];
+    edgeMask = tableSize - 1;
+    int stateCount = children.size();
+    fail = new int[stateCount];
+    output = outputs.stream().mapToInt(Integer::intValue).toArray();
+    outputLink = new int[stateCount];
+    patternLengths = patterns.stream().mapToInt(String::length).toArray();
+    outputLink[ROOT] = NONE;
+
+    int[] queue = new int[stateCount];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = ROOT;
+    while (head < tail) {
+      int state = queue[head++];
+      for (long[] child : children.get(state)) {
+        char c = (char) child[0];
+        int next = (int) child[1];
+        putEdge(state, c, next);
+        int suffix = NONE;
+        if (state != ROOT) {
+          suffix = fail[state];
+          while (suffix != ROOT && edge(suffix, c) == NONE) {
+            suffix = fail[suffix];
+          }
+          suffix = edge(suffix, c);
+        }
+        fail[next] = suffix == NONE ? ROOT : suffix;
+        outputLink[next] = output[fail[next]] != NONE ? fail[next] : outputLink[fail[next]];
+        queue[tail++] = next;
+      }
+    }
+  }
+
+  /**
+   * Report every occurrence of every pattern in {@code text}, overlapping ones included, as they end.
+   */
+  void find(CharSequence text, MatchConsumer consumer) {
+    int state = ROOT;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      int next;
+      while ((next = edge(state, c)) == NONE && state != ROOT) {
+        state = fail[state];
+      }
+      state = next == NONE ? ROOT : next;
+      for (int match = output[state] != NONE ? state : outputLink[state]; match != NONE; match = outputLink[match]) {
+        int pattern = output[match];
+        consumer.accept(pattern, i + 1 - patternLengths[pattern], i + 1);
+      }
+    }
+  }
+
+  int stateCount() {
+    return fail.length;
+  }
+
+  private int edge(int state, char c) {
+    long key = (long) state << 16 | c;
+    for (int slot = hash(key); edgeTargets[slot] != 0; slot = (slot + 1) & edgeMask) {
+      if (edgeKeys[slot] == key) {
+        return edgeTargets[slot];
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Target 0 marks a free slot, no edge leads back to the root.
+   */
+  private void putEdge(int state, char c, int target) {
+    long key = (long) state << 16 | c;
+    int slot = hash(key);
+    while (edgeTargets[slot] != 0) {
+      slot = (slot + 1) & edgeMask;
+    }
+    edgeKeys[slot] = key;
+    edgeTargets[slot] = target;
+  }
+
+  private int hash(long key) {
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int) (h >>> 32) & edgeMask;
+  }
+
+  @FunctionalInterface
+  interface MatchConsumer {
+    void accept(int pattern, int start, int end);
+  }
+}
@@ -0,0 +1,67 @@
+package live.yurii.yugram.watchlist;
+
+import live.yurii.yugram.watchlist.dto.MessageMatchDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class MessageMatchRepository {
+
+  private static final RowMapper<MessageMatchDto> ROW_MAPPER = (rs, rowNum) -> MessageMatchDto.builder()
+      .messageId(rs.getLong("message_id"))
+      .chatId(rs.getLong("chat_id"))
+      .senderId(rs.getLong("sender_id"))
+      .date(rs.getInt("date"))
+      .termId(rs.getLong("term_id"))
+      .term(rs.getString("term"))
+      .excerpt(rs.getString("excerpt"))
+      .build();
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Record the given matches, skipping those recorded before, e.g. when an update is delivered twice.
+   *
+   * @return the matches that were new
+   */
+  public List<MessageMatchDto> insertAll(List<MessageMatchDto> matches) {
+    int[][] counts = jdbcTemplate.batchUpdate("""
+            INSERT INTO message_matches (chat_id, message_id, term_id, sender_id, date, excerpt)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING""",
+        matches, matches.size(), (ps, match) -> {
+          ps.setLong(1, match.getChatId());
+          ps.setLong(2, match.getMessageId());
+          ps.setLong(3, match.getTermId());
+          ps.setLong(4, match.getSenderId());
+          ps.setInt(5, match.getDate());
+          ps.setString(6, match.getExcerpt());
+        });
+    List<MessageMatchDto> inserted = new ArrayList<>();
+    for (int i = 0; i < matches.size(); i++) {
+      if (counts[0][i] != 0) {
+        inserted.add(matches.get(i));
+      }
+    }
+    return inserted;
+  }
+
+  /**
+   * Most recent matches first, optionally of one term and one chat only.
+   */
+  public List<MessageMatchDto> findRecent(Long termId, Long chatId, int limit) {
+    return jdbcTemplate.query("""
+            SELECT m.chat_id, m.message_id, m.term_id, t.term, m.sender_id, m.date, m.excerpt
+            FROM message_matches m JOIN watch_terms t ON t.id = m.term_id
+            WHERE (CAST(? AS BIGINT) IS NULL OR m.term_id = ?) AND (CAST(? AS BIGINT) IS NULL OR m.chat_id = ?)
+            ORDER BY m.date DESC, m.message_id DESC
+            LIMIT ?""",
+        ROW_MAPPER, termId, termId, chatId, chatId, limit);
+  }
+}
@@ -0,0 +1,64 @@
+package live.yurii.yugram.watchlist;
+
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.ChangeOperation;
+import live.yurii.yugram.changes.ChangeRecorder;
+import live.yurii.yugram.watchlist.dto.WatchTermDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class WatchTermRepository {
+
+  private static final String INSERT = """
+      INSERT INTO watch_terms (term, created_at) VALUES (?, ?) ON CONFLICT DO NOTHING
+      RETURNING id, term, created_at""";
+
+  private static final RowMapper<WatchTermDto> ROW_MAPPER = (rs, rowNum) ->
+      new WatchTermDto(rs.getLong("id"), rs.getString("term"), rs.getLong("created_at"));
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ChangeRecorder changeRecorder;
+
+  public List<WatchTermDto> findAll() {
+    return jdbcTemplate.query("SELECT id, term, created_at FROM watch_terms ORDER BY id", ROW_MAPPER);
+  }
+
+  public long count() {
+    Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM watch_terms", Long.class);
+    return count != null ? count : 0;
+  }
+
+  /**
+   * Add the given terms, skipping those already watched regardless of case. The added terms go to the change
+   * feed, from which the other nodes reload their watchlist.
+   */
+  @Transactional
+  public void insertAll(List<String> terms) {
+    long now = Instant.now().getEpochSecond();
+    List<WatchTermDto> added = new ArrayList<>();
+    for (String term : terms) {
+      added.addAll(jdbcTemplate.query(INSERT, ROW_MAPPER, term, now));
+    }
+    changeRecorder.recordAll(added.stream()
+        .map(term -> changeRecorder.change(ChangeKind.WATCH_TERM, term.getId(), null, ChangeOperation.CREATED, term))
+        .toList());
+  }
+
+  @Transactional
+  public boolean delete(long id) {
+    Optional<WatchTermDto> deleted = jdbcTemplate.query(
+        "DELETE FROM watch_terms WHERE id = ? RETURNING id, term, created_at", ROW_MAPPER, id).stream().findFirst();
+    deleted.ifPresent(term -> changeRecorder.record(ChangeKind.WATCH_TERM, id, null, ChangeOperation.DELETED, term));
+    return deleted.isPresent();
+  }
+}
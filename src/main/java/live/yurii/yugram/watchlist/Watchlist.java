@@ -0,0 +1,104 @@
+package live.yurii.yugram.watchlist;
+
+import jakarta.annotation.PostConstruct;
+import live.yurii.yugram.changes.ChangeKind;
+import live.yurii.yugram.changes.RemoteChangeEvent;
+import live.yurii.yugram.watchlist.dto.WatchTermDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The watch terms compiled into an {@link AhoCorasick} automaton.
+ * <p>
+ * Matching is case-insensitive and treats "ё" as "е". A change of terms builds a new automaton from the
+ * stored terms and swaps it in atomically, so matching never waits for a rebuild and never sees half of one.
+ * Terms that normalize to the same text are matched once, as the oldest of them. Terms changed through
+ * another node arrive through the change feed and are reloaded the same way.
+ */
+@Slf4j
+@Component
+public class Watchlist {
+
+  private final WatchTermRepository repository;
+  private final WatchlistProperties properties;
+  private final AtomicReference<Compiled> compiled = new AtomicReference<>(new Compiled(null, List.of()));
+
+  public Watchlist(WatchTermRepository repository, WatchlistProperties properties) {
+    this.repository = repository;
+    this.properties = properties;
+  }
+
+  @PostConstruct
+  public synchronized void reload() {
+    Map<String, WatchTermDto> byPattern = new LinkedHashMap<>();
+    for (WatchTermDto term : repository.findAll()) {
+      byPattern.putIfAbsent(normalize(term.getTerm()), term);
+    }
+    List<String> patterns = new ArrayList<>(byPattern.keySet());
+    AhoCorasick automaton = patterns.isEmpty() ? null : new AhoCorasick(patterns);
+    compiled.set(new Compiled(automaton, List.copyOf(byPattern.values())));
+    log.info("Compiled {} watch terms into {} states", patterns.size(), automaton != null ? automaton.stateCount() : 0);
+  }
+
+  @EventListener
+  public void onRemoteChange(RemoteChangeEvent event) {
+    if (event.getKind() == ChangeKind.WATCH_TERM) {
+      reload();
+    }
+  }
+
+  /**
+   * The watch terms occurring in {@code text}, each with the position of its first occurrence.
+   */
+  public List<TermMatch> match(String text) {
+    Compiled current = compiled.get();
+    if (current.automaton() == null || text == null || text.isEmpty()) {
+      return List.of();
+    }
+    String normalized = normalize(text);
+    List<TermMatch> matches = new ArrayList<>();
+    Set<Integer> seen = new HashSet<>();
+    current.automaton().find(normalized, (pattern, start, end) -> {
+      if ((!properties.isWholeWords() || isWordBoundary(normalized, start, end)) && seen.add(pattern)) {
+        matches.add(new TermMatch(current.terms().get(pattern), start, end));
+      }
+    });
+    return matches;
+  }
+
+  public int size() {
+    return compiled.get().terms().size();
+  }
+
+  /**
+   * Lower-cases char by char, so that positions in the result are positions in {@code text}.
+   */
+  static String normalize(String text) {
+    char[] chars = text.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      char c = Character.toLowerCase(chars[i]);
+      chars[i] = c == 'ё' ? 'е' : c;
+    }
+    return new String(chars);
+  }
+
+  private static boolean isWordBoundary(String text, int start, int end) {
+    return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+        && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+  }
+
+  public record TermMatch(WatchTermDto term, int start, int end) {
+  }
+
+  private record Compiled(AhoCorasick automaton, List<WatchTermDto> terms) {
+  }
+}
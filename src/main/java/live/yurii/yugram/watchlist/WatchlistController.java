@@ -0,0 +1,98 @@
+package live.yurii.yugram.watchlist;
+
+import live.yurii.yugram.watchlist.dto.MessageMatchDto;
+import live.yurii.yugram.watchlist.dto.WatchTermDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/watchlist")
+@CrossOrigin(origins = "*")
+public class WatchlistController {
+
+  private final WatchTermRepository watchTermRepository;
+  private final MessageMatchRepository messageMatchRepository;
+  private final Watchlist watchlist;
+  private final WatchlistFeed watchlistFeed;
+  private final WatchlistProperties watchlistProperties;
+
+  @GetMapping("/terms")
+  public ResponseEntity<List<WatchTermDto>> getTerms() {
+    log.debug("Getting watch terms");
+
+    return ResponseEntity.ok(watchTermRepository.findAll());
+  }
+
+  /**
+   * Add terms to the watchlist; terms already watched are skipped. Matching uses the new terms as soon as this returns.
+   */
+  @PostMapping("/terms")
+  public ResponseEntity<List<WatchTermDto>> addTerms(@RequestBody List<String> terms) {
+    log.debug("Adding {} watch terms", terms.size());
+
+    Set<String> cleaned = new LinkedHashSet<>();
+    for (String term : terms) {
+      String stripped = term == null ? "" : term.strip().replaceAll("\\s+", " ");
+      if (stripped.isEmpty() || stripped.length() > watchlistProperties.getMaxTermLength()) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+            "Watch terms must have 1 to " + watchlistProperties.getMaxTermLength() + " characters");
+      }
+      cleaned.add(stripped);
+    }
+    if (watchTermRepository.count() + cleaned.size() > watchlistProperties.getMaxTerms()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "At most " + watchlistProperties.getMaxTerms() + " watch terms");
+    }
+    watchTermRepository.insertAll(List.copyOf(cleaned));
+    watchlist.reload();
+
+    return ResponseEntity.ok(watchTermRepository.findAll());
+  }
+
+  /**
+   * Remove a term from the watchlist together with its recorded matches.
+   */
+  @DeleteMapping("/terms/{id}")
+  public ResponseEntity<Void> deleteTerm(@PathVariable long id) {
+    log.debug("Deleting watch term {}", id);
+
+    if (!watchTermRepository.delete(id)) {
+      return ResponseEntity.notFound().build();
+    }
+    watchlist.reload();
+    return ResponseEntity.noContent().build();
+  }
+
+  /**
+   * Most recent matches first, optionally of one term and one chat only.
+   */
+  @GetMapping("/matches")
+  public ResponseEntity<List<MessageMatchDto>> getMatches(
+      @RequestParam(required = false) Long termId,
+      @RequestParam(required = false) Long chatId,
+      @RequestParam(defaultValue = "50") int limit) {
+    log.debug("Getting {} matches of termId: {}, chatId: {}", limit, termId, chatId);
+
+    return ResponseEntity.ok(messageMatchRepository.findRecent(termId, chatId,
+        Math.max(1, Math.min(limit, watchlistProperties.getMaxMatchesPerRequest()))));
+  }
+
+  @GetMapping(value = "/matches/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamMatches(@RequestParam(defaultValue = "") Set<Long> termIds) {
+    log.debug("Streaming matches of termIds: {}", termIds);
+
+    return watchlistFeed.subscribe(termIds);
+  }
+}
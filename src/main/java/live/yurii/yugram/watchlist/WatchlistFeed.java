@@ -0,0 +1,44 @@
+package live.yurii.yugram.watchlist;
+
+import live.yurii.yugram.live.LiveFeedProperties;
+import live.yurii.yugram.live.SseFanout;
+import live.yurii.yugram.watchlist.dto.MessageMatchDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Pushes new watchlist matches to live subscribers as {@code match} events.
+ */
+@Component
+public class WatchlistFeed {
+
+  private final SseFanout<MessageMatchDto> fanout;
+
+  public WatchlistFeed(LiveFeedProperties properties, @Qualifier("liveFeedExecutor") ExecutorService executor) {
+    this.fanout = new SseFanout<>("matches", properties, executor);
+  }
+
+  /**
+   * Subscribe to matches of the given terms, or of all terms if none are given.
+   */
+  public SseEmitter subscribe(Set<Long> termIds) {
+    if (termIds.isEmpty()) {
+      return fanout.subscribe(match -> true);
+    }
+    return fanout.subscribe(match -> termIds.contains(match.getTermId()));
+  }
+
+  public void publish(MessageMatchDto match) {
+    fanout.publish("match", match.getChatId() + ":" + match.getMessageId() + ":" + match.getTermId(), match);
+  }
+
+  @Scheduled(fixedRateString = "${app.live.heartbeat-interval-ms:15000}")
+  public void heartbeat() {
+    fanout.heartbeat();
+  }
+}
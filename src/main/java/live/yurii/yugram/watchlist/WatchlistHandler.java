@@ -0,0 +1,68 @@
+package live.yurii.yugram.watchlist;
+
+import live.yurii.yugram.messages.MessageHandler;
+import live.yurii.yugram.messages.NewMessageEvent;
+import live.yurii.yugram.watchlist.Watchlist.TermMatch;
+import live.yurii.yugram.watchlist.dto.MessageMatchDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.drinkless.tdlib.TdApi;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Matches the text of every new message against the watchlist, whether its chat is saved or not,
+ * records the matches and pushes them to live subscribers.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class WatchlistHandler {
+
+  private final Watchlist watchlist;
+  private final MessageMatchRepository repository;
+  private final WatchlistFeed feed;
+  private final WatchlistProperties properties;
+
+  @EventListener
+  public void handle(NewMessageEvent event) {
+    TdApi.Message message = event.getUpdateNewMessage().message;
+    String text = MessageHandler.getText(message.content);
+    List<TermMatch> matches = watchlist.match(text);
+    if (matches.isEmpty()) {
+      return;
+    }
+    long senderId = MessageHandler.getSenderId(message.senderId);
+    List<MessageMatchDto> records = matches.stream()
+        .map(match -> MessageMatchDto.builder()
+            .messageId(message.id)
+            .chatId(message.chatId)
+            .senderId(senderId)
+            .date(message.date)
+            .termId(match.term().getId())
+            .term(match.term().getTerm())
+            .excerpt(excerpt(text, match.start(), match.end()))
+            .build())
+        .toList();
+    try {
+      List<MessageMatchDto> inserted = repository.insertAll(records);
+      inserted.forEach(feed::publish);
+      log.debug("Message {} of chat {} matched {} watch terms", message.id, message.chatId, inserted.size());
+    } catch (RuntimeException e) {
+      // never keep the message itself from being saved
+      log.error("Failed to record {} watchlist matches of message {} in chat {}", records.size(), message.id, message.chatId, e);
+    }
+  }
+
+  private String excerpt(String text, int start, int end) {
+    int length = properties.getExcerptLength();
+    if (text.length() <= length) {
+      return text.strip().replaceAll("\\s+", " ");
+    }
+    int from = Math.max(0, Math.min(start - (length - (end - start)) / 2, text.length() - length));
+    int to = Math.min(text.length(), from + length);
+    return (from > 0 ? "…" : "") + text.substring(from, to).strip().replaceAll("\\s+", " ") + (to < text.length() ? "…" : "");
+  }
+}
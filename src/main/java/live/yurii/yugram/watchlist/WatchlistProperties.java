@@ -0,0 +1,39 @@
+package live.yurii.yugram.watchlist;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the keyword watchlist.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.watchlist")
+public class WatchlistProperties {
+
+  /**
+   * Maximum number of watch terms.
+   */
+  private int maxTerms = 20000;
+
+  /**
+   * Maximum length of a watch term in characters.
+   */
+  private int maxTermLength = 200;
+
+  /**
+   * Only report terms standing as whole words, so that "oil" does not match "toilet".
+   */
+  private boolean wholeWords = true;
+
+  /**
+   * Characters of message text kept around a match, which is all there is of messages from chats that are not saved.
+   */
+  private int excerptLength = 200;
+
+  /**
+   * Upper bound of matches per request.
+   */
+  private int maxMatchesPerRequest = 200;
+}
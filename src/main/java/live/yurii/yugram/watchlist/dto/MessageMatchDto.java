@@ -0,0 +1,23 @@
+package live.yurii.yugram.watchlist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageMatchDto {
+  private long messageId;
+  private long chatId;
+  private long senderId;
+  private int date;
+  private long termId;
+  private String term;
+  /**
+   * Message text around the first occurrence of the term.
+   */
+  private String excerpt;
+}
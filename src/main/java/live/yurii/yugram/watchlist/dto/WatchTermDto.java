@@ -0,0 +1,19 @@
+package live.yurii.yugram.watchlist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WatchTermDto {
+  private long id;
+  private String term;
+  /**
+   * Epoch second the term was added.
+   */
+  private long createdAt;
+}
@@ -0,0 +1,79 @@
+package live.yurii.yugram.watermarks;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Per-chat ingest watermarks, one row per chat, written only by {@link WatermarkTracker}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatWatermarkRepository {
+
+  private static final String SELECT = """
+      SELECT chat_id, account_id, contiguous_id, contiguous_date, last_id, last_date, updated_at FROM chat_watermarks""";
+
+  private static final String UPSERT = """
+      INSERT INTO chat_watermarks (chat_id, account_id, contiguous_id, contiguous_date, last_id, last_date, updated_at)
+      VALUES (?, ?, ?, ?, ?, ?, ?)
+      ON CONFLICT (chat_id) DO UPDATE SET account_id = EXCLUDED.account_id, contiguous_id = EXCLUDED.contiguous_id,
+          contiguous_date = EXCLUDED.contiguous_date, last_id = EXCLUDED.last_id,
+          last_date = EXCLUDED.last_date, updated_at = EXCLUDED.updated_at""";
+
+  private static final RowMapper<Watermark> ROW_MAPPER = (rs, rowNum) -> new Watermark(
+      rs.getLong("chat_id"),
+      rs.getInt("account_id"),
+      rs.getLong("contiguous_id"),
+      rs.getInt("contiguous_date"),
+      rs.getLong("last_id"),
+      rs.getInt("last_date"),
+      rs.getLong("updated_at"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public List<Watermark> findAll() {
+    return jdbcTemplate.query(SELECT, ROW_MAPPER);
+  }
+
+  /**
+   * The watermarks of the chats of one shard, see {@link live.yurii.yugram.cluster.LeaseManager#shardOf}.
+   */
+  public List<Watermark> findByShard(int shardCount, int shard) {
+    return jdbcTemplate.query(SELECT + " WHERE MOD(MOD(chat_id, ?) + ?, ?) = ?", ROW_MAPPER,
+        shardCount, shardCount, shardCount, shard);
+  }
+
+  public Optional<Watermark> findById(long chatId) {
+    return jdbcTemplate.query(SELECT + " WHERE chat_id = ?", ROW_MAPPER, chatId).stream().findFirst();
+  }
+
+  public void upsertAll(Collection<Watermark> watermarks) {
+    if (watermarks.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(UPSERT, watermarks, watermarks.size(), (ps, watermark) -> {
+      ps.setLong(1, watermark.chatId());
+      ps.setInt(2, watermark.accountId());
+      ps.setLong(3, watermark.contiguousId());
+      ps.setInt(4, watermark.contiguousDate());
+      ps.setLong(5, watermark.lastId());
+      ps.setInt(6, watermark.lastDate());
+      ps.setLong(7, watermark.updatedAt());
+    });
+  }
+
+  /**
+   * Every message of the chat up to {@code contiguousId} was ingested or is recorded as a gap;
+   * {@code lastId} is the newest message ingested at all, by {@code accountId}. Dates and {@code updatedAt} in
+   * epoch seconds.
+   */
+  public record Watermark(long chatId, int accountId, long contiguousId, int contiguousDate, long lastId, int lastDate,
+                          long updatedAt) {
+  }
+}
@@ -0,0 +1,231 @@
+package live.yurii.yugram.watermarks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.configuration.TdLibGateway;
+import live.yurii.yugram.ingest.IngestExecutor;
+import live.yurii.yugram.messages.NewMessageEvent;
+import live.yurii.yugram.watermarks.MessageGapRepository.Gap;
+import lombok.extern.slf4j.Slf4j;
+import org.drinkless.tdlib.TdApi;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches the messages of open gaps from the chat history and ingests them like new ones.
+ * <p>
+ * The history is paged backwards from the newer end of a gap. Messages of a page that fall into the gap go
+ * through the ingest lane of their chat, so they are handled in order with the chat's live updates, and the
+ * page counts once the lanes stored them all. The oldest message of the last page stored is saved as the gap's
+ * cursor after every run; a large gap continues where the previous run stopped. A gap is repaired once the
+ * history reaches its older end or has nothing older; messages deleted meanwhile leave fewer messages repaired
+ * than were missing. Deleted channel messages leave holes that look like gaps: a gap whose history holds none
+ * of its missing messages on the first attempt is checked once more after {@code retry-backoff}, and is
+ * unrepairable when a later attempt finds none either. Failed requests and ingests are retried with an exponential backoff until {@code max-attempts}.
+ * With several nodes each repairs the gaps of the chat shards it owns.
+ * <p>
+ * Repairs wait for TDLib and for room in the ingest lanes, so they run on their own thread rather than on
+ * the shared scheduler. A run starts no history request after {@code max-repair-run-time}, the gaps left
+ * continue in the next run.
+ */
+@Slf4j
+@Component
+public class GapRepairer {
+
+  private final MessageGapRepository gapRepository;
+  private final TdLibGateway tdLib;
+  private final IngestExecutor ingestExecutor;
+  private final ApplicationEventPublisher publisher;
+  private final WatermarkProperties properties;
+  private final LeaseManager leaseManager;
+  private final Counter messagesRepaired;
+  private final ScheduledExecutorService repairs = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("gap-repair").daemon().factory());
+  private ScheduledFuture<?> scheduledRepairs;
+
+  public GapRepairer(MessageGapRepository gapRepository, TdLibGateway tdLib, IngestExecutor ingestExecutor,
+                     ApplicationEventPublisher publisher, WatermarkProperties properties, LeaseManager leaseManager,
+                     MeterRegistry meterRegistry) {
+    this.gapRepository = gapRepository;
+    this.tdLib = tdLib;
+    this.ingestExecutor = ingestExecutor;
+    this.publisher = publisher;
+    this.properties = properties;
+    this.leaseManager = leaseManager;
+    this.messagesRepaired = Counter.builder("yugram.watermarks.repaired")
+        .description("Missing messages fetched from the chat history and ingested")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ContextRefreshedEvent.class)
+  public synchronized void start() {
+    if (scheduledRepairs == null) {
+      long interval = properties.getRepairIntervalMs();
+      scheduledRepairs = repairs.scheduleWithFixedDelay(this::repairDueSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    repairs.shutdownNow();
+  }
+
+  private void repairDueSafely() {
+    try {
+      repairDue();
+    } catch (RuntimeException e) {
+      // a scheduled executor stops running a task that throws
+      log.error("Failed to repair the due message gaps", e);
+    }
+  }
+
+  public void repairDue() {
+    long deadline = System.nanoTime() + properties.getMaxRepairRunTime().toNanos();
+    List<Gap> due;
+    if (!leaseManager.isEnabled()) {
+      due = gapRepository.findDue(now(), properties.getGapsPerRun());
+    } else if (leaseManager.ownedShards().isEmpty()) {
+      return;
+    } else {
+      due = gapRepository.findDue(now(), leaseManager.shardCount(), leaseManager.ownedShards(), properties.getGapsPerRun());
+    }
+    for (Gap gap : due) {
+      if (gap != due.getFirst() && System.nanoTime() - deadline >= 0) {
+        log.debug("Repair run took longer than {}, leaving the remaining gaps to the next run", properties.getMaxRepairRunTime());
+        return;
+      }
+      if (!leaseManager.ownsChat(gap.chatId())) {
+        // the shard was handed over meanwhile
+        continue;
+      }
+      if (!repair(gap, deadline)) {
+        // interrupted
+        return;
+      }
+    }
+  }
+
+  /**
+   * Fetch up to {@code max-requests-per-gap} history pages of the gap, none after the deadline but the first.
+   *
+   * @param deadline {@link System#nanoTime()} after which the run starts no more requests
+   * @return false if interrupted while waiting for TDLib
+   */
+  boolean repair(Gap gap, long deadline) {
+    long cursor = gap.cursorId();
+    int repaired = gap.repaired();
+    try {
+      for (int request = 0; request < properties.getMaxRequestsPerGap(); request++) {
+        if (request > 0 && System.nanoTime() - deadline >= 0) {
+          break;
+        }
+        TdApi.GetChatHistory history = new TdApi.GetChatHistory(gap.chatId(), cursor, 0, properties.getPageSize(), false);
+        TdApi.Messages page = tdLib.send(gap.accountId(), history)
+            .get(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        long oldest = cursor;
+        List<CompletableFuture<Void>> stored = new ArrayList<>();
+        for (TdApi.Message message : page.messages) {
+          // the page starts with the cursor's message itself
+          if (message == null || message.id >= cursor) {
+            continue;
+          }
+          oldest = Math.min(oldest, message.id);
+          if (message.id > gap.fromId()) {
+            stored.add(ingest(gap.accountId(), message));
+          }
+        }
+        CompletableFuture.allOf(stored.toArray(CompletableFuture[]::new))
+            .get(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        repaired += stored.size();
+        if (oldest == cursor || oldest <= gap.fromId()) {
+          completed(gap, oldest, repaired);
+          return true;
+        }
+        cursor = oldest;
+      }
+      gapRepository.progress(gap.id(), cursor, repaired);
+      messagesRepaired.increment(repaired - gap.repaired());
+      log.debug("Repaired {} of {} missing messages in chat {} so far", repaired, gap.missing(), gap.chatId());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      gapRepository.progress(gap.id(), cursor, repaired);
+      return false;
+    } catch (ExecutionException | TimeoutException | RuntimeException e) {
+      failed(gap, cursor, repaired, e instanceof ExecutionException ? e.getCause() : e);
+    }
+    return true;
+  }
+
+  /**
+   * The history reached the older end of the gap, every message fetched is stored.
+   */
+  private void completed(Gap gap, long cursor, int repaired) {
+    messagesRepaired.increment(repaired - gap.repaired());
+    if (repaired > 0) {
+      gapRepository.repaired(gap.id(), cursor, repaired);
+      log.info("Repaired {} of {} missing messages in chat {} between messages {} and {}",
+          repaired, gap.missing(), gap.chatId(), gap.fromId(), gap.toId());
+    } else if (gap.attempts() == 0) {
+      gapRepository.recheck(gap.id(), gap.toId(), 1, now() + properties.getRetryBackoff().toSeconds());
+      log.debug("None of the {} missing messages in chat {} is in the history, checking again later",
+          gap.missing(), gap.chatId());
+    } else {
+      gapRepository.unrepairable(gap.id(), cursor);
+      log.info("None of the {} missing messages in chat {} between messages {} and {} is in the history, "
+          + "they were deleted", gap.missing(), gap.chatId(), gap.fromId(), gap.toId());
+    }
+  }
+
+  /**
+   * @return completed once the message is stored, or with the error of its handler
+   */
+  private CompletableFuture<Void> ingest(int accountId, TdApi.Message message) {
+    TdApi.UpdateNewMessage update = new TdApi.UpdateNewMessage();
+    update.message = message;
+    CompletableFuture<Void> stored = new CompletableFuture<>();
+    ingestExecutor.execute(message.chatId, "GapRepair", () -> {
+      try {
+        publisher.publishEvent(new NewMessageEvent(this, accountId, update));
+        stored.complete(null);
+      } catch (RuntimeException e) {
+        stored.completeExceptionally(e);
+        throw e;
+      }
+    });
+    return stored;
+  }
+
+  private void failed(Gap gap, long cursor, int repaired, Throwable error) {
+    gapRepository.progress(gap.id(), cursor, repaired);
+    int attempts = gap.attempts() + 1;
+    String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+    if (attempts >= properties.getMaxAttempts()) {
+      gapRepository.failed(gap.id(), GapStatus.FAILED, attempts, gap.nextAttemptAt(), message);
+      log.error("Giving up the repair of {} missing messages in chat {} after {} attempts: {}",
+          gap.missing(), gap.chatId(), attempts, message);
+      return;
+    }
+    long backoff = properties.getRetryBackoff().toSeconds() << Math.min(attempts - 1, 20);
+    gapRepository.failed(gap.id(), GapStatus.OPEN, attempts, now() + backoff, message);
+    log.warn("Failed to repair the missing messages in chat {}, retrying in {} s: {}", gap.chatId(), backoff, message);
+  }
+
+  private static long now() {
+    return Instant.now().getEpochSecond();
+  }
+}
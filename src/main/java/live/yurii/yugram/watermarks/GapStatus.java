@@ -0,0 +1,20 @@
+package live.yurii.yugram.watermarks;
+
+public enum GapStatus {
+  /**
+   * Waiting for its next repair attempt.
+   */
+  OPEN,
+  /**
+   * The history between its ends was fetched and ingested.
+   */
+  REPAIRED,
+  /**
+   * Given up after the maximum number of attempts.
+   */
+  FAILED,
+  /**
+   * None of the missing messages was in the history on a repeat check, as when they were deleted.
+   */
+  UNREPAIRABLE
+}
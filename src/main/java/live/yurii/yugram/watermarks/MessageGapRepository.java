@@ -0,0 +1,177 @@
+package live.yurii.yugram.watermarks;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ranges of missing messages and the progress of their repair.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MessageGapRepository {
+
+  private static final String SELECT = """
+      SELECT id, chat_id, account_id, from_id, to_id, missing, status, cursor_id, repaired, attempts, detected_at,
+             next_attempt_at, last_error
+      FROM message_gaps""";
+
+  private static final String INSERT = """
+      INSERT INTO message_gaps (chat_id, account_id, from_id, to_id, missing, status, cursor_id, detected_at, next_attempt_at)
+      VALUES (?, ?, ?, ?, ?, 'OPEN', ?, ?, ?)
+      ON CONFLICT (chat_id, from_id) DO NOTHING""";
+
+  private static final RowMapper<Gap> ROW_MAPPER = (rs, rowNum) -> new Gap(
+      rs.getLong("id"),
+      rs.getLong("chat_id"),
+      rs.getInt("account_id"),
+      rs.getLong("from_id"),
+      rs.getLong("to_id"),
+      rs.getInt("missing"),
+      GapStatus.valueOf(rs.getString("status")),
+      rs.getLong("cursor_id"),
+      rs.getInt("repaired"),
+      rs.getInt("attempts"),
+      rs.getLong("detected_at"),
+      rs.getLong("next_attempt_at"),
+      rs.getString("last_error"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Record new gaps, open and due at once. A gap starting where a recorded one of the chat starts is ignored.
+   */
+  public void insertAll(List<NewGap> gaps, long now) {
+    if (gaps.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(INSERT, gaps, gaps.size(), (ps, gap) -> {
+      ps.setLong(1, gap.chatId());
+      ps.setInt(2, gap.accountId());
+      ps.setLong(3, gap.fromId());
+      ps.setLong(4, gap.toId());
+      ps.setInt(5, gap.missing());
+      ps.setLong(6, gap.toId());
+      ps.setLong(7, now);
+      ps.setLong(8, now);
+    });
+  }
+
+  public Optional<Gap> findById(long id) {
+    return jdbcTemplate.query(SELECT + " WHERE id = ?", ROW_MAPPER, id).stream().findFirst();
+  }
+
+  /**
+   * Open gaps whose next attempt is due, the longest waiting first.
+   */
+  public List<Gap> findDue(long now, int limit) {
+    return jdbcTemplate.query(SELECT + " WHERE status = 'OPEN' AND next_attempt_at <= ? ORDER BY next_attempt_at, id LIMIT ?",
+        ROW_MAPPER, now, limit);
+  }
+
+  /**
+   * Open gaps due in the chats of the given shards, see {@link live.yurii.yugram.cluster.LeaseManager#shardOf}.
+   */
+  public List<Gap> findDue(long now, int shardCount, Collection<Integer> shards, int limit) {
+    return jdbcTemplate.query(SELECT + """
+             WHERE status = 'OPEN' AND next_attempt_at <= ? AND MOD(MOD(chat_id, ?) + ?, ?) = ANY(?)
+            ORDER BY next_attempt_at, id LIMIT ?""",
+        ps -> {
+          ps.setLong(1, now);
+          ps.setInt(2, shardCount);
+          ps.setInt(3, shardCount);
+          ps.setInt(4, shardCount);
+          ps.setArray(5, ps.getConnection().createArrayOf("integer", shards.toArray()));
+          ps.setInt(6, limit);
+        },
+        ROW_MAPPER);
+  }
+
+  /**
+   * Gaps the most recently detected first, optionally of one status and one chat.
+   */
+  public List<Gap> find(GapStatus status, Long chatId, int limit) {
+    return jdbcTemplate.query(SELECT + """
+             WHERE (CAST(? AS VARCHAR) IS NULL OR status = ?) AND (CAST(? AS BIGINT) IS NULL OR chat_id = ?)
+            ORDER BY detected_at DESC, id DESC LIMIT ?""",
+        ROW_MAPPER, status != null ? status.name() : null, status != null ? status.name() : null, chatId, chatId, limit);
+  }
+
+  /**
+   * Number of open gaps and of messages missing in them by chat.
+   */
+  public Map<Long, OpenGaps> countOpen() {
+    Map<Long, OpenGaps> open = new HashMap<>();
+    jdbcTemplate.query("SELECT chat_id, COUNT(*) AS gaps, SUM(missing) AS missing FROM message_gaps WHERE status = 'OPEN' GROUP BY chat_id",
+        (RowCallbackHandler) rs -> open.put(rs.getLong("chat_id"), new OpenGaps(rs.getInt("gaps"), rs.getLong("missing"))));
+    return open;
+  }
+
+  /**
+   * Save how far back the history of an open gap was fetched.
+   */
+  public void progress(long id, long cursorId, int repaired) {
+    jdbcTemplate.update("UPDATE message_gaps SET cursor_id = ?, repaired = ? WHERE id = ?", cursorId, repaired, id);
+  }
+
+  public void repaired(long id, long cursorId, int repaired) {
+    jdbcTemplate.update("UPDATE message_gaps SET status = 'REPAIRED', cursor_id = ?, repaired = ?, last_error = NULL WHERE id = ?",
+        cursorId, repaired, id);
+  }
+
+  /**
+   * Leave a gap whose history held none of its missing messages open for one more check from its newer end.
+   */
+  public void recheck(long id, long cursorId, int attempts, long nextAttemptAt) {
+    jdbcTemplate.update("UPDATE message_gaps SET cursor_id = ?, repaired = 0, attempts = ?, next_attempt_at = ? WHERE id = ?",
+        cursorId, attempts, nextAttemptAt, id);
+  }
+
+  public void unrepairable(long id, long cursorId) {
+    jdbcTemplate.update("UPDATE message_gaps SET status = 'UNREPAIRABLE', cursor_id = ?, last_error = NULL WHERE id = ?",
+        cursorId, id);
+  }
+
+  /**
+   * Record a failed attempt, leaving the gap open until {@code nextAttemptAt} or marking it failed.
+   */
+  public void failed(long id, GapStatus status, int attempts, long nextAttemptAt, String error) {
+    jdbcTemplate.update("UPDATE message_gaps SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ? WHERE id = ?",
+        status.name(), attempts, nextAttemptAt, error, id);
+  }
+
+  /**
+   * Reopen a gap for an attempt on the next run, keeping the history fetched so far.
+   *
+   * @return whether the gap exists
+   */
+  public boolean reopen(long id, long now) {
+    return jdbcTemplate.update("UPDATE message_gaps SET status = 'OPEN', attempts = 0, next_attempt_at = ? WHERE id = ?",
+        now, id) > 0;
+  }
+
+  /**
+   * Messages missing between two ingested ones of a chat, both ends exclusive, to be fetched through the client
+   * of {@code accountId}.
+   */
+  public record NewGap(long chatId, int accountId, long fromId, long toId, int missing) {
+  }
+
+  /**
+   * A gap with its repair state: the history older than {@code cursorId} is still to be fetched.
+   */
+  public record Gap(long id, long chatId, int accountId, long fromId, long toId, int missing, GapStatus status, long cursorId,
+                    int repaired, int attempts, long detectedAt, long nextAttemptAt, String lastError) {
+  }
+
+  public record OpenGaps(int gaps, long missing) {
+  }
+}
@@ -0,0 +1,46 @@
+package live.yurii.yugram.watermarks;
+
+/**
+ * Arithmetic on TDLib message ids.
+ * <p>
+ * TDLib derives the id of a message the server confirmed from its server id, {@code serverId << 20}; the
+ * lower bits are used by messages that exist only locally, such as ones still being sent. Server ids are
+ * numbered per chat without holes in supergroups and channels only; in private chats and basic groups they
+ * are shared by all chats of the account, so a jump there says nothing about missing messages.
+ */
+public final class MessageIds {
+
+  private static final int SERVER_SHIFT = 20;
+  private static final long STEP = 1L << SERVER_SHIFT;
+  private static final long LOCAL_MASK = STEP - 1;
+  private static final long MAX_CHANNEL_CHAT_ID = -1_000_000_000_000L;
+
+  private MessageIds() {
+  }
+
+  static boolean isServer(long messageId) {
+    return messageId > 0 && (messageId & LOCAL_MASK) == 0;
+  }
+
+  /**
+   * Whether the chat is a supergroup or a channel, whose message ids leave no holes.
+   */
+  public static boolean isSequential(long chatId) {
+    return chatId <= MAX_CHANNEL_CHAT_ID;
+  }
+
+  static long next(long messageId) {
+    return messageId + STEP;
+  }
+
+  static long previous(long messageId) {
+    return messageId - STEP;
+  }
+
+  /**
+   * Server messages strictly between two server message ids.
+   */
+  static int between(long fromId, long toId) {
+    return (int) Math.max(0, Math.min(Integer.MAX_VALUE, ((toId - fromId) >> SERVER_SHIFT) - 1));
+  }
+}
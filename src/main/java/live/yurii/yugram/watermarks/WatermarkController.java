@@ -0,0 +1,100 @@
+package live.yurii.yugram.watermarks;
+
+import live.yurii.yugram.watermarks.ChatWatermarkRepository.Watermark;
+import live.yurii.yugram.watermarks.MessageGapRepository.OpenGaps;
+import live.yurii.yugram.watermarks.dto.ChatWatermarkDto;
+import live.yurii.yugram.watermarks.dto.MessageGapDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/watermarks")
+@CrossOrigin(origins = "*")
+public class WatermarkController {
+
+  private final WatermarkTracker watermarkTracker;
+  private final MessageGapRepository messageGapRepository;
+  private final WatermarkProperties watermarkProperties;
+
+  /**
+   * Ingest watermarks of all tracked chats, the most lagging first.
+   */
+  @GetMapping
+  public ResponseEntity<List<ChatWatermarkDto>> getWatermarks(@RequestParam(defaultValue = "false") boolean staleOnly) {
+    log.debug("Getting ingest watermarks, staleOnly: {}", staleOnly);
+
+    Map<Long, OpenGaps> openGaps = messageGapRepository.countOpen();
+    return ResponseEntity.ok(watermarkTracker.watermarks().stream()
+        .map(watermark -> toDto(watermark, openGaps.get(watermark.chatId())))
+        .filter(watermark -> !staleOnly || watermark.isStale())
+        .sorted(Comparator.comparingLong(ChatWatermarkDto::getLagSeconds).reversed())
+        .toList());
+  }
+
+  @GetMapping("/{chatId}")
+  public ResponseEntity<ChatWatermarkDto> getWatermark(@PathVariable Long chatId) {
+    log.debug("Getting the ingest watermark of chat {}", chatId);
+
+    return watermarkTracker.watermark(chatId)
+        .map(watermark -> toDto(watermark, messageGapRepository.countOpen().get(chatId)))
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
+  }
+
+  /**
+   * Gaps the most recently detected first.
+   */
+  @GetMapping("/gaps")
+  public ResponseEntity<List<MessageGapDto>> getGaps(
+      @RequestParam(required = false) GapStatus status,
+      @RequestParam(required = false) Long chatId,
+      @RequestParam(defaultValue = "50") int limit) {
+    log.debug("Getting message gaps with status: {}, chatId: {}, limit: {}", status, chatId, limit);
+
+    int bounded = Math.max(1, Math.min(limit, watermarkProperties.getMaxGapsPerRequest()));
+    return ResponseEntity.ok(messageGapRepository.find(status, chatId, bounded).stream()
+        .map(MessageGapDto::fromGap)
+        .toList());
+  }
+
+  /**
+   * Reopen a gap, failed or not, for a repair attempt on the next run.
+   */
+  @PostMapping("/gaps/{id}/retry")
+  public ResponseEntity<MessageGapDto> retryGap(@PathVariable Long id) {
+    log.debug("Retrying the repair of gap {}", id);
+
+    if (!messageGapRepository.reopen(id, Instant.now().getEpochSecond())) {
+      return ResponseEntity.notFound().build();
+    }
+    return messageGapRepository.findById(id)
+        .map(MessageGapDto::fromGap)
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
+  }
+
+  private ChatWatermarkDto toDto(Watermark watermark, OpenGaps openGaps) {
+    return ChatWatermarkDto.builder()
+        .chatId(watermark.chatId())
+        .accountId(watermark.accountId())
+        .contiguousId(watermark.contiguousId())
+        .contiguousDate(watermark.contiguousDate())
+        .lastId(watermark.lastId())
+        .lastDate(watermark.lastDate())
+        .lagSeconds(Math.max(0, Instant.now().getEpochSecond() - watermark.contiguousDate()))
+        .stale(watermarkTracker.isStale(watermark))
+        .pending(watermarkTracker.pending(watermark.chatId()))
+        .openGaps(openGaps != null ? openGaps.gaps() : 0)
+        .missing(openGaps != null ? openGaps.missing() : 0)
+        .build();
+  }
+}
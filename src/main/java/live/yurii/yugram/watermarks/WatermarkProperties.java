@@ -0,0 +1,81 @@
+package live.yurii.yugram.watermarks;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the per-chat ingest watermarks and the repair of missing messages.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.watermarks")
+public class WatermarkProperties {
+
+  /**
+   * Delay in milliseconds between two flushes of the watermarks and newly detected gaps.
+   */
+  private long flushIntervalMs = 1000;
+
+  /**
+   * How long a hole in the message ids may wait for out-of-order messages before it is declared a gap.
+   */
+  private Duration gapGrace = Duration.ofSeconds(30);
+
+  /**
+   * Messages ahead of a hole kept per chat; beyond it the oldest hole is declared a gap without waiting.
+   */
+  private int maxPendingPerChat = 1000;
+
+  /**
+   * A chat whose last ingested message is older than this counts as stale.
+   */
+  private Duration staleAfter = Duration.ofHours(6);
+
+  /**
+   * Delay in milliseconds between two repair runs.
+   */
+  private long repairIntervalMs = 30000;
+
+  /**
+   * Messages requested per history page, at most 100 by TDLib.
+   */
+  private int pageSize = 100;
+
+  /**
+   * History pages requested per gap and run; a larger gap continues on the next run.
+   */
+  private int maxRequestsPerGap = 10;
+
+  /**
+   * Gaps repaired per run.
+   */
+  private int gapsPerRun = 10;
+
+  /**
+   * How long to wait for one history page.
+   */
+  private Duration requestTimeout = Duration.ofSeconds(30);
+
+  /**
+   * Time after which a repair run starts no more history requests; a run takes at most this plus one request timeout.
+   */
+  private Duration maxRepairRunTime = Duration.ofMinutes(2);
+
+  /**
+   * Failed repair attempts after which a gap is given up.
+   */
+  private int maxAttempts = 5;
+
+  /**
+   * Delay before the first retry of a failed repair, doubled with every further attempt.
+   */
+  private Duration retryBackoff = Duration.ofMinutes(1);
+
+  /**
+   * Upper bound of gaps returned by one request.
+   */
+  private int maxGapsPerRequest = 200;
+}
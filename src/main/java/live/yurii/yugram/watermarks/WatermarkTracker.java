@@ -0,0 +1,341 @@
+package live.yurii.yugram.watermarks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import live.yurii.yugram.cluster.LeaseAcquiredEvent;
+import live.yurii.yugram.cluster.LeaseLostEvent;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.cluster.LeasedResource;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.messages.MessageIngestedEvent;
+import live.yurii.yugram.watermarks.ChatWatermarkRepository.Watermark;
+import live.yurii.yugram.watermarks.MessageGapRepository.NewGap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a watermark per saved chat: the newest message up to which every message was ingested.
+ * <p>
+ * Committed messages move the watermarks in memory; a flush writes the changed ones and the gaps detected
+ * since the last flush in one transaction, so the ingest path never waits for them. A message arriving
+ * ahead of the watermark waits with the other early ones until the ids in between arrive. When they do not
+ * arrive within {@code gap-grace}, or too many messages wait, the ids in between are recorded as a gap for
+ * {@link GapRepairer} and the watermark moves past them. Messages a failed handler rolled back never arrive,
+ * which is how they end up repaired. Gaps are only detected in supergroups and channels, see {@link MessageIds}.
+ * <p>
+ * The early messages of a chat are not persisted, so after a restart the ones ahead of a hole are fetched
+ * again along with the missing ones. Storing a message twice is harmless.
+ * <p>
+ * With several nodes a node tracks only the chats of the shards it owns. It loads their watermarks when it
+ * takes a shard over and forgets them when it loses the shard; the messages missed in between show up as a
+ * gap ahead of the stored watermark.
+ */
+@Slf4j
+@Component
+public class WatermarkTracker {
+
+  private final ChatWatermarkRepository watermarkRepository;
+  private final MessageGapRepository gapRepository;
+  private final WatermarkProperties properties;
+  private final TransactionTemplate transactionTemplate;
+  private final LeaseManager leaseManager;
+  private final Map<Long, ChatState> chats = new ConcurrentHashMap<>();
+  private final List<NewGap> unsavedGaps = new ArrayList<>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final Counter gapsDetected;
+  private final Counter messagesMissing;
+
+  public WatermarkTracker(ChatWatermarkRepository watermarkRepository, MessageGapRepository gapRepository,
+                          WatermarkProperties properties, TransactionTemplate transactionTemplate,
+                          MeterRegistry meterRegistry, LeaseManager leaseManager) {
+    this.watermarkRepository = watermarkRepository;
+    this.gapRepository = gapRepository;
+    this.properties = properties;
+    this.transactionTemplate = transactionTemplate;
+    this.leaseManager = leaseManager;
+    this.gapsDetected = Counter.builder("yugram.watermarks.gaps")
+        .description("Gaps detected in the message ids of chats")
+        .register(meterRegistry);
+    this.messagesMissing = Counter.builder("yugram.watermarks.missing")
+        .description("Messages missing in detected gaps")
+        .register(meterRegistry);
+    Gauge.builder("yugram.watermarks.stale", this, WatermarkTracker::staleChats)
+        .description("Chats without an ingested message within the stale-after period")
+        .register(meterRegistry);
+    Gauge.builder("yugram.watermarks.lag", this, WatermarkTracker::maxLag)
+        .description("Seconds since the date of the newest message up to which the chat furthest behind was ingested"
+            + " without gaps")
+        .baseUnit("seconds")
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void restore() {
+    if (leaseManager.isEnabled()) {
+      log.info("Ingest watermarks are restored per chat shard as its lease is taken");
+      return;
+    }
+    List<Watermark> watermarks = watermarkRepository.findAll();
+    watermarks.forEach(watermark -> chats.put(watermark.chatId(), new ChatState(watermark, false)));
+    log.info("Restored the ingest watermarks of {} chats", watermarks.size());
+  }
+
+  @EventListener
+  public void onLeaseAcquired(LeaseAcquiredEvent event) {
+    if (event.getResource().kind() != LeasedResource.Kind.CHAT_SHARD) {
+      return;
+    }
+    // what the previous owner stored replaces whatever this node knew before
+    int shard = event.getResource().id();
+    forget(shard);
+    List<Watermark> watermarks = watermarkRepository.findByShard(leaseManager.shardCount(), shard);
+    watermarks.forEach(watermark -> chats.put(watermark.chatId(), new ChatState(watermark, false)));
+    log.info("Restored the ingest watermarks of {} chats of shard {}", watermarks.size(), shard);
+  }
+
+  @EventListener
+  public void onLeaseLost(LeaseLostEvent event) {
+    if (event.getResource().kind() == LeasedResource.Kind.CHAT_SHARD) {
+      forget(event.getResource().id());
+    }
+  }
+
+  private void forget(int shard) {
+    chats.values().removeIf(state -> leaseManager.shardOf(state.chatId) == shard);
+  }
+
+  @TransactionalEventListener
+  public void onMessageIngested(MessageIngestedEvent event) {
+    if (!MessageIds.isServer(event.getMessageId()) || !leaseManager.ownsChat(event.getChatId())) {
+      return;
+    }
+    ChatState state = chats.get(event.getChatId());
+    if (state == null) {
+      // the first message of a chat starts its watermark, older history is not tracked
+      state = chats.computeIfAbsent(event.getChatId(), chatId -> new ChatState(
+          new Watermark(chatId, event.getAccountId(), event.getMessageId(), event.getDate(), event.getMessageId(),
+              event.getDate(), now()), true));
+    }
+    state.ingested(event.getAccountId(), event.getMessageId(), event.getDate());
+  }
+
+  @Scheduled(fixedDelayString = "${app.watermarks.flush-interval-ms:1000}")
+  public void flush() {
+    flushLock.lock();
+    try {
+      long now = now();
+      // gaps of shards lost since a failed flush are the new owner's to detect
+      unsavedGaps.removeIf(gap -> !leaseManager.ownsChat(gap.chatId()));
+      List<NewGap> gaps = new ArrayList<>(unsavedGaps);
+      unsavedGaps.clear();
+      List<Watermark> watermarks = new ArrayList<>();
+      for (ChatState state : chats.values()) {
+        state.flush(now, gaps, watermarks);
+      }
+      if (gaps.isEmpty() && watermarks.isEmpty()) {
+        return;
+      }
+      DbFlushEvent flushEvent = DbFlushEvent.start("watermarks", gaps.size() + watermarks.size());
+      try {
+        Set<LeasedResource> shards = new HashSet<>();
+        gaps.forEach(gap -> shards.add(LeasedResource.chatShard(leaseManager.shardOf(gap.chatId()))));
+        watermarks.forEach(watermark -> shards.add(LeasedResource.chatShard(leaseManager.shardOf(watermark.chatId()))));
+        transactionTemplate.executeWithoutResult(status -> {
+          leaseManager.fence(shards);
+          gapRepository.insertAll(gaps, now);
+          watermarkRepository.upsertAll(watermarks);
+        });
+        flushEvent.finish(true);
+        log.debug("Wrote {} watermarks and {} gaps", watermarks.size(), gaps.size());
+      } catch (RuntimeException e) {
+        flushEvent.finish(false);
+        log.error("Failed to write {} watermarks and {} gaps, will retry on the next flush", watermarks.size(), gaps.size(), e);
+        unsavedGaps.addAll(gaps);
+        watermarks.forEach(watermark -> {
+          ChatState state = chats.get(watermark.chatId());
+          if (state != null) {
+            state.changed();
+          }
+        });
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  /**
+   * The watermark of a chat, as stored by its owner if this node does not track it.
+   */
+  public Optional<Watermark> watermark(long chatId) {
+    ChatState state = chats.get(chatId);
+    if (state != null) {
+      return Optional.of(state.watermark());
+    }
+    return leaseManager.ownsChat(chatId) ? Optional.empty() : watermarkRepository.findById(chatId);
+  }
+
+  /**
+   * The watermarks of all chats, the ones tracked by other nodes as they stored them.
+   */
+  public List<Watermark> watermarks() {
+    if (!leaseManager.isEnabled()) {
+      return chats.values().stream().map(ChatState::watermark).toList();
+    }
+    Map<Long, Watermark> watermarks = new HashMap<>();
+    watermarkRepository.findAll().forEach(watermark -> watermarks.put(watermark.chatId(), watermark));
+    chats.values().forEach(state -> watermarks.put(state.chatId, state.watermark()));
+    return List.copyOf(watermarks.values());
+  }
+
+  /**
+   * Messages received ahead of a hole in the chat's ids, waiting for it to fill.
+   */
+  public int pending(long chatId) {
+    ChatState state = chats.get(chatId);
+    return state != null ? state.pendingCount() : 0;
+  }
+
+  public boolean isStale(Watermark watermark) {
+    return now() - watermark.lastDate() > properties.getStaleAfter().toSeconds();
+  }
+
+  private int staleChats() {
+    return (int) chats.values().stream().map(ChatState::watermark).filter(this::isStale).count();
+  }
+
+  private double maxLag() {
+    return chats.values().stream().mapToDouble(ChatState::lag).max().orElse(0);
+  }
+
+  private static long now() {
+    return Instant.now().getEpochSecond();
+  }
+
+  private final class ChatState {
+
+    private final long chatId;
+    private int accountId;
+    private long contiguousId;
+    private int contiguousDate;
+    private long lastId;
+    private int lastDate;
+    private long updatedAt;
+    /**
+     * Messages ahead of the watermark by id, with their dates.
+     */
+    private final TreeMap<Long, Integer> early = new TreeMap<>();
+    private long holeSince;
+    private boolean changed;
+
+    private ChatState(Watermark watermark, boolean changed) {
+      this.chatId = watermark.chatId();
+      this.accountId = watermark.accountId();
+      this.contiguousId = watermark.contiguousId();
+      this.contiguousDate = watermark.contiguousDate();
+      this.lastId = watermark.lastId();
+      this.lastDate = watermark.lastDate();
+      this.updatedAt = watermark.updatedAt();
+      this.changed = changed;
+    }
+
+    synchronized void ingested(int accountId, long messageId, int date) {
+      if (messageId > lastId) {
+        // the account receiving the chat's newest messages is the one to fetch its history with
+        this.accountId = accountId;
+        lastId = messageId;
+        lastDate = date;
+        changed = true;
+      }
+      if (messageId <= contiguousId) {
+        // an edit, a replay or a repaired message
+        return;
+      }
+      if (!MessageIds.isSequential(chatId) || messageId == MessageIds.next(contiguousId)) {
+        advance(messageId, date);
+        return;
+      }
+      if (early.isEmpty()) {
+        holeSince = now();
+      }
+      early.put(messageId, date);
+    }
+
+    /**
+     * Declare the holes that waited too long as gaps and collect the watermark if it changed.
+     */
+    synchronized void flush(long now, List<NewGap> gaps, List<Watermark> watermarks) {
+      boolean expired = !early.isEmpty() && now - holeSince >= properties.getGapGrace().toSeconds();
+      while (!early.isEmpty() && (expired || early.size() > properties.getMaxPendingPerChat())) {
+        Map.Entry<Long, Integer> first = early.pollFirstEntry();
+        NewGap gap = new NewGap(chatId, accountId, contiguousId, first.getKey(),
+            MessageIds.between(contiguousId, first.getKey()));
+        gaps.add(gap);
+        gapsDetected.increment();
+        messagesMissing.increment(gap.missing());
+        log.info("Detected {} missing messages in chat {} between messages {} and {}",
+            gap.missing(), chatId, gap.fromId(), gap.toId());
+        advance(first.getKey(), first.getValue());
+      }
+      if (changed) {
+        updatedAt = now;
+        watermarks.add(watermark());
+        changed = false;
+      }
+    }
+
+    synchronized void changed() {
+      changed = true;
+    }
+
+    synchronized Watermark watermark() {
+      return new Watermark(chatId, accountId, contiguousId, contiguousDate, lastId, lastDate, updatedAt);
+    }
+
+    synchronized int pendingCount() {
+      return early.size();
+    }
+
+    synchronized double lag() {
+      return Math.max(0, now() - contiguousDate);
+    }
+
+    private void advance(long messageId, int date) {
+      contiguousId = messageId;
+      contiguousDate = date;
+      changed = true;
+      // messages that arrived early and follow without a hole
+      while (!early.isEmpty() && early.firstKey() == MessageIds.next(contiguousId)) {
+        Map.Entry<Long, Integer> next = early.pollFirstEntry();
+        contiguousId = next.getKey();
+        contiguousDate = next.getValue();
+      }
+      if (!early.isEmpty()) {
+        holeSince = now();
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package live.yurii.yugram.watermarks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatWatermarkDto {
+  private long chatId;
+  /**
+   * Account that received the newest message, the one gaps are repaired with.
+   */
+  private int accountId;
+  /**
+   * Newest message up to which every message was ingested or is recorded as a gap.
+   */
+  private long contiguousId;
+  private int contiguousDate;
+  /**
+   * Newest message ingested.
+   */
+  private long lastId;
+  private int lastDate;
+  /**
+   * Seconds since {@code contiguousDate}.
+   */
+  private long lagSeconds;
+  /**
+   * No message was ingested within the stale-after period.
+   */
+  private boolean stale;
+  /**
+   * Messages received ahead of a hole, waiting for it to fill.
+   */
+  private int pending;
+  private int openGaps;
+  /**
+   * Messages missing in the open gaps.
+   */
+  private long missing;
+}
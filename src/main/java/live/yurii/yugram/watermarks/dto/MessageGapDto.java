@@ -0,0 +1,50 @@
+package live.yurii.yugram.watermarks.dto;
+
+import live.yurii.yugram.watermarks.GapStatus;
+import live.yurii.yugram.watermarks.MessageGapRepository.Gap;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageGapDto {
+  private long id;
+  private long chatId;
+  private int accountId;
+  /**
+   * Ingested messages the gap lies between, both exclusive.
+   */
+  private long fromId;
+  private long toId;
+  private int missing;
+  private GapStatus status;
+  /**
+   * Messages fetched from the history and ingested so far.
+   */
+  private int repaired;
+  private int attempts;
+  private long detectedAt;
+  private long nextAttemptAt;
+  private String lastError;
+
+  public static MessageGapDto fromGap(Gap gap) {
+    return MessageGapDto.builder()
+        .id(gap.id())
+        .chatId(gap.chatId())
+        .accountId(gap.accountId())
+        .fromId(gap.fromId())
+        .toId(gap.toId())
+        .missing(gap.missing())
+        .status(gap.status())
+        .repaired(gap.repaired())
+        .attempts(gap.attempts())
+        .detectedAt(gap.detectedAt())
+        .nextAttemptAt(gap.nextAttemptAt())
+        .lastError(gap.lastError())
+        .build();
+  }
+}
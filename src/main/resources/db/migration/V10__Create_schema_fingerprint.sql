@@ -0,0 +1,8 @@
+-- Hash of the migration scripts the schema was last migrated with, a single row.
+-- While it matches the scripts of a new start, Flyway is skipped.
+CREATE TABLE IF NOT EXISTS schema_fingerprint
+(
+    id          SMALLINT PRIMARY KEY CHECK (id = 1),
+    fingerprint VARCHAR(64)              NOT NULL,
+    migrated_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
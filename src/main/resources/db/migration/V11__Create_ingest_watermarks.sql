@@ -0,0 +1,33 @@
+-- Per chat, the newest message up to which every message was ingested or declared missing, and the newest
+-- message ingested at all. Times are epoch seconds.
+CREATE TABLE IF NOT EXISTS chat_watermarks
+(
+    chat_id         BIGINT PRIMARY KEY,
+    contiguous_id   BIGINT  NOT NULL,
+    contiguous_date INTEGER NOT NULL,
+    last_id         BIGINT  NOT NULL,
+    last_date       INTEGER NOT NULL,
+    updated_at      BIGINT  NOT NULL
+);
+
+-- Messages missing between two ingested ones, from_id and to_id exclusive. A repair pages the history
+-- backwards from to_id, cursor_id being the oldest message fetched so far.
+CREATE TABLE IF NOT EXISTS message_gaps
+(
+    id              BIGSERIAL PRIMARY KEY,
+    chat_id         BIGINT      NOT NULL,
+    from_id         BIGINT      NOT NULL,
+    to_id           BIGINT      NOT NULL,
+    missing         INTEGER     NOT NULL,
+    status          VARCHAR(16) NOT NULL,
+    cursor_id       BIGINT      NOT NULL,
+    repaired        INTEGER     NOT NULL DEFAULT 0,
+    attempts        INTEGER     NOT NULL DEFAULT 0,
+    detected_at     BIGINT      NOT NULL,
+    next_attempt_at BIGINT      NOT NULL,
+    last_error      TEXT,
+    UNIQUE (chat_id, from_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_gaps_due ON message_gaps (next_attempt_at) WHERE status = 'OPEN';
+CREATE INDEX IF NOT EXISTS idx_message_gaps_chat_id ON message_gaps (chat_id, from_id DESC);
@@ -0,0 +1,9 @@
+-- The configured account whose client stored the row first. Chats, users and channel messages seen by several
+-- accounts are stored once. A constant default only changes the catalog, existing rows are not rewritten.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS account_id INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE chats ADD COLUMN IF NOT EXISTS account_id INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS account_id INTEGER NOT NULL DEFAULT 0;
+
+-- The account that last moved a watermark repairs the chat's gaps through its client
+ALTER TABLE chat_watermarks ADD COLUMN IF NOT EXISTS account_id INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE message_gaps ADD COLUMN IF NOT EXISTS account_id INTEGER NOT NULL DEFAULT 0;
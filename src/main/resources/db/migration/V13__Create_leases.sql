@@ -0,0 +1,12 @@
+-- Leases deciding which node writes what: one row per account, chat shard and live node. The token grows with
+-- every change of owner and fences the writes of a previous one. Times are epoch seconds of the database clock,
+-- so that the clocks of the nodes never have to agree.
+CREATE TABLE IF NOT EXISTS leases
+(
+    resource    VARCHAR(64)  PRIMARY KEY,
+    owner       VARCHAR(128) NOT NULL,
+    token       BIGINT       NOT NULL,
+    acquired_at BIGINT       NOT NULL,
+    renewed_at  BIGINT       NOT NULL,
+    expires_at  BIGINT       NOT NULL
+);
@@ -0,0 +1,34 @@
+-- Changes of messages, chats and users, written in the transaction of the change itself. Rows get their place
+-- in the feed, seq, only once committed, from one sequencer at a time, so that a consumer reading past a
+-- seq never misses a change committed later. Times are epoch seconds.
+CREATE TABLE IF NOT EXISTS change_outbox
+(
+    id         BIGSERIAL PRIMARY KEY,
+    seq        BIGINT UNIQUE,
+    kind       VARCHAR(16) NOT NULL,
+    entity_id  BIGINT      NOT NULL,
+    chat_id    BIGINT,
+    operation  VARCHAR(16) NOT NULL,
+    payload    TEXT        NOT NULL,
+    created_at BIGINT      NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_outbox_unsequenced ON change_outbox (id) WHERE seq IS NULL;
+CREATE INDEX IF NOT EXISTS idx_change_outbox_created_at ON change_outbox (created_at);
+
+-- The last seq handed out; its row lock makes the sequencers of all nodes take turns.
+CREATE TABLE IF NOT EXISTS change_feed_state
+(
+    id       SMALLINT PRIMARY KEY,
+    last_seq BIGINT NOT NULL
+);
+
+INSERT INTO change_feed_state (id, last_seq) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
+
+-- How far each consumer has acknowledged the feed; entries all live consumers acknowledged are pruned.
+CREATE TABLE IF NOT EXISTS change_consumers
+(
+    consumer   VARCHAR(64) PRIMARY KEY,
+    acked_seq  BIGINT      NOT NULL,
+    updated_at BIGINT      NOT NULL
+);
@@ -0,0 +1,2 @@
+-- The node that wrote the change. The other nodes apply it to what they keep in memory.
+ALTER TABLE change_outbox ADD COLUMN IF NOT EXISTS origin VARCHAR(128);
@@ -0,0 +1,9 @@
+-- Message ids are unique per chat in channels and supergroups, per account in private chats and basic groups,
+-- and a private chat's id is the other user's, so every account has its own chat of that id. account_id becomes
+-- the account whose chat it is: 0 for channels and supergroups, stored once for all accounts, the receiving
+-- account otherwise. Chat ids of the two kinds never collide.
+UPDATE messages SET account_id = 0 WHERE chat_id <= -1000000000000 AND account_id <> 0;
+UPDATE chats SET account_id = 0 WHERE id <= -1000000000000 AND account_id <> 0;
+
+ALTER TABLE messages DROP CONSTRAINT messages_pkey, ADD PRIMARY KEY (chat_id, id, account_id);
+ALTER TABLE chats DROP CONSTRAINT chats_pkey, ADD PRIMARY KEY (id, account_id);
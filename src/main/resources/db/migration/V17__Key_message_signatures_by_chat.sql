@@ -0,0 +1,12 @@
+-- Message ids are unique per chat only: signatures are keyed by chat and message id, and a cluster by the chat
+-- and id of its first seen message. Existing clusters take the chat of their first message, when still stored.
+ALTER TABLE message_signatures ADD COLUMN IF NOT EXISTS cluster_chat_id BIGINT;
+UPDATE message_signatures s
+SET cluster_chat_id = COALESCE((SELECT c.chat_id FROM message_signatures c WHERE c.message_id = s.cluster_id), s.chat_id)
+WHERE cluster_chat_id IS NULL;
+
+ALTER TABLE message_signatures ALTER COLUMN cluster_chat_id SET NOT NULL,
+    DROP CONSTRAINT message_signatures_pkey, ADD PRIMARY KEY (chat_id, message_id);
+
+DROP INDEX IF EXISTS idx_message_signatures_cluster_id_date;
+CREATE INDEX IF NOT EXISTS idx_message_signatures_cluster_date ON message_signatures (cluster_chat_id, cluster_id, date);
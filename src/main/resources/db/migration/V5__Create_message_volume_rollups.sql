@@ -0,0 +1,25 @@
+-- Message counts per hour and per day. chat_id 0 counts all chats, sender_id 0 all senders.
+CREATE TABLE IF NOT EXISTS message_volume_hourly
+(
+    chat_id       BIGINT NOT NULL,
+    sender_id     BIGINT NOT NULL,
+    bucket_start  BIGINT NOT NULL,
+    message_count BIGINT NOT NULL,
+    PRIMARY KEY (chat_id, sender_id, bucket_start)
+);
+
+CREATE TABLE IF NOT EXISTS message_volume_daily
+(
+    chat_id       BIGINT NOT NULL,
+    sender_id     BIGINT NOT NULL,
+    bucket_start  BIGINT NOT NULL,
+    message_count BIGINT NOT NULL,
+    PRIMARY KEY (chat_id, sender_id, bucket_start)
+);
+
+-- Backfills rebuild time ranges
+CREATE INDEX IF NOT EXISTS idx_message_volume_hourly_bucket_start ON message_volume_hourly (bucket_start);
+CREATE INDEX IF NOT EXISTS idx_message_volume_daily_bucket_start ON message_volume_daily (bucket_start);
+
+-- Messages arrive roughly in date order, so a BRIN index narrows backfill scans at almost no write cost
+CREATE INDEX IF NOT EXISTS idx_messages_date_brin ON messages USING BRIN (date);
@@ -0,0 +1,13 @@
+-- Snapshots of the in-memory top sender counters, one Space-Saving summary per chat and pane.
+-- sender_id 0 holds the number of messages in the pane.
+CREATE TABLE IF NOT EXISTS top_sender_panes
+(
+    chat_id       BIGINT NOT NULL,
+    pane_start    BIGINT NOT NULL,
+    sender_id     BIGINT NOT NULL,
+    message_count BIGINT NOT NULL,
+    error_count   BIGINT NOT NULL,
+    PRIMARY KEY (chat_id, pane_start, sender_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_top_sender_panes_pane_start ON top_sender_panes (pane_start);
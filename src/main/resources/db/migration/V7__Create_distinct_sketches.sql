@@ -0,0 +1,10 @@
+-- Daily HyperLogLog sketches: the senders of every chat (CHAT_SENDERS) and the chats of every sender
+-- (SENDER_CHATS). owner_id 0 holds the sketch of all chats or all senders, day is the UTC day start.
+CREATE TABLE IF NOT EXISTS distinct_sketches
+(
+    kind     VARCHAR(16) NOT NULL,
+    owner_id BIGINT      NOT NULL,
+    day      BIGINT      NOT NULL,
+    sketch   BYTEA       NOT NULL,
+    PRIMARY KEY (kind, owner_id, day)
+);
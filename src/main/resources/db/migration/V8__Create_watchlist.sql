@@ -0,0 +1,25 @@
+-- Watch terms, matched case-insensitively against the text of every new message
+CREATE TABLE IF NOT EXISTS watch_terms
+(
+    id         BIGSERIAL PRIMARY KEY,
+    term       VARCHAR(200) NOT NULL,
+    created_at BIGINT       NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_watch_terms_term ON watch_terms (LOWER(term));
+
+-- Messages containing a watch term. Messages of chats that are not saved have no row in messages,
+-- so the match keeps the text around the term.
+CREATE TABLE IF NOT EXISTS message_matches
+(
+    chat_id    BIGINT  NOT NULL,
+    message_id BIGINT  NOT NULL,
+    term_id    BIGINT  NOT NULL REFERENCES watch_terms (id) ON DELETE CASCADE,
+    sender_id  BIGINT  NOT NULL,
+    date       INTEGER NOT NULL,
+    excerpt    TEXT    NOT NULL,
+    PRIMARY KEY (chat_id, message_id, term_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_matches_date ON message_matches (date DESC);
+CREATE INDEX IF NOT EXISTS idx_message_matches_term_id_date ON message_matches (term_id, date DESC);
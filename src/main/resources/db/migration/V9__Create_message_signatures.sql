@@ -0,0 +1,14 @@
+-- MinHash signatures of messages, 4 bytes per hash, and the near-duplicate cluster each message joined.
+-- cluster_id is the id of the first seen message of the cluster.
+CREATE TABLE IF NOT EXISTS message_signatures
+(
+    message_id BIGINT PRIMARY KEY,
+    chat_id    BIGINT  NOT NULL,
+    date       INTEGER NOT NULL,
+    cluster_id BIGINT  NOT NULL,
+    similarity REAL    NOT NULL,
+    signature  BYTEA   NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_signatures_date ON message_signatures (date);
+CREATE INDEX IF NOT EXISTS idx_message_signatures_cluster_id_date ON message_signatures (cluster_id, date);
@@ -0,0 +1,115 @@
+package live.yurii.yugram;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.diagnostics.StartupTimeline;
+import live.yurii.yugram.ingest.IngestExecutor;
+import live.yurii.yugram.messages.NewMessageEvent;
+import org.drinkless.tdlib.TdApi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link MainUpdateHandler}.
+ */
+@DisplayName("MainUpdateHandler Tests")
+class MainUpdateHandlerTest {
+
+  private static final long PRIVATE_CHAT_ID = 777;
+  private static final long MESSAGE_ID = 5L << 20;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+  private final IngestExecutor ingestExecutor = mock(IngestExecutor.class);
+  private final LeaseManager leaseManager = mock(LeaseManager.class);
+  private MainUpdateHandler handler;
+
+  @BeforeEach
+  void setUp() {
+    when(leaseManager.ownsChat(anyLong())).thenReturn(true);
+    when(leaseManager.ownsAccount(anyInt())).thenReturn(true);
+    doAnswer(invocation -> {
+      invocation.<Runnable>getArgument(2).run();
+      return null;
+    }).when(ingestExecutor).execute(anyLong(), anyString(), any());
+    handler = new MainUpdateHandler(publisher, ingestExecutor, meterRegistry, new StartupTimeline(meterRegistry),
+        leaseManager);
+    handler.onApplicationReadyEvent();
+  }
+
+  private static TdApi.UpdateNewMessage newMessage(long chatId, long messageId) {
+    TdApi.Message message = new TdApi.Message();
+    message.chatId = chatId;
+    message.id = messageId;
+    TdApi.UpdateNewMessage update = new TdApi.UpdateNewMessage();
+    update.message = message;
+    return update;
+  }
+
+  private double updates(int accountId, String type, String outcome) {
+    var counter = meterRegistry.find("yugram.tdlib.updates")
+        .tags("account", String.valueOf(accountId), "type", type, "outcome", outcome)
+        .counter();
+    return counter != null ? counter.count() : 0;
+  }
+
+  @Test
+  @DisplayName("Private chat messages with colliding ids should be dispatched for every account")
+  void givenTwoAccountsWithCollidingIds_whenNewMessage_thenDispatchBoth() {
+    // Given
+    TdApi.UpdateNewMessage first = newMessage(PRIVATE_CHAT_ID, MESSAGE_ID);
+    TdApi.UpdateNewMessage second = newMessage(PRIVATE_CHAT_ID, MESSAGE_ID);
+
+    // When
+    handler.onResult(1, first);
+    handler.onResult(2, second);
+
+    // Then
+    verify(publisher).publishEvent(argThat((ApplicationEvent event) ->
+        event instanceof NewMessageEvent newMessage && newMessage.getAccountId() == 1));
+    verify(publisher).publishEvent(argThat((ApplicationEvent event) ->
+        event instanceof NewMessageEvent newMessage && newMessage.getAccountId() == 2));
+    assertThat(updates(1, "UpdateNewMessage", "handled")).isEqualTo(1);
+    assertThat(updates(2, "UpdateNewMessage", "handled")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Updates should be counted per account, constructor and outcome")
+  void givenMixedUpdates_whenReceived_thenCountEachOutcomeApart() {
+    // Given
+    TdApi.User user = new TdApi.User();
+    user.id = 42;
+    TdApi.UpdateUser updateUser = new TdApi.UpdateUser();
+    updateUser.user = user;
+    when(leaseManager.ownsAccount(2)).thenReturn(false);
+
+    // When
+    handler.onResult(1, updateUser);
+    handler.onResult(2, updateUser);
+    handler.onResult(1, new TdApi.UpdateUserStatus());
+    handler.onResult(1, new TdApi.UpdateUserStatus());
+    handler.onResult(1, new TdApi.Ok());
+
+    // Then
+    assertThat(updates(1, "UpdateUser", "handled")).isEqualTo(1);
+    assertThat(updates(2, "UpdateUser", "not-owned")).isEqualTo(1);
+    assertThat(updates(2, "UpdateUser", "handled")).isZero();
+    assertThat(updates(1, "UpdateUserStatus", "skipped")).isEqualTo(2);
+    assertThat(updates(1, "UpdateUserStatus", "handled")).isZero();
+    assertThat(updates(1, "Ok", "unhandled")).isEqualTo(1);
+  }
+}
@@ -0,0 +1,224 @@
+package live.yurii.yugram.analytics;
+
+import live.yurii.yugram.analytics.dto.VolumeBackfillDto;
+import live.yurii.yugram.analytics.dto.VolumeBucketDto;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link AnalyticsController}.
+ */
+@WebMvcTest(AnalyticsController.class)
+@Import({VolumeRollupProperties.class, TopSendersTracker.class, TopSendersProperties.class,
+    DistinctCounter.class, DistinctCountProperties.class,
+    TrendingTermsTracker.class, TrendingTermsProperties.class, TermTokenizer.class})
+@DisplayName("AnalyticsController Tests")
+class AnalyticsControllerTest {
+
+  private static final long DAY_START = 1_700_006_400L;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockitoBean
+  private VolumeRollupRepository volumeRollupRepository;
+
+  @MockitoBean
+  private VolumeRollupHandler volumeRollupHandler;
+
+  @MockitoBean
+  private TopSendersRepository topSendersRepository;
+
+  @MockitoBean
+  private TransactionTemplate transactionTemplate;
+
+  @MockitoBean
+  private LeaseManager leaseManager;
+
+  @MockitoBean
+  private DistinctSketchRepository distinctSketchRepository;
+
+  @MockitoBean
+  private TrendingTermsRepository trendingTermsRepository;
+
+  @Autowired
+  private TopSendersTracker topSendersTracker;
+
+  @Autowired
+  private DistinctCounter distinctCounter;
+
+  @Autowired
+  private TrendingTermsTracker trendingTermsTracker;
+
+  @Test
+  @DisplayName("GET /analytics/volume should return one bucket per hour of the range, empty ones included")
+  void whenGetVolume_thenReturnZeroFilledHistogram() throws Exception {
+    // Given
+    when(volumeRollupRepository.findBuckets(Granularity.HOUR, -100L, VolumeCounter.ALL, DAY_START, DAY_START + 4 * 3600))
+        .thenReturn(List.of(new VolumeBucketDto(DAY_START, 5), new VolumeBucketDto(DAY_START + 2 * 3600, 7)));
+
+    // When & Then
+    mockMvc.perform(get("/analytics/volume")
+            .param("chatId", "-100")
+            .param("from", String.valueOf(DAY_START + 10))
+            .param("to", String.valueOf(DAY_START + 3 * 3600 + 1)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.granularity").value("HOUR"))
+        .andExpect(jsonPath("$.chatId").value(-100))
+        .andExpect(jsonPath("$.from").value(DAY_START))
+        .andExpect(jsonPath("$.to").value(DAY_START + 4 * 3600))
+        .andExpect(jsonPath("$.total").value(12))
+        .andExpect(jsonPath("$.buckets.length()").value(4))
+        .andExpect(jsonPath("$.buckets[0].count").value(5))
+        .andExpect(jsonPath("$.buckets[1].start").value(DAY_START + 3600))
+        .andExpect(jsonPath("$.buckets[1].count").value(0))
+        .andExpect(jsonPath("$.buckets[2].count").value(7));
+  }
+
+  @Test
+  @DisplayName("GET /analytics/volume should reject ranges with more buckets than allowed")
+  void whenGetVolumeWithTooManyBuckets_thenReturnBadRequest() throws Exception {
+    // When & Then
+    mockMvc.perform(get("/analytics/volume")
+            .param("senderId", "10")
+            .param("from", "0")
+            .param("to", String.valueOf(DAY_START)))
+        .andExpect(status().isBadRequest());
+
+    verify(volumeRollupRepository, never()).findBuckets(any(), anyLong(), anyLong(), anyLong(), anyLong());
+  }
+
+  @Test
+  @DisplayName("POST /analytics/volume/backfill should rebuild the requested range")
+  void whenBackfillVolume_thenReturnRebuiltRange() throws Exception {
+    // Given
+    when(volumeRollupHandler.backfill(eq(DAY_START), eq(null)))
+        .thenReturn(new VolumeBackfillDto(DAY_START, DAY_START + 86400, 48, 2));
+
+    // When & Then
+    mockMvc.perform(post("/analytics/volume/backfill").param("from", String.valueOf(DAY_START)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.hourlyRows").value(48))
+        .andExpect(jsonPath("$.dailyRows").value(2));
+  }
+
+  @Test
+  @DisplayName("GET /analytics/topSenders should rank the senders of a chat counted on ingest")
+  void whenGetTopSenders_thenReturnMostActiveSendersFirst() throws Exception {
+    // Given
+    long chatId = -4242L;
+    int now = (int) Instant.now().getEpochSecond();
+    for (int i = 0; i < 30; i++) {
+      long senderId = i < 15 ? 7L : i < 25 ? 8L : 9L;
+      topSendersTracker.onMessagePersisted(persisted(i, senderId, chatId, now - i));
+    }
+    topSendersTracker.onMessagePersisted(persisted(100, 7L, -1L, now));
+
+    // When & Then
+    mockMvc.perform(get("/analytics/topSenders").param("chatId", String.valueOf(chatId)).param("limit", "2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.chatId").value(chatId))
+        .andExpect(jsonPath("$.messageCount").value(30))
+        .andExpect(jsonPath("$.senders.length()").value(2))
+        .andExpect(jsonPath("$.senders[0].senderId").value(7))
+        .andExpect(jsonPath("$.senders[0].count").value(15))
+        .andExpect(jsonPath("$.senders[0].error").value(0))
+        .andExpect(jsonPath("$.senders[1].senderId").value(8))
+        .andExpect(jsonPath("$.senders[1].count").value(10));
+  }
+
+  @Test
+  @DisplayName("GET /analytics/distinctSenders should estimate the distinct senders of the requested chats")
+  void whenGetDistinctSenders_thenReturnEstimateWithinErrorBounds() throws Exception {
+    // Given
+    int now = (int) Instant.now().getEpochSecond();
+    for (int i = 0; i < 2000; i++) {
+      distinctCounter.onMessagePersisted(persisted(i, 1000 + i % 500, -5151L, now - i));
+    }
+    distinctCounter.onMessagePersisted(persisted(5000, 1, -5252L, now));
+
+    // When & Then
+    mockMvc.perform(get("/analytics/distinctSenders").param("chatIds", "-5151", "-5252"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.ids.length()").value(2))
+        .andExpect(jsonPath("$.estimate").value(allOf(greaterThan(480), lessThan(523))))
+        .andExpect(jsonPath("$.relativeStandardError").value(closeTo(0.01625, 0.0001)));
+  }
+
+  @Test
+  @DisplayName("GET /analytics/distinctChats should reject an empty range")
+  void whenGetDistinctChatsWithEmptyRange_thenReturnBadRequest() throws Exception {
+    // When & Then
+    mockMvc.perform(get("/analytics/distinctChats")
+            .param("from", String.valueOf(DAY_START + 86400))
+            .param("to", String.valueOf(DAY_START)))
+        .andExpect(status().isBadRequest());
+
+    verify(distinctSketchRepository, never()).findSketches(any(), any(), anyLong(), anyLong());
+  }
+
+  @Test
+  @DisplayName("GET /analytics/trendingTerms should rank sudden terms above steady ones and skip stop words")
+  void whenGetTrendingTerms_thenReturnBurstingTermsFirst() throws Exception {
+    // Given
+    long chatId = -6161L;
+    int now = (int) Instant.now().getEpochSecond();
+    // no stored messages, new ones are counted as they arrive
+    trendingTermsTracker.warmUp();
+    for (int i = 0; i < 120; i++) {
+      trendingTermsTracker.onMessagePersisted(persisted(i, 1L, chatId, now - i * 600, "Weather forecast for Kyiv"));
+    }
+    for (int i = 0; i < 8; i++) {
+      String content = i < 6 ? "Затмение сегодня! See the eclipse: https://example.com/eclipse" : "Сонячне ЗАТМЕНИЕ сегодня";
+      trendingTermsTracker.onMessagePersisted(persisted(200 + i, 2L, chatId, now - i * 30, content));
+    }
+    trendingTermsTracker.onMessagePersisted(persisted(300, 2L, -1L, now, "Unrelated unrelated chat"));
+
+    // When & Then
+    mockMvc.perform(get("/analytics/trendingTerms").param("chatIds", String.valueOf(chatId)).param("limit", "3"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.terms.length()").value(3))
+        .andExpect(jsonPath("$.terms[0].term").value("затмение"))
+        .andExpect(jsonPath("$.terms[0].recentCount").value(closeTo(7.7, 0.3)))
+        .andExpect(jsonPath("$.terms[1].term").value("eclipse"))
+        .andExpect(jsonPath("$.terms[*].term", not(hasItems("the", "сегодня", "unrelated"))));
+  }
+
+  private MessagePersistedEvent persisted(long id, long senderId, long chatId, int date) {
+    return persisted(id, senderId, chatId, date, "Hello");
+  }
+
+  private MessagePersistedEvent persisted(long id, long senderId, long chatId, int date, String content) {
+    MessageDto message = new MessageDto(id, senderId, chatId, date, content);
+    return new MessagePersistedEvent(this, message, true);
+  }
+}
@@ -0,0 +1,116 @@
+package live.yurii.yugram.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+/**
+ * Unit tests for {@link HyperLogLog}.
+ */
+@DisplayName("HyperLogLog Tests")
+class HyperLogLogTest {
+
+  private static HyperLogLog sketchOf(int precision, long from, long to) {
+    HyperLogLog sketch = new HyperLogLog(precision);
+    for (long value = from; value < to; value++) {
+      sketch.add(value);
+    }
+    return sketch;
+  }
+
+  private static int nonZeroRegisters(HyperLogLog sketch) {
+    return ByteBuffer.wrap(sketch.toBytes(), 2, 4).getInt();
+  }
+
+  @Test
+  @DisplayName("A sketch should turn dense once an eighth of its registers are set, keeping them all")
+  void givenSparseSketch_whenRegistersOutgrowSparseLimit_thenTurnDense() {
+    // Given
+    HyperLogLog sketch = new HyperLogLog(10);
+    long value = 0;
+    int registers = 0;
+    long before = 0;
+
+    // When
+    while (sketch.isSparse()) {
+      registers = nonZeroRegisters(sketch);
+      before = sketch.estimate();
+      sketch.add(value++);
+    }
+
+    // Then
+    assertThat(registers).isEqualTo(1024 / 8);
+    assertThat(nonZeroRegisters(sketch)).isEqualTo(registers + 1);
+    assertThat(sketch.estimate()).isGreaterThanOrEqualTo(before);
+    assertThat(sketch.toBytes()).isEqualTo(sketchOf(10, 0, value).toBytes());
+  }
+
+  @Test
+  @DisplayName("Sketches should survive serialization in both the sparse and the dense encoding")
+  void givenSparseAndDenseSketches_whenRoundTrip_thenKeepRegisters() {
+    // Given
+    HyperLogLog small = sketchOf(12, 0, 100);
+    HyperLogLog large = sketchOf(12, 0, 100_000);
+
+    // When
+    byte[] smallBytes = small.toBytes();
+    byte[] largeBytes = large.toBytes();
+    HyperLogLog smallCopy = HyperLogLog.fromBytes(smallBytes);
+    HyperLogLog largeCopy = HyperLogLog.fromBytes(largeBytes);
+
+    // Then
+    assertThat(smallBytes[0]).isEqualTo((byte) 1);
+    assertThat(smallBytes).hasSize(6 + nonZeroRegisters(small) * 3);
+    assertThat(largeBytes[0]).isEqualTo((byte) 0);
+    assertThat(largeBytes).hasSize(2 + 4096);
+    assertThat(smallCopy.isSparse()).isTrue();
+    assertThat(largeCopy.isSparse()).isFalse();
+    assertThat(smallCopy.precision()).isEqualTo(12);
+    assertThat(smallCopy.toBytes()).isEqualTo(smallBytes);
+    assertThat(largeCopy.toBytes()).isEqualTo(largeBytes);
+    assertThat(smallCopy.estimate()).isEqualTo(small.estimate());
+    assertThat(largeCopy.estimate()).isEqualTo(large.estimate());
+  }
+
+  @Test
+  @DisplayName("Merging a sparse sketch into a dense one should equal the sketch of the union")
+  void givenSparseAndDenseSketch_whenMerge_thenEqualSketchOfUnion() {
+    // Given
+    HyperLogLog dense = sketchOf(12, 0, 50_000);
+    HyperLogLog sparse = sketchOf(12, 49_900, 50_200);
+    assertThat(dense.isSparse()).isFalse();
+    assertThat(sparse.isSparse()).isTrue();
+
+    // When
+    dense.merge(sparse);
+    HyperLogLog again = dense.copy();
+    again.merge(sparse);
+
+    // Then
+    byte[] union = sketchOf(12, 0, 50_200).toBytes();
+    assertThat(dense.toBytes()).isEqualTo(union);
+    assertThat(again.toBytes()).isEqualTo(union);
+    assertThat(sparse.isSparse()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Estimates should stay within three standard errors from small to large cardinalities")
+  void givenCardinalities_whenEstimate_thenWithinStandardError() {
+    for (int cardinality : new int[]{10, 1_000, 100_000, 1_000_000}) {
+      // Given
+      HyperLogLog sketch = sketchOf(14, cardinality * 7L, cardinality * 8L);
+
+      // When
+      long estimate = sketch.estimate();
+
+      // Then
+      assertThat(estimate)
+          .as("estimate of %d distinct values", cardinality)
+          .isCloseTo(cardinality, withinPercentage(300 * sketch.relativeStandardError()));
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package live.yurii.yugram.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for {@link TermCounts}.
+ */
+@DisplayName("TermCounts Tests")
+class TermCountsTest {
+
+  private static final long NOW = 1_700_000_000L;
+  private static final double RATE = Math.log(2) / 3600;
+
+  private static Map<String, Double> baselines(TermCounts counts) {
+    Map<String, Double> baselines = new HashMap<>();
+    counts.forEach(NOW, (term, recent, baseline) -> baselines.put(term, baseline));
+    return baselines;
+  }
+
+  @Test
+  @DisplayName("Growing the table should keep every term with its counts")
+  void givenManyTerms_whenTableGrows_thenKeepAllCounts() {
+    // Given
+    TermCounts counts = new TermCounts(2048, RATE, RATE);
+
+    // When
+    for (int i = 0; i < 1000; i++) {
+      for (int n = 0; n <= i % 3; n++) {
+        counts.add("term" + i, NOW);
+      }
+    }
+
+    // Then
+    Map<String, Double> baselines = baselines(counts);
+    assertThat(counts.size()).isEqualTo(1000);
+    assertThat(baselines).hasSize(1000);
+    assertThat(baselines.get("term0")).isCloseTo(1, within(1e-9));
+    assertThat(baselines.get("term999")).isCloseTo(1, within(1e-9));
+    assertThat(baselines.get("term500")).isCloseTo(3, within(1e-9));
+  }
+
+  @Test
+  @DisplayName("A full table should keep the half with the highest baselines")
+  void givenFullTable_whenAddNewTerm_thenKeepHighestHalf() {
+    // Given
+    TermCounts counts = new TermCounts(8, RATE, RATE);
+    for (int i = 0; i < 8; i++) {
+      for (int n = 0; n <= i; n++) {
+        counts.add("term" + i, NOW);
+      }
+    }
+
+    // When
+    counts.add("new", NOW);
+
+    // Then
+    assertThat(baselines(counts)).containsOnlyKeys("term4", "term5", "term6", "term7", "new");
+  }
+
+  @Test
+  @DisplayName("A full table of equal baselines should keep exactly half, the first terms in order")
+  void givenFullTableOfTies_whenAddNewTerm_thenKeepExactlyHalf() {
+    // Given
+    TermCounts counts = new TermCounts(8, RATE, RATE);
+    for (int i = 7; i >= 0; i--) {
+      counts.add("term" + i, NOW);
+    }
+
+    // When
+    counts.add("new", NOW);
+
+    // Then
+    assertThat(counts.size()).isEqualTo(5);
+    assertThat(baselines(counts)).containsOnlyKeys("term0", "term1", "term2", "term3", "new");
+  }
+}
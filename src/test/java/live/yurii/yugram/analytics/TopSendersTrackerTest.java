@@ -0,0 +1,119 @@
+package live.yurii.yugram.analytics;
+
+import live.yurii.yugram.analytics.TopSendersRepository.PaneCounter;
+import live.yurii.yugram.cluster.LeaseAcquiredEvent;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.cluster.LeasedResource;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link TopSendersTracker}.
+ */
+@DisplayName("TopSendersTracker Tests")
+class TopSendersTrackerTest {
+
+  private static final long FIRST_CHAT = -100L;
+  private static final long SECOND_CHAT = -200L;
+
+  private final TopSendersRepository repository = mock(TopSendersRepository.class);
+  private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+  private final LeaseManager leaseManager = mock(LeaseManager.class);
+  private final long now = Instant.now().getEpochSecond();
+  private TopSendersTracker tracker;
+
+  @BeforeEach
+  void setUp() {
+    TopSendersProperties properties = new TopSendersProperties();
+    properties.setMaxChats(1);
+    when(leaseManager.ownsChat(anyLong())).thenReturn(true);
+    doAnswer(invocation -> {
+      Consumer<TransactionStatus> action = invocation.getArgument(0);
+      action.accept(null);
+      return null;
+    }).when(transactionTemplate).executeWithoutResult(any());
+    tracker = new TopSendersTracker(properties, repository, transactionTemplate, leaseManager);
+  }
+
+  private void persisted(long messageId, long chatId, long senderId) {
+    MessageDto message = MessageDto.builder()
+        .id(messageId)
+        .chatId(chatId)
+        .senderId(senderId)
+        .date((int) now)
+        .build();
+    tracker.onMessagePersisted(new MessagePersistedEvent(this, message, true));
+  }
+
+  @Test
+  @DisplayName("An evicted chat should be kept until the next snapshot writes its panes")
+  @SuppressWarnings("unchecked")
+  void givenEvictedChat_whenSnapshot_thenWriteItsPanes() {
+    // Given
+    for (int i = 0; i < 5; i++) {
+      persisted(i, FIRST_CHAT, 7L);
+    }
+
+    // When: either chat may be dropped now, neither is read back from the empty store
+    persisted(5, SECOND_CHAT, 8L);
+    persisted(6, FIRST_CHAT, 7L);
+
+    // Then
+    verify(repository, never()).replacePanes(any());
+    assertThat(tracker.topSenders(FIRST_CHAT, 10).getMessageCount()).isEqualTo(6);
+
+    // When
+    tracker.snapshot();
+
+    // Then
+    ArgumentCaptor<List<PaneCounter>> written = ArgumentCaptor.forClass(List.class);
+    verify(repository).replacePanes(written.capture());
+    assertThat(written.getValue())
+        .extracting(PaneCounter::chatId, PaneCounter::senderId, PaneCounter::count)
+        .containsExactlyInAnyOrder(
+            tuple(FIRST_CHAT, VolumeCounter.ALL, 6L),
+            tuple(FIRST_CHAT, 7L, 6L),
+            tuple(SECOND_CHAT, VolumeCounter.ALL, 1L),
+            tuple(SECOND_CHAT, 8L, 1L));
+  }
+
+  @Test
+  @DisplayName("Acquiring a shard should replace the panes counted here before with the stored ones")
+  void givenStalePanes_whenShardAcquired_thenLoadStoredPanes() {
+    // Given
+    persisted(1, FIRST_CHAT, 7L);
+    long paneStart = now - Math.floorMod(now, 2 * 3600);
+    when(leaseManager.shardOf(FIRST_CHAT)).thenReturn(3);
+    when(repository.findByChatSince(eq(FIRST_CHAT), anyLong())).thenReturn(List.of(
+        new PaneCounter(FIRST_CHAT, paneStart, VolumeCounter.ALL, 40, 0),
+        new PaneCounter(FIRST_CHAT, paneStart, 9L, 40, 0)));
+
+    // When
+    tracker.onLeaseAcquired(new LeaseAcquiredEvent(this, LeasedResource.chatShard(3), 1));
+
+    // Then
+    assertThat(tracker.topSenders(FIRST_CHAT, 10).getMessageCount()).isEqualTo(40);
+    assertThat(tracker.topSenders(FIRST_CHAT, 10).getSenders().getFirst().getSenderId()).isEqualTo(9L);
+  }
+}
@@ -0,0 +1,64 @@
+package live.yurii.yugram.analytics;
+
+import live.yurii.yugram.analytics.TrendingTermsRepository.ContentVisitor;
+import live.yurii.yugram.analytics.dto.TrendingTermDto;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link TrendingTermsTracker}.
+ */
+@DisplayName("TrendingTermsTracker Tests")
+class TrendingTermsTrackerTest {
+
+  private final TrendingTermsProperties properties = new TrendingTermsProperties();
+  private final TrendingTermsRepository repository = mock(TrendingTermsRepository.class);
+  private final TrendingTermsTracker tracker;
+
+  TrendingTermsTrackerTest() {
+    properties.setMinRecentCount(0);
+    tracker = new TrendingTermsTracker(properties, new TermTokenizer(properties), repository);
+  }
+
+  @Test
+  @DisplayName("A message arriving during the warm-up should be counted once, whether or not the scan saw it")
+  void givenWarmUpInProgress_whenMessagesArrive_thenCountEachOnce() {
+    // Given
+    long chatId = -5L;
+    int now = (int) Instant.now().getEpochSecond();
+    doAnswer(invocation -> {
+      // one message committed before the scan read the chat, one after
+      tracker.onMessagePersisted(persisted(10L, chatId, now - 60, "Eclipse tonight"));
+      tracker.onMessagePersisted(persisted(11L, chatId, now, "Eclipse now"));
+      invocation.<ContentVisitor>getArgument(2).visit(chatId, 10L, now - 60, "Eclipse tonight");
+      return null;
+    }).when(repository).scanContent(anyLong(), anyLong(), any());
+
+    // When
+    tracker.warmUp();
+    tracker.onMessagePersisted(persisted(12L, chatId, now, "Eclipse again"));
+
+    // Then
+    TrendingTermDto eclipse = tracker.trending(List.of(chatId), 10).getTerms().stream()
+        .filter(term -> term.getTerm().equals("eclipse"))
+        .findFirst()
+        .orElseThrow();
+    assertThat(eclipse.getRecentCount()).isCloseTo(3.0, within(0.05));
+  }
+
+  private MessagePersistedEvent persisted(long id, long chatId, int date, String content) {
+    return new MessagePersistedEvent(this, new MessageDto(id, 1L, chatId, date, content), true);
+  }
+}
@@ -0,0 +1,52 @@
+package live.yurii.yugram.analytics;
+
+import live.yurii.yugram.analytics.VolumeCounter.VolumeKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link VolumeCounter}.
+ */
+@DisplayName("VolumeCounter Tests")
+class VolumeCounterTest {
+
+  private static final long DAY_START = 1_700_006_400L;
+
+  private final VolumeCounter counter = new VolumeCounter();
+
+  private static long total(Map<VolumeKey, Long> counts, long hour) {
+    return counts.getOrDefault(new VolumeKey(VolumeCounter.ALL, VolumeCounter.ALL, hour), 0L);
+  }
+
+  @Test
+  @DisplayName("A rebuild should drop the pending counts it recounts and hold those of its days until it is over")
+  void givenPendingCounts_whenHoldForRebuild_thenDropRebuiltAndHoldItsDays() {
+    // Given
+    counter.add(-100L, 7L, DAY_START + 10);
+    counter.add(-100L, 7L, DAY_START + 3600 + 10);
+    counter.add(-100L, 7L, DAY_START + 86400 + 10);
+
+    // When
+    counter.hold(DAY_START, DAY_START + 86400, DAY_START, DAY_START + 3600);
+    counter.add(-100L, 8L, DAY_START + 20);
+
+    // Then
+    Map<VolumeKey, Long> pending = counter.drain();
+    assertThat(total(pending, DAY_START)).isZero();
+    assertThat(total(pending, DAY_START + 3600)).isZero();
+    assertThat(total(pending, DAY_START + 86400)).isEqualTo(1);
+
+    // When
+    counter.release();
+
+    // Then
+    Map<VolumeKey, Long> released = counter.drain();
+    assertThat(total(released, DAY_START)).isEqualTo(1);
+    assertThat(total(released, DAY_START + 3600)).isEqualTo(1);
+    assertThat(released).doesNotContainKey(new VolumeKey(-100L, 7L, DAY_START));
+  }
+}
@@ -1,5 +1,7 @@
 package live.yurii.yugram.authorization;
 
+import live.yurii.yugram.configuration.TdLibAccounts;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -10,7 +12,10 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -28,17 +33,30 @@ class AuthorizationControllerTest {
   @MockitoBean
   private AuthorizationEventHandler handler;
 
+  @MockitoBean
+  private TdLibAccounts accounts;
+
+  @BeforeEach
+  void setUp() {
+    when(accounts.contains(0)).thenReturn(true);
+    when(accounts.contains(2)).thenReturn(true);
+  }
+
   @Test
   @DisplayName("POST /auth/login should return 202 Accepted and publish LoginRequestEvent")
   void whenLogin_thenReturnsAcceptedAndPublishesEvent() throws Exception {
+    // Given
+    ArgumentCaptor<LoginRequestEvent> eventCaptor = ArgumentCaptor.forClass(LoginRequestEvent.class);
+
     // When
     mockMvc.perform(post("/auth/login"))
         // Then
         .andExpect(status().isAccepted())
         .andExpect(content().string("Login request accepted. POST OTP code to '/auth/otp'"));
 
-    // Verify event publication
-    verify(handler).sendTdLibParameters();
+    // Verify event publication for the default account
+    verify(handler).sendTdLibParameters(eventCaptor.capture());
+    assertThat(eventCaptor.getValue().getAccountId()).isZero();
   }
 
   @Test
@@ -50,6 +68,7 @@ class AuthorizationControllerTest {
 
     // When
     mockMvc.perform(post("/auth/otp")
+            .param("account", "2")
             .contentType(MediaType.TEXT_PLAIN)
             .content(otpCode))
         // Then
@@ -60,6 +79,18 @@ class AuthorizationControllerTest {
     verify(handler).verifyOtp(eventCaptor.capture());
     OtpCodeReceivedEvent publishedEvent = eventCaptor.getValue();
     assertThat(publishedEvent.getCode()).isEqualTo(otpCode);
+    assertThat(publishedEvent.getAccountId()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("POST /auth/login should return 404 for an account that is not configured")
+  void whenLoginUnknownAccount_thenReturnsNotFound() throws Exception {
+    // When
+    mockMvc.perform(post("/auth/login").param("account", "7"))
+        // Then
+        .andExpect(status().isNotFound());
+
+    verify(handler, never()).sendTdLibParameters(any());
   }
 
 }
@@ -0,0 +1,304 @@
+package live.yurii.yugram.bench;
+
+import live.yurii.yugram.MainUpdateHandler;
+import live.yurii.yugram.YugramApplication;
+import live.yurii.yugram.configuration.TdLibParameters;
+import live.yurii.yugram.diagnostics.VirtualThreadPinningMonitor;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import org.drinkless.tdlib.TdApi;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Compares request handling and ingest in platform and virtual thread mode under mixed load.
+ * <p>
+ * Every mode runs in a fresh JVM that starts the application against a scratch database and an empty
+ * TDLib directory, so no real account or data is touched. Synthetic {@code UpdateNewMessage}s go through
+ * {@link MainUpdateHandler} the way TDLib delivers them, while concurrent readers page through chats,
+ * messages and users over HTTP, deep enough that part of the reads miss the caches.
+ * <p>
+ * Create the database once with {@code createdb yugram_bench}, then run:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) -Djava.library.path=libs \
+ *      -Dbench.readers=2000 live.yurii.yugram.bench.MixedLoadBenchmark
+ * </pre>
+ * Settings: {@code bench.modes} (platform,virtual), {@code bench.readers} (500), {@code bench.ingestRate}
+ * messages per second (2000), {@code bench.warmupSeconds} (10), {@code bench.seconds} (30),
+ * {@code bench.poolSize} database connections (10), {@code bench.db} (yugram_bench).
+ */
+public class MixedLoadBenchmark {
+
+  private static final String RESULT = "RESULT";
+  private static final int CHATS = 20;
+  private static final long FIRST_CHAT_ID = -42_000_000_000L;
+  private static final List<String> COLUMNS = List.of("mode", "readers", "reads/s", "read p50 ms", "read p99 ms",
+      "read max ms", "read errors", "ingested/s", "ingest p99 ms", "pinned");
+
+  static void main(String[] args) throws Exception {
+    String mode = System.getProperty("bench.mode");
+    if (mode != null) {
+      run(mode);
+      System.exit(0);
+    }
+
+    List<Map<String, String>> results = new ArrayList<>();
+    for (String each : System.getProperty("bench.modes", "platform,virtual").split(",")) {
+      results.add(fork(each.trim()));
+    }
+    System.out.println();
+    System.out.println(COLUMNS.stream().map(c -> String.format("%14s", c)).collect(Collectors.joining()));
+    for (Map<String, String> result : results) {
+      System.out.println(COLUMNS.stream().map(c -> String.format("%14s", result.getOrDefault(c, "-"))).collect(Collectors.joining()));
+    }
+  }
+
+  private static Map<String, String> fork(String mode) throws Exception {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+    System.getProperties().stringPropertyNames().stream()
+        .filter(name -> name.startsWith("bench."))
+        .forEach(name -> command.add("-D" + name + "=" + System.getProperty(name)));
+    command.add("-Dbench.mode=" + mode);
+    command.add(MixedLoadBenchmark.class.getName());
+
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    Map<String, String> result = new LinkedHashMap<>();
+    try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while ((line = output.readLine()) != null) {
+        System.out.println(line);
+        if (line.startsWith(RESULT)) {
+          for (String field : line.substring(RESULT.length()).trim().split("\t")) {
+            String[] pair = field.split("=", 2);
+            result.put(pair[0], pair[1]);
+          }
+        }
+      }
+    }
+    if (process.waitFor() != 0 || result.isEmpty()) {
+      throw new IllegalStateException("Benchmark of " + mode + " mode failed");
+    }
+    return result;
+  }
+
+  private static void run(String mode) throws Exception {
+    boolean virtual = "virtual".equals(mode);
+    int readers = Integer.getInteger("bench.readers", 500);
+    int ingestRate = Integer.getInteger("bench.ingestRate", 2000);
+    Duration warmup = Duration.ofSeconds(Integer.getInteger("bench.warmupSeconds", 10));
+    Duration measured = Duration.ofSeconds(Integer.getInteger("bench.seconds", 30));
+    String chatIds = LongStream.range(0, CHATS).map(i -> FIRST_CHAT_ID - i)
+        .mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(YugramApplication.class)
+        .properties(
+            "server.port=0",
+            "spring.threads.virtual.enabled=" + virtual,
+            "YUGRAM_DB_NAME=" + System.getProperty("bench.db", "yugram_bench"),
+            "YUGRAM_DB_POOL_SIZE=" + Integer.getInteger("bench.poolSize", 10),
+            // an empty TDLib directory without credentials never reaches a real account
+            "app.telegram.client.database-directory=" + Files.createTempDirectory("yugram-bench-tdlib"),
+            "app.telegram.client.api-id=0",
+            "app.telegram.client.phone-number=",
+            "app.messages.save.chat-ids-env=" + chatIds,
+            "logging.level.live.yurii.yugram=INFO")
+        .run();
+
+    String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    MainUpdateHandler updateHandler = context.getBean(MainUpdateHandler.class);
+    Recorder ingestLatency = new Recorder();
+    Map<Long, Long> submittedAt = new ConcurrentHashMap<>();
+    context.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+      if (event instanceof MessagePersistedEvent persisted) {
+        Long start = submittedAt.remove(persisted.getMessage().getId());
+        if (start != null) {
+          ingestLatency.record(System.nanoTime() - start);
+        }
+      }
+    });
+
+    for (int i = 0; i < CHATS; i++) {
+      updateHandler.onResult(TdLibParameters.DEFAULT_ACCOUNT_ID, newChat(FIRST_CHAT_ID - i));
+    }
+
+    long warmupEnd = System.nanoTime() + warmup.toNanos();
+    long end = warmupEnd + measured.toNanos();
+    AtomicLong errors = new AtomicLong();
+
+    Thread ingest = Thread.ofPlatform().name("bench-ingest").start(() -> {
+      long nextId = System.currentTimeMillis() << 20;
+      long started = System.nanoTime();
+      long sent = 0;
+      while (System.nanoTime() < end) {
+        long due = (System.nanoTime() - started) * ingestRate / 1_000_000_000L;
+        for (; sent < due; sent++) {
+          long id = nextId++;
+          if (System.nanoTime() >= warmupEnd) {
+            submittedAt.put(id, System.nanoTime());
+          }
+          updateHandler.onResult(TdLibParameters.DEFAULT_ACCOUNT_ID, newMessage(id, FIRST_CHAT_ID - (id % CHATS)));
+        }
+        sleep(1);
+      }
+    });
+
+    HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    List<Recorder> readLatencies = new ArrayList<>();
+    List<Thread> readerThreads = new ArrayList<>();
+    for (int i = 0; i < readers; i++) {
+      Recorder recorder = new Recorder();
+      readLatencies.add(recorder);
+      readerThreads.add(Thread.ofVirtual().start(() -> read(http, baseUrl, warmupEnd, end, recorder, errors)));
+    }
+
+    ingest.join();
+    for (Thread reader : readerThreads) {
+      reader.join();
+    }
+
+    Recorder reads = Recorder.merge(readLatencies);
+    double seconds = measured.toNanos() / 1e9;
+    Map<String, String> result = new LinkedHashMap<>();
+    result.put("mode", mode);
+    result.put("readers", String.valueOf(readers));
+    result.put("reads/s", String.format("%.0f", reads.count() / seconds));
+    result.put("read p50 ms", String.format("%.1f", reads.percentileMillis(0.50)));
+    result.put("read p99 ms", String.format("%.1f", reads.percentileMillis(0.99)));
+    result.put("read max ms", String.format("%.1f", reads.percentileMillis(1.0)));
+    result.put("read errors", String.valueOf(errors.get()));
+    result.put("ingested/s", String.format("%.0f", ingestLatency.count() / seconds));
+    result.put("ingest p99 ms", String.format("%.1f", ingestLatency.percentileMillis(0.99)));
+    result.put("pinned", String.valueOf(context.getBean(VirtualThreadPinningMonitor.class).pinnedCount()));
+    System.out.println(RESULT + " " + result.entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("\t")));
+
+    context.close();
+  }
+
+  private static void read(HttpClient http, String baseUrl, long warmupEnd, long end, Recorder recorder, AtomicLong errors) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (System.nanoTime() < end) {
+      int pick = random.nextInt(10);
+      String path = switch (pick) {
+        case 0, 1, 2, 3, 4 -> "/messages/byChatId/" + (FIRST_CHAT_ID - random.nextInt(CHATS)) + "?size=10&page=" + random.nextInt(30);
+        case 5, 6 -> "/chats/withMessages?size=20&page=0";
+        case 7, 8 -> "/users/all?size=10&page=" + random.nextInt(10);
+        default -> "/messages/all?size=10&page=" + random.nextInt(100);
+      };
+      long start = System.nanoTime();
+      try {
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(),
+            HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+          errors.incrementAndGet();
+        }
+      } catch (Exception e) {
+        errors.incrementAndGet();
+      }
+      if (start >= warmupEnd) {
+        recorder.record(System.nanoTime() - start);
+      }
+    }
+  }
+
+  private static TdApi.UpdateNewChat newChat(long chatId) {
+    TdApi.Chat chat = new TdApi.Chat();
+    chat.id = chatId;
+    chat.title = "Benchmark " + chatId;
+    chat.type = new TdApi.ChatTypeSupergroup();
+    TdApi.UpdateNewChat update = new TdApi.UpdateNewChat();
+    update.chat = chat;
+    return update;
+  }
+
+  private static TdApi.UpdateNewMessage newMessage(long id, long chatId) {
+    TdApi.FormattedText text = new TdApi.FormattedText();
+    text.text = "Benchmark message " + id;
+    text.entities = new TdApi.TextEntity[0];
+    TdApi.MessageText content = new TdApi.MessageText();
+    content.text = text;
+    TdApi.MessageSenderUser sender = new TdApi.MessageSenderUser();
+    sender.userId = 1000 + id % 500;
+    TdApi.Message message = new TdApi.Message();
+    message.id = id;
+    message.chatId = chatId;
+    message.senderId = sender;
+    message.date = (int) (System.currentTimeMillis() / 1000);
+    message.content = content;
+    TdApi.UpdateNewMessage update = new TdApi.UpdateNewMessage();
+    update.message = message;
+    return update;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Latencies in nanoseconds, kept in full so that percentiles are exact.
+   */
+  private static final class Recorder {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    synchronized void record(long nanos) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = nanos;
+    }
+
+    synchronized long count() {
+      return size;
+    }
+
+    synchronized double percentileMillis(double percentile) {
+      if (size == 0) {
+        return 0;
+      }
+      long[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      int index = (int) Math.min(size - 1, Math.ceil(percentile * size) - 1);
+      return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    static Recorder merge(List<Recorder> recorders) {
+      Recorder merged = new Recorder();
+      for (Recorder recorder : recorders) {
+        synchronized (recorder) {
+          for (int i = 0; i < recorder.size; i++) {
+            merged.record(recorder.values[i]);
+          }
+        }
+      }
+      return merged;
+    }
+  }
+}
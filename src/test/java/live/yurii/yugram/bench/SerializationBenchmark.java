@@ -0,0 +1,163 @@
+package live.yurii.yugram.bench;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import live.yurii.yugram.formats.BinaryFormats;
+import live.yurii.yugram.formats.ColumnarPageHttpMessageConverter;
+import live.yurii.yugram.messages.dto.MessageDto;
+import live.yurii.yugram.messages.dto.MessagePageResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares serialization cost and payload size of message pages in JSON, CBOR, Smile and the columnar layout.
+ * <p>
+ * Pages are written by the same converters the application negotiates between, without HTTP around them.
+ * Message texts mix Latin and Cyrillic words of random length, the way the saved channels look.
+ * Run after {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt}:
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) live.yurii.yugram.bench.SerializationBenchmark
+ * </pre>
+ * Settings: {@code bench.rows} per page (1000), {@code bench.enriched} adds sender and chat names (false),
+ * {@code bench.warmupSeconds} (5), {@code bench.seconds} (10).
+ */
+public class SerializationBenchmark {
+
+  private static final String[] WORDS = {"the", "model", "release", "update", "channel", "news", "new", "today",
+      "модель", "новини", "сьогодні", "оновлення", "реліз", "канал", "штучний", "інтелект", "LLM", "AI", "GPU", "API"};
+
+  static void main(String[] args) throws Exception {
+    int rows = Integer.getInteger("bench.rows", 1000);
+    boolean enriched = Boolean.getBoolean("bench.enriched");
+    long warmupNanos = Integer.getInteger("bench.warmupSeconds", 5) * 1_000_000_000L;
+    long measuredNanos = Integer.getInteger("bench.seconds", 10) * 1_000_000_000L;
+    MessagePageResponse page = page(rows, enriched);
+
+    Map<String, HttpMessageConverter<Object>> formats = formats();
+    System.out.printf("%d messages per page%s%n%n", rows, enriched ? ", enriched" : "");
+    System.out.printf("%10s%14s%14s%14s%16s%14s%n", "format", "ns/row", "MB/s", "bytes/row", "gzip bytes/row", "vs JSON");
+
+    double jsonNanos = 0;
+    for (Map.Entry<String, HttpMessageConverter<Object>> format : formats.entrySet()) {
+      HttpMessageConverter<Object> converter = format.getValue();
+      MediaType mediaType = converter.getSupportedMediaTypes().getFirst();
+      byte[] body = write(converter, mediaType, page);
+
+      run(converter, mediaType, page, warmupNanos);
+      double nanosPerPage = run(converter, mediaType, page, measuredNanos);
+      if (jsonNanos == 0) {
+        jsonNanos = nanosPerPage;
+      }
+      System.out.printf("%10s%14.1f%14.1f%14.1f%16.1f%13.2fx%n", format.getKey(),
+          nanosPerPage / rows,
+          body.length / (nanosPerPage / 1_000_000_000d) / 1_000_000d,
+          (double) body.length / rows,
+          (double) gzip(body).length / rows,
+          jsonNanos / nanosPerPage);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, HttpMessageConverter<Object>> formats() {
+    Map<String, HttpMessageConverter<?>> formats = new LinkedHashMap<>();
+    formats.put("json", new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build()));
+    formats.put("cbor", new MappingJackson2CborHttpMessageConverter(
+        Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()));
+    formats.put("smile", new MappingJackson2SmileHttpMessageConverter(
+        Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build()));
+    formats.put("columnar", new ColumnarPageHttpMessageConverter());
+
+    Map<String, HttpMessageConverter<Object>> typed = new LinkedHashMap<>();
+    formats.forEach((name, converter) -> typed.put(name, (HttpMessageConverter<Object>) converter));
+    return typed;
+  }
+
+  /**
+   * Writes the page repeatedly for the given time.
+   *
+   * @return nanoseconds per page
+   */
+  private static double run(HttpMessageConverter<Object> converter, MediaType mediaType, MessagePageResponse page,
+                            long nanos) throws IOException {
+    long pages = 0;
+    long start = System.nanoTime();
+    long elapsed;
+    do {
+      write(converter, mediaType, page);
+      pages++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < nanos);
+    return (double) elapsed / pages;
+  }
+
+  private static byte[] write(HttpMessageConverter<Object> converter, MediaType mediaType, MessagePageResponse page)
+      throws IOException {
+    MockHttpOutputMessage output = new MockHttpOutputMessage();
+    converter.write(page, mediaType, output);
+    return output.getBodyAsBytes();
+  }
+
+  private static byte[] gzip(byte[] body) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(body);
+    }
+    return compressed.toByteArray();
+  }
+
+  private static MessagePageResponse page(int rows, boolean enriched) {
+    SplittableRandom random = new SplittableRandom(42);
+    List<MessageDto> messages = new ArrayList<>(rows);
+    long chatId = -1001125352795L;
+    for (int i = 0; i < rows; i++) {
+      long senderId = random.nextInt(4) == 0 ? chatId : 100_000_000L + random.nextInt(500);
+      MessageDto.MessageDtoBuilder message = MessageDto.builder()
+          .id(1_000_000_000L + i * 1_048_576L)
+          .senderId(senderId)
+          .chatId(chatId)
+          .date(1_700_000_000 + i * 37)
+          .content(text(random));
+      if (enriched) {
+        message.chatTitle("Yigal Levin")
+            .senderName(senderId == chatId ? "Yigal Levin" : "User " + senderId)
+            .senderUsername(senderId == chatId ? null : "user" + senderId);
+      }
+      messages.add(message.build());
+    }
+    return MessagePageResponse.builder()
+        .content(messages)
+        .page(0)
+        .size(rows)
+        .totalElements(rows * 1000L)
+        .totalPages(1000)
+        .first(true)
+        .last(false)
+        .build();
+  }
+
+  private static String text(SplittableRandom random) {
+    StringBuilder text = new StringBuilder();
+    int words = 3 + random.nextInt(60);
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return text.toString();
+  }
+}
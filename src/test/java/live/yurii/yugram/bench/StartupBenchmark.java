@@ -0,0 +1,244 @@
+package live.yurii.yugram.bench;
+
+import live.yurii.yugram.MainUpdateHandler;
+import live.yurii.yugram.YugramApplication;
+import live.yurii.yugram.configuration.TdLibParameters;
+import live.yurii.yugram.diagnostics.StartupTimeline;
+import org.drinkless.tdlib.TdApi;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long after a restart the first message is persisted, with and without the startup optimizations.
+ * <p>
+ * Every restart is a fresh JVM started against a scratch database. The moment {@link MainUpdateHandler} exists
+ * it is handed a chat and a message, the way TDLib replays its state right after the client is created, and
+ * the JVM exits once {@link StartupTimeline} saw the message committed. The first restart of a mode is not
+ * measured: it migrates the schema or writes the class data archive that the following ones use. Classes
+ * are only archived from jars, so all modes run with the directories of the class path packed into jars.
+ * <p>
+ * Modes:
+ * <ul>
+ *   <li>{@code baseline}: controllers created eagerly, Flyway validating every start, JPA bootstrapped in line</li>
+ *   <li>{@code deferred}: the defaults, lazy controllers, unchanged migrations skipped, JPA bootstrapped in the
+ *       background</li>
+ *   <li>{@code cds}: deferred with a dynamic class data archive in {@code target/startup-benchmark}</li>
+ *   <li>{@code aot}: cds with Spring AOT, needs the classes of {@code mvn -Pstartup package}</li>
+ * </ul>
+ * Create the database once with {@code createdb yugram_bench}, then run:
+ * <pre>
+ * mvn -Pstartup test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) -Djava.library.path=libs \
+ *      live.yurii.yugram.bench.StartupBenchmark
+ * </pre>
+ * Settings: {@code bench.modes} (baseline,deferred,cds,aot), {@code bench.restarts} measured per mode (5),
+ * {@code bench.db} (yugram_bench).
+ */
+public class StartupBenchmark {
+
+  private static final String RESULT = "RESULT";
+  private static final long CHAT_ID = -42_000_000_000L;
+  private static final Path WORK = Path.of("target", "startup-benchmark");
+  private static final Path ARCHIVE = WORK.resolve("yugram.jsa");
+  private static final List<String> COLUMNS = List.of("mode", "restarts", "ready ms", "first update ms",
+      "first persisted ms", "best persisted ms");
+
+  static void main(String[] args) throws Exception {
+    if (System.getProperty("bench.mode") != null) {
+      run();
+      System.exit(0);
+    }
+
+    int restarts = Integer.getInteger("bench.restarts", 5);
+    Files.createDirectories(WORK);
+    Files.deleteIfExists(ARCHIVE);
+    String classPath = jarClassPath();
+    List<Map<String, String>> results = new ArrayList<>();
+    for (String mode : System.getProperty("bench.modes", "baseline,deferred,cds,aot").split(",")) {
+      fork(mode.trim(), classPath);
+      List<Map<String, String>> measured = new ArrayList<>();
+      for (int i = 0; i < restarts; i++) {
+        measured.add(fork(mode.trim(), classPath));
+      }
+      Map<String, String> result = new LinkedHashMap<>();
+      result.put("mode", mode.trim());
+      result.put("restarts", String.valueOf(restarts));
+      result.put("ready ms", median(measured, "ready"));
+      result.put("first update ms", median(measured, "firstUpdate"));
+      result.put("first persisted ms", median(measured, "firstPersisted"));
+      result.put("best persisted ms", String.valueOf(measured.stream()
+          .mapToLong(restart -> Long.parseLong(restart.get("firstPersisted"))).min().orElse(0)));
+      results.add(result);
+    }
+    System.out.println();
+    System.out.println(COLUMNS.stream().map(c -> String.format("%20s", c)).collect(Collectors.joining()));
+    for (Map<String, String> result : results) {
+      System.out.println(COLUMNS.stream().map(c -> String.format("%20s", result.getOrDefault(c, "-"))).collect(Collectors.joining()));
+    }
+  }
+
+  private static Map<String, String> fork(String mode, String classPath) throws Exception {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-cp");
+    command.add(classPath);
+    command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+    command.addAll(switch (mode) {
+      case "baseline" -> List.of(
+          "-Dapp.startup.lazy-controllers=false",
+          "-Dapp.startup.skip-unchanged-migrations=false",
+          "-Dspring.data.jpa.repositories.bootstrap-mode=default");
+      case "deferred" -> List.of();
+      case "cds" -> List.of("-XX:SharedArchiveFile=" + ARCHIVE, "-XX:+AutoCreateSharedArchive");
+      case "aot" -> List.of("-XX:SharedArchiveFile=" + ARCHIVE, "-XX:+AutoCreateSharedArchive",
+          "-Dspring.aot.enabled=true");
+      default -> throw new IllegalArgumentException("Unknown mode " + mode);
+    });
+    command.add("-Dapp.diagnostics.jfr.dump-on-exit=false");
+    command.add("-Dbench.mode=" + mode);
+    command.add("-Dbench.db=" + System.getProperty("bench.db", "yugram_bench"));
+    command.add(StartupBenchmark.class.getName());
+
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    Map<String, String> result = new LinkedHashMap<>();
+    try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while ((line = output.readLine()) != null) {
+        if (line.startsWith(RESULT)) {
+          System.out.println(line);
+          for (String field : line.substring(RESULT.length()).trim().split("\t")) {
+            String[] pair = field.split("=", 2);
+            result.put(pair[0], pair[1]);
+          }
+        } else if (line.contains("ERROR") || line.contains("Exception")) {
+          System.out.println(line);
+        }
+      }
+    }
+    if (process.waitFor() != 0 || result.isEmpty()) {
+      throw new IllegalStateException("Restart in " + mode + " mode failed");
+    }
+    return result;
+  }
+
+  private static void run() throws Exception {
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(YugramApplication.class)
+        // the AOT initializer is looked up by the main class
+        .main(YugramApplication.class)
+        .properties(
+            "server.port=0",
+            "YUGRAM_DB_NAME=" + System.getProperty("bench.db", "yugram_bench"),
+            // an empty TDLib directory without credentials never reaches a real account
+            "app.telegram.client.database-directory=" + Files.createTempDirectory("yugram-bench-tdlib"),
+            "app.telegram.client.api-id=0",
+            "app.telegram.client.phone-number=",
+            "app.messages.save.chat-ids-env=" + CHAT_ID,
+            "logging.level.live.yurii.yugram=INFO")
+        .initializers(initializing -> initializing.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+          @Override
+          public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof MainUpdateHandler updateHandler) {
+              updateHandler.onResult(TdLibParameters.DEFAULT_ACCOUNT_ID, newChat());
+              updateHandler.onResult(TdLibParameters.DEFAULT_ACCOUNT_ID, newMessage(System.currentTimeMillis() << 20));
+            }
+            return bean;
+          }
+        }))
+        .run();
+
+    StartupTimeline startupTimeline = context.getBean(StartupTimeline.class);
+    long deadline = System.nanoTime() + 60_000_000_000L;
+    while (startupTimeline.timeline().firstPersistedAfter() == null) {
+      if (System.nanoTime() > deadline) {
+        throw new IllegalStateException("No message persisted within a minute of the start");
+      }
+      Thread.sleep(1);
+    }
+    StartupTimeline.Timeline timeline = startupTimeline.timeline();
+    System.out.println(RESULT + " mode=" + System.getProperty("bench.mode")
+        + "\tready=" + timeline.readyAfter()
+        + "\tfirstUpdate=" + timeline.firstUpdateAfter()
+        + "\tfirstPersisted=" + timeline.firstPersistedAfter()
+        + "\taot=" + timeline.aot()
+        + "\tsharedArchive=" + timeline.sharedArchive());
+
+    context.close();
+  }
+
+  /**
+   * The class path with every directory replaced by a jar of its content.
+   */
+  private static String jarClassPath() throws IOException {
+    List<String> entries = new ArrayList<>();
+    for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      Path path = Path.of(entry);
+      if (!Files.isDirectory(path)) {
+        entries.add(entry);
+        continue;
+      }
+      Path jar = WORK.resolve(path.getFileName() + "-" + entries.size() + ".jar");
+      try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar));
+           Stream<Path> files = Files.walk(path)) {
+        // with directory entries, or class path scanning finds nothing in the jar
+        for (Path file : files.filter(file -> !file.equals(path)).sorted().toList()) {
+          String name = path.relativize(file).toString().replace(File.separatorChar, '/');
+          boolean directory = Files.isDirectory(file);
+          output.putNextEntry(new JarEntry(directory ? name + "/" : name));
+          if (!directory) {
+            Files.copy(file, output);
+          }
+          output.closeEntry();
+        }
+      }
+      entries.add(jar.toAbsolutePath().toString());
+    }
+    return String.join(File.pathSeparator, entries);
+  }
+
+  private static String median(List<Map<String, String>> restarts, String phase) {
+    long[] values = restarts.stream().mapToLong(restart -> Long.parseLong(restart.get(phase))).sorted().toArray();
+    return values.length == 0 ? "-" : String.valueOf(values[values.length / 2]);
+  }
+
+  private static TdApi.UpdateNewChat newChat() {
+    TdApi.Chat chat = new TdApi.Chat();
+    chat.id = CHAT_ID;
+    chat.title = "Benchmark " + CHAT_ID;
+    chat.type = new TdApi.ChatTypeSupergroup();
+    TdApi.UpdateNewChat update = new TdApi.UpdateNewChat();
+    update.chat = chat;
+    return update;
+  }
+
+  private static TdApi.UpdateNewMessage newMessage(long id) {
+    TdApi.FormattedText text = new TdApi.FormattedText();
+    text.text = "Benchmark message " + id;
+    text.entities = new TdApi.TextEntity[0];
+    TdApi.MessageText content = new TdApi.MessageText();
+    content.text = text;
+    TdApi.MessageSenderUser sender = new TdApi.MessageSenderUser();
+    sender.userId = 1000;
+    TdApi.Message message = new TdApi.Message();
+    message.id = id;
+    message.chatId = CHAT_ID;
+    message.senderId = sender;
+    message.date = (int) (System.currentTimeMillis() / 1000);
+    message.content = content;
+    TdApi.UpdateNewMessage update = new TdApi.UpdateNewMessage();
+    update.message = message;
+    return update;
+  }
+}
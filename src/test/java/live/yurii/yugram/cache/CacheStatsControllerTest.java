@@ -0,0 +1,60 @@
+package live.yurii.yugram.cache;
+
+import live.yurii.yugram.chats.dto.ChatDto;
+import live.yurii.yugram.chats.ChatCache;
+import live.yurii.yugram.chats.ChatEntity;
+import live.yurii.yugram.chats.ChatRepository;
+import live.yurii.yugram.users.UserCache;
+import live.yurii.yugram.users.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link CacheStatsController}.
+ */
+@WebMvcTest(CacheStatsController.class)
+@Import({ChatCache.class, UserCache.class, EntityCacheProperties.class})
+@DisplayName("CacheStatsController Tests")
+class CacheStatsControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ChatCache chatCache;
+
+  @MockitoBean
+  private ChatRepository chatRepository;
+
+  @MockitoBean
+  private UserRepository userRepository;
+
+  @Test
+  @DisplayName("GET /caches/stats should return hit and miss counts per cache")
+  void whenGetCacheStats_thenReturnStatsPerCache() throws Exception {
+    // Given
+    when(chatRepository.findDtoById(1L)).thenReturn(Optional.of(ChatDto.fromEntity(new ChatEntity(1L).withType(ChatEntity.ChatType.PRIVATE))));
+    chatCache.get(1L);
+    chatCache.get(1L);
+
+    // When & Then
+    mockMvc.perform(get("/caches/stats"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.chats.size").value(1))
+        .andExpect(jsonPath("$.chats.hitCount").value(1))
+        .andExpect(jsonPath("$.chats.missCount").value(1))
+        .andExpect(jsonPath("$.users.size").value(0));
+  }
+}
@@ -0,0 +1,154 @@
+package live.yurii.yugram.changes;
+
+import live.yurii.yugram.changes.ChangeOutboxRepository.Change;
+import live.yurii.yugram.changes.ChangeOutboxRepository.Consumer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link ChangeController}.
+ */
+@WebMvcTest(ChangeController.class)
+@Import({ChangeFeed.class, ChangeNotifier.class, ChangeFeedProperties.class})
+@DisplayName("ChangeController Tests")
+class ChangeControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ChangeNotifier changeNotifier;
+
+  @MockitoBean
+  private ChangeOutboxRepository outboxRepository;
+
+  private static Change change(long seq, long messageId) {
+    return new Change(seq, ChangeKind.MESSAGE, messageId, -100L, ChangeOperation.CREATED,
+        "{\"id\":" + messageId + ",\"content\":\"hello\"}", 1_700_000_000L, "node-a");
+  }
+
+  @Test
+  @DisplayName("GET /changes should return the changes after the seq at once")
+  void givenChanges_whenGetChanges_thenReturnBatch() throws Exception {
+    // Given
+    when(outboxRepository.findAfter(10, 100)).thenReturn(List.of(change(11, 1), change(12, 2)));
+
+    // When & Then
+    MvcResult result = mockMvc.perform(get("/changes").param("after", "10"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.changes.length()").value(2))
+        .andExpect(jsonPath("$.changes[0].seq").value(11))
+        .andExpect(jsonPath("$.changes[0].kind").value("MESSAGE"))
+        .andExpect(jsonPath("$.changes[0].state.content").value("hello"))
+        .andExpect(jsonPath("$.next").value(12));
+  }
+
+  @Test
+  @DisplayName("GET /changes should wait for changes and answer once the feed advances")
+  void givenNoChanges_whenFeedAdvances_thenReturnNewChanges() throws Exception {
+    // Given
+    when(outboxRepository.findAfter(anyLong(), anyInt())).thenReturn(List.of());
+    MvcResult result = mockMvc.perform(get("/changes").param("after", "20").param("wait", "10"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    assertThat(changeNotifier.waiting()).isEqualTo(1);
+
+    // When
+    when(outboxRepository.findAfter(20, 100)).thenReturn(List.of(change(21, 3)));
+    changeNotifier.advance(21);
+
+    // Then
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.changes[0].entityId").value(3))
+        .andExpect(jsonPath("$.next").value(21));
+    assertThat(changeNotifier.waiting()).isZero();
+  }
+
+  @Test
+  @DisplayName("GET /changes without changes within the wait should return an empty batch")
+  void givenNoChanges_whenWaitEnds_thenReturnEmptyBatch() throws Exception {
+    // Given
+    when(outboxRepository.findAfter(anyLong(), anyInt())).thenReturn(List.of());
+
+    // When & Then
+    MvcResult result = mockMvc.perform(get("/changes").param("after", "99").param("wait", "1"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.changes.length()").value(0))
+        .andExpect(jsonPath("$.next").value(99));
+  }
+
+  @Test
+  @DisplayName("GET /changes with a consumer should resume after its acknowledged offset")
+  void givenConsumer_whenGetChanges_thenResumeFromOffset() throws Exception {
+    // Given
+    when(outboxRepository.findConsumer("indexer")).thenReturn(Optional.of(new Consumer("indexer", 40, 1_700_000_000L)));
+    when(outboxRepository.findAfter(40, 5)).thenReturn(List.of(change(41, 4)));
+
+    // When & Then
+    MvcResult result = mockMvc.perform(get("/changes").param("consumer", "indexer").param("limit", "5"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.changes[0].seq").value(41));
+  }
+
+  @Test
+  @DisplayName("POST /changes/consumers/{consumer}/ack should reject a seq beyond the feed")
+  void givenSeqBeyondFeed_whenAck_thenBadRequest() throws Exception {
+    // Given
+    when(outboxRepository.lastSeq()).thenReturn(50L);
+
+    // When & Then
+    mockMvc.perform(post("/changes/consumers/indexer/ack").param("seq", "51"))
+        .andExpect(status().isBadRequest());
+    verify(outboxRepository, never()).ack(anyString(), anyLong(), anyLong());
+  }
+
+  @Test
+  @DisplayName("POST /changes/consumers/{consumer}/ack should store the offset and report the lag")
+  void givenSeqInFeed_whenAck_thenReturnConsumer() throws Exception {
+    // Given
+    when(outboxRepository.lastSeq()).thenReturn(50L);
+    when(outboxRepository.ack(eq("indexer"), eq(45L), anyLong())).thenReturn(45L);
+
+    // When & Then
+    mockMvc.perform(post("/changes/consumers/indexer/ack").param("seq", "45"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.consumer").value("indexer"))
+        .andExpect(jsonPath("$.ackedSeq").value(45))
+        .andExpect(jsonPath("$.lag").value(5))
+        .andExpect(jsonPath("$.live").value(true));
+  }
+}
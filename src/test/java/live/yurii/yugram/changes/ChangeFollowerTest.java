@@ -0,0 +1,66 @@
+package live.yurii.yugram.changes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.changes.ChangeOutboxRepository.Change;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ChangeFollower}.
+ */
+@DisplayName("ChangeFollower Tests")
+class ChangeFollowerTest {
+
+  private final ChangeOutboxRepository outboxRepository = mock(ChangeOutboxRepository.class);
+  private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+  private final LeaseManager leaseManager = mock(LeaseManager.class);
+  private ChangeFollower follower;
+
+  @BeforeEach
+  void setUp() {
+    when(leaseManager.nodeId()).thenReturn("node-a");
+    follower = new ChangeFollower(outboxRepository, new ChangeNotifier(), new ChangeFeedProperties(), leaseManager,
+        new ObjectMapper(), publisher, new SimpleMeterRegistry());
+  }
+
+  private static Change change(long seq, String origin) {
+    return new Change(seq, ChangeKind.MESSAGE, seq, -100L, ChangeOperation.CREATED,
+        "{\"id\":" + seq + ",\"chatId\":-100,\"date\":1700000000,\"content\":\"hello\"}", 1_700_000_000L, origin);
+  }
+
+  @Test
+  @DisplayName("Changes of other nodes should be published with their state, the node's own ones skipped")
+  void givenChangesOfSeveralNodes_whenFollow_thenPublishRemoteOnes() {
+    // Given
+    when(outboxRepository.findAfter(0, 500)).thenReturn(List.of(change(1, "node-a"), change(2, "node-b")));
+    when(outboxRepository.findAfter(2, 500)).thenReturn(List.of(change(3, "node-c")));
+    when(outboxRepository.findAfter(3, 500)).thenReturn(List.of());
+
+    // When
+    follower.follow();
+
+    // Then
+    ArgumentCaptor<ApplicationEvent> events = ArgumentCaptor.forClass(ApplicationEvent.class);
+    verify(publisher, times(2)).publishEvent(events.capture());
+    assertThat(events.getAllValues())
+        .map(event -> ((RemoteChangeEvent) event).getState(MessageDto.class))
+        .extracting(MessageDto::getId, MessageDto::getContent)
+        .containsExactly(tuple(2L, "hello"), tuple(3L, "hello"));
+  }
+}
@@ -1,12 +1,20 @@
 package live.yurii.yugram.chats;
 
+import live.yurii.yugram.batch.BatchLookupProperties;
+import live.yurii.yugram.chats.dto.ChatDto;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.cache.ConditionalRequests;
+import live.yurii.yugram.cache.EntityCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -15,9 +23,13 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -25,6 +37,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * Unit tests for {@link ChatController}.
  */
 @WebMvcTest(ChatController.class)
+@Import({BatchLookupProperties.class, ChatCache.class, EntityCacheProperties.class, ConditionalRequests.class, ChangeVersions.class})
 @DisplayName("ChatController Tests")
 class ChatControllerTest {
 
@@ -34,6 +47,17 @@ class ChatControllerTest {
   @MockitoBean
   private ChatRepository chatRepository;
 
+  @Autowired
+  private ChatCache chatCache;
+
+  @Autowired
+  private ChangeVersions changeVersions;
+
+  @BeforeEach
+  void setUp() {
+    chatCache.invalidateAll();
+  }
+
   @Test
   @DisplayName("GET /chats/all should return paginated chats with default values")
   void whenGetAllChats_thenReturnPaginatedChatsWithDefaults() throws Exception {
@@ -45,8 +69,8 @@ class ChatControllerTest {
         .withType(ChatEntity.ChatType.SUPERGROUP)
         .withTitle("Test Group");
 
-    Page<ChatEntity> chatPage = new PageImpl<>(List.of(chat1, chat2), PageRequest.of(0, 20), 2);
-    when(chatRepository.findAll(any(PageRequest.class))).thenReturn(chatPage);
+    Page<ChatDto> chatPage = new PageImpl<>(List.of(chat1, chat2), PageRequest.of(0, 20), 2).map(ChatDto::fromEntity);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(chatPage);
 
     // When & Then
     mockMvc.perform(get("/chats/all"))
@@ -76,8 +100,8 @@ class ChatControllerTest {
         .withType(ChatEntity.ChatType.BASIC_GROUP)
         .withTitle("Basic Group");
 
-    Page<ChatEntity> chatPage = new PageImpl<>(List.of(chat), PageRequest.of(1, 5), 15);
-    when(chatRepository.findAll(any(PageRequest.class))).thenReturn(chatPage);
+    Page<ChatDto> chatPage = new PageImpl<>(List.of(chat), PageRequest.of(1, 5), 15).map(ChatDto::fromEntity);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(chatPage);
 
     // When & Then
     mockMvc.perform(get("/chats/all")
@@ -97,8 +121,8 @@ class ChatControllerTest {
   @DisplayName("GET /chats/all with large size should limit to default size")
   void whenGetAllChatsWithLargeSize_thenLimitToDefaultSize() throws Exception {
     // Given
-    Page<ChatEntity> chatPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
-    when(chatRepository.findAll(any(PageRequest.class))).thenReturn(chatPage);
+    Page<ChatDto> chatPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(chatPage);
 
     // When & Then
     mockMvc.perform(get("/chats/all")
@@ -116,7 +140,7 @@ class ChatControllerTest {
         .withType(ChatEntity.ChatType.PRIVATE)
         .withTitle("Test Chat");
 
-    when(chatRepository.findById(chatId)).thenReturn(Optional.of(chat));
+    when(chatRepository.findDtoById(chatId)).thenReturn(Optional.of(ChatDto.fromEntity(chat)));
 
     // When & Then
     mockMvc.perform(get("/chats/byId/{id}", chatId))
@@ -132,7 +156,7 @@ class ChatControllerTest {
   void whenGetChatByIdWithNonExistingId_thenReturn404() throws Exception {
     // Given
     Long chatId = 999L;
-    when(chatRepository.findById(chatId)).thenReturn(Optional.empty());
+    when(chatRepository.findDtoById(chatId)).thenReturn(Optional.empty());
 
     // When & Then
     mockMvc.perform(get("/chats/byId/{id}", chatId))
@@ -143,8 +167,8 @@ class ChatControllerTest {
   @DisplayName("GET /chats/all with empty result should return empty page")
   void whenGetAllChatsWithEmptyResult_thenReturnEmptyPage() throws Exception {
     // Given
-    Page<ChatEntity> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
-    when(chatRepository.findAll(any(PageRequest.class))).thenReturn(emptyPage);
+    Page<ChatDto> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(emptyPage);
 
     // When & Then
     mockMvc.perform(get("/chats/all"))
@@ -161,8 +185,8 @@ class ChatControllerTest {
   @DisplayName("GET /chats/all with negative page should handle gracefully")
   void whenGetAllChatsWithNegativePage_thenHandleGracefully() throws Exception {
     // Given
-    Page<ChatEntity> chatPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
-    when(chatRepository.findAll(any(PageRequest.class))).thenReturn(chatPage);
+    Page<ChatDto> chatPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(chatPage);
 
     // When & Then
     mockMvc.perform(get("/chats/all")
@@ -174,8 +198,8 @@ class ChatControllerTest {
   @DisplayName("GET /chats/all with zero size should normalize to size 1")
   void whenGetAllChatsWithZeroSize_thenNormalizeToSizeOne() throws Exception {
     // Given
-    Page<ChatEntity> chatPage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
-    when(chatRepository.findAll(any(PageRequest.class))).thenReturn(chatPage);
+    Page<ChatDto> chatPage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(chatPage);
 
     // When & Then
     mockMvc.perform(get("/chats/all")
@@ -183,4 +207,71 @@ class ChatControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.size").value(1));
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("GET /chats/byId/{id} repeated should be served from cache")
+  void whenGetChatByIdRepeated_thenServeFromCache() throws Exception {
+    // Given
+    Long chatId = 3L;
+    ChatEntity chat = new ChatEntity(chatId)
+        .withType(ChatEntity.ChatType.SUPERGROUP)
+        .withTitle("Cached Chat");
+
+    when(chatRepository.findDtoById(chatId)).thenReturn(Optional.of(ChatDto.fromEntity(chat)));
+
+    // When & Then
+    mockMvc.perform(get("/chats/byId/{id}", chatId))
+        .andExpect(status().isOk());
+    mockMvc.perform(get("/chats/byId/{id}", chatId))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.title").value("Cached Chat"));
+
+    verify(chatRepository, times(1)).findDtoById(chatId);
+  }
+
+  @Test
+  @DisplayName("GET /chats/all with current ETag should return 304 without querying")
+  void whenGetAllChatsWithCurrentETag_thenReturnNotModified() throws Exception {
+    // Given
+    Page<ChatDto> chatPage = new PageImpl<>(List.of(new ChatEntity(1L).withType(ChatEntity.ChatType.PRIVATE)), PageRequest.of(0, 20), 1).map(ChatDto::fromEntity);
+    when(chatRepository.findAllDtos(any(PageRequest.class))).thenReturn(chatPage);
+
+    String etag = mockMvc.perform(get("/chats/all"))
+        .andExpect(status().isOk())
+        .andExpect(header().exists(HttpHeaders.ETAG))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    // When & Then
+    mockMvc.perform(get("/chats/all").header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+
+    verify(chatRepository, times(1)).findAllDtos(any(PageRequest.class));
+
+    changeVersions.chatsChanged();
+    mockMvc.perform(get("/chats/all").header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content.length()").value(1));
+  }
+
+  @Test
+  @DisplayName("GET /chats/byIds should return chats in request order with missing ids")
+  void whenGetChatsByIds_thenReturnInRequestOrderWithMissingIds() throws Exception {
+    // Given
+    ChatEntity first = new ChatEntity(-100L).withType(ChatEntity.ChatType.SUPERGROUP).withTitle("Channel");
+    ChatEntity second = new ChatEntity(5L).withType(ChatEntity.ChatType.PRIVATE).withTitle("Friend");
+    when(chatRepository.findDtosByIds(anyCollection()))
+        .thenReturn(List.of(ChatDto.fromEntity(second), ChatDto.fromEntity(first)));
+
+    // When & Then
+    mockMvc.perform(get("/chats/byIds").param("ids", "-100", "42", "5"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content.length()").value(2))
+        .andExpect(jsonPath("$.content[0].title").value("Channel"))
+        .andExpect(jsonPath("$.content[1].title").value("Friend"))
+        .andExpect(jsonPath("$.missingIds[0]").value(42));
+
+    mockMvc.perform(get("/chats/byId/{id}", -100L))
+        .andExpect(status().isOk());
+    verify(chatRepository, times(0)).findDtoById(-100L);
+  }
+}
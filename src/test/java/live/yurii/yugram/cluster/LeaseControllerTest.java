@@ -0,0 +1,238 @@
+package live.yurii.yugram.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.cluster.LeaseRepository.Lease;
+import live.yurii.yugram.configuration.TdLibParameters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link LeaseController}.
+ */
+@WebMvcTest(LeaseController.class)
+@Import({LeaseManager.class, LeaseProperties.class, TdLibParameters.class, LeaseControllerTest.Config.class})
+@DisplayName("LeaseController Tests")
+class LeaseControllerTest {
+
+  @TestConfiguration
+  static class Config {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    BlockingJob blockingJob() {
+      return new BlockingJob();
+    }
+  }
+
+  /**
+   * A scheduled job that holds the scheduler's thread until released, like a slow flush or gap repair.
+   */
+  static class BlockingJob {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Scheduled(fixedDelay = 10)
+    void run() throws InterruptedException {
+      started.countDown();
+      released.await();
+    }
+  }
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private LeaseManager leaseManager;
+
+  @Autowired
+  private LeaseProperties leaseProperties;
+
+  @Autowired
+  private BlockingJob blockingJob;
+
+  @MockitoBean
+  private LeaseRepository leaseRepository;
+
+  @BeforeEach
+  void setUp() {
+    leaseProperties.setEnabled(true);
+    leaseManager.release();
+    when(leaseRepository.acquire(anyString(), anyString(), anyLong())).thenReturn(OptionalLong.of(1));
+    when(leaseRepository.findHeld(anyString(), anyMap())).thenAnswer(invocation ->
+        invocation.<Map<String, Long>>getArgument(1).keySet());
+  }
+
+  @AfterEach
+  void tearDown() {
+    leaseManager.release();
+    leaseProperties.setEnabled(false);
+  }
+
+  @Test
+  @DisplayName("A heartbeat should take the fair share of the chat shards given the live nodes")
+  void givenTwoNodes_whenHeartbeat_thenTakeHalfOfTheShards() {
+    // Given
+    when(leaseRepository.countLive("node:")).thenReturn(2);
+
+    // When
+    leaseManager.heartbeat();
+
+    // Then
+    assertThat(leaseManager.ownedShards()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+    assertThat(leaseManager.ownsChat(3)).isTrue();
+    assertThat(leaseManager.ownsChat(12)).isFalse();
+    assertThat(leaseManager.ownsAccount(TdLibParameters.DEFAULT_ACCOUNT_ID)).isTrue();
+    assertThat(leaseManager.ownsEverything()).isFalse();
+  }
+
+  @Test
+  @DisplayName("A node seeing more nodes should hand over the leases beyond its fair share")
+  void givenNodesJoin_whenHeartbeat_thenReleaseSurplus() {
+    // Given
+    when(leaseRepository.countLive("node:")).thenReturn(1);
+    leaseManager.heartbeat();
+    assertThat(leaseManager.ownsEverything()).isTrue();
+
+    // When
+    when(leaseRepository.countLive("node:")).thenReturn(4);
+    leaseManager.heartbeat();
+
+    // Then
+    assertThat(leaseManager.ownedShards()).hasSize(4);
+    verify(leaseRepository, times(12)).release(startsWith("chat-shard:"), eq(leaseManager.nodeId()));
+  }
+
+  @Test
+  @DisplayName("A lease taken over by another node should stop the writes and fence off the old token")
+  void givenLeaseTakenOver_whenWrite_thenFail() {
+    // Given
+    when(leaseRepository.countLive("node:")).thenReturn(1);
+    leaseManager.heartbeat();
+    long chatId = IntStream.range(0, 100).filter(id -> leaseManager.shardOf(id) == 0).findFirst().orElseThrow();
+    long otherChatId = IntStream.range(0, 100).filter(id -> leaseManager.shardOf(id) == 1).findFirst().orElseThrow();
+
+    // When
+    when(leaseRepository.acquire(eq("chat-shard:0"), anyString(), anyLong())).thenReturn(OptionalLong.empty());
+    leaseManager.heartbeat();
+    when(leaseRepository.findHeld(leaseManager.nodeId(), Map.of("chat-shard:1", 1L))).thenReturn(Set.of());
+
+    // Then
+    assertThat(leaseManager.ownsChat(chatId)).isFalse();
+    assertThatThrownBy(() -> leaseManager.fenceChat(chatId)).isInstanceOf(LeaseLostException.class);
+    assertThatThrownBy(() -> leaseManager.fenceChat(otherChatId))
+        .isInstanceOf(LeaseLostException.class)
+        .hasMessageContaining("chat-shard:1");
+  }
+
+  @Test
+  @DisplayName("The leases fenced in a transaction should be checked by one query right before it commits")
+  void givenWritesOfTwoShards_whenCommit_thenCheckTokensOnce() {
+    // Given
+    when(leaseRepository.countLive("node:")).thenReturn(1);
+    leaseManager.heartbeat();
+    long chatId = IntStream.range(0, 100).filter(id -> leaseManager.shardOf(id) == 0).findFirst().orElseThrow();
+    long otherChatId = IntStream.range(0, 100).filter(id -> leaseManager.shardOf(id) == 1).findFirst().orElseThrow();
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      // When
+      leaseManager.fenceChat(chatId);
+      leaseManager.fenceChat(otherChatId);
+      leaseManager.fenceChat(chatId);
+      verify(leaseRepository, never()).findHeld(anyString(), anyMap());
+      TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+      // Then
+      verify(leaseRepository).findHeld(leaseManager.nodeId(), Map.of("chat-shard:0", 1L, "chat-shard:1", 1L));
+    } finally {
+      TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+          TransactionSynchronization.STATUS_COMMITTED);
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertThat(TransactionSynchronizationManager.hasResource(leaseManager)).isFalse();
+  }
+
+  @Test
+  @DisplayName("Heartbeats should go on while a scheduled job blocks the scheduler")
+  void givenBlockedScheduler_whenStarted_thenHeartbeatsGoOn() throws InterruptedException {
+    // Given
+    when(leaseRepository.countLive("node:")).thenReturn(1);
+    leaseProperties.setHeartbeatIntervalMs(20);
+    assertThat(blockingJob.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    // When
+    try {
+      leaseManager.start();
+
+      // Then
+      verify(leaseRepository, timeout(5000).atLeast(5)).acquire(eq("node:" + leaseManager.nodeId()), anyString(), anyLong());
+      assertThat(leaseManager.ownsEverything()).isTrue();
+    } finally {
+      blockingJob.released.countDown();
+      leaseProperties.setHeartbeatIntervalMs(5000);
+    }
+  }
+
+  @Test
+  @DisplayName("GET /cluster should return the answering node, its shards and the leases of all nodes")
+  void whenGetCluster_thenReturnLeases() throws Exception {
+    // Given
+    when(leaseRepository.countLive("node:")).thenReturn(8);
+    leaseManager.heartbeat();
+    when(leaseRepository.findAll()).thenReturn(List.of(
+        new Lease("chat-shard:0", leaseManager.nodeId(), 3, 100, 160, 175, false),
+        new Lease("chat-shard:2", "other-node", 5, 100, 110, 125, true)));
+
+    // When & Then
+    mockMvc.perform(get("/cluster"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.nodeId").value(leaseManager.nodeId()))
+        .andExpect(jsonPath("$.leasesEnabled").value(true))
+        .andExpect(jsonPath("$.ownedShards.length()").value(2))
+        .andExpect(jsonPath("$.leases[0].token").value(3))
+        .andExpect(jsonPath("$.leases[1].owner").value("other-node"))
+        .andExpect(jsonPath("$.leases[1].expired").value(true));
+  }
+}
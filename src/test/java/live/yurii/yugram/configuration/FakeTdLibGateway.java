@@ -0,0 +1,79 @@
+package live.yurii.yugram.configuration;
+
+import org.drinkless.tdlib.TdApi;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link TdLibGateway} answering from in-memory chat histories instead of the native clients.
+ * <p>
+ * Answers {@link TdApi.GetChatHistory} like TDLib does: the message {@code fromMessageId} itself followed
+ * by older ones, newest first. A chat is known only to the accounts it was added for; other accounts get
+ * error 400 like TDLib answers for a chat the account is not in, and so do other functions. Queued errors
+ * answer the next requests.
+ */
+public class FakeTdLibGateway implements TdLibGateway {
+
+  private final Map<Integer, Map<Long, NavigableMap<Long, TdApi.Message>>> histories = new ConcurrentHashMap<>();
+  private final Deque<TdApi.Error> errors = new ConcurrentLinkedDeque<>();
+  private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+  public FakeTdLibGateway addMessage(int accountId, TdApi.Message message) {
+    histories.computeIfAbsent(accountId, account -> new ConcurrentHashMap<>())
+        .computeIfAbsent(message.chatId, chatId -> new ConcurrentSkipListMap<>())
+        .put(message.id, message);
+    return this;
+  }
+
+  public FakeTdLibGateway failNext(int code, String message) {
+    errors.add(new TdApi.Error(code, message));
+    return this;
+  }
+
+  public List<Request> requests() {
+    return List.copyOf(requests);
+  }
+
+  public void reset() {
+    histories.clear();
+    errors.clear();
+    requests.clear();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends TdApi.Object> CompletableFuture<T> send(int accountId, TdApi.Function<T> function) {
+    requests.add(new Request(accountId, function));
+    TdApi.Error error = errors.poll();
+    if (error != null) {
+      return CompletableFuture.failedFuture(new TdLibException(error));
+    }
+    if (!(function instanceof TdApi.GetChatHistory request)) {
+      return failed(400, "Unsupported by the fake: " + function.getClass().getSimpleName());
+    }
+    NavigableMap<Long, TdApi.Message> history = histories.getOrDefault(accountId, Map.of()).get(request.chatId);
+    if (history == null) {
+      return failed(400, "Chat not found");
+    }
+    NavigableMap<Long, TdApi.Message> older = request.fromMessageId == 0
+        ? history.descendingMap()
+        : history.headMap(request.fromMessageId, true).descendingMap();
+    return CompletableFuture.completedFuture((T) new TdApi.Messages(history.size(),
+        older.values().stream().limit(request.limit).toArray(TdApi.Message[]::new)));
+  }
+
+  private static <T> CompletableFuture<T> failed(int code, String message) {
+    return CompletableFuture.failedFuture(new TdLibException(new TdApi.Error(code, message)));
+  }
+
+  public record Request(int accountId, TdApi.Function<?> function) {
+  }
+}
@@ -0,0 +1,36 @@
+package live.yurii.yugram.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link LogMessageHandler}.
+ */
+@ExtendWith(OutputCaptureExtension.class)
+@DisplayName("LogMessageHandler Tests")
+class LogMessageHandlerTest {
+
+  @Test
+  @DisplayName("A fatal message should be logged before returning to TDLib, which aborts right after")
+  void whenFatalMessage_thenLogBeforeReturning(CapturedOutput output) throws Exception {
+    // Given
+    LogMessageHandler handler = new LogMessageHandler(new TdLibLogProperties(), new SimpleMeterRegistry());
+    handler.start();
+    handler.onLogMessage(2, "[ 2][t 1][1700000000.000000001][Td.cpp:100][#1]\tbefore the crash");
+
+    // When
+    handler.onLogMessage(0, "[ 0][t 1][1700000000.000000002][Td.cpp:200][#1]\tcheck failed");
+
+    // Then
+    String logged = output.getAll();
+    assertThat(logged).contains("TDLib [Td.cpp:200]: check failed");
+    assertThat(logged.indexOf("before the crash")).isBetween(0, logged.indexOf("check failed"));
+    handler.stop();
+  }
+}
@@ -0,0 +1,107 @@
+package live.yurii.yugram.configuration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link LogRing}.
+ */
+@DisplayName("LogRing Tests")
+class LogRingTest {
+
+  @Test
+  @DisplayName("A full ring should refuse values until the consumer frees a slot")
+  void givenFullRing_whenOffer_thenRefuseUntilPolled() {
+    // Given
+    LogRing<Integer> ring = new LogRing<>(4);
+    for (int i = 0; i < 4; i++) {
+      assertThat(ring.offer(i)).isTrue();
+    }
+
+    // When & Then
+    assertThat(ring.capacity()).isEqualTo(4);
+    assertThat(ring.size()).isEqualTo(4);
+    assertThat(ring.offer(4)).isFalse();
+    assertThat(ring.poll()).isZero();
+    assertThat(ring.offer(4)).isTrue();
+    assertThat(ring.offer(5)).isFalse();
+  }
+
+  @Test
+  @DisplayName("Values should come out in order over many laps of the ring")
+  void givenManyLaps_whenOfferAndPoll_thenKeepOrder() {
+    // Given
+    LogRing<Integer> ring = new LogRing<>(5);
+    List<Integer> polled = new ArrayList<>();
+
+    // When
+    for (int i = 0; i < 100; i += 3) {
+      for (int n = i; n < i + 3; n++) {
+        assertThat(ring.offer(n)).isTrue();
+      }
+      for (int n = 0; n < 3; n++) {
+        polled.add(ring.poll());
+      }
+    }
+
+    // Then
+    assertThat(ring.capacity()).isEqualTo(8);
+    assertThat(ring.poll()).isNull();
+    assertThat(ring.size()).isZero();
+    assertThat(polled).hasSize(102).isSorted().doesNotHaveDuplicates();
+  }
+
+  @Test
+  @DisplayName("Concurrent producers should neither lose nor reorder their own values")
+  void givenConcurrentProducers_whenOffer_thenConsumerSeesEveryValueInProducerOrder() throws Exception {
+    // Given
+    int producers = 4;
+    int perProducer = 50_000;
+    LogRing<long[]> ring = new LogRing<>(64);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      int producer = p;
+      threads.add(Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        for (int i = 0; i < perProducer; i++) {
+          while (!ring.offer(new long[]{producer, i})) {
+            Thread.onSpinWait();
+          }
+        }
+      }));
+    }
+
+    // When
+    start.countDown();
+    long[] next = new long[producers];
+    int received = 0;
+    while (received < producers * perProducer) {
+      long[] value = ring.poll();
+      if (value == null) {
+        Thread.onSpinWait();
+        continue;
+      }
+      // Then
+      assertThat(value[1]).isEqualTo(next[(int) value[0]]);
+      next[(int) value[0]]++;
+      received++;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(next).containsOnly(perProducer);
+    assertThat(ring.poll()).isNull();
+  }
+}
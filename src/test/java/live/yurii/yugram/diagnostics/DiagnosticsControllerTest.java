@@ -0,0 +1,122 @@
+package live.yurii.yugram.diagnostics;
+
+import jdk.jfr.Recording;
+import live.yurii.yugram.diagnostics.jfr.ContinuousRecording;
+import live.yurii.yugram.diagnostics.jfr.DbFlushEvent;
+import live.yurii.yugram.ingest.IngestExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link DiagnosticsController}.
+ */
+@WebMvcTest(DiagnosticsController.class)
+@DisplayName("DiagnosticsController Tests")
+class DiagnosticsControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockitoBean
+  private VirtualThreadPinningMonitor pinningMonitor;
+
+  @MockitoBean
+  private IngestExecutor ingestExecutor;
+
+  @MockitoBean
+  private ContinuousRecording continuousRecording;
+
+  @MockitoBean
+  private StartupTimeline startupTimeline;
+
+  @Test
+  @DisplayName("GET /diagnostics/threads should report ingest backlog and pinning sites")
+  void whenGetThreads_thenReturnBacklogAndPinningSites() throws Exception {
+    // Given
+    when(ingestExecutor.backlog()).thenReturn(42);
+    when(pinningMonitor.isEnabled()).thenReturn(true);
+    when(pinningMonitor.pinnedCount()).thenReturn(3L);
+    when(pinningMonitor.sites()).thenReturn(List.of(new VirtualThreadPinningMonitor.PinningSite(
+        "jdbc", "jdbc at live.yurii.yugram.users.UserHandler.persist:120", 3, 45.5, 80.0,
+        List.of("live.yurii.yugram.users.UserHandler.persist:120"))));
+
+    // When & Then
+    mockMvc.perform(get("/diagnostics/threads"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.virtualRequestThreads").value(false))
+        .andExpect(jsonPath("$.ingestBacklog").value(42))
+        .andExpect(jsonPath("$.pinningRecorded").value(true))
+        .andExpect(jsonPath("$.pinnedCount").value(3))
+        .andExpect(jsonPath("$.pinningSites[0].layer").value("jdbc"))
+        .andExpect(jsonPath("$.pinningSites[0].count").value(3));
+  }
+
+  @Test
+  @DisplayName("POST /diagnostics/jfr/dump should summarize the application's events in the dump")
+  void whenDumpRecording_thenReturnEventSummary(@TempDir Path directory) throws Exception {
+    // Given
+    Path file = directory.resolve("yugram.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("yugram.DbFlush");
+      recording.start();
+      DbFlushEvent.start("users", 120).finish(true);
+      DbFlushEvent.start("users", 80).finish(false);
+      DbFlushEvent.start("volume", 5).finish(true);
+      recording.dump(file);
+    }
+    when(continuousRecording.isEnabled()).thenReturn(true);
+    when(continuousRecording.dump()).thenReturn(file);
+
+    // When & Then
+    mockMvc.perform(post("/diagnostics/jfr/dump"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.file").value(file.toString()))
+        .andExpect(jsonPath("$.events.length()").value(2))
+        .andExpect(jsonPath("$.events[?(@.group == 'users')].count").value(2))
+        .andExpect(jsonPath("$.events[?(@.group == 'users')].items").value(200))
+        .andExpect(jsonPath("$.events[?(@.group == 'users')].failed").value(1))
+        .andExpect(jsonPath("$.events[?(@.group == 'volume')].event").value("DbFlush"));
+  }
+
+  @Test
+  @DisplayName("POST /diagnostics/jfr/dump should return 409 when no recording is running")
+  void givenRecordingDisabled_whenDumpRecording_thenReturnConflict() throws Exception {
+    // Given
+    when(continuousRecording.isEnabled()).thenReturn(false);
+
+    // When & Then
+    mockMvc.perform(post("/diagnostics/jfr/dump"))
+        .andExpect(status().isConflict());
+  }
+
+  @Test
+  @DisplayName("GET /diagnostics/startup should report the phases reached so far")
+  void whenGetStartup_thenReturnTimeline() throws Exception {
+    // Given
+    when(startupTimeline.timeline()).thenReturn(new StartupTimeline.Timeline(
+        1760000000000L, 5400L, 2100L, null, true, "/app/cds/yugram.jsa"));
+
+    // When & Then
+    mockMvc.perform(get("/diagnostics/startup"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.readyAfter").value(5400))
+        .andExpect(jsonPath("$.firstUpdateAfter").value(2100))
+        .andExpect(jsonPath("$.firstPersistedAfter").doesNotExist())
+        .andExpect(jsonPath("$.aot").value(true))
+        .andExpect(jsonPath("$.sharedArchive").value("/app/cds/yugram.jsa"));
+  }
+}
@@ -0,0 +1,87 @@
+package live.yurii.yugram.duplicates;
+
+import live.yurii.yugram.duplicates.LshIndex.Entry;
+import live.yurii.yugram.duplicates.MessageSignatureRepository.EntryVisitor;
+import live.yurii.yugram.duplicates.MessageSignatureRepository.SignedMessage;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link DuplicateDetector}.
+ */
+@DisplayName("DuplicateDetector Tests")
+class DuplicateDetectorTest {
+
+  private static final String STORY = "The city council approved the new budget on Tuesday after a long debate,"
+      + " allocating most of the additional funds to public transport, road repairs and the renovation of schools"
+      + " in the northern districts, officials said.";
+
+  private final DuplicateDetectionProperties properties = new DuplicateDetectionProperties();
+  private final MessageSignatureRepository repository = mock(MessageSignatureRepository.class);
+  private final DuplicateDetector detector = new DuplicateDetector(properties, repository);
+
+  @Test
+  @DisplayName("A message arriving while the signatures load should join the cluster of a stored near-duplicate")
+  void givenRestoreInProgress_whenNearDuplicateArrives_thenJoinStoredCluster() {
+    // Given
+    int now = (int) Instant.now().getEpochSecond();
+    int[] signature = new MinHasher(properties.getBands() * properties.getRows(), properties.getShingleSize(),
+        properties.getMinShingles()).signature(STORY);
+    doAnswer(invocation -> {
+      // the repost arrives before the scan got to the stored message
+      detector.onMessagePersisted(new MessagePersistedEvent(this,
+          new MessageDto(2002L, 1L, -2L, now, "BREAKING: " + STORY), true));
+      invocation.<EntryVisitor>getArgument(1).visit(new Entry(1001L, -1L, now - 60, -1L, 1001L, now - 60, signature));
+      return null;
+    }).when(repository).scanSince(anyInt(), any());
+
+    // When
+    detector.restore();
+    detector.flush();
+
+    // Then
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<SignedMessage>> captor = ArgumentCaptor.forClass(List.class);
+    verify(repository).insertAll(captor.capture());
+    assertThat(captor.getValue())
+        .extracting(signed -> signed.entry().messageId() + "->" + signed.entry().clusterId())
+        .containsExactly("2002->1001");
+  }
+
+  @Test
+  @DisplayName("Reposts with the same message id in another chat should be clustered as messages of their own")
+  void givenSameIdInTwoChats_whenBothArrive_thenStoreBoth() {
+    // Given
+    int now = (int) Instant.now().getEpochSecond();
+    detector.restore();
+
+    // When
+    detector.onMessagePersisted(new MessagePersistedEvent(this, new MessageDto(1001L, 1L, -1L, now - 60, STORY), true));
+    detector.onMessagePersisted(new MessagePersistedEvent(this,
+        new MessageDto(1001L, 1L, -2L, now, "BREAKING: " + STORY), true));
+    detector.flush();
+
+    // Then
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<SignedMessage>> captor = ArgumentCaptor.forClass(List.class);
+    verify(repository).insertAll(captor.capture());
+    assertThat(captor.getValue())
+        .extracting(signed -> signed.entry().ref() + "->" + signed.entry().cluster())
+        .containsExactly(
+            new MessageRef(-1L, 1001L) + "->" + new MessageRef(-1L, 1001L),
+            new MessageRef(-2L, 1001L) + "->" + new MessageRef(-1L, 1001L));
+  }
+}
@@ -0,0 +1,115 @@
+package live.yurii.yugram.duplicates;
+
+import live.yurii.yugram.duplicates.MessageSignatureRepository.MemberVisitor;
+import live.yurii.yugram.duplicates.MessageSignatureRepository.SignedMessage;
+import live.yurii.yugram.duplicates.dto.DuplicateMemberDto;
+import live.yurii.yugram.messages.MessagePersistedEvent;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link DuplicatesController}.
+ */
+@WebMvcTest(DuplicatesController.class)
+@Import({DuplicateDetector.class, DuplicateDetectionProperties.class})
+@DisplayName("DuplicatesController Tests")
+class DuplicatesControllerTest {
+
+  private static final String STORY = "The city council approved the new budget on Tuesday after a long debate,"
+      + " allocating most of the additional funds to public transport, road repairs and the renovation of schools"
+      + " in the northern districts, officials said.";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private DuplicateDetector duplicateDetector;
+
+  @MockitoBean
+  private MessageSignatureRepository messageSignatureRepository;
+
+  @Test
+  @DisplayName("New messages should join the cluster of an earlier near-duplicate from another channel")
+  void whenRepostWithSmallEdits_thenJoinFirstSeenCluster() {
+    // Given: the stored signatures are loaded, none here
+    duplicateDetector.restore();
+    int now = (int) Instant.now().getEpochSecond();
+    duplicateDetector.onMessagePersisted(persisted(1001L, -1L, now - 60, STORY + " https://news.example/1"));
+    duplicateDetector.onMessagePersisted(persisted(2002L, -2L, now - 30,
+        "BREAKING: " + STORY.replace("Tuesday", "Tuesday evening") + " Subscribe! https://t.me/other"));
+    duplicateDetector.onMessagePersisted(persisted(3003L, -2L, now, "Weather: sunny in the north, rain expected"
+        + " in the south of the country over the weekend with temperatures dropping."));
+    duplicateDetector.onMessagePersisted(persisted(4004L, -3L, now, "Too short to compare"));
+
+    // When
+    duplicateDetector.flush();
+
+    // Then
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<SignedMessage>> captor = ArgumentCaptor.forClass(List.class);
+    verify(messageSignatureRepository).insertAll(captor.capture());
+    assertThat(captor.getValue())
+        .extracting(signed -> signed.entry().messageId() + "->" + signed.entry().clusterId())
+        .containsExactly("1001->1001", "2002->1001", "3003->3003");
+    assertThat(captor.getValue().get(1).similarity()).isGreaterThanOrEqualTo(0.6).isLessThan(1);
+  }
+
+  @Test
+  @DisplayName("GET /duplicates/messages/{id}?chatId= should return the cluster members in first seen order")
+  void whenGetMessageCluster_thenReturnMembers() throws Exception {
+    // Given
+    MessageRef cluster = new MessageRef(-1L, 1001L);
+    when(messageSignatureRepository.findCluster(new MessageRef(-2L, 2002L))).thenReturn(cluster);
+    doAnswer(invocation -> {
+      MemberVisitor visitor = invocation.getArgument(1);
+      visitor.visit(cluster, new DuplicateMemberDto(1001L, -1L, 100, 1, "First"));
+      visitor.visit(cluster, new DuplicateMemberDto(2002L, -2L, 160, 0.8, "Second"));
+      return null;
+    }).when(messageSignatureRepository).findMembers(any(), any());
+
+    // When & Then
+    mockMvc.perform(get("/duplicates/messages/2002").param("chatId", "-2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.clusterChatId").value(-1))
+        .andExpect(jsonPath("$.clusterId").value(1001))
+        .andExpect(jsonPath("$.size").value(2))
+        .andExpect(jsonPath("$.firstSeen").value(100))
+        .andExpect(jsonPath("$.lastSeen").value(160))
+        .andExpect(jsonPath("$.members[1].similarity").value(0.8));
+  }
+
+  @Test
+  @DisplayName("GET /duplicates/clusters should reject an empty range")
+  void whenGetClustersWithEmptyRange_thenReturnBadRequest() throws Exception {
+    // When & Then
+    mockMvc.perform(get("/duplicates/clusters").param("from", "200").param("to", "100"))
+        .andExpect(status().isBadRequest());
+
+    verify(messageSignatureRepository, never()).findClusters(anyInt(), anyInt(), anyInt(), anyInt());
+  }
+
+  private MessagePersistedEvent persisted(long id, long chatId, int date, String content) {
+    return new MessagePersistedEvent(this, new MessageDto(id, 1L, chatId, date, content), true);
+  }
+}
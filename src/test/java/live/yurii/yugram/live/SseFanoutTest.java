@@ -0,0 +1,81 @@
+package live.yurii.yugram.live;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link SseFanout}.
+ */
+@DisplayName("SseFanout Tests")
+class SseFanoutTest {
+
+  private final LiveFeedProperties properties = new LiveFeedProperties();
+
+  @Test
+  @DisplayName("Concurrent subscribes should never exceed the subscriber cap")
+  void givenConcurrentSubscribes_whenCapReached_thenRejectTheRest() throws Exception {
+    // Given
+    properties.setMaxSubscribers(4);
+    SseFanout<String> fanout = new SseFanout<>("test", properties, Runnable::run);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Boolean>> attempts = new ArrayList<>();
+
+    // When
+    try (ExecutorService threads = Executors.newFixedThreadPool(32)) {
+      for (int i = 0; i < 32; i++) {
+        attempts.add(threads.submit(() -> {
+          start.await();
+          try {
+            fanout.subscribe(event -> true);
+            return true;
+          } catch (ResponseStatusException e) {
+            return false;
+          }
+        }));
+      }
+      start.countDown();
+    }
+
+    // Then
+    int subscribed = 0;
+    for (Future<Boolean> attempt : attempts) {
+      subscribed += attempt.get() ? 1 : 0;
+    }
+    assertThat(subscribed).isEqualTo(4);
+    assertThat(fanout.subscriberCount()).isEqualTo(4);
+  }
+
+  @Test
+  @DisplayName("A disconnected subscriber should release its slot")
+  void givenFullFeed_whenSubscriberDisconnected_thenAcceptNewSubscriber() {
+    // Given
+    properties.setMaxSubscribers(1);
+    properties.setBufferSize(1);
+    properties.setOverflowPolicy(LiveFeedProperties.OverflowPolicy.DISCONNECT);
+    // nothing is drained, so the second event overflows the buffer
+    SseFanout<String> fanout = new SseFanout<>("test", properties, task -> {
+    });
+    fanout.subscribe(event -> true);
+    assertThatThrownBy(() -> fanout.subscribe(event -> true)).isInstanceOf(ResponseStatusException.class);
+
+    // When
+    fanout.publish("message", "1", "first");
+    fanout.publish("message", "2", "second");
+
+    // Then
+    assertThat(fanout.subscriberCount()).isZero();
+    fanout.subscribe(event -> true);
+    assertThat(fanout.subscriberCount()).isEqualTo(1);
+  }
+}
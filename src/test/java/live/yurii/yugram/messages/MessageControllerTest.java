@@ -1,24 +1,53 @@
 package live.yurii.yugram.messages;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import live.yurii.yugram.batch.BatchLookupProperties;
+import live.yurii.yugram.cache.EntityCacheProperties;
+import live.yurii.yugram.chats.ChatCache;
+import live.yurii.yugram.chats.ChatRepository;
+import live.yurii.yugram.chats.dto.ChatDto;
+import live.yurii.yugram.formats.BinaryFormats;
+import live.yurii.yugram.formats.BinaryFormatsConfiguration;
+import live.yurii.yugram.messages.config.MessageTailCacheProperties;
+import live.yurii.yugram.messages.dto.MessageDto;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.cache.ConditionalRequests;
+import live.yurii.yugram.users.UserCache;
+import live.yurii.yugram.users.UserRepository;
+import live.yurii.yugram.users.dto.UserDto;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -26,6 +55,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * Unit tests for {@link MessageController}.
  */
 @WebMvcTest(MessageController.class)
+@Import({BatchLookupProperties.class, MessageTailCache.class, MessageTailCacheProperties.class, ConditionalRequests.class, ChangeVersions.class,
+    MessageEnricher.class, UserCache.class, ChatCache.class, EntityCacheProperties.class, BinaryFormatsConfiguration.class})
 @DisplayName("MessageController Tests")
 class MessageControllerTest {
 
@@ -35,6 +66,31 @@ class MessageControllerTest {
   @MockitoBean
   private MessageRepository messageRepository;
 
+  @MockitoBean
+  private UserRepository userRepository;
+
+  @MockitoBean
+  private ChatRepository chatRepository;
+
+  @Autowired
+  private MessageTailCache messageTailCache;
+
+  @Autowired
+  private UserCache userCache;
+
+  @Autowired
+  private ChatCache chatCache;
+
+  @Autowired
+  private ChangeVersions changeVersions;
+
+  @BeforeEach
+  void setUp() {
+    messageTailCache.invalidateAll();
+    userCache.invalidateAll();
+    chatCache.invalidateAll();
+  }
+
   @Test
   @DisplayName("GET /messages/all should return paginated messages with default values")
   void whenGetAllMessages_thenReturnPaginatedMessagesWithDefaults() throws Exception {
@@ -50,8 +106,8 @@ class MessageControllerTest {
         .withDate(1640995300)
         .withContent("How are you?");
 
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(message1, message2), PageRequest.of(0, 10), 2);
-    when(messageRepository.findAll(any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message1, message2), PageRequest.of(0, 10), 2).map(MessageDto::fromEntity);
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/all"))
@@ -87,8 +143,8 @@ class MessageControllerTest {
         .withDate(1640995200)
         .withContent("Test message");
 
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(message), PageRequest.of(2, 5), 25);
-    when(messageRepository.findAll(any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message), PageRequest.of(2, 5), 25).map(MessageDto::fromEntity);
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/all")
@@ -108,8 +164,8 @@ class MessageControllerTest {
   @DisplayName("GET /messages/all with large size should limit to default size")
   void whenGetAllMessagesWithLargeSize_thenLimitToDefaultSize() throws Exception {
     // Given
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
-    when(messageRepository.findAll(any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/all")
@@ -134,8 +190,8 @@ class MessageControllerTest {
         .withDate(1640995300)
         .withContent("Message 2");
 
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(message1, message2), PageRequest.of(0, 10), 2);
-    when(messageRepository.findByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message1, message2), PageRequest.of(0, 10), 2).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
@@ -158,8 +214,8 @@ class MessageControllerTest {
         .withDate(1640995200)
         .withContent("Test message");
 
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(message), PageRequest.of(1, 5), 12);
-    when(messageRepository.findByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message), PageRequest.of(1, 5), 12).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatId/{chatId}", chatId)
@@ -178,8 +234,8 @@ class MessageControllerTest {
   void whenGetMessagesByChatIdWithNoMessages_thenReturnEmptyPage() throws Exception {
     // Given
     Long chatId = 999L;
-    Page<MessageEntity> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
-    when(messageRepository.findByChatId(eq(chatId), any(PageRequest.class))).thenReturn(emptyPage);
+    Page<MessageDto> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(emptyPage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
@@ -200,7 +256,7 @@ class MessageControllerTest {
         .withDate(1640995200)
         .withContent("Test message");
 
-    when(messageRepository.findById(messageId)).thenReturn(Optional.of(message));
+    when(messageRepository.findDtoById(messageId)).thenReturn(Optional.of(MessageDto.fromEntity(message)));
 
     // When & Then
     mockMvc.perform(get("/messages/byId/{id}", messageId))
@@ -218,7 +274,7 @@ class MessageControllerTest {
   void whenGetMessageByIdWithNonExistingId_thenReturn404() throws Exception {
     // Given
     Long messageId = 999L;
-    when(messageRepository.findById(messageId)).thenReturn(Optional.empty());
+    when(messageRepository.findDtoById(messageId)).thenReturn(Optional.empty());
 
     // When & Then
     mockMvc.perform(get("/messages/byId/{id}", messageId))
@@ -241,8 +297,8 @@ class MessageControllerTest {
         .withDate(1640995300)
         .withContent("System message 2");
 
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(message1, message2), PageRequest.of(0, 10), 2);
-    when(messageRepository.findByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message1, message2), PageRequest.of(0, 10), 2).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatIdAndSenderId/{id}", id))
@@ -267,8 +323,8 @@ class MessageControllerTest {
         .withDate(1640995200)
         .withContent("System message");
 
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(message), PageRequest.of(0, 5), 8);
-    when(messageRepository.findByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message), PageRequest.of(0, 5), 8).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatIdAndSenderId/{id}", id)
@@ -285,8 +341,8 @@ class MessageControllerTest {
   void whenGetMessagesByChatIdAndSenderIdWithNoMessages_thenReturnEmptyPage() throws Exception {
     // Given
     Long id = 999L;
-    Page<MessageEntity> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
-    when(messageRepository.findByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(emptyPage);
+    Page<MessageDto> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
+    when(messageRepository.findDtosByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(emptyPage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatIdAndSenderId/{id}", id))
@@ -300,8 +356,8 @@ class MessageControllerTest {
   @DisplayName("GET /messages/all with empty result should return empty page")
   void whenGetAllMessagesWithEmptyResult_thenReturnEmptyPage() throws Exception {
     // Given
-    Page<MessageEntity> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
-    when(messageRepository.findAll(any(PageRequest.class))).thenReturn(emptyPage);
+    Page<MessageDto> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 10), 0);
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(emptyPage);
 
     // When & Then
     mockMvc.perform(get("/messages/all"))
@@ -323,7 +379,7 @@ class MessageControllerTest {
         .withDate(1640995200)
         .withContent(null);
 
-    when(messageRepository.findById(messageId)).thenReturn(Optional.of(message));
+    when(messageRepository.findDtoById(messageId)).thenReturn(Optional.of(MessageDto.fromEntity(message)));
 
     // When & Then
     mockMvc.perform(get("/messages/byId/{id}", messageId))
@@ -336,8 +392,8 @@ class MessageControllerTest {
   @DisplayName("GET /messages/all with zero size should normalize to size 1")
   void whenGetAllMessagesWithZeroSize_thenNormalizeToSizeOne() throws Exception {
     // Given
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
-    when(messageRepository.findAll(any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/all")
@@ -351,8 +407,8 @@ class MessageControllerTest {
   void whenGetMessagesByChatIdWithZeroSize_thenNormalizeToSizeOne() throws Exception {
     // Given
     Long chatId = 123L;
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
-    when(messageRepository.findByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatId/{chatId}", chatId)
@@ -366,8 +422,8 @@ class MessageControllerTest {
   void whenGetMessagesByChatIdAndSenderIdWithZeroSize_thenNormalizeToSizeOne() throws Exception {
     // Given
     Long id = 123L;
-    Page<MessageEntity> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
-    when(messageRepository.findByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(messagePage);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
+    when(messageRepository.findDtosByChatIdAndSenderId(eq(id), eq(id), any(PageRequest.class))).thenReturn(messagePage);
 
     // When & Then
     mockMvc.perform(get("/messages/byChatIdAndSenderId/{id}", id)
@@ -375,4 +431,260 @@ class MessageControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.size").value(1));
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("GET /messages/byChatId/{chatId} newest page should be served from the tail cache")
+  void whenGetNewestMessagesRepeatedly_thenServeFromTailCache() throws Exception {
+    // Given
+    Long chatId = 321L;
+    MessageEntity older = new MessageEntity(1L)
+        .withSenderId(100L)
+        .withChatId(chatId)
+        .withDate(1640995200)
+        .withContent("Older");
+    MessageEntity newer = new MessageEntity(2L)
+        .withSenderId(100L)
+        .withChatId(chatId)
+        .withDate(1640995300)
+        .withContent("Newer");
+
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(older, newer), PageRequest.of(0, 200), 2).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+
+    // When & Then
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andExpect(status().isOk());
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content.length()").value(2))
+        .andExpect(jsonPath("$.content[0].id").value(2))
+        .andExpect(jsonPath("$.content[1].id").value(1))
+        .andExpect(jsonPath("$.totalElements").value(2));
+
+    verify(messageRepository, times(1)).findDtosByChatId(eq(chatId), any(PageRequest.class));
+  }
+
+  @Test
+  @DisplayName("GET /messages/byChatId/{chatId} should include messages persisted after warm-up")
+  void whenMessagePersistedAfterWarmUp_thenTailIncludesIt() throws Exception {
+    // Given
+    Long chatId = 654L;
+    MessageEntity message = new MessageEntity(1L)
+        .withSenderId(100L)
+        .withChatId(chatId)
+        .withDate(1640995200)
+        .withContent("First");
+
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message), PageRequest.of(0, 200), 1).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andExpect(status().isOk());
+
+    MessageEntity persisted = new MessageEntity(2L)
+        .withSenderId(101L)
+        .withChatId(chatId)
+        .withDate(1640995300)
+        .withContent("Second");
+    messageTailCache.onMessagePersisted(new MessagePersistedEvent(this, MessageDto.fromEntity(persisted), true));
+
+    // When & Then
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content.length()").value(2))
+        .andExpect(jsonPath("$.content[0].content").value("Second"))
+        .andExpect(jsonPath("$.totalElements").value(2));
+
+    verify(messageRepository, times(1)).findDtosByChatId(eq(chatId), any(PageRequest.class));
+  }
+
+  @Test
+  @DisplayName("GET /messages/byChatId/{chatId} with current ETag should return 304 until a message is persisted")
+  void whenGetMessagesByChatIdWithCurrentETag_thenReturnNotModifiedUntilChanged() throws Exception {
+    // Given
+    Long chatId = 777L;
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(), PageRequest.of(0, 200), 0);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+
+    String etag = mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    // When & Then
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+
+    changeVersions.messagePersisted(888L);
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+
+    changeVersions.messagePersisted(chatId);
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  @DisplayName("POST /messages/byIds should return messages in request order with one query")
+  void whenPostMessagesByIds_thenReturnInRequestOrderWithMissingIds() throws Exception {
+    // Given
+    MessageEntity first = new MessageEntity(30L).withSenderId(100L).withChatId(200L).withDate(1640995200).withContent("First");
+    MessageEntity second = new MessageEntity(10L).withSenderId(101L).withChatId(200L).withDate(1640995300).withContent("Second");
+    when(messageRepository.findDtosByIds(anyCollection()))
+        .thenReturn(List.of(MessageDto.fromEntity(second), MessageDto.fromEntity(first)));
+
+    // When & Then
+    mockMvc.perform(post("/messages/byIds")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[30, 20, 10]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content.length()").value(2))
+        .andExpect(jsonPath("$.content[0].content").value("First"))
+        .andExpect(jsonPath("$.content[1].content").value("Second"))
+        .andExpect(jsonPath("$.missingIds[0]").value(20));
+
+    verify(messageRepository, times(1)).findDtosByIds(List.of(30L, 20L, 10L));
+  }
+
+  @Test
+  @DisplayName("GET /messages/byChatId/{chatId}?enrich=true should add sender and chat names with one query per kind")
+  void whenGetMessagesByChatIdEnriched_thenReturnSenderAndChatNames() throws Exception {
+    // Given
+    Long chatId = -1001L;
+    MessageEntity fromUser = new MessageEntity(1L).withSenderId(100L).withChatId(chatId).withDate(1640995200).withContent("Hello");
+    MessageEntity fromChat = new MessageEntity(2L).withSenderId(chatId).withChatId(chatId).withDate(1640995300).withContent("Announcement");
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(fromChat, fromUser), PageRequest.of(0, 10), 2).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+    when(userRepository.findDtosByIds(anyCollection()))
+        .thenReturn(List.of(UserDto.builder().id(100L).firstName("John").lastName("Doe").username("johndoe").build()));
+    when(chatRepository.findDtosByIds(anyCollection()))
+        .thenReturn(List.of(ChatDto.builder().id(chatId).title("News").build()));
+
+    // When & Then
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).param("enrich", "true"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content[0].senderName").value("News"))
+        .andExpect(jsonPath("$.content[0].senderUsername").doesNotExist())
+        .andExpect(jsonPath("$.content[0].chatTitle").value("News"))
+        .andExpect(jsonPath("$.content[1].senderName").value("John Doe"))
+        .andExpect(jsonPath("$.content[1].senderUsername").value("johndoe"))
+        .andExpect(jsonPath("$.content[1].chatTitle").value("News"));
+
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content[0].senderName").doesNotExist())
+        .andExpect(jsonPath("$.content[0].chatTitle").doesNotExist());
+
+    verify(userRepository, times(1)).findDtosByIds(Set.of(100L));
+    verify(chatRepository, times(1)).findDtosByIds(Set.of(chatId));
+  }
+
+  @Test
+  @DisplayName("GET /messages/byChatId/{chatId}?enrich=true should only change its ETag when a name on the page changes")
+  void whenNameOnPageChanges_thenEnrichedPageIsNotCached() throws Exception {
+    // Given
+    Long chatId = 200L;
+    MessageEntity message = new MessageEntity(1L).withSenderId(100L).withChatId(chatId).withDate(1640995200).withContent("Hello");
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message), PageRequest.of(0, 10), 1).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+
+    String etag = mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).param("enrich", "true"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    String plainEtag = mockMvc.perform(get("/messages/byChatId/{chatId}", chatId))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    // When
+    changeVersions.usersChanged();
+    changeVersions.nameChanged(101L);
+
+    // Then: users that are not on the page leave it alone, without loading it again
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).param("enrich", "true").header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+    verify(messageRepository, times(1)).findDtosByChatId(eq(chatId), any(PageRequest.class));
+
+    // When
+    changeVersions.nameChanged(100L);
+
+    // Then
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).param("enrich", "true").header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isOk());
+    mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).header(HttpHeaders.IF_NONE_MATCH, plainEtag))
+        .andExpect(status().isNotModified());
+  }
+
+  @Test
+  @DisplayName("GET /messages/all should return the JSON payload as CBOR and Smile when asked for")
+  void whenGetAllMessagesAsBinary_thenReturnSamePayloadAsJson() throws Exception {
+    // Given
+    MessageEntity message = new MessageEntity(1L).withSenderId(100L).withChatId(200L).withDate(1640995200).withContent("Hello World");
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message), PageRequest.of(0, 10), 1).map(MessageDto::fromEntity);
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(messagePage);
+
+    // When
+    JsonNode json = new ObjectMapper().readTree(mockMvc.perform(get("/messages/all"))
+        .andReturn().getResponse().getContentAsByteArray());
+    byte[] cbor = mockMvc.perform(get("/messages/all").accept(BinaryFormats.CBOR))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormats.CBOR))
+        .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+        .andReturn().getResponse().getContentAsByteArray();
+    byte[] smile = mockMvc.perform(get("/messages/all").param("format", "smile"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormats.SMILE))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    // Then
+    assertThat(new CBORMapper().readTree(cbor)).isEqualTo(json);
+    assertThat(new SmileMapper().readTree(smile)).isEqualTo(json);
+  }
+
+  @Test
+  @DisplayName("GET /messages/all should tag each representation apart and send Vary with the 304")
+  void whenGetAllMessagesInAnotherFormat_thenEtagDiffers() throws Exception {
+    // Given
+    when(messageRepository.findAllDtos(any(PageRequest.class))).thenReturn(Page.empty());
+    String jsonEtag = mockMvc.perform(get("/messages/all"))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    String cborEtag = mockMvc.perform(get("/messages/all").accept(BinaryFormats.CBOR))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    // When & Then
+    assertThat(cborEtag).isNotEqualTo(jsonEtag);
+    mockMvc.perform(get("/messages/all").accept(BinaryFormats.CBOR).header(HttpHeaders.IF_NONE_MATCH, jsonEtag))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormats.CBOR));
+    mockMvc.perform(get("/messages/all").accept(BinaryFormats.CBOR).header(HttpHeaders.IF_NONE_MATCH, cborEtag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+    mockMvc.perform(get("/messages/all").param("format", "cbor").header(HttpHeaders.IF_NONE_MATCH, cborEtag))
+        .andExpect(status().isNotModified());
+    mockMvc.perform(get("/messages/all").header(HttpHeaders.IF_NONE_MATCH, jsonEtag))
+        .andExpect(status().isNotModified());
+  }
+
+  @Test
+  @DisplayName("GET /messages/byChatId/{chatId} should return one array per column in the columnar format")
+  void whenGetMessagesByChatIdAsColumnar_thenReturnColumns() throws Exception {
+    // Given
+    Long chatId = 200L;
+    MessageEntity message1 = new MessageEntity(1L).withSenderId(100L).withChatId(chatId).withDate(1640995200).withContent("Hello");
+    MessageEntity message2 = new MessageEntity(2L).withSenderId(101L).withChatId(chatId).withDate(1640995300).withContent(null);
+    Page<MessageDto> messagePage = new PageImpl<>(List.of(message2, message1), PageRequest.of(0, 10), 2).map(MessageDto::fromEntity);
+    when(messageRepository.findDtosByChatId(eq(chatId), any(PageRequest.class))).thenReturn(messagePage);
+
+    // When
+    byte[] body = mockMvc.perform(get("/messages/byChatId/{chatId}", chatId).accept(BinaryFormats.COLUMNAR))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormats.COLUMNAR))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    // Then
+    JsonNode page = new CBORMapper().readTree(body);
+    assertThat(page.get("rows").asInt()).isEqualTo(2);
+    assertThat(page.get("totalElements").asLong()).isEqualTo(2);
+    JsonNode columns = page.get("columns");
+    assertThat(columns.get("id").toString()).isEqualTo("[2,1]");
+    assertThat(columns.get("senderId").toString()).isEqualTo("[101,100]");
+    assertThat(columns.get("content").toString()).isEqualTo("[null,\"Hello\"]");
+    assertThat(columns.has("senderName")).isFalse();
+  }
+}
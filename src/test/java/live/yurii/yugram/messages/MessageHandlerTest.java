@@ -0,0 +1,138 @@
+package live.yurii.yugram.messages;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.changes.ChangeRecorder;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.configuration.TdLibParameters;
+import live.yurii.yugram.messages.config.MessageSaveProperties;
+import org.drinkless.tdlib.TdApi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link MessageHandler}.
+ */
+@DisplayName("MessageHandler Tests")
+class MessageHandlerTest {
+
+  private static final long MESSAGE_ID = 5L << 20;
+  private static final long CHANNEL_CHAT_ID = -1001125352796L;
+
+  private final MessageRepository messageRepository = mock(MessageRepository.class);
+  private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+  private final ChangeRecorder changeRecorder = mock(ChangeRecorder.class);
+  private MessageHandler handler;
+
+  @BeforeEach
+  void setUp() {
+    MessageSaveProperties saveProperties = new MessageSaveProperties();
+    saveProperties.setChatIds(List.of(100L, 200L, CHANNEL_CHAT_ID));
+    handler = new MessageHandler(messageRepository, saveProperties, publisher,
+        new MessageMetrics(new SimpleMeterRegistry()), mock(LeaseManager.class), changeRecorder);
+  }
+
+  private static TdApi.MessageText content(String text) {
+    TdApi.FormattedText formattedText = new TdApi.FormattedText();
+    formattedText.text = text;
+    formattedText.entities = new TdApi.TextEntity[0];
+    TdApi.MessageText content = new TdApi.MessageText();
+    content.text = formattedText;
+    return content;
+  }
+
+  private static TdApi.UpdateNewMessage newMessage(long chatId, String text) {
+    TdApi.MessageSenderUser sender = new TdApi.MessageSenderUser();
+    sender.userId = chatId;
+    TdApi.Message message = new TdApi.Message();
+    message.id = MESSAGE_ID;
+    message.chatId = chatId;
+    message.senderId = sender;
+    message.content = content(text);
+    TdApi.UpdateNewMessage update = new TdApi.UpdateNewMessage();
+    update.message = message;
+    return update;
+  }
+
+  @Test
+  @DisplayName("A private chat message whose id another account stored should be stored for its own account")
+  void givenStoredMessageOfOtherAccount_whenSameIdArrives_thenStoreOwnRow() {
+    // Given
+    MessageEntity stored = new MessageEntity(MESSAGE_ID).withChatId(100).withContent("first account").withAccountId(1);
+    when(messageRepository.findById(new MessageKey(100, MESSAGE_ID, 1))).thenReturn(Optional.of(stored));
+    when(messageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // When
+    handler.handle(new NewMessageEvent(this, 2, newMessage(100, "second account")));
+
+    // Then
+    ArgumentCaptor<MessageEntity> saved = ArgumentCaptor.forClass(MessageEntity.class);
+    verify(messageRepository).save(saved.capture());
+    assertThat(saved.getValue().getAccountId()).isEqualTo(2);
+    assertThat(saved.getValue().getContent()).isEqualTo("second account");
+    assertThat(stored.getContent()).isEqualTo("first account");
+  }
+
+  @Test
+  @DisplayName("An edit received by another account should not change the stored message")
+  void givenStoredMessageOfOtherAccount_whenEditArrives_thenKeepStoredContent() {
+    // Given
+    MessageEntity stored = new MessageEntity(MESSAGE_ID).withChatId(100).withContent("first account").withAccountId(1);
+    when(messageRepository.findById(new MessageKey(100, MESSAGE_ID, 1))).thenReturn(Optional.of(stored));
+    TdApi.UpdateMessageContent edit = new TdApi.UpdateMessageContent();
+    edit.chatId = 100;
+    edit.messageId = MESSAGE_ID;
+    edit.newContent = content("edited");
+
+    // When
+    handler.handle(new MessageContentChangedEvent(this, 2, edit));
+
+    // Then
+    assertThat(stored.getContent()).isEqualTo("first account");
+    verify(messageRepository, never()).save(any());
+  }
+
+  @Test
+  @DisplayName("The same message seen again in its chat should update the stored one")
+  void givenStoredMessage_whenSeenAgainInSameChat_thenUpdate() {
+    // Given
+    MessageEntity stored = new MessageEntity(MESSAGE_ID).withChatId(100).withContent("before").withAccountId(1);
+    when(messageRepository.findById(new MessageKey(100, MESSAGE_ID, 1))).thenReturn(Optional.of(stored));
+    when(messageRepository.save(stored)).thenReturn(stored);
+
+    // When
+    handler.handle(new NewMessageEvent(this, 1, newMessage(100, "after")));
+
+    // Then
+    assertThat(stored.getContent()).isEqualTo("after");
+    verify(messageRepository).save(stored);
+  }
+
+  @Test
+  @DisplayName("A channel message should be stored once for all accounts")
+  void givenChannelMessage_whenArrives_thenStoreForSharedAccount() {
+    // Given
+    when(messageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // When
+    handler.handle(new NewMessageEvent(this, 2, newMessage(CHANNEL_CHAT_ID, "post")));
+
+    // Then
+    verify(messageRepository).findById(new MessageKey(CHANNEL_CHAT_ID, MESSAGE_ID, TdLibParameters.SHARED_ACCOUNT_ID));
+    ArgumentCaptor<MessageEntity> saved = ArgumentCaptor.forClass(MessageEntity.class);
+    verify(messageRepository).save(saved.capture());
+    assertThat(saved.getValue().getAccountId()).isEqualTo(TdLibParameters.SHARED_ACCOUNT_ID);
+  }
+}
@@ -0,0 +1,59 @@
+package live.yurii.yugram.messages;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.messages.dto.MessageDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link MessageMetrics}.
+ */
+@DisplayName("MessageMetrics Tests")
+class MessageMetricsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MessageMetrics metrics = new MessageMetrics(meterRegistry);
+
+  private void persisted(long id, long secondsAgo, boolean created) {
+    MessageDto message = MessageDto.builder()
+        .id(id)
+        .chatId(-100L)
+        .date((int) (Instant.now().getEpochSecond() - secondsAgo))
+        .build();
+    metrics.onMessagePersisted(new MessagePersistedEvent(this, message, created));
+  }
+
+  @Test
+  @DisplayName("Live messages should be timed, history older than a day only counted and edits left out")
+  void givenLiveAndHistoricMessages_whenPersisted_thenSplitLagFromHistoric() {
+    // When
+    persisted(1, 5, true);
+    persisted(2, 60, true);
+    persisted(3, 2 * 86_400, true);
+    persisted(4, 5, false);
+
+    // Then
+    var lag = meterRegistry.get("yugram.messages.lag").timer();
+    assertThat(lag.count()).isEqualTo(2);
+    assertThat(lag.max(TimeUnit.SECONDS)).isBetween(59.0, 62.0);
+    assertThat(meterRegistry.get("yugram.messages.historic").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Filtered messages should be counted by whether they were saved")
+  void givenFilterResults_whenFiltered_thenCountByResult() {
+    // When
+    metrics.filtered(true);
+    metrics.filtered(false);
+    metrics.filtered(false);
+
+    // Then
+    assertThat(meterRegistry.get("yugram.messages.filter").tag("result", "accepted").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("yugram.messages.filter").tag("result", "rejected").counter().count()).isEqualTo(2);
+  }
+}
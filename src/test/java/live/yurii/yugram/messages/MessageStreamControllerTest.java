@@ -0,0 +1,83 @@
+package live.yurii.yugram.messages;
+
+import live.yurii.yugram.cache.EntityCacheProperties;
+import live.yurii.yugram.chats.ChatCache;
+import live.yurii.yugram.chats.ChatRepository;
+import live.yurii.yugram.live.LiveFeedConfiguration;
+import live.yurii.yugram.live.LiveFeedProperties;
+import live.yurii.yugram.messages.dto.MessageDto;
+import live.yurii.yugram.users.UserCache;
+import live.yurii.yugram.users.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Unit tests for {@link MessageStreamController}.
+ */
+@WebMvcTest(MessageStreamController.class)
+@Import({MessageFeed.class, LiveFeedProperties.class, LiveFeedConfiguration.class,
+    MessageEnricher.class, UserCache.class, ChatCache.class, EntityCacheProperties.class})
+@DisplayName("MessageStreamController Tests")
+class MessageStreamControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private MessageFeed messageFeed;
+
+  @MockitoBean
+  private UserRepository userRepository;
+
+  @MockitoBean
+  private ChatRepository chatRepository;
+
+  @Test
+  @DisplayName("GET /messages/stream should push committed messages of subscribed chats only")
+  void whenMessagePersisted_thenStreamSubscribedChatsOnly() throws Exception {
+    // Given
+    MvcResult result = mockMvc.perform(get("/messages/stream").param("chatIds", "200"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    // When
+    messageFeed.onMessagePersisted(persisted(1L, 300L, "Other chat", true));
+    messageFeed.onMessagePersisted(persisted(2L, 200L, "Hello World", true));
+    messageFeed.onMessagePersisted(persisted(2L, 200L, "Hello World!", false));
+
+    // Then
+    String body = awaitContent(result.getResponse(), "Hello World!");
+    assertThat(body).contains("event:message", "id:2", "event:edit", "\"content\":\"Hello World\"");
+    assertThat(body).doesNotContain("Other chat");
+  }
+
+  private static MessagePersistedEvent persisted(long id, long chatId, String content, boolean created) {
+    MessageEntity entity = new MessageEntity(id)
+        .withSenderId(100L)
+        .withChatId(chatId)
+        .withDate(1640995200)
+        .withContent(content);
+    return new MessagePersistedEvent(MessageStreamControllerTest.class, MessageDto.fromEntity(entity), created);
+  }
+
+  private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+    String body = response.getContentAsString();
+    while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      body = response.getContentAsString();
+    }
+    return body;
+  }
+}
@@ -0,0 +1,107 @@
+package live.yurii.yugram.queries;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.messages.MessageRepository;
+import live.yurii.yugram.messages.dto.MessageDto;
+import live.yurii.yugram.queries.dto.SlowQueryDto;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link QueryController}.
+ */
+@WebMvcTest(QueryController.class)
+@Import({RepositoryMetrics.class, QueryProperties.class, QueryControllerTest.Registry.class})
+@DisplayName("QueryController Tests")
+class QueryControllerTest {
+
+  @TestConfiguration
+  static class Registry {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private RepositoryMetrics repositoryMetrics;
+
+  @MockitoBean
+  private SlowQueryLog slowQueryLog;
+
+  @Test
+  @DisplayName("GET /admin/queries should report calls, rows and count query share per repository method")
+  void givenRepositoryCalls_whenGetQueryStats_thenReturnMethodStats() throws Throwable {
+    // Given
+    MethodInvocation invocation = mock(MethodInvocation.class);
+    when(invocation.getMethod()).thenReturn(MessageRepository.class.getMethod("findDtosByChatId", Long.class, Pageable.class));
+    when(invocation.proceed()).thenAnswer(call -> {
+      repositoryMetrics.statementExecuted("select me1_0.id from messages me1_0 where me1_0.chat_id=? fetch first ? rows only", 3_000_000);
+      repositoryMetrics.statementExecuted("select count(me1_0.id) from messages me1_0 where me1_0.chat_id=?", 1_000_000);
+      return new PageImpl<>(List.of(new MessageDto(), new MessageDto(), new MessageDto()), PageRequest.of(1, 3), 10);
+    });
+    repositoryMetrics.invoke(MessageRepository.class, invocation);
+    repositoryMetrics.invoke(MessageRepository.class, invocation);
+    when(slowQueryLog.slowQueryCount()).thenReturn(4L);
+
+    // When & Then
+    mockMvc.perform(get("/admin/queries"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.slowQueries").value(4))
+        .andExpect(jsonPath("$.methods[0].repository").value("MessageRepository"))
+        .andExpect(jsonPath("$.methods[0].method").value("findDtosByChatId"))
+        .andExpect(jsonPath("$.methods[0].calls").value(2))
+        .andExpect(jsonPath("$.methods[0].meanRows").value(3.0))
+        .andExpect(jsonPath("$.methods[0].meanStatements").value(2.0))
+        .andExpect(jsonPath("$.methods[0].countMillis", closeTo(2.0, 0.001)));
+  }
+
+  @Test
+  @DisplayName("GET /admin/queries/slow should return the most recent slow queries")
+  void whenGetSlowQueries_thenReturnRecentSlowQueries() throws Exception {
+    // Given
+    when(slowQueryLog.recent(200)).thenReturn(List.of(SlowQueryDto.builder()
+        .at(1_700_000_000L)
+        .durationMillis(450.5)
+        .origin("MessageRepository.findDtosByChatId")
+        .sql("select count(me1_0.id) from messages me1_0 where me1_0.chat_id=?")
+        .parameterTypes(List.of("Long"))
+        .succeeded(true)
+        .plan("Aggregate (actual time=450.1..450.1 rows=1 loops=1)")
+        .build()));
+
+    // When & Then
+    mockMvc.perform(get("/admin/queries/slow").param("limit", "1000"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].origin").value("MessageRepository.findDtosByChatId"))
+        .andExpect(jsonPath("$[0].parameterTypes[0]").value("Long"))
+        .andExpect(jsonPath("$[0].plan").exists());
+    verify(slowQueryLog).recent(200);
+  }
+}
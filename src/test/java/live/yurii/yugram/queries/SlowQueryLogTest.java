@@ -0,0 +1,61 @@
+package live.yurii.yugram.queries;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.queries.dto.SlowQueryDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link SlowQueryLog}.
+ */
+@DisplayName("SlowQueryLog Tests")
+class SlowQueryLogTest {
+
+  @Test
+  @DisplayName("A slow statement should be captured with the types of its bind parameters, not their values")
+  void givenSlowStatement_whenRecord_thenCaptureParameterTypesOnly() {
+    // Given
+    QueryProperties properties = new QueryProperties();
+    properties.setExplainSampleRate(0);
+    SlowQueryLog slowQueryLog = new SlowQueryLog(properties, mock(DataSource.class), new SimpleMeterRegistry());
+
+    // When
+    slowQueryLog.record("select * from messages where chat_id=? and content like ? and sender_id=?",
+        Arrays.asList(-1001154166453L, "%password%", null), Duration.ofSeconds(1).toNanos(), true, "MessageRepository.search");
+
+    // Then
+    List<SlowQueryDto> recent = slowQueryLog.recent(10);
+    assertThat(recent).singleElement().satisfies(slowQuery -> {
+      assertThat(slowQuery.getParameterTypes()).containsExactly("Long", "String", "null");
+      assertThat(slowQuery.getOrigin()).isEqualTo("MessageRepository.search");
+    });
+    assertThat(recent.getFirst().toString()).doesNotContain("1001154166453", "password");
+  }
+
+  @Test
+  @DisplayName("Constants in a plan should be masked, costs and timings kept")
+  void givenPlanWithConstants_whenRedact_thenMaskConstants() {
+    // Given
+    String plan = """
+        Seq Scan on messages  (cost=0.00..2.16 rows=1 width=0) (actual time=0.033..0.033 rows=0 loops=1)
+          Filter: ((id > 5) AND (id = ANY ('{1,2}'::bigint[])) AND (chat_id = '-1001154166453'::bigint) AND (content = 'it''s'::text) AND ((sender_id)::numeric < 3.5))
+          Rows Removed by Filter: 46""";
+
+    // When
+    String redacted = SlowQueryLog.redact(plan);
+
+    // Then
+    assertThat(redacted).isEqualTo("""
+        Seq Scan on messages  (cost=0.00..2.16 rows=1 width=0) (actual time=0.033..0.033 rows=0 loops=1)
+          Filter: ((id > ?) AND (id = ANY ('?'::bigint[])) AND (chat_id = '?'::bigint) AND (content = '?'::text) AND ((sender_id)::numeric < ?))
+          Rows Removed by Filter: 46""");
+  }
+}
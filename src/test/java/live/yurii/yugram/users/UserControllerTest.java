@@ -1,9 +1,16 @@
 package live.yurii.yugram.users;
 
+import live.yurii.yugram.batch.BatchLookupProperties;
+import live.yurii.yugram.users.dto.UserDto;
+import live.yurii.yugram.cache.ChangeVersions;
+import live.yurii.yugram.cache.ConditionalRequests;
+import live.yurii.yugram.cache.EntityCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -13,10 +20,17 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -25,6 +39,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * Unit tests for {@link UserController}.
  */
 @WebMvcTest(UserController.class)
+@Import({BatchLookupProperties.class, UserCache.class, EntityCacheProperties.class, ConditionalRequests.class, ChangeVersions.class})
 @DisplayName("UserController Tests")
 class UserControllerTest {
 
@@ -34,6 +49,14 @@ class UserControllerTest {
   @MockitoBean
   private UserRepository userRepository;
 
+  @Autowired
+  private UserCache userCache;
+
+  @BeforeEach
+  void setUp() {
+    userCache.invalidateAll();
+  }
+
   @Test
   @DisplayName("GET /users/all should return paginated users with default values")
   void whenGetAllUsers_thenReturnPaginatedUsersWithDefaults() throws Exception {
@@ -64,8 +87,8 @@ class UserControllerTest {
         .withLanguageCode("en")
         .withType(UserEntity.UserType.REGULAR);
 
-    Page<UserEntity> userPage = new PageImpl<>(List.of(user1, user2), PageRequest.of(0, 20), 2);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(user1, user2), PageRequest.of(0, 20), 2).map(UserDto::fromEntity);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all"))
@@ -108,8 +131,8 @@ class UserControllerTest {
         .withPhoneNumber("+1111111111")
         .withType(UserEntity.UserType.REGULAR);
 
-    Page<UserEntity> userPage = new PageImpl<>(List.of(user), PageRequest.of(1, 10), 35);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(user), PageRequest.of(1, 10), 35).map(UserDto::fromEntity);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all")
@@ -129,8 +152,8 @@ class UserControllerTest {
   @DisplayName("GET /users/all with large size should limit to default size")
   void whenGetAllUsersWithLargeSize_thenLimitToDefaultSize() throws Exception {
     // Given
-    Page<UserEntity> userPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all")
@@ -151,7 +174,7 @@ class UserControllerTest {
         .withPhoneNumber("+1234567890")
         .withType(UserEntity.UserType.REGULAR);
 
-    when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+    when(userRepository.findDtoById(userId)).thenReturn(Optional.of(UserDto.fromEntity(user)));
 
     // When & Then
     mockMvc.perform(get("/users/byId/{id}", userId))
@@ -170,7 +193,7 @@ class UserControllerTest {
   void whenGetUserByIdWithNonExistingId_thenReturn404() throws Exception {
     // Given
     Long userId = 999L;
-    when(userRepository.findById(userId)).thenReturn(Optional.empty());
+    when(userRepository.findDtoById(userId)).thenReturn(Optional.empty());
 
     // When & Then
     mockMvc.perform(get("/users/byId/{id}", userId))
@@ -189,7 +212,7 @@ class UserControllerTest {
         .withPhoneNumber("+1234567890")
         .withType(UserEntity.UserType.REGULAR);
 
-    when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
+    when(userRepository.findDtoByUsername(username)).thenReturn(Optional.of(UserDto.fromEntity(user)));
 
     // When & Then
     mockMvc.perform(get("/users/byUsername/{username}", username))
@@ -207,7 +230,7 @@ class UserControllerTest {
   void whenGetUserByUsernameWithNonExistingUsername_thenReturn404() throws Exception {
     // Given
     String username = "nonexistent_user";
-    when(userRepository.findByUsername(username)).thenReturn(Optional.empty());
+    when(userRepository.findDtoByUsername(username)).thenReturn(Optional.empty());
 
     // When & Then
     mockMvc.perform(get("/users/byUsername/{username}", username))
@@ -226,7 +249,7 @@ class UserControllerTest {
         .withPhoneNumber(phoneNumber)
         .withType(UserEntity.UserType.REGULAR);
 
-    when(userRepository.findByPhoneNumber(phoneNumber)).thenReturn(Optional.of(user));
+    when(userRepository.findDtoByPhoneNumber(phoneNumber)).thenReturn(Optional.of(UserDto.fromEntity(user)));
 
     // When & Then
     mockMvc.perform(get("/users/byPhoneNumber/{phoneNumber}", phoneNumber))
@@ -243,7 +266,7 @@ class UserControllerTest {
   void whenGetUserByPhoneNumberWithNonExistingPhoneNumber_thenReturn404() throws Exception {
     // Given
     String phoneNumber = "+9999999999";
-    when(userRepository.findByPhoneNumber(phoneNumber)).thenReturn(Optional.empty());
+    when(userRepository.findDtoByPhoneNumber(phoneNumber)).thenReturn(Optional.empty());
 
     // When & Then
     mockMvc.perform(get("/users/byPhoneNumber/{phoneNumber}", phoneNumber))
@@ -254,8 +277,8 @@ class UserControllerTest {
   @DisplayName("GET /users/all with empty result should return empty page")
   void whenGetAllUsersWithEmptyResult_thenReturnEmptyPage() throws Exception {
     // Given
-    Page<UserEntity> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(emptyPage);
+    Page<UserDto> emptyPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(emptyPage);
 
     // When & Then
     mockMvc.perform(get("/users/all"))
@@ -277,8 +300,8 @@ class UserControllerTest {
         .withFirstName("Test Bot")
         .withType(UserEntity.UserType.BOT);
 
-    Page<UserEntity> userPage = new PageImpl<>(List.of(botUser), PageRequest.of(0, 20), 1);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(botUser), PageRequest.of(0, 20), 1).map(UserDto::fromEntity);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all"))
@@ -298,8 +321,8 @@ class UserControllerTest {
         .withFirstName("Deleted")
         .withType(UserEntity.UserType.DELETED);
 
-    Page<UserEntity> userPage = new PageImpl<>(List.of(deletedUser), PageRequest.of(0, 20), 1);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(deletedUser), PageRequest.of(0, 20), 1).map(UserDto::fromEntity);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all"))
@@ -322,7 +345,7 @@ class UserControllerTest {
         .withLanguageCode(null)
         .withType(null);
 
-    when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+    when(userRepository.findDtoById(userId)).thenReturn(Optional.of(UserDto.fromEntity(user)));
 
     // When & Then
     mockMvc.perform(get("/users/byId/{id}", userId))
@@ -340,8 +363,8 @@ class UserControllerTest {
   @DisplayName("GET /users/all with negative page should handle gracefully")
   void whenGetAllUsersWithNegativePage_thenHandleGracefully() throws Exception {
     // Given
-    Page<UserEntity> userPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(), PageRequest.of(0, 20), 0);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all")
@@ -353,8 +376,8 @@ class UserControllerTest {
   @DisplayName("GET /users/all with zero size should normalize to size 1")
   void whenGetAllUsersWithZeroSize_thenNormalizeToSizeOne() throws Exception {
     // Given
-    Page<UserEntity> userPage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
-    when(userRepository.findAll(any(PageRequest.class))).thenReturn(userPage);
+    Page<UserDto> userPage = new PageImpl<>(List.of(), PageRequest.of(0, 1), 0);
+    when(userRepository.findAllDtos(any(PageRequest.class))).thenReturn(userPage);
 
     // When & Then
     mockMvc.perform(get("/users/all")
@@ -362,4 +385,120 @@ class UserControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.size").value(1));
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("GET /users/byUsername/{username} after lookup by id should use the cached user")
+  void whenGetUserByUsernameAfterRefresh_thenServeFromCache() throws Exception {
+    // Given
+    UserEntity user = new UserEntity(5L)
+        .withUsername("cached_user")
+        .withFirstName("Cached")
+        .withType(UserEntity.UserType.REGULAR);
+    userCache.refresh(user);
+
+    // When & Then
+    mockMvc.perform(get("/users/byUsername/{username}", "cached_user"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value(5))
+        .andExpect(jsonPath("$.firstName").value("Cached"));
+    mockMvc.perform(get("/users/byId/{id}", 5L))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username").value("cached_user"));
+
+    verify(userRepository, times(0)).findDtoByUsername("cached_user");
+    verify(userRepository, times(0)).findDtoById(5L);
+  }
+
+  @Test
+  @DisplayName("GET /users/byUsername/{username} after username change should not return the stale user")
+  void whenUsernameChanged_thenOldUsernameIsNotServedFromCache() throws Exception {
+    // Given
+    userCache.refresh(new UserEntity(6L).withUsername("old_name").withType(UserEntity.UserType.REGULAR));
+    userCache.refresh(new UserEntity(6L).withUsername("new_name").withType(UserEntity.UserType.REGULAR));
+    when(userRepository.findDtoByUsername("old_name")).thenReturn(Optional.empty());
+
+    // When & Then
+    mockMvc.perform(get("/users/byUsername/{username}", "old_name"))
+        .andExpect(status().isNotFound());
+    mockMvc.perform(get("/users/byUsername/{username}", "new_name"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value(6));
+  }
+
+  @Test
+  @DisplayName("GET /users/byIds should return users in request order, loading only uncached ones")
+  void whenGetUsersByIds_thenReturnInRequestOrderWithMissingIds() throws Exception {
+    // Given
+    userCache.refresh(new UserEntity(1L).withUsername("cached").withType(UserEntity.UserType.REGULAR));
+    UserEntity loaded = new UserEntity(2L).withUsername("loaded").withType(UserEntity.UserType.BOT);
+    when(userRepository.findDtosByIds(anyCollection())).thenReturn(List.of(UserDto.fromEntity(loaded)));
+
+    // When & Then
+    mockMvc.perform(get("/users/byIds").param("ids", "2,3,1,2"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.content.length()").value(2))
+        .andExpect(jsonPath("$.content[0].id").value(2))
+        .andExpect(jsonPath("$.content[0].type").value("BOT"))
+        .andExpect(jsonPath("$.content[1].id").value(1))
+        .andExpect(jsonPath("$.content[1].username").value("cached"))
+        .andExpect(jsonPath("$.missingIds.length()").value(1))
+        .andExpect(jsonPath("$.missingIds[0]").value(3));
+
+    verify(userRepository, times(1)).findDtosByIds(Set.of(2L, 3L));
+  }
+
+  @Test
+  @DisplayName("POST /users/byIds should accept ids in the body")
+  void whenPostUsersByIds_thenReturnUsers() throws Exception {
+    // Given
+    UserEntity user = new UserEntity(7L).withUsername("posted").withType(UserEntity.UserType.REGULAR);
+    when(userRepository.findDtosByIds(anyCollection())).thenReturn(List.of(UserDto.fromEntity(user)));
+
+    // When & Then
+    mockMvc.perform(post("/users/byIds")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[7, 8]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content[0].username").value("posted"))
+        .andExpect(jsonPath("$.missingIds[0]").value(8));
+  }
+
+  @Test
+  @DisplayName("POST /users/byIds with too many ids should return 400")
+  void whenPostTooManyUserIds_thenReturnBadRequest() throws Exception {
+    // Given
+    String ids = LongStream.rangeClosed(1, 5001)
+        .mapToObj(String::valueOf)
+        .collect(Collectors.joining(",", "[", "]"));
+
+    // When & Then
+    mockMvc.perform(post("/users/byIds")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(ids))
+        .andExpect(status().isBadRequest());
+
+    verify(userRepository, times(0)).findDtosByIds(anyCollection());
+  }
+
+  @Test
+  @DisplayName("GET /users/byUsername/{username} should not let a row read before a refresh replace the cached user")
+  void givenRefreshDuringLookup_whenGetUserByUsername_thenKeepRefreshedUser() throws Exception {
+    // Given
+    UserEntity stale = new UserEntity(9L).withUsername("racer").withFirstName("Before").withType(UserEntity.UserType.REGULAR);
+    UserEntity fresh = new UserEntity(9L).withUsername("racer").withFirstName("After").withType(UserEntity.UserType.REGULAR);
+    when(userRepository.findDtoByUsername("racer")).thenAnswer(invocation -> {
+      // the user handler flushes a newer row while the lookup is in flight
+      userCache.refresh(fresh);
+      return Optional.of(UserDto.fromEntity(stale));
+    });
+
+    // When & Then
+    mockMvc.perform(get("/users/byUsername/{username}", "racer"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.firstName").value("After"));
+    mockMvc.perform(get("/users/byId/{id}", 9L))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.firstName").value("After"));
+  }
+}
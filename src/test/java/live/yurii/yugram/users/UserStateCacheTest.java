@@ -0,0 +1,82 @@
+package live.yurii.yugram.users;
+
+import live.yurii.yugram.users.UserStateCache.FingerprintTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link UserStateCache}.
+ */
+@DisplayName("UserStateCache Tests")
+class UserStateCacheTest {
+
+  private static final int MASK = 1023;
+
+  private static List<Long> keysWithSlot(int slot, int count) {
+    List<Long> keys = new ArrayList<>();
+    for (long key = 1; keys.size() < count; key++) {
+      if (FingerprintTable.slot(key, MASK) == slot) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  @Test
+  @DisplayName("Removing from a cluster that wraps around the table should keep the keys behind it reachable")
+  void givenClusterWrappingAround_whenRemove_thenShiftKeysBack() {
+    // Given: three keys at home in the last slot fill it and the first two, a key at home in slot 0 comes after
+    FingerprintTable table = new FingerprintTable();
+    List<Long> last = keysWithSlot(MASK, 3);
+    long first = keysWithSlot(0, 1).getFirst();
+    last.forEach(key -> table.put(key, key * 10));
+    table.put(first, first * 10);
+
+    // When
+    table.remove(last.getFirst());
+    table.remove(last.get(2));
+
+    // Then
+    assertThat(table.size()).isEqualTo(2);
+    assertThat(table.matches(last.getFirst(), last.getFirst() * 10)).isFalse();
+    assertThat(table.matches(last.get(1), last.get(1) * 10)).isTrue();
+    assertThat(table.matches(last.get(2), last.get(2) * 10)).isFalse();
+    assertThat(table.matches(first, first * 10)).isTrue();
+  }
+
+  @Test
+  @DisplayName("Random puts and removes should leave the table agreeing with a map")
+  void givenRandomOperations_whenCompareWithMap_thenAgree() {
+    // Given
+    FingerprintTable table = new FingerprintTable();
+    Map<Long, Long> expected = new HashMap<>();
+    Random random = new Random(7);
+
+    // When: few distinct keys, so that clusters form and removes shift often
+    for (int i = 0; i < 200_000; i++) {
+      long key = 1 + random.nextInt(600);
+      if (random.nextInt(3) == 0) {
+        table.remove(key);
+        expected.remove(key);
+      } else {
+        table.put(key, i);
+        expected.put(key, (long) i);
+      }
+    }
+
+    // Then
+    assertThat(table.size()).isEqualTo(expected.size());
+    for (long key = 1; key <= 600; key++) {
+      Long value = expected.get(key);
+      assertThat(table.matches(key, value != null ? value : -1)).as("key %d", key).isEqualTo(value != null);
+    }
+  }
+}
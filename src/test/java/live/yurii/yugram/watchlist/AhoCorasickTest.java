@@ -0,0 +1,108 @@
+package live.yurii.yugram.watchlist;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link AhoCorasick}.
+ */
+@DisplayName("AhoCorasick Tests")
+class AhoCorasickTest {
+
+  private static List<String> matches(AhoCorasick automaton, List<String> patterns, String text) {
+    List<String> matches = new ArrayList<>();
+    automaton.find(text, (pattern, start, end) -> matches.add(patterns.get(pattern) + "@" + start + "-" + end));
+    return matches;
+  }
+
+  private static List<String> naiveMatches(List<String> patterns, String text) {
+    List<String> matches = new ArrayList<>();
+    for (int end = 1; end <= text.length(); end++) {
+      for (String pattern : patterns) {
+        int start = end - pattern.length();
+        if (start >= 0 && text.startsWith(pattern, start)) {
+          matches.add(pattern + "@" + start + "-" + end);
+        }
+      }
+    }
+    return matches;
+  }
+
+  @Test
+  @DisplayName("Overlapping patterns should all be reported as they end, through the output links")
+  void givenOverlappingPatterns_whenFind_thenReportEveryOccurrence() {
+    // Given
+    List<String> patterns = List.of("he", "she", "his", "hers");
+    AhoCorasick automaton = new AhoCorasick(patterns);
+
+    // When
+    List<String> matches = matches(automaton, patterns, "ushers");
+
+    // Then: "she" ends where "he" does, "he" is reached through the output link of "she"
+    assertThat(matches).containsExactly("she@1-4", "he@2-4", "hers@2-6");
+    assertThat(automaton.stateCount()).isEqualTo(1 + "hers".length() + "she".length() + "is".length());
+  }
+
+  @Test
+  @DisplayName("A mismatch should follow the failure link to the longest suffix that is a prefix of a pattern")
+  void givenMismatchDeepInTrie_whenFind_thenContinueFromSuffix() {
+    // Given
+    List<String> patterns = List.of("abcd", "bcx", "cy");
+    AhoCorasick automaton = new AhoCorasick(patterns);
+
+    // When & Then
+    assertThat(matches(automaton, patterns, "abcx abcy abcd")).containsExactly("bcx@1-4", "cy@7-9", "abcd@10-14");
+  }
+
+  @Test
+  @DisplayName("Patterns that are suffixes of each other should chain their output links")
+  void givenNestedSuffixes_whenFind_thenFollowWholeOutputChain() {
+    // Given
+    List<String> patterns = List.of("aaa", "a", "aa");
+    AhoCorasick automaton = new AhoCorasick(patterns);
+
+    // When & Then
+    assertThat(matches(automaton, patterns, "aaaa")).containsExactly(
+        "a@0-1",
+        "aa@0-2", "a@1-2",
+        "aaa@0-3", "aa@1-3", "a@2-3",
+        "aaa@1-4", "aa@2-4", "a@3-4");
+  }
+
+  @Test
+  @DisplayName("Many patterns over a wide alphabet should be found like a naive search finds them")
+  void givenManyPatternsOverWideAlphabet_whenFind_thenEqualNaiveSearch() {
+    // Given: edges of thousands of states share one table, with keys differing in the char only
+    Random random = new Random(42);
+    char[] alphabet = "abcабвгд一丁\uffff".toCharArray();
+    Set<String> unique = new LinkedHashSet<>();
+    while (unique.size() < 3000) {
+      StringBuilder pattern = new StringBuilder();
+      for (int length = 1 + random.nextInt(6); length > 0; length--) {
+        pattern.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      unique.add(pattern.toString());
+    }
+    List<String> patterns = List.copyOf(unique);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      text.append(alphabet[random.nextInt(alphabet.length)]);
+    }
+    AhoCorasick automaton = new AhoCorasick(patterns);
+
+    // When
+    List<String> matches = matches(automaton, patterns, text.toString());
+
+    // Then
+    assertThat(automaton.stateCount()).isGreaterThan(1 << 12);
+    assertThat(matches).containsExactlyInAnyOrderElementsOf(naiveMatches(patterns, text.toString()));
+  }
+}
@@ -0,0 +1,148 @@
+package live.yurii.yugram.watchlist;
+
+import live.yurii.yugram.live.LiveFeedConfiguration;
+import live.yurii.yugram.live.LiveFeedProperties;
+import live.yurii.yugram.messages.NewMessageEvent;
+import live.yurii.yugram.watchlist.dto.MessageMatchDto;
+import live.yurii.yugram.watchlist.dto.WatchTermDto;
+import org.drinkless.tdlib.TdApi;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link WatchlistController}.
+ */
+@WebMvcTest(WatchlistController.class)
+@Import({Watchlist.class, WatchlistHandler.class, WatchlistFeed.class, WatchlistProperties.class,
+    LiveFeedProperties.class, LiveFeedConfiguration.class})
+@DisplayName("WatchlistController Tests")
+class WatchlistControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private Watchlist watchlist;
+
+  @Autowired
+  private WatchlistHandler watchlistHandler;
+
+  @MockitoBean
+  private WatchTermRepository watchTermRepository;
+
+  @MockitoBean
+  private MessageMatchRepository messageMatchRepository;
+
+  @Test
+  @DisplayName("POST /watchlist/terms should store the cleaned terms and match them right away")
+  void whenAddTerms_thenStoreAndRecompile() throws Exception {
+    // Given
+    List<WatchTermDto> stored = List.of(new WatchTermDto(1, "Kyiv", 100), new WatchTermDto(2, "AAPL", 100));
+    when(watchTermRepository.findAll()).thenReturn(stored);
+
+    // When & Then
+    mockMvc.perform(post("/watchlist/terms")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[\"  Kyiv \", \"AAPL\", \"Kyiv\"]"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2))
+        .andExpect(jsonPath("$[1].term").value("AAPL"));
+
+    verify(watchTermRepository).insertAll(List.of("Kyiv", "AAPL"));
+    assertThat(watchlist.match("Shares of aapl rose in KYIV and kyivstar"))
+        .extracting(match -> match.term().getTerm())
+        .containsExactly("AAPL", "Kyiv");
+  }
+
+  @Test
+  @DisplayName("POST /watchlist/terms should reject blank terms")
+  void whenAddBlankTerm_thenReturnBadRequest() throws Exception {
+    // When & Then
+    mockMvc.perform(post("/watchlist/terms")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[\"oil\", \"  \"]"))
+        .andExpect(status().isBadRequest());
+
+    verify(watchTermRepository, never()).insertAll(anyList());
+  }
+
+  @Test
+  @DisplayName("GET /watchlist/matches/stream should push matches of new messages as whole words only")
+  void whenMessageMatches_thenStreamMatch() throws Exception {
+    // Given
+    when(watchTermRepository.findAll()).thenReturn(List.of(new WatchTermDto(7, "oil", 100), new WatchTermDto(8, "Ёлка", 100)));
+    when(messageMatchRepository.insertAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    watchlist.reload();
+    MvcResult result = mockMvc.perform(get("/watchlist/matches/stream").param("termIds", "7"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    // When
+    watchlistHandler.handle(newMessage(1L, "Out of toilet paper, елка stays"));
+    watchlistHandler.handle(newMessage(2L, "Brent OIL prices jump"));
+
+    // Then
+    String body = awaitContent(result.getResponse(), "Brent OIL prices jump");
+    assertThat(body).contains("event:match", "\"messageId\":2", "\"term\":\"oil\"");
+    assertThat(body).doesNotContain("toilet");
+    verify(messageMatchRepository).insertAll(List.of(watchlistMatch(1L)));
+  }
+
+  private static MessageMatchDto watchlistMatch(long messageId) {
+    return MessageMatchDto.builder()
+        .messageId(messageId)
+        .chatId(-300L)
+        .senderId(100L)
+        .date(1640995200)
+        .termId(8)
+        .term("Ёлка")
+        .excerpt("Out of toilet paper, елка stays")
+        .build();
+  }
+
+  private static NewMessageEvent newMessage(long id, String text) {
+    TdApi.Message message = new TdApi.Message();
+    message.id = id;
+    message.chatId = -300L;
+    message.date = 1640995200;
+    message.senderId = new TdApi.MessageSenderUser(100L);
+    TdApi.MessageText content = new TdApi.MessageText();
+    content.text = new TdApi.FormattedText(text, new TdApi.TextEntity[0]);
+    message.content = content;
+    TdApi.UpdateNewMessage update = new TdApi.UpdateNewMessage();
+    update.message = message;
+    return new NewMessageEvent(WatchlistControllerTest.class, 0, update);
+  }
+
+  private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+    String body = response.getContentAsString();
+    while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      body = response.getContentAsString();
+    }
+    return body;
+  }
+}
@@ -0,0 +1,381 @@
+package live.yurii.yugram.watermarks;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import live.yurii.yugram.cluster.LeaseManager;
+import live.yurii.yugram.cluster.LeaseProperties;
+import live.yurii.yugram.cluster.LeaseRepository;
+import live.yurii.yugram.configuration.FakeTdLibGateway;
+import live.yurii.yugram.configuration.TdLibParameters;
+import live.yurii.yugram.ingest.IngestExecutor;
+import live.yurii.yugram.messages.MessageIngestedEvent;
+import live.yurii.yugram.messages.NewMessageEvent;
+import live.yurii.yugram.watermarks.ChatWatermarkRepository.Watermark;
+import live.yurii.yugram.watermarks.MessageGapRepository.Gap;
+import live.yurii.yugram.watermarks.MessageGapRepository.NewGap;
+import live.yurii.yugram.watermarks.MessageGapRepository.OpenGaps;
+import org.drinkless.tdlib.TdApi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link WatermarkController}.
+ */
+@WebMvcTest(WatermarkController.class)
+@Import({WatermarkTracker.class, GapRepairer.class, WatermarkProperties.class, LeaseManager.class, LeaseProperties.class,
+    TdLibParameters.class, WatermarkControllerTest.Config.class})
+@DisplayName("WatermarkController Tests")
+class WatermarkControllerTest {
+
+  private static final long STEP = 1L << 20;
+  private static final long FAILING_CHAT_ID = -1_000_000_000_007L;
+
+  @TestConfiguration
+  static class Config {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    FakeTdLibGateway tdLibGateway() {
+      return new FakeTdLibGateway();
+    }
+
+    @Bean
+    FailingMessageHandler failingMessageHandler() {
+      return new FailingMessageHandler();
+    }
+  }
+
+  static class FailingMessageHandler {
+
+    @EventListener
+    public void handle(NewMessageEvent event) {
+      if (event.getUpdateNewMessage().message.chatId == FAILING_CHAT_ID) {
+        throw new IllegalStateException("rolled back");
+      }
+    }
+  }
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private WatermarkTracker watermarkTracker;
+
+  @Autowired
+  private GapRepairer gapRepairer;
+
+  @Autowired
+  private WatermarkProperties watermarkProperties;
+
+  @Autowired
+  private FakeTdLibGateway tdLib;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @MockitoBean
+  private ChatWatermarkRepository chatWatermarkRepository;
+
+  @MockitoBean
+  private MessageGapRepository messageGapRepository;
+
+  @MockitoBean
+  private TransactionTemplate transactionTemplate;
+
+  @MockitoBean
+  private IngestExecutor ingestExecutor;
+
+  @MockitoBean
+  private LeaseRepository leaseRepository;
+
+  @BeforeEach
+  void setUp() {
+    tdLib.reset();
+    watermarkProperties.setGapGrace(Duration.ofSeconds(30));
+    watermarkProperties.setPageSize(100);
+    watermarkProperties.setMaxRepairRunTime(Duration.ofMinutes(2));
+    doAnswer(invocation -> {
+      Consumer<TransactionStatus> action = invocation.getArgument(0);
+      action.accept(null);
+      return null;
+    }).when(transactionTemplate).executeWithoutResult(any());
+    doAnswer(invocation -> {
+      try {
+        invocation.<Runnable>getArgument(2).run();
+      } catch (RuntimeException e) {
+        // logged by the lane
+      }
+      return null;
+    }).when(ingestExecutor).execute(anyLong(), anyString(), any());
+  }
+
+  @Test
+  @DisplayName("Messages arriving out of order should fill their hole without a gap")
+  void whenMessagesOutOfOrder_thenAdvanceWithoutGap() {
+    // Given
+    long chatId = -1_000_000_000_001L;
+    ingested(chatId, 10, 100);
+    ingested(chatId, 12, 102);
+    watermarkTracker.flush();
+    assertThat(watermarkTracker.pending(chatId)).isEqualTo(1);
+
+    // When
+    ingested(chatId, 11, 101);
+    watermarkTracker.flush();
+
+    // Then
+    assertThat(watermarkTracker.watermark(chatId)).hasValueSatisfying(watermark -> {
+      assertThat(watermark.contiguousId()).isEqualTo(12 * STEP);
+      assertThat(watermark.contiguousDate()).isEqualTo(102);
+    });
+    assertThat(watermarkTracker.pending(chatId)).isZero();
+    verify(messageGapRepository, never()).insertAll(argThat(gaps -> gaps.stream().anyMatch(gap -> gap.chatId() == chatId)), anyLong());
+  }
+
+  @Test
+  @DisplayName("A hole still open after the grace period should be recorded as a gap and passed by the watermark")
+  void whenHoleOutlivesGrace_thenRecordGap() {
+    // Given
+    long chatId = -1_000_000_000_002L;
+    watermarkProperties.setGapGrace(Duration.ZERO);
+    ingested(chatId, 20, 200);
+    ingested(chatId, 24, 240);
+    ingested(chatId, 25, 250);
+
+    // When
+    watermarkTracker.flush();
+
+    // Then
+    verify(messageGapRepository).insertAll(eq(List.of(new NewGap(chatId, 0, 20 * STEP, 24 * STEP, 3))), anyLong());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Watermark>> captor = ArgumentCaptor.forClass(List.class);
+    verify(chatWatermarkRepository, times(1)).upsertAll(captor.capture());
+    assertThat(captor.getValue())
+        .filteredOn(watermark -> watermark.chatId() == chatId)
+        .singleElement()
+        .satisfies(watermark -> {
+          assertThat(watermark.contiguousId()).isEqualTo(25 * STEP);
+          assertThat(watermark.lastId()).isEqualTo(25 * STEP);
+        });
+  }
+
+  @Test
+  @DisplayName("Repairs should page the history of the gap's account back from the newer end and ingest only the missing messages")
+  void givenHistory_whenRepair_thenIngestMissingMessages() {
+    // Given
+    long chatId = -1_000_000_000_003L;
+    for (long serverId = 1; serverId <= 12; serverId++) {
+      if (serverId != 6) {
+        tdLib.addMessage(2, message(chatId, serverId));
+      }
+    }
+    watermarkProperties.setPageSize(3);
+    Gap gap = new Gap(7, chatId, 2, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 0, 0, 0, null);
+    when(messageGapRepository.findDue(anyLong(), eq(watermarkProperties.getGapsPerRun()))).thenReturn(List.of(gap));
+
+    // When
+    gapRepairer.repairDue();
+
+    // Then: 3, 4, 5, 7, 8 and 9, message 6 was deleted
+    verify(messageGapRepository).repaired(7, STEP, 6);
+    verify(ingestExecutor, times(6)).execute(eq(chatId), eq("GapRepair"), any());
+    assertThat(tdLib.requests())
+        .allMatch(request -> request.accountId() == 2)
+        .extracting(request -> ((TdApi.GetChatHistory) request.function()).fromMessageId / STEP)
+        .containsExactly(10L, 8L, 5L, 3L);
+  }
+
+  @Test
+  @DisplayName("A run past its time should save the progress of its gap and leave the other gaps to the next run")
+  void givenRunOutOfTime_whenRepair_thenStopAfterFirstRequest() {
+    // Given
+    long chatId = -1_000_000_000_006L;
+    for (long serverId = 1; serverId <= 12; serverId++) {
+      tdLib.addMessage(0, message(chatId, serverId));
+    }
+    watermarkProperties.setPageSize(3);
+    watermarkProperties.setMaxRepairRunTime(Duration.ZERO);
+    Gap first = new Gap(9, chatId, 0, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 0, 0, 0, null);
+    Gap second = new Gap(10, chatId - 1, 0, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 0, 0, 0, null);
+    when(messageGapRepository.findDue(anyLong(), eq(watermarkProperties.getGapsPerRun()))).thenReturn(List.of(first, second));
+
+    // When
+    gapRepairer.repairDue();
+
+    // Then
+    verify(messageGapRepository).progress(9, 8 * STEP, 2);
+    verify(messageGapRepository, never()).progress(eq(10L), anyLong(), anyInt());
+    assertThat(tdLib.requests()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("A failed history request should leave the gap open with a backoff")
+  void givenTdLibError_whenRepair_thenRetryLater() {
+    // Given
+    long chatId = -1_000_000_000_004L;
+    tdLib.failNext(429, "Too Many Requests: retry after 5");
+    long now = Instant.now().getEpochSecond();
+    Gap gap = new Gap(8, chatId, 0, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 0, 0, 0, null);
+    when(messageGapRepository.findDue(anyLong(), eq(watermarkProperties.getGapsPerRun()))).thenReturn(List.of(gap));
+
+    // When
+    gapRepairer.repairDue();
+
+    // Then
+    ArgumentCaptor<Long> nextAttempt = ArgumentCaptor.forClass(Long.class);
+    verify(messageGapRepository).failed(eq(8L), eq(GapStatus.OPEN), eq(1), nextAttempt.capture(),
+        eq("TdLibException: TDLib error 429: Too Many Requests: retry after 5"));
+    assertThat(nextAttempt.getValue()).isGreaterThanOrEqualTo(now + watermarkProperties.getRetryBackoff().toSeconds());
+    verify(ingestExecutor, never()).execute(anyLong(), any(), any());
+  }
+
+  @Test
+  @DisplayName("A gap should only be marked repaired once the lanes stored its messages")
+  void givenIngestFails_whenRepair_thenLeaveGapOpen() {
+    // Given
+    long chatId = FAILING_CHAT_ID;
+    for (long serverId = 1; serverId <= 12; serverId++) {
+      tdLib.addMessage(0, message(chatId, serverId));
+    }
+    Gap gap = new Gap(11, chatId, 0, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 0, 0, 0, null);
+    when(messageGapRepository.findDue(anyLong(), eq(watermarkProperties.getGapsPerRun()))).thenReturn(List.of(gap));
+
+    // When
+    gapRepairer.repairDue();
+
+    // Then
+    verify(messageGapRepository, never()).repaired(anyLong(), anyLong(), anyInt());
+    verify(messageGapRepository).progress(11, 10 * STEP, 0);
+    verify(messageGapRepository).failed(eq(11L), eq(GapStatus.OPEN), eq(1), anyLong(),
+        eq("IllegalStateException: rolled back"));
+  }
+
+  @Test
+  @DisplayName("A gap whose history holds none of its messages should be checked again, then given up as unrepairable")
+  void givenDeletedMessages_whenRepairTwice_thenUnrepairable() {
+    // Given
+    long chatId = -1_000_000_000_008L;
+    for (long serverId : new long[]{1, 2, 10, 11}) {
+      tdLib.addMessage(0, message(chatId, serverId));
+    }
+    Gap gap = new Gap(12, chatId, 0, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 0, 0, 0, null);
+    when(messageGapRepository.findDue(anyLong(), eq(watermarkProperties.getGapsPerRun()))).thenReturn(List.of(gap));
+
+    // When
+    gapRepairer.repairDue();
+
+    // Then
+    verify(messageGapRepository).recheck(eq(12L), eq(10 * STEP), eq(1), anyLong());
+    verify(messageGapRepository, never()).unrepairable(anyLong(), anyLong());
+
+    // When
+    Gap rechecked = new Gap(12, chatId, 0, 2 * STEP, 10 * STEP, 7, GapStatus.OPEN, 10 * STEP, 0, 1, 0, 0, null);
+    when(messageGapRepository.findDue(anyLong(), eq(watermarkProperties.getGapsPerRun()))).thenReturn(List.of(rechecked));
+    gapRepairer.repairDue();
+
+    // Then
+    verify(messageGapRepository).unrepairable(12, STEP);
+    verify(messageGapRepository, never()).repaired(anyLong(), anyLong(), anyInt());
+  }
+
+  @Test
+  @DisplayName("The lag should be exported once, for the chat furthest behind")
+  void givenTwoChats_whenLag_thenExportMaximum() {
+    // Given
+    long now = Instant.now().getEpochSecond();
+    ingested(-1_000_000_000_009L, 1, (int) now - 600);
+    ingested(-1_000_000_000_010L, 1, (int) now - 60);
+
+    // When
+    var gauges = meterRegistry.find("yugram.watermarks.lag").gauges();
+
+    // Then
+    assertThat(gauges).singleElement()
+        .satisfies(gauge -> assertThat(gauge.value()).isGreaterThanOrEqualTo(600));
+  }
+
+  @Test
+  @DisplayName("GET /watermarks/{chatId} should return the lag, the pending messages and the open gaps")
+  void whenGetWatermark_thenReturnLagAndGaps() throws Exception {
+    // Given
+    long chatId = -1_000_000_000_005L;
+    int date = (int) Instant.now().getEpochSecond() - 120;
+    ingested(chatId, 50, date);
+    ingested(chatId, 52, date + 60);
+    when(messageGapRepository.countOpen()).thenReturn(Map.of(chatId, new OpenGaps(2, 9)));
+
+    // When & Then
+    mockMvc.perform(get("/watermarks/" + chatId))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.contiguousId").value(50 * STEP))
+        .andExpect(jsonPath("$.lastId").value(52 * STEP))
+        .andExpect(jsonPath("$.lagSeconds").value(greaterThanOrEqualTo(120)))
+        .andExpect(jsonPath("$.stale").value(false))
+        .andExpect(jsonPath("$.pending").value(1))
+        .andExpect(jsonPath("$.openGaps").value(2))
+        .andExpect(jsonPath("$.missing").value(9));
+  }
+
+  @Test
+  @DisplayName("POST /watermarks/gaps/{id}/retry should return 404 for an unknown gap")
+  void whenRetryUnknownGap_thenReturnNotFound() throws Exception {
+    // Given
+    when(messageGapRepository.reopen(eq(99L), anyLong())).thenReturn(false);
+
+    // When & Then
+    mockMvc.perform(post("/watermarks/gaps/99/retry"))
+        .andExpect(status().isNotFound());
+  }
+
+  private void ingested(long chatId, long serverId, int date) {
+    watermarkTracker.onMessageIngested(new MessageIngestedEvent(this, 0, chatId, serverId * STEP, date));
+  }
+
+  private static TdApi.Message message(long chatId, long serverId) {
+    TdApi.Message message = new TdApi.Message();
+    message.id = serverId * STEP;
+    message.chatId = chatId;
+    message.date = (int) serverId;
+    return message;
+  }
+}
@@ -12,6 +12,7 @@ class ChatViewer {
         this.totalMessagePages = 0;
         this.totalMessages = 0;
         this.apiBaseUrl = 'http://localhost:8080';
+        this.liveFeed = null;
 
         this.initializeElements();
         this.bindEvents();
@@ -187,6 +188,52 @@ class ChatViewer {
         this.chatTitle.textContent = displayName;
 
         await this.loadMessages();
+        this.subscribeToChat(chatId);
+    }
+
+    subscribeToChat(chatId) {
+        if (this.liveFeed) {
+            this.liveFeed.close();
+        }
+
+        // The browser reconnects by itself when the stream ends or the server restarts
+        this.liveFeed = new EventSource(`${this.apiBaseUrl}/messages/stream?chatIds=${chatId}`);
+        this.liveFeed.addEventListener('message', event => this.onLiveMessage(JSON.parse(event.data)));
+        this.liveFeed.addEventListener('edit', event => this.onLiveEdit(JSON.parse(event.data)));
+        this.liveFeed.addEventListener('dropped', () => this.loadMessages(0));
+    }
+
+    onLiveMessage(message) {
+        if (message.chatId !== this.currentChatId || this.messages.some(m => m.id === message.id)) {
+            return;
+        }
+
+        const atBottom = this.messagesContainer.scrollHeight - this.messagesContainer.scrollTop
+            <= this.messagesContainer.clientHeight + 50;
+
+        if (this.messages.length === 0) {
+            this.messagesContainer.innerHTML = '';
+        }
+        this.messages.push(message);
+        this.totalMessages++;
+        this.messagesContainer.appendChild(this.createMessageElement(message));
+
+        if (atBottom) {
+            this.messagesContainer.scrollTop = this.messagesContainer.scrollHeight;
+        }
+    }
+
+    onLiveEdit(message) {
+        const index = this.messages.findIndex(m => m.id === message.id);
+        if (index === -1) {
+            return;
+        }
+
+        this.messages[index] = message;
+        const element = this.messagesContainer.querySelector(`[data-message-id="${message.id}"]`);
+        if (element) {
+            element.replaceWith(this.createMessageElement(message));
+        }
     }
 
     async loadMessages(page = this.messagesPage) {
@@ -197,7 +244,7 @@ class ChatViewer {
         this.showLoading(this.messagesContainer);
 
         try {
-            const response = await fetch(`${this.apiBaseUrl}/messages/byChatId/${this.currentChatId}?page=${page}&size=${this.messagePageSize}`);
+            const response = await fetch(`${this.apiBaseUrl}/messages/byChatId/${this.currentChatId}?page=${page}&size=${this.messagePageSize}&enrich=true`);
 
             if (!response.ok) {
                 throw new Error(`HTTP error! status: ${response.status}`);
@@ -294,6 +341,7 @@ class ChatViewer {
         // This is a simplified logic - you might need to adjust based on your actual user ID detection
         const isFromUser = message.senderId === this.currentChatId;
         messageDiv.className = `message ${isFromUser ? 'sent' : 'received'}`;
+        messageDiv.dataset.messageId = message.id;
 
         // Convert Unix timestamp to readable time
         const date = new Date(message.date * 1000); // Convert to milliseconds
@@ -307,7 +355,11 @@ class ChatViewer {
             day: 'numeric'
         });
 
+        const senderName = isFromUser ? null : message.senderName;
+        const senderHtml = senderName ? `<div class="message-sender">${this.escapeHtml(senderName)}</div>` : '';
+
         messageDiv.innerHTML = `
+            ${senderHtml}
             <div class="message-text">${this.escapeHtml(message.content || 'No content')}</div>
             <div class="message-time">${dateStr} ${time}</div>
         `;